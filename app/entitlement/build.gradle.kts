@@ -7,6 +7,7 @@ plugins {
     id("org.springframework.boot")
     id("io.spring.dependency-management")
     id("com.google.cloud.tools.jib")
+    id("me.champeau.jmh")
 }
 
 // ルートで管理するバージョンを参照して重複を防ぐ。
@@ -25,12 +26,15 @@ dependencies {
     implementation("org.flywaydb:flyway-core")
     implementation("org.flywaydb:flyway-database-postgresql")
     implementation("io.nats:jnats:$jnatsVersion")
+    // 権利一覧の読み取りキャッシュ（プロセス内 + 任意の Redis 共有層）
+    implementation("com.github.ben-manes.caffeine:caffeine")
+    implementation("org.springframework.boot:spring-boot-starter-data-redis")
     implementation(project(":libs:proto"))
     implementation(project(":libs:common"))
     spotbugs("com.github.spotbugs:spotbugs:4.9.7")
     spotbugs("com.github.spotbugs:spotbugs-annotations:4.9.7")
     compileOnly("com.github.spotbugs:spotbugs-annotations:4.9.7")
-    runtimeOnly("org.postgresql:postgresql")
+    implementation("org.postgresql:postgresql")
     compileOnly("org.projectlombok:lombok:$lombokVersion")
     annotationProcessor("org.projectlombok:lombok:$lombokVersion")
 
@@ -40,6 +44,35 @@ dependencies {
     testImplementation("org.testcontainers:postgresql")
 }
 
+// ベンチマークは計測に時間がかかるため、通常の test/check からは除外する。
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("benchmark")
+    }
+}
+
+tasks.register<Test>("benchmark") {
+    description = "Runs entitlement benchmarks against a local Postgres container."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    testLogging {
+        showStandardStreams = true
+    }
+}
+
+// JMH は DB/NATS を使わない CPU 計測だけを置く。結果は JSON で残し、変更前後で見比べる。
+jmh {
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
+
 tasks.named<org.springframework.boot.gradle.tasks.bundling.BootJar>("bootJar") {
     archiveFileName.set("app.jar")
 }
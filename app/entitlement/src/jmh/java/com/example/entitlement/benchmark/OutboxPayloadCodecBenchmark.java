@@ -0,0 +1,95 @@
+/*
+ * どこで: Entitlement JMH ベンチマーク
+ * 何を: outbox payload 1 件あたりの CPU コストを、JSON 保存（従来）と protobuf 保存で書き込み側・publish 側ごとに計測する
+ * なぜ: publish のたびに JSON を解析して protobuf を組み立て直していた処理を省いた効果を数値で確かめるため
+ */
+package com.example.entitlement.benchmark;
+
+import com.example.common.event.EntitlementEventPayload;
+import com.example.entitlement.model.OutboxEventRecord;
+import com.example.entitlement.service.EntitlementEventCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// write* は grant/revoke 1 件で outbox に保存する値を作るまで、publish* は claim した 1 行から
+// NATS に渡すバイト列とヘッダ値を得るまでを測る。DB と NATS への往復は含めない。
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OutboxPayloadCodecBenchmark {
+
+  private ObjectMapper objectMapper;
+  private EntitlementEventCodec codec;
+  private EntitlementEventPayload payload;
+  private OutboxEventRecord jsonRecord;
+  private OutboxEventRecord protoRecord;
+
+  @Setup(Level.Trial)
+  public void setUp() throws JsonProcessingException {
+    // アプリと同じく snake_case は EntitlementEventPayload の注釈に任せる
+    objectMapper = new ObjectMapper();
+    codec = new EntitlementEventCodec(objectMapper);
+    final UUID eventId = UUID.randomUUID();
+    payload =
+        new EntitlementEventPayload(
+            eventId.toString(),
+            "EntitlementGranted",
+            Instant.parse("2026-01-17T00:00:00.123456Z").toString(),
+            "user-0123456789",
+            "sku-premium-monthly",
+            "purchase",
+            "purchase-0123456789",
+            42L,
+            "4bf92f3577b34da6a3ce929d0e0e4736");
+    jsonRecord =
+        new OutboxEventRecord(
+            eventId,
+            "EntitlementGranted",
+            "user-0123456789:sku-premium-monthly",
+            objectMapper.writeValueAsString(payload),
+            null,
+            0,
+            Instant.EPOCH);
+    protoRecord =
+        new OutboxEventRecord(
+            eventId,
+            "EntitlementGranted",
+            "user-0123456789:sku-premium-monthly",
+            null,
+            codec.encode(payload),
+            0,
+            Instant.EPOCH);
+  }
+
+  @Benchmark
+  public String writeJson() throws JsonProcessingException {
+    return objectMapper.writeValueAsString(payload);
+  }
+
+  @Benchmark
+  public ByteString writeProto() {
+    return codec.encode(payload);
+  }
+
+  @Benchmark
+  public byte[] publishFromJson() {
+    return codec.decode(jsonRecord).data().toByteArray();
+  }
+
+  @Benchmark
+  public byte[] publishFromProto() {
+    return codec.decode(protoRecord).data().toByteArray();
+  }
+}
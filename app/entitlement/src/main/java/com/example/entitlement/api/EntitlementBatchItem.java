@@ -0,0 +1,24 @@
+/*
+ * どこで: Entitlement API
+ * 何を: 一括付与/剥奪リクエストの 1 件分の入力（冪等キーと付与/剥奪の内容）を保持する
+ * なぜ: 1 件ごとに冪等キーを持たせ、単件 API と同じ冪等性で再送できるようにするため
+ */
+package com.example.entitlement.api;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.constraints.NotBlank;
+
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record EntitlementBatchItem(
+    @NotBlank(message = "idempotency_key is required") String idempotencyKey,
+    @NotBlank(message = "user_id is required") String userId,
+    @NotBlank(message = "stock_keeping_unit is required") String stockKeepingUnit,
+    @NotBlank(message = "reason is required") String reason,
+    @NotBlank(message = "purchase_id is required") String purchaseId) {
+
+  // 単件 API と同じ request_hash になるよう、単件のリクエストに読み替える
+  public EntitlementRequest toRequest() {
+    return new EntitlementRequest(userId, stockKeepingUnit, reason, purchaseId);
+  }
+}
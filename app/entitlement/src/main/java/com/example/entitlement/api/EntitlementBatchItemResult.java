@@ -0,0 +1,14 @@
+/*
+ * どこで: Entitlement API
+ * 何を: 一括付与/剥奪の 1 件分の結果（HTTP 相当のステータスと、成功時の権利または失敗時のエラー）を表す
+ * なぜ: 1 件の状態衝突で全体を失敗させず、単件 API と同じ応答を件ごとに返すため
+ */
+package com.example.entitlement.api;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+// status は単件 API なら返していた HTTP ステータス。entitlement と error はどちらか一方だけが入る。
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record EntitlementBatchItemResult(
+    String idempotencyKey, int status, EntitlementResponse entitlement, ApiErrorResponse error) {}
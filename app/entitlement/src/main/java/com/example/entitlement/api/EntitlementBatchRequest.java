@@ -0,0 +1,42 @@
+/*
+ * どこで: Entitlement API
+ * 何を: 一括付与/剥奪リクエストの入力を保持する
+ * なぜ: 購入の取り込みや配布で大量の付与/剥奪を 1 回の呼び出しにまとめるため
+ */
+package com.example.entitlement.api;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// 1 回の呼び出しは 1 トランザクション・1 文で書き込むため、ロックの保持時間と文の大きさを件数で抑える
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record EntitlementBatchRequest(
+    @NotEmpty(message = "items is required")
+        @Size(max = EntitlementBatchRequest.MAX_ITEMS, message = "items must be at most {max}")
+        List<@Valid @NotNull(message = "items must not contain null") EntitlementBatchItem> items) {
+
+  public static final int MAX_ITEMS = 500;
+
+  public EntitlementBatchRequest {
+    // SpotBugs の EI_EXPOSE_REP 対応: 受け取ったリストを防御的コピーして不変化する
+    if (items != null) {
+      items = Collections.unmodifiableList(new ArrayList<>(items));
+    }
+  }
+
+  @Override
+  public List<EntitlementBatchItem> items() {
+    // SpotBugs の EI_EXPOSE_REP 対応: 内部の不変リストを直接返さず毎回コピーして返す
+    if (items == null) {
+      return null;
+    }
+    return Collections.unmodifiableList(new ArrayList<>(items));
+  }
+}
@@ -0,0 +1,31 @@
+/*
+ * どこで: Entitlement API
+ * 何を: 一括付与/剥奪の結果をリクエストの items と同じ順で返す
+ * なぜ: 呼び出し側が件ごとの成否を入力と突き合わせられるようにするため
+ */
+package com.example.entitlement.api;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record EntitlementBatchResponse(List<EntitlementBatchItemResult> results) {
+  public EntitlementBatchResponse {
+    // SpotBugs の EI_EXPOSE_REP 対応: 受け取ったリストを防御的コピーして不変化する
+    if (results != null) {
+      results = Collections.unmodifiableList(new ArrayList<>(results));
+    }
+  }
+
+  @Override
+  public List<EntitlementBatchItemResult> results() {
+    // SpotBugs の EI_EXPOSE_REP 対応: 内部の不変リストを直接返さず毎回コピーして返す
+    if (results == null) {
+      return null;
+    }
+    return Collections.unmodifiableList(new ArrayList<>(results));
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * どこで: Entitlement API
- * 何を: 権利付与/剥奪/参照のエンドポイントを提供する
+ * 何を: 権利付与/剥奪（単件・一括）/参照のエンドポイントを提供する
  * なぜ: アプリの公開インターフェースを明確にするため
  */
 package com.example.entitlement.api;
@@ -27,6 +27,8 @@ public class EntitlementController {
 
   private static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
   private static final String HEADER_TRACE_ID = "X-Trace-Id";
+  private static final String HEADER_CONSISTENCY = "X-Consistency";
+  private static final String CONSISTENCY_STRICT = "strict";
 
   private final EntitlementService entitlementService;
 
@@ -53,9 +55,26 @@ public class EntitlementController {
     return ResponseEntity.ok(response);
   }
 
+  // 件ごとの成否は results で返し、状態衝突や冪等キーの競合があっても呼び出し全体は 200 にする
+  @PostMapping("/entitlements/grants:batch")
+  public ResponseEntity<EntitlementBatchResponse> grantBatch(
+      @RequestHeader(value = HEADER_TRACE_ID, required = false) String traceId,
+      @Valid @RequestBody EntitlementBatchRequest request) {
+    return ResponseEntity.ok(entitlementService.grantBatch(request, traceId));
+  }
+
+  @PostMapping("/entitlements/revokes:batch")
+  public ResponseEntity<EntitlementBatchResponse> revokeBatch(
+      @RequestHeader(value = HEADER_TRACE_ID, required = false) String traceId,
+      @Valid @RequestBody EntitlementBatchRequest request) {
+    return ResponseEntity.ok(entitlementService.revokeBatch(request, traceId));
+  }
+
+  // X-Consistency: strict なら読み取りキャッシュを通さず DB から返す
   @GetMapping("/users/{user_id}/entitlements")
   public EntitlementsResponse list(
-      @PathVariable("user_id") @NotBlank(message = "user_id is required") String userId) {
-    return entitlementService.listByUser(userId);
+      @PathVariable("user_id") @NotBlank(message = "user_id is required") String userId,
+      @RequestHeader(value = HEADER_CONSISTENCY, required = false) String consistency) {
+    return entitlementService.listByUser(userId, CONSISTENCY_STRICT.equalsIgnoreCase(consistency));
   }
 }
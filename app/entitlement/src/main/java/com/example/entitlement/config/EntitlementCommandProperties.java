@@ -0,0 +1,13 @@
+/*
+ * どこで: Entitlement アプリの設定バインド
+ * 何を: grant/revoke の書き込み方式の切り替えを保持する
+ * なぜ: 1 文にまとめた書き込みと従来の逐次書き込みを運用とベンチマークで切り替えられるようにするため
+ */
+package com.example.entitlement.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// singleStatement=true なら entitlements/outbox/audit/idempotency を CTE 連鎖の 1 文で書き込む。
+// false なら文ごとに往復する従来の経路を使う。advisory lock はどちらも先に別の文で取る。
+@ConfigurationProperties(prefix = "entitlement.command")
+public record EntitlementCommandProperties(boolean singleStatement) {}
@@ -0,0 +1,22 @@
+/*
+ * どこで: Entitlement アプリの設定バインド
+ * 何を: outbox の LISTEN/NOTIFY 起床の有効/無効と、LISTEN 接続の待ち時間・再接続間隔を保持する
+ * なぜ: NOTIFY を通せない接続経路（transaction pooling 等）ではポーリングだけに戻せるようにするため
+ */
+package com.example.entitlement.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// enabled=true なら専用の接続で LISTEN entitlement_outbox し、通知ごとに即時 claim する。
+// pollTimeout は通知待ち 1 回の上限で、停止要求や接続断に気付くまでの最大遅れになる。
+// 再接続直後は取りこぼした通知の代わりに 1 度 claim を起こす。
+@ConfigurationProperties(prefix = "entitlement.outbox.listen")
+public record EntitlementOutboxListenProperties(
+    boolean enabled, Duration pollTimeout, Duration reconnectInterval) {
+
+  public EntitlementOutboxListenProperties {
+    pollTimeout = pollTimeout == null ? Duration.ofSeconds(5) : pollTimeout;
+    reconnectInterval = reconnectInterval == null ? Duration.ofSeconds(5) : reconnectInterval;
+  }
+}
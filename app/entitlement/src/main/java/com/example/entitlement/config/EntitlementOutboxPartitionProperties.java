@@ -0,0 +1,22 @@
+/*
+ * どこで: Entitlement アプリの設定バインド
+ * 何を: outbox の区画単位 publish の有効/無効と、区画リースの期限・更新間隔を保持する
+ * なぜ: publisher を複数 replica で動かしても aggregate_key ごとの publish 順を保てるようにするため
+ */
+package com.example.entitlement.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// enabled=true なら各 replica が outbox_partition_leases の区画をリースし、自分の区画だけを
+// aggregate_key ごとに書き込み順で claim する。false なら従来どおり全件を created_at 順に claim する。
+// leaseTtl は replica が落ちたときに区画が他へ移るまでの時間で、renewInterval より十分長くする。
+@ConfigurationProperties(prefix = "entitlement.outbox.partitioning")
+public record EntitlementOutboxPartitionProperties(
+    boolean enabled, Duration leaseTtl, Duration renewInterval) {
+
+  public EntitlementOutboxPartitionProperties {
+    leaseTtl = leaseTtl == null ? Duration.ofSeconds(15) : leaseTtl;
+    renewInterval = renewInterval == null ? Duration.ofSeconds(5) : renewInterval;
+  }
+}
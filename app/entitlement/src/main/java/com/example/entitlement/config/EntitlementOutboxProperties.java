@@ -22,4 +22,15 @@ public record EntitlementOutboxProperties(
     Duration backoffMin,
     int errorMessageMaxLength,
     Duration lease,
-    Duration publishedTtl) {}
+    Duration publishedTtl,
+    Duration ackTimeout,
+    Duration failedCountInterval) {
+
+  // ackTimeout: batch 全件の puback を待つ上限。lease より短くし、待ち切れない分は再試行へ回す。
+  // failedCountInterval: FAILED 件数 gauge を数え直す間隔。batch で FAILED が出たときは待たずに数える。
+  public EntitlementOutboxProperties {
+    ackTimeout = ackTimeout == null ? Duration.ofSeconds(5) : ackTimeout;
+    failedCountInterval =
+        failedCountInterval == null ? Duration.ofSeconds(30) : failedCountInterval;
+  }
+}
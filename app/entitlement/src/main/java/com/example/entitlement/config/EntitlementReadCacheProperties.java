@@ -0,0 +1,21 @@
+/*
+ * どこで: Entitlement アプリの設定バインド
+ * 何を: ユーザ権利一覧の読み取りキャッシュ（プロセス内）の有効/無効・上限件数・保持期間を保持する
+ * なぜ: プロフィール表示ごとの一覧参照を DB へ届かせずに返しつつ、環境ごとに切れるようにするため
+ */
+package com.example.entitlement.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// enabled=true で GET /v1/users/{user_id}/entitlements の結果を user_id ごとにプロセス内へ保持する。
+// 変更はコミット時の置き換えと entitlement イベントの version で捨てるため、ttl はイベントを
+// 取りこぼしたときに古い一覧を返しうる上限としてだけ効く。
+@ConfigurationProperties(prefix = "entitlement.read-cache")
+public record EntitlementReadCacheProperties(boolean enabled, int maxEntries, Duration ttl) {
+
+  public EntitlementReadCacheProperties {
+    maxEntries = maxEntries <= 0 ? 100_000 : maxEntries;
+    ttl = ttl == null ? Duration.ofMinutes(1) : ttl;
+  }
+}
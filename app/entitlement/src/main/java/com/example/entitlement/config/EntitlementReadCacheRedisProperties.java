@@ -0,0 +1,21 @@
+/*
+ * どこで: Entitlement アプリの設定バインド
+ * 何を: 権利一覧の読み取りキャッシュの Redis 共有層の有効/無効・key の接頭辞・保持期間を保持する
+ * なぜ: replica の起動直後や入れ替え時にもプロセス内の取りこぼしを DB ではなく Redis で受けられるようにするため
+ */
+package com.example.entitlement.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// enabled=true でプロセス内に無い一覧を Redis から読み、DB から読んだ一覧を Redis にも載せる。
+// ttl は一覧と version の下限（floor）の両方の保持期間で、DB を読んでから Redis へ載せるまでより
+// 十分長くする。
+@ConfigurationProperties(prefix = "entitlement.read-cache.redis")
+public record EntitlementReadCacheRedisProperties(boolean enabled, String keyPrefix, Duration ttl) {
+
+  public EntitlementReadCacheRedisProperties {
+    keyPrefix = keyPrefix == null || keyPrefix.isBlank() ? "entitlement:list:" : keyPrefix;
+    ttl = ttl == null ? Duration.ofMinutes(10) : ttl;
+  }
+}
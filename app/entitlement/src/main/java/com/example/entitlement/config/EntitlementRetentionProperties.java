@@ -1,7 +1,7 @@
 /*
  * どこで: Entitlement アプリの設定バインド
- * 何を: retention cleanup のスケジュール設定を保持する
- * なぜ: 削除間隔と有効/無効を運用で調整できるようにするため
+ * 何を: retention cleanup のスケジュール設定と、監査ログの保持期間を保持する
+ * なぜ: 削除間隔と有効/無効、監査ログを残す期間を運用で調整できるようにするため
  */
 package com.example.entitlement.config;
 
@@ -9,4 +9,10 @@ import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "entitlement.retention")
-public record EntitlementRetentionProperties(boolean enabled, Duration cleanupInterval) {}
+public record EntitlementRetentionProperties(
+    boolean enabled, Duration cleanupInterval, Duration auditTtl) {
+
+  public EntitlementRetentionProperties {
+    auditTtl = auditTtl == null ? Duration.ofDays(365) : auditTtl;
+  }
+}
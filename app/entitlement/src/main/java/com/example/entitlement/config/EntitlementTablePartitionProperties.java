@@ -0,0 +1,23 @@
+/*
+ * どこで: Entitlement アプリの設定バインド
+ * 何を: outbox_events/entitlement_audit の日単位パーティション保守の有効/無効、先行作成日数、保守間隔、ロック待ち上限を保持する
+ * なぜ: 区画の作成漏れと、区画の作成/削除による親表へのロック待ちを運用で調整できるようにするため
+ */
+package com.example.entitlement.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// premakeDays は今日から何日先までの区画を用意しておくか。保守が止まっても、この日数の間は
+// 日の区画に書き込める（区画が無い日の行は既定区画に入り、行単位の削除で掃除する）。
+// lockTimeout は区画の作成/削除で親表のロックを待つ上限で、超えたら次の保守で取り直す。
+@ConfigurationProperties(prefix = "entitlement.table-partitions")
+public record EntitlementTablePartitionProperties(
+    boolean enabled, int premakeDays, Duration maintenanceInterval, Duration lockTimeout) {
+
+  public EntitlementTablePartitionProperties {
+    premakeDays = premakeDays <= 0 ? 7 : premakeDays;
+    maintenanceInterval = maintenanceInterval == null ? Duration.ofHours(1) : maintenanceInterval;
+    lockTimeout = lockTimeout == null ? Duration.ofSeconds(3) : lockTimeout;
+  }
+}
@@ -0,0 +1,10 @@
+/*
+ * どこで: Entitlement ドメインモデル
+ * 何を: 一括付与/剥奪の 1 件分の書き込み内容（監査、outbox、成功時の冪等応答）を表す
+ * なぜ: 単件の 1 文経路と同じ組み立てを件ごとに行い、リポジトリで列ごとの配列にまとめるため
+ */
+package com.example.entitlement.model;
+
+// audit.requestId は冪等キー。event.payloadProto と success.responseBodyJson の version は 0 のまま渡す。
+public record EntitlementBatchCommand(
+    EntitlementAuditRecord audit, OutboxEventRecord event, IdempotencyRecord success) {}
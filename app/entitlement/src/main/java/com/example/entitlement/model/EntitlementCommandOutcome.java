@@ -0,0 +1,14 @@
+/*
+ * どこで: Entitlement ドメインモデル
+ * 何を: grant/revoke を 1 文で書き込んだ結果（再利用した冪等応答、更新後の権利、冪等保存の成否）を表す
+ * なぜ: 1 往復の結果から、再利用/成功/状態衝突/不変条件違反をサービス層で従来どおり振り分けるため
+ */
+package com.example.entitlement.model;
+
+import java.util.Optional;
+
+// reused があれば何も書き込んでいない。applied が空なら状態衝突で、409 応答だけを保存している。
+public record EntitlementCommandOutcome(
+    Optional<IdempotencyRecord> reused,
+    Optional<EntitlementRecord> applied,
+    boolean idempotencyStored) {}
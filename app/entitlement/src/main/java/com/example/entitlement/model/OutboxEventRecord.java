@@ -5,7 +5,17 @@
  */
 package com.example.entitlement.model;
 
+import com.google.protobuf.ByteString;
+import java.time.Instant;
 import java.util.UUID;
 
+// payloadProto は publish するバイト列そのもの。protobuf 化より前に書かれた行は null で、
+// 代わりに payloadJson を持つ。createdAt は区画キーで、状態の書き戻しで対象の日の区画だけを読むために持ち回る。
 public record OutboxEventRecord(
-    UUID eventId, String eventType, String aggregateKey, String payloadJson, int attemptCount) {}
+    UUID eventId,
+    String eventType,
+    String aggregateKey,
+    String payloadJson,
+    ByteString payloadProto,
+    int attemptCount,
+    Instant createdAt) {}
@@ -0,0 +1,18 @@
+/*
+ * どこで: Entitlement ドメインモデル
+ * 何を: publish に失敗した outbox_events 1 行に書き戻す再試行状態を表す
+ * なぜ: 行ごとに値の違う失敗更新を 1 回の UPDATE にまとめて渡すため
+ */
+package com.example.entitlement.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+// nextRetryAt は status=FAILED なら null。createdAt は claim で受け取った区画キー。
+public record OutboxFailureUpdate(
+    UUID eventId,
+    Instant createdAt,
+    int attemptCount,
+    OutboxStatus status,
+    Instant nextRetryAt,
+    String lastError) {}
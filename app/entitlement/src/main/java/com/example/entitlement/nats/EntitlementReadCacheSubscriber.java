@@ -0,0 +1,100 @@
+/*
+ * どこで: Entitlement NATS 購読
+ * 何を: 自身が publish する entitlement イベントを core NATS で購読し、読み取りキャッシュへ version を伝える
+ * なぜ: 別の replica でコミットされた変更を、ttl を待たずにその version より古い一覧だけ捨てて反映するため
+ */
+package com.example.entitlement.nats;
+
+import com.example.entitlement.config.EntitlementNatsProperties;
+import com.example.entitlement.service.EntitlementReadCache;
+import com.example.proto.entitlement.EntitlementEvent;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.nats.client.Connection;
+import io.nats.client.Dispatcher;
+import io.nats.client.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// JetStream の consumer は作らない。全 replica が同じイベントを受ける必要があり、
+// 接続していなかった間の分は再送を待たずにキャッシュを全消去して取り戻す。
+@Component
+@ConditionalOnProperty(name = "nats.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "entitlement.read-cache.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class EntitlementReadCacheSubscriber {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(EntitlementReadCacheSubscriber.class);
+
+  private final Connection connection;
+  private final EntitlementNatsProperties natsProperties;
+  private final EntitlementReadCache readCache;
+  private final AtomicLong seenReconnects = new AtomicLong();
+  private Dispatcher dispatcher;
+
+  @PostConstruct
+  public void start() {
+    seenReconnects.set(connection.getStatistics().getReconnects());
+    dispatcher = connection.createDispatcher(this::handleMessage);
+    dispatcher.subscribe(natsProperties.subject());
+    readCache.bindEventFeed(this::isSynced);
+    logger.info("entitlement read cache subscriber started subject={}", natsProperties.subject());
+  }
+
+  @PreDestroy
+  public void stop() {
+    // 購読をやめた後はイベントが届かないため、キャッシュを使わないようにする
+    readCache.bindEventFeed(() -> false);
+    if (dispatcher != null) {
+      connection.closeDispatcher(dispatcher);
+      dispatcher = null;
+    }
+  }
+
+  // 切断中は使わせず、再接続を見つけたら切断中のイベントの分として全消去してから使わせる
+  boolean isSynced() {
+    if (connection.getStatus() != Connection.Status.CONNECTED) {
+      return false;
+    }
+    final long reconnects = connection.getStatistics().getReconnects();
+    final long seen = seenReconnects.get();
+    if (reconnects != seen && seenReconnects.compareAndSet(seen, reconnects)) {
+      logger.info("entitlement read cache resynced after nats reconnect");
+      readCache.invalidateAll();
+    }
+    return true;
+  }
+
+  void handleMessage(Message message) {
+    final EntitlementEvent event;
+    try {
+      event = EntitlementEvent.parseFrom(message.getData());
+    } catch (InvalidProtocolBufferException ex) {
+      // どの一覧に効くか分からない。古い一覧は ttl で消える。
+      logger.warn("entitlement event parse failed subject={}", message.getSubject(), ex);
+      return;
+    }
+    readCache.onEvent(
+        event.getUserId(),
+        event.getStockKeepingUnit(),
+        event.getVersion(),
+        parseOccurredAt(event.getOccurredAt()));
+  }
+
+  private static Instant parseOccurredAt(String occurredAt) {
+    try {
+      return Instant.parse(occurredAt);
+    } catch (DateTimeParseException ex) {
+      // 鮮度の計測に使うだけなので、読めなければ計測を省く
+      return null;
+    }
+  }
+}
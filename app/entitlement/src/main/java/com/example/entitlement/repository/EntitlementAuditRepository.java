@@ -1,13 +1,14 @@
 /*
  * どこで: Entitlement データアクセス
- * 何を: entitlement_audit の登録を行う
- * なぜ: 操作履歴を追跡できるようにするため
+ * 何を: entitlement_audit の登録と、保持期限切れの削除を行う
+ * なぜ: 操作履歴を追跡できるようにし、期限を過ぎた履歴を残し続けないため
  */
 package com.example.entitlement.repository;
 
 import static com.example.common.JdbcTimestampUtils.toTimestamp;
 
 import com.example.entitlement.model.EntitlementAuditRecord;
+import java.time.Instant;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -57,4 +58,16 @@ public class EntitlementAuditRepository {
             .addValue("detail", record.detailJson());
     return jdbcTemplate.update(sql, params);
   }
+
+  public int deleteOlderThan(Instant threshold) {
+    // 日の区画は区画ごと落とすため、行単位で消すのは日の区画に入らなかった既定区画の行だけにする
+    final String sql =
+        """
+        DELETE FROM entitlement_audit_default
+        WHERE occurred_at < :threshold
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource().addValue("threshold", toTimestamp(threshold));
+    return jdbcTemplate.update(sql, params);
+  }
 }
@@ -0,0 +1,496 @@
+/*
+ * どこで: Entitlement データアクセス
+ * 何を: grant/revoke（単件・一括）の冪等確認と entitlements/outbox/audit/idempotency の書き込みを CTE 連鎖の 1 文で行う
+ * なぜ: 同一トランザクション内で文ごとに DB と往復していた待ち時間を 1 往復にまとめるため
+ */
+package com.example.entitlement.repository;
+
+import static com.example.common.JdbcArrayUtils.sqlArray;
+import static com.example.common.JdbcTimestampUtils.toTimestamp;
+
+import com.example.entitlement.model.EntitlementAuditRecord;
+import com.example.entitlement.model.EntitlementBatchCommand;
+import com.example.entitlement.model.EntitlementCommandOutcome;
+import com.example.entitlement.model.EntitlementRecord;
+import com.example.entitlement.model.EntitlementStatus;
+import com.example.entitlement.model.IdempotencyRecord;
+import com.example.entitlement.model.OutboxEventRecord;
+import com.example.proto.entitlement.EntitlementEvent;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+@RequiredArgsConstructor
+public class EntitlementCommandRepository {
+
+  // 各 CTE は同じスナップショットで動き、互いの書き込みは RETURNING 経由でしか見えない。
+  // そのため冪等キーの有無(existing)と upsert の結果(upserted)を後続の INSERT の条件に使う。
+  // INSERT ... SELECT では型推論が効かないため、バインド値はすべて明示キャストする。
+  // outbox の protobuf は version を 0（省略）で符号化して渡し、採番した version のフィールドを
+  // 末尾に足す。protobuf は連結したメッセージを後勝ちで読むため、そのまま publish できる。
+  private static final String APPLY_SQL =
+      """
+      WITH existing AS (
+        SELECT request_hash, response_code, response_body::text AS response_body_text, expires_at
+        FROM idempotency_keys
+        WHERE idem_key = :idempotencyKey::text
+          AND expires_at > now()
+      ),
+      upserted AS (
+        INSERT INTO entitlements (
+          user_id,
+          stock_keeping_unit,
+          status,
+          granted_at,
+          revoked_at,
+          source,
+          source_id,
+          version,
+          updated_at
+        )
+        SELECT
+          :userId::text,
+          :stockKeepingUnit::text,
+          :status::text,
+          CASE WHEN :status::text = 'ACTIVE' THEN :now::timestamptz END,
+          CASE WHEN :status::text = 'REVOKED' THEN :now::timestamptz END,
+          :source::text,
+          :sourceId::text,
+          0,
+          :now::timestamptz
+        WHERE NOT EXISTS (SELECT 1 FROM existing)
+        ON CONFLICT (user_id, stock_keeping_unit)
+        DO UPDATE SET
+          status = EXCLUDED.status,
+          granted_at = COALESCE(EXCLUDED.granted_at, entitlements.granted_at),
+          revoked_at = EXCLUDED.revoked_at,
+          source = EXCLUDED.source,
+          source_id = EXCLUDED.source_id,
+          version = entitlements.version + 1,
+          updated_at = EXCLUDED.updated_at
+        WHERE entitlements.status <> EXCLUDED.status
+        RETURNING user_id, stock_keeping_unit, status, version, updated_at
+      ),
+      outbox AS (
+        INSERT INTO outbox_events (
+          event_id,
+          event_type,
+          aggregate_key,
+          payload_proto,
+          status,
+          attempt_count,
+          created_at
+        )
+        SELECT
+          :eventId::uuid,
+          :eventType::text,
+          :aggregateKey::text,
+          :payloadProto::bytea || protobuf_varint_field(:versionField::int, upserted.version),
+          'PENDING',
+          0,
+          :now::timestamptz
+        FROM upserted
+      ),
+      audit AS (
+        INSERT INTO entitlement_audit (
+          audit_id,
+          occurred_at,
+          user_id,
+          stock_keeping_unit,
+          action,
+          source,
+          source_id,
+          request_id,
+          detail
+        )
+        SELECT
+          :auditId::uuid,
+          :now::timestamptz,
+          upserted.user_id,
+          upserted.stock_keeping_unit,
+          :action::text,
+          :source::text,
+          :sourceId::text,
+          :idempotencyKey::text,
+          :detail::jsonb
+        FROM upserted
+      ),
+      stored AS (
+        INSERT INTO idempotency_keys (
+          idem_key,
+          request_hash,
+          response_code,
+          response_body,
+          expires_at
+        )
+        SELECT
+          :idempotencyKey::text,
+          :requestHash::text,
+          CASE
+            WHEN upserted.version IS NULL THEN :conflictCode::int
+            ELSE :successCode::int
+          END,
+          CASE
+            WHEN upserted.version IS NULL THEN :conflictBody::jsonb
+            ELSE jsonb_set(:successBody::jsonb, '{version}', to_jsonb(upserted.version))
+          END,
+          :expiresAt::timestamptz
+        FROM (SELECT 1) AS command
+        LEFT JOIN upserted ON true
+        WHERE NOT EXISTS (SELECT 1 FROM existing)
+        ON CONFLICT (idem_key) DO UPDATE
+          SET
+            request_hash  = EXCLUDED.request_hash,
+            response_code = EXCLUDED.response_code,
+            response_body = EXCLUDED.response_body,
+            expires_at    = EXCLUDED.expires_at
+        WHERE idempotency_keys.expires_at <= now()
+        RETURNING idem_key
+      )
+      SELECT
+        existing.request_hash,
+        existing.response_code,
+        existing.response_body_text,
+        existing.expires_at,
+        upserted.user_id,
+        upserted.stock_keeping_unit,
+        upserted.status,
+        upserted.version,
+        upserted.updated_at,
+        (SELECT count(*) FROM stored) AS stored_count
+      FROM (SELECT 1) AS command
+      LEFT JOIN existing ON true
+      LEFT JOIN upserted ON true
+      """;
+
+  // APPLY_SQL を複数件に広げたもの。件ごとの値は列ごとの配列で渡し、unnest で行に戻す。
+  // 冪等キーと (user_id, stock_keeping_unit) は呼び出し側で重複を除いておく（ON CONFLICT DO UPDATE は
+  // 1 文で同じ行を 2 回更新できない）。entitlements は (user_id, stock_keeping_unit) 順に書き、
+  // 同時に走る一括同士が行ロックを逆順に取り合わないようにする。outbox は入力順に publish_seq を振る。
+  private static final String APPLY_BATCH_SQL =
+      """
+      WITH input AS (
+        SELECT *
+        FROM unnest(
+          :idempotencyKeys::text[],
+          :requestHashes::text[],
+          :userIds::text[],
+          :stockKeepingUnits::text[],
+          :sources::text[],
+          :sourceIds::text[],
+          :actions::text[],
+          :details::text[],
+          :auditIds::uuid[],
+          :eventIds::uuid[],
+          :eventTypes::text[],
+          :aggregateKeys::text[],
+          :payloadProtos::text[],
+          :successCodes::int[],
+          :successBodies::text[],
+          :expiresAts::timestamptz[]
+        ) WITH ORDINALITY AS t(
+          idem_key,
+          request_hash,
+          user_id,
+          stock_keeping_unit,
+          source,
+          source_id,
+          action,
+          detail,
+          audit_id,
+          event_id,
+          event_type,
+          aggregate_key,
+          payload_proto,
+          success_code,
+          success_body,
+          expires_at,
+          ord
+        )
+      ),
+      existing AS (
+        SELECT
+          k.idem_key,
+          k.request_hash,
+          k.response_code,
+          k.response_body::text AS response_body_text,
+          k.expires_at
+        FROM idempotency_keys k
+        JOIN input ON input.idem_key = k.idem_key
+        WHERE k.expires_at > now()
+      ),
+      fresh AS (
+        SELECT input.*
+        FROM input
+        WHERE NOT EXISTS (SELECT 1 FROM existing WHERE existing.idem_key = input.idem_key)
+      ),
+      upserted AS (
+        INSERT INTO entitlements (
+          user_id,
+          stock_keeping_unit,
+          status,
+          granted_at,
+          revoked_at,
+          source,
+          source_id,
+          version,
+          updated_at
+        )
+        SELECT
+          fresh.user_id,
+          fresh.stock_keeping_unit,
+          :status::text,
+          CASE WHEN :status::text = 'ACTIVE' THEN :now::timestamptz END,
+          CASE WHEN :status::text = 'REVOKED' THEN :now::timestamptz END,
+          fresh.source,
+          fresh.source_id,
+          0,
+          :now::timestamptz
+        FROM fresh
+        ORDER BY fresh.user_id, fresh.stock_keeping_unit
+        ON CONFLICT (user_id, stock_keeping_unit)
+        DO UPDATE SET
+          status = EXCLUDED.status,
+          granted_at = COALESCE(EXCLUDED.granted_at, entitlements.granted_at),
+          revoked_at = EXCLUDED.revoked_at,
+          source = EXCLUDED.source,
+          source_id = EXCLUDED.source_id,
+          version = entitlements.version + 1,
+          updated_at = EXCLUDED.updated_at
+        WHERE entitlements.status <> EXCLUDED.status
+        RETURNING user_id, stock_keeping_unit, status, version, updated_at
+      ),
+      outbox AS (
+        INSERT INTO outbox_events (
+          event_id,
+          event_type,
+          aggregate_key,
+          payload_proto,
+          status,
+          attempt_count,
+          created_at
+        )
+        SELECT
+          fresh.event_id,
+          fresh.event_type,
+          fresh.aggregate_key,
+          decode(fresh.payload_proto, 'base64')
+            || protobuf_varint_field(:versionField::int, upserted.version),
+          'PENDING',
+          0,
+          :now::timestamptz
+        FROM fresh
+        JOIN upserted
+          ON upserted.user_id = fresh.user_id
+          AND upserted.stock_keeping_unit = fresh.stock_keeping_unit
+        ORDER BY fresh.ord
+      ),
+      audit AS (
+        INSERT INTO entitlement_audit (
+          audit_id,
+          occurred_at,
+          user_id,
+          stock_keeping_unit,
+          action,
+          source,
+          source_id,
+          request_id,
+          detail
+        )
+        SELECT
+          fresh.audit_id,
+          :now::timestamptz,
+          upserted.user_id,
+          upserted.stock_keeping_unit,
+          fresh.action,
+          fresh.source,
+          fresh.source_id,
+          fresh.idem_key,
+          fresh.detail::jsonb
+        FROM fresh
+        JOIN upserted
+          ON upserted.user_id = fresh.user_id
+          AND upserted.stock_keeping_unit = fresh.stock_keeping_unit
+      ),
+      stored AS (
+        INSERT INTO idempotency_keys (
+          idem_key,
+          request_hash,
+          response_code,
+          response_body,
+          expires_at
+        )
+        SELECT
+          fresh.idem_key,
+          fresh.request_hash,
+          CASE
+            WHEN upserted.version IS NULL THEN :conflictCode::int
+            ELSE fresh.success_code
+          END,
+          CASE
+            WHEN upserted.version IS NULL THEN :conflictBody::jsonb
+            ELSE jsonb_set(fresh.success_body::jsonb, '{version}', to_jsonb(upserted.version))
+          END,
+          fresh.expires_at
+        FROM fresh
+        LEFT JOIN upserted
+          ON upserted.user_id = fresh.user_id
+          AND upserted.stock_keeping_unit = fresh.stock_keeping_unit
+        ON CONFLICT (idem_key) DO UPDATE
+          SET
+            request_hash  = EXCLUDED.request_hash,
+            response_code = EXCLUDED.response_code,
+            response_body = EXCLUDED.response_body,
+            expires_at    = EXCLUDED.expires_at
+        WHERE idempotency_keys.expires_at <= now()
+        RETURNING idem_key
+      )
+      SELECT
+        input.idem_key,
+        existing.request_hash,
+        existing.response_code,
+        existing.response_body_text,
+        existing.expires_at,
+        upserted.user_id,
+        upserted.stock_keeping_unit,
+        upserted.status,
+        upserted.version,
+        upserted.updated_at,
+        CASE WHEN stored.idem_key IS NULL THEN 0 ELSE 1 END AS stored_count
+      FROM input
+      LEFT JOIN existing ON existing.idem_key = input.idem_key
+      LEFT JOIN upserted
+        ON existing.idem_key IS NULL
+        AND upserted.user_id = input.user_id
+        AND upserted.stock_keeping_unit = input.stock_keeping_unit
+      LEFT JOIN stored ON stored.idem_key = input.idem_key
+      ORDER BY input.ord
+      """;
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  // event.payloadProto と success.responseBodyJson の version は DB が採番した値で上書きする。
+  // 呼び出し側は version 以外を確定させ、version を 0 にした値を渡す。
+  @Transactional(propagation = Propagation.MANDATORY)
+  public EntitlementCommandOutcome apply(
+      EntitlementStatus status,
+      EntitlementAuditRecord audit,
+      OutboxEventRecord event,
+      IdempotencyRecord success,
+      IdempotencyRecord conflict) {
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("idempotencyKey", audit.requestId())
+            .addValue("requestHash", success.requestHash())
+            .addValue("userId", audit.userId())
+            .addValue("stockKeepingUnit", audit.stockKeepingUnit())
+            .addValue("status", status.name())
+            .addValue("now", toTimestamp(audit.occurredAt()))
+            .addValue("source", audit.source())
+            .addValue("sourceId", audit.sourceId())
+            .addValue("eventId", event.eventId())
+            .addValue("eventType", event.eventType())
+            .addValue("aggregateKey", event.aggregateKey())
+            .addValue("payloadProto", event.payloadProto().toByteArray())
+            .addValue("versionField", EntitlementEvent.VERSION_FIELD_NUMBER)
+            .addValue("auditId", audit.auditId())
+            .addValue("action", audit.action())
+            .addValue("detail", audit.detailJson())
+            .addValue("successCode", success.responseCode())
+            .addValue("successBody", success.responseBodyJson())
+            .addValue("conflictCode", conflict.responseCode())
+            .addValue("conflictBody", conflict.responseBodyJson())
+            .addValue("expiresAt", toTimestamp(success.expiresAt()));
+    return jdbcTemplate
+        .query(APPLY_SQL, params, (rs, rowNum) -> mapRow(rs, audit.requestId()))
+        .getFirst();
+  }
+
+  // apply を複数件まとめて 1 文で行い、件ごとの結果を commands と同じ順で返す。
+  // 状態衝突の応答は全件で同じため、conflict の冪等キーと request_hash は使わない。
+  @Transactional(propagation = Propagation.MANDATORY)
+  public List<EntitlementCommandOutcome> applyBatch(
+      EntitlementStatus status,
+      Instant now,
+      List<EntitlementBatchCommand> commands,
+      IdempotencyRecord conflict) {
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("status", status.name())
+            .addValue("now", toTimestamp(now))
+            .addValue("versionField", EntitlementEvent.VERSION_FIELD_NUMBER)
+            .addValue("conflictCode", conflict.responseCode())
+            .addValue("conflictBody", conflict.responseBodyJson());
+    addTextArray(params, "idempotencyKeys", commands, c -> c.audit().requestId());
+    addTextArray(params, "requestHashes", commands, c -> c.success().requestHash());
+    addTextArray(params, "userIds", commands, c -> c.audit().userId());
+    addTextArray(params, "stockKeepingUnits", commands, c -> c.audit().stockKeepingUnit());
+    addTextArray(params, "sources", commands, c -> c.audit().source());
+    addTextArray(params, "sourceIds", commands, c -> c.audit().sourceId());
+    addTextArray(params, "actions", commands, c -> c.audit().action());
+    addTextArray(params, "details", commands, c -> c.audit().detailJson());
+    addTextArray(params, "auditIds", commands, c -> c.audit().auditId().toString());
+    addTextArray(params, "eventIds", commands, c -> c.event().eventId().toString());
+    addTextArray(params, "eventTypes", commands, c -> c.event().eventType());
+    addTextArray(params, "aggregateKeys", commands, c -> c.event().aggregateKey());
+    // bytea の配列はドライバの型変換に頼らず、base64 の text で渡して SQL 側の decode で戻す
+    addTextArray(
+        params,
+        "payloadProtos",
+        commands,
+        c -> Base64.getEncoder().encodeToString(c.event().payloadProto().toByteArray()));
+    params.addValue(
+        "successCodes",
+        sqlArray("int4", commands.stream().map(c -> c.success().responseCode()).toArray()),
+        Types.ARRAY);
+    addTextArray(params, "successBodies", commands, c -> c.success().responseBodyJson());
+    addTextArray(params, "expiresAts", commands, c -> c.success().expiresAt().toString());
+    return jdbcTemplate.query(
+        APPLY_BATCH_SQL, params, (rs, rowNum) -> mapRow(rs, rs.getString("idem_key")));
+  }
+
+  private static void addTextArray(
+      MapSqlParameterSource params,
+      String name,
+      List<EntitlementBatchCommand> commands,
+      Function<EntitlementBatchCommand, String> column) {
+    params.addValue(name, sqlArray("text", commands.stream().map(column).toArray()), Types.ARRAY);
+  }
+
+  private EntitlementCommandOutcome mapRow(ResultSet rs, String idempotencyKey)
+      throws SQLException {
+    final Optional<IdempotencyRecord> reused =
+        rs.getString("request_hash") == null
+            ? Optional.empty()
+            : Optional.of(
+                new IdempotencyRecord(
+                    idempotencyKey,
+                    rs.getString("request_hash"),
+                    rs.getInt("response_code"),
+                    rs.getString("response_body_text"),
+                    rs.getTimestamp("expires_at").toInstant()));
+    final Optional<EntitlementRecord> applied =
+        rs.getString("user_id") == null
+            ? Optional.empty()
+            : Optional.of(
+                new EntitlementRecord(
+                    rs.getString("user_id"),
+                    rs.getString("stock_keeping_unit"),
+                    EntitlementStatus.valueOf(rs.getString("status")),
+                    rs.getLong("version"),
+                    rs.getTimestamp("updated_at").toInstant()));
+    return new EntitlementCommandOutcome(reused, applied, rs.getLong("stored_count") > 0);
+  }
+}
@@ -1,16 +1,19 @@
 /*
  * どこで: Entitlement データアクセス
- * 何を: idempotency_keys の登録/取得を担う
+ * 何を: idempotency_keys の登録/取得と、冪等キー単位の advisory lock を担う
  * なぜ: API 再送時に同一レスポンスを返すため
  */
 package com.example.entitlement.repository;
 
+import static com.example.common.JdbcArrayUtils.sqlArray;
 import static com.example.common.JdbcTimestampUtils.toTimestamp;
 
 import com.example.entitlement.model.IdempotencyRecord;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
@@ -34,6 +37,24 @@ public class IdempotencyKeyRepository {
     jdbcTemplate.query(sql, params, rs -> null);
   }
 
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void lockByKeys(long[] lockKeys) {
+    // 一括の冪等キーをまとめて 1 往復でロックする。同時に走る一括同士がデッドロックしないよう、
+    // 値の昇順で取る（呼び出し側でも昇順に並べて渡す）。
+    final String sql =
+        """
+        SELECT pg_advisory_xact_lock(k)
+        FROM (SELECT k FROM unnest(:lockKeys::bigint[]) AS k ORDER BY k) AS sorted
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue(
+                "lockKeys",
+                sqlArray("int8", Arrays.stream(lockKeys).boxed().toArray()),
+                Types.ARRAY);
+    jdbcTemplate.query(sql, params, rs -> null);
+  }
+
   public Optional<IdempotencyRecord> findByKey(String idempotencyKey) {
     final String sql =
         """
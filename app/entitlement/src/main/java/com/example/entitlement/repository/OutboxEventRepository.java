@@ -5,12 +5,16 @@
  */
 package com.example.entitlement.repository;
 
+import static com.example.common.JdbcArrayUtils.sqlArray;
 import static com.example.common.JdbcTimestampUtils.toTimestamp;
 
 import com.example.entitlement.model.OutboxEventRecord;
-import com.example.entitlement.model.OutboxStatus;
+import com.example.entitlement.model.OutboxFailureUpdate;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
 import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
@@ -28,15 +32,20 @@ public class OutboxEventRepository {
     this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate.getJdbcTemplate());
   }
 
+  // payloadProto は publish するバイト列そのもの。payload(JSONB) は protobuf 化前の行のためだけに残す。
   public int insert(
-      UUID eventId, String eventType, String aggregateKey, String payloadJson, Instant createdAt) {
+      UUID eventId,
+      String eventType,
+      String aggregateKey,
+      ByteString payloadProto,
+      Instant createdAt) {
     final String sql =
         """
         INSERT INTO outbox_events (
           event_id,
           event_type,
           aggregate_key,
-          payload,
+          payload_proto,
           status,
           attempt_count,
           next_retry_at,
@@ -45,7 +54,7 @@ public class OutboxEventRepository {
           :eventId,
           :eventType,
           :aggregateKey,
-          :payload::jsonb,
+          :payloadProto,
           'PENDING',
           0,
           NULL,
@@ -57,26 +66,32 @@ public class OutboxEventRepository {
             .addValue("eventId", eventId)
             .addValue("eventType", eventType)
             .addValue("aggregateKey", aggregateKey)
-            .addValue("payload", payloadJson)
+            .addValue("payloadProto", payloadProto.toByteArray())
             .addValue("createdAt", toTimestamp(createdAt));
     return jdbcTemplate.update(sql, params);
   }
 
   public List<OutboxEventRecord> claimPending(
       int limit, Instant now, Instant leaseUntil, String lockedBy) {
-    // PENDING とリース切れの IN_FLIGHT をまとめて claim する
+    // PENDING とリース切れの IN_FLIGHT をまとめて claim する。
+    // 未送信の行を持たない古い日の区画は claim_from で実行時に読み飛ばす。
     final String sql =
         """
         WITH cte AS (
-          SELECT event_id
+          SELECT event_id, created_at
           FROM outbox_events
           WHERE (
-            status = 'PENDING'
-            AND (next_retry_at IS NULL OR next_retry_at <= :now)
+            (
+              status = 'PENDING'
+              AND (next_retry_at IS NULL OR next_retry_at <= :now)
+            )
+            OR (
+              status = 'IN_FLIGHT'
+              AND (lease_until IS NULL OR lease_until <= :now)
+            )
           )
-          OR (
-            status = 'IN_FLIGHT'
-            AND (lease_until IS NULL OR lease_until <= :now)
+          AND created_at >= (
+            SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'outbox_events'
           )
           ORDER BY created_at
           LIMIT :limit
@@ -90,7 +105,9 @@ public class OutboxEventRepository {
             last_error = NULL
         FROM cte
         WHERE e.event_id = cte.event_id
-        RETURNING e.event_id, e.event_type, e.aggregate_key, e.payload::text AS payload_text, e.attempt_count
+          AND e.created_at = cte.created_at
+        RETURNING e.event_id, e.event_type, e.aggregate_key, e.payload::text AS payload_text,
+          e.payload_proto, e.attempt_count, e.created_at
         """;
     final MapSqlParameterSource params =
         new MapSqlParameterSource()
@@ -101,7 +118,78 @@ public class OutboxEventRepository {
     return jdbcTemplate.query(sql, params, this::mapRow);
   }
 
-  public int markPublished(UUID eventId, String lockedBy, Instant publishedAt) {
+  // 区画単位 publish 用。指定した区画の行だけを publish_seq 順に claim する。
+  // 同じ aggregate_key に未送信（PENDING/IN_FLIGHT）の先行イベントが残っている行は、先行分が
+  // PUBLISHED になるまで claim しない。再試行待ちの先行イベントもキーの後続を止めるため、batch 内の
+  // 失敗や区画の持ち主の交代があってもキーごとの publish 順は崩れない。FAILED は運用介入の対象として
+  // 後続を止めない（欠番は consumer が version で検出する）。
+  public List<OutboxEventRecord> claimPendingInOrder(
+      int limit, List<Integer> partitions, Instant now, Instant leaseUntil, String lockedBy) {
+    if (partitions.isEmpty()) {
+      return List.of();
+    }
+    final String sql =
+        """
+        WITH cte AS (
+          SELECT e.event_id, e.created_at
+          FROM outbox_events e
+          WHERE e.publish_partition = ANY(:partitions::int[])
+            AND e.created_at >= (
+              SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'outbox_events'
+            )
+            AND (
+              (
+                e.status = 'PENDING'
+                AND (e.next_retry_at IS NULL OR e.next_retry_at <= :now)
+              )
+              OR (
+                e.status = 'IN_FLIGHT'
+                AND (e.lease_until IS NULL OR e.lease_until <= :now)
+              )
+            )
+            AND NOT EXISTS (
+              SELECT 1
+              FROM outbox_events prior
+              WHERE prior.aggregate_key = e.aggregate_key
+                AND prior.status IN ('PENDING', 'IN_FLIGHT')
+                AND prior.publish_seq < e.publish_seq
+                AND prior.created_at >= (
+                  SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'outbox_events'
+                )
+            )
+          ORDER BY e.publish_seq
+          LIMIT :limit
+          FOR UPDATE SKIP LOCKED
+        )
+        UPDATE outbox_events e
+        SET status = 'IN_FLIGHT',
+            locked_by = :lockedBy,
+            locked_at = :now,
+            lease_until = :leaseUntil,
+            last_error = NULL
+        FROM cte
+        WHERE e.event_id = cte.event_id
+          AND e.created_at = cte.created_at
+        RETURNING e.event_id, e.event_type, e.aggregate_key, e.payload::text AS payload_text,
+          e.payload_proto, e.attempt_count, e.created_at
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("partitions", sqlArray("int4", partitions.toArray()), Types.ARRAY)
+            .addValue("now", toTimestamp(now))
+            .addValue("leaseUntil", toTimestamp(leaseUntil))
+            .addValue("lockedBy", lockedBy)
+            .addValue("limit", limit);
+    return jdbcTemplate.query(sql, params, this::mapRow);
+  }
+
+  public List<UUID> markPublished(
+      List<OutboxEventRecord> events, String lockedBy, Instant publishedAt) {
+    if (events.isEmpty()) {
+      return List.of();
+    }
+    // batch 内の成功分を 1 回の UPDATE で確定し、lock を保持していた行だけを返す。
+    // 区画キーの created_at でも絞り、claim した行の日の区画だけを読む。
     final String sql =
         """
         UPDATE outbox_events
@@ -110,54 +198,96 @@ public class OutboxEventRepository {
             locked_by = NULL,
             locked_at = NULL,
             lease_until = NULL
-        WHERE event_id = :eventId
+        WHERE event_id = ANY(:eventIds::uuid[])
+          AND created_at = ANY(:createdAts::timestamptz[])
           AND locked_by = :lockedBy
+        RETURNING event_id
         """;
     final MapSqlParameterSource params =
         new MapSqlParameterSource()
             .addValue("publishedAt", toTimestamp(publishedAt))
-            .addValue("eventId", eventId)
+            .addValue(
+                "eventIds",
+                sqlArray("text", events.stream().map(e -> e.eventId().toString()).toArray()),
+                Types.ARRAY)
+            .addValue(
+                "createdAts",
+                sqlArray("text", events.stream().map(e -> toIsoString(e.createdAt())).toArray()),
+                Types.ARRAY)
             .addValue("lockedBy", lockedBy);
-    return jdbcTemplate.update(sql, params);
+    return jdbcTemplate.query(sql, params, this::mapEventId);
   }
 
-  public int markFailure(
-      UUID eventId,
-      String lockedBy,
-      int attemptCount,
-      OutboxStatus status,
-      Instant nextRetryAt,
-      String lastError) {
+  public List<UUID> markFailures(List<OutboxFailureUpdate> failures, String lockedBy) {
+    if (failures.isEmpty()) {
+      return List.of();
+    }
+    // 行ごとに値が違うため、列ごとの配列を unnest で行に戻して 1 回の UPDATE にする。
+    // 結合は claim と同じく (event_id, created_at) で行い、created_at の配列で読む区画を絞る。
     final String sql =
         """
-        UPDATE outbox_events
-        SET attempt_count = :attemptCount,
-            status = :status,
-            next_retry_at = :nextRetryAt,
+        UPDATE outbox_events e
+        SET attempt_count = f.attempt_count,
+            status = f.status,
+            next_retry_at = f.next_retry_at,
             locked_by = NULL,
             locked_at = NULL,
             lease_until = NULL,
-            last_error = :lastError
-        WHERE event_id = :eventId
-          AND locked_by = :lockedBy
+            last_error = f.last_error
+        FROM unnest(
+          :eventIds::uuid[],
+          :createdAts::timestamptz[],
+          :attemptCounts::int[],
+          :statuses::text[],
+          :nextRetryAts::timestamptz[],
+          :lastErrors::text[]
+        ) AS f(event_id, created_at, attempt_count, status, next_retry_at, last_error)
+        WHERE e.event_id = f.event_id
+          AND e.created_at = f.created_at
+          AND e.created_at = ANY(:createdAts::timestamptz[])
+          AND e.locked_by = :lockedBy
+        RETURNING e.event_id
         """;
     final MapSqlParameterSource params =
         new MapSqlParameterSource()
-            .addValue("attemptCount", attemptCount)
-            // enum -> DB文字列を固定し、層内で不正値を防ぐ
-            .addValue("status", status.name())
-            .addValue("nextRetryAt", toTimestamp(nextRetryAt))
-            .addValue("lastError", lastError)
-            .addValue("eventId", eventId)
+            .addValue(
+                "eventIds",
+                sqlArray("text", failures.stream().map(f -> f.eventId().toString()).toArray()),
+                Types.ARRAY)
+            .addValue(
+                "createdAts",
+                sqlArray(
+                    "text", failures.stream().map(f -> toIsoString(f.createdAt())).toArray()),
+                Types.ARRAY)
+            .addValue(
+                "attemptCounts",
+                sqlArray(
+                    "int4", failures.stream().map(OutboxFailureUpdate::attemptCount).toArray()),
+                Types.ARRAY)
+            .addValue(
+                "statuses",
+                // enum -> DB文字列を固定し、層内で不正値を防ぐ
+                sqlArray("text", failures.stream().map(f -> f.status().name()).toArray()),
+                Types.ARRAY)
+            .addValue(
+                "nextRetryAts",
+                sqlArray(
+                    "text", failures.stream().map(f -> toIsoString(f.nextRetryAt())).toArray()),
+                Types.ARRAY)
+            .addValue(
+                "lastErrors",
+                sqlArray("text", failures.stream().map(OutboxFailureUpdate::lastError).toArray()),
+                Types.ARRAY)
             .addValue("lockedBy", lockedBy);
-    return jdbcTemplate.update(sql, params);
+    return jdbcTemplate.query(sql, params, this::mapEventId);
   }
 
   public int deletePublishedOlderThan(Instant threshold) {
     // publish 済みのものだけを対象にし、未送信/失敗は残す。
+    // 日の区画は区画ごと落とすため、行単位で消すのは日の区画に入らなかった既定区画の行だけにする。
     final String sql =
         """
-        DELETE FROM outbox_events
+        DELETE FROM outbox_events_default
         WHERE status = 'PUBLISHED'
           AND published_at <= :threshold
         """;
@@ -173,12 +303,28 @@ public class OutboxEventRepository {
     return count == null ? 0 : count;
   }
 
+  private UUID mapEventId(ResultSet rs, int rowNum) throws SQLException {
+    return UUID.fromString(rs.getString("event_id"));
+  }
+
+  // 配列の要素はドライバの型変換に頼らず、オフセット付きの ISO 文字列で渡して SQL 側でキャストする
+  private static String toIsoString(Instant instant) {
+    return instant == null ? null : instant.toString();
+  }
+
   private OutboxEventRecord mapRow(ResultSet rs, int rowNum) throws SQLException {
     return new OutboxEventRecord(
         UUID.fromString(rs.getString("event_id")),
         rs.getString("event_type"),
         rs.getString("aggregate_key"),
         rs.getString("payload_text"),
-        rs.getInt("attempt_count"));
+        toByteString(rs.getBytes("payload_proto")),
+        rs.getInt("attempt_count"),
+        rs.getTimestamp("created_at").toInstant());
+  }
+
+  private static ByteString toByteString(byte[] bytes) {
+    // getBytes は行ごとに新しい配列を返すため、コピーせずに包む
+    return bytes == null ? null : UnsafeByteOperations.unsafeWrap(bytes);
   }
 }
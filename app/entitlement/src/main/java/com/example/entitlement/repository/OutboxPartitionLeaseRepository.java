@@ -0,0 +1,155 @@
+/*
+ * どこで: Entitlement データアクセス
+ * 何を: outbox の publish 区画のリース（取得/更新/解放）と publisher の生存記録を担う
+ * なぜ: 複数の publisher replica が区画を重ならないように分け持つため
+ */
+package com.example.entitlement.repository;
+
+import static com.example.common.JdbcArrayUtils.sqlArray;
+import static com.example.common.JdbcTimestampUtils.toTimestamp;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class OutboxPartitionLeaseRepository {
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  public OutboxPartitionLeaseRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+    // SpotBugs の EI_EXPOSE_REP2 対応: 外部参照を直接保持せず、ラッパを作り直す
+    this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate.getJdbcTemplate());
+  }
+
+  public int countPartitions() {
+    final String sql = "SELECT COUNT(*) FROM outbox_partition_leases";
+    final Integer count =
+        jdbcTemplate.queryForObject(sql, new MapSqlParameterSource(), Integer.class);
+    return count == null ? 0 : count;
+  }
+
+  // 自分の生存期限を延ばし、期限切れの publisher の行を片付ける
+  public void heartbeat(String owner, Instant now, Instant aliveUntil) {
+    final String sql =
+        """
+        WITH expired AS (
+          DELETE FROM outbox_publishers
+          WHERE alive_until <= :now
+            AND owner <> :owner
+        )
+        INSERT INTO outbox_publishers (owner, alive_until)
+        VALUES (:owner, :aliveUntil)
+        ON CONFLICT (owner) DO UPDATE
+          SET alive_until = EXCLUDED.alive_until
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("owner", owner)
+            .addValue("now", toTimestamp(now))
+            .addValue("aliveUntil", toTimestamp(aliveUntil));
+    jdbcTemplate.update(sql, params);
+  }
+
+  // 区画を持っているかに関係なく、生存期限内の publisher の数（自分を含む）
+  public int countLivePublishers(Instant now) {
+    final String sql = "SELECT COUNT(*) FROM outbox_publishers WHERE alive_until > :now";
+    final Integer count =
+        jdbcTemplate.queryForObject(
+            sql, new MapSqlParameterSource().addValue("now", toTimestamp(now)), Integer.class);
+    return count == null ? 0 : count;
+  }
+
+  // 自分が持ち続けている区画の期限を延ばして返す。期限切れの間に他へ移った区画は含まれない。
+  public List<Integer> renew(String owner, Instant leaseUntil) {
+    final String sql =
+        """
+        UPDATE outbox_partition_leases
+        SET lease_until = :leaseUntil
+        WHERE owner = :owner
+        RETURNING partition_no
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("owner", owner)
+            .addValue("leaseUntil", toTimestamp(leaseUntil));
+    return jdbcTemplate.query(sql, params, this::mapPartitionNo);
+  }
+
+  // 空き区画と期限切れの区画から最大 count 件を取る。他の replica と同時に取り合っても重ならない。
+  public List<Integer> acquire(String owner, int count, Instant now, Instant leaseUntil) {
+    if (count <= 0) {
+      return List.of();
+    }
+    final String sql =
+        """
+        WITH free AS (
+          SELECT partition_no
+          FROM outbox_partition_leases
+          WHERE owner IS NULL
+             OR lease_until IS NULL
+             OR lease_until <= :now
+          ORDER BY partition_no
+          LIMIT :count
+          FOR UPDATE SKIP LOCKED
+        )
+        UPDATE outbox_partition_leases l
+        SET owner = :owner,
+            lease_until = :leaseUntil
+        FROM free
+        WHERE l.partition_no = free.partition_no
+        RETURNING l.partition_no
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("owner", owner)
+            .addValue("count", count)
+            .addValue("now", toTimestamp(now))
+            .addValue("leaseUntil", toTimestamp(leaseUntil));
+    return jdbcTemplate.query(sql, params, this::mapPartitionNo);
+  }
+
+  public int release(String owner, List<Integer> partitions) {
+    if (partitions.isEmpty()) {
+      return 0;
+    }
+    final String sql =
+        """
+        UPDATE outbox_partition_leases
+        SET owner = NULL,
+            lease_until = NULL
+        WHERE owner = :owner
+          AND partition_no = ANY(:partitions::int[])
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("owner", owner)
+            .addValue("partitions", sqlArray("int4", partitions.toArray()), Types.ARRAY);
+    return jdbcTemplate.update(sql, params);
+  }
+
+  // 停止時に区画と生存記録を手放し、他の replica が lease 切れを待たずに引き継げるようにする
+  public void releaseAll(String owner) {
+    final String sql =
+        """
+        WITH released AS (
+          UPDATE outbox_partition_leases
+          SET owner = NULL,
+              lease_until = NULL
+          WHERE owner = :owner
+        )
+        DELETE FROM outbox_publishers
+        WHERE owner = :owner
+        """;
+    jdbcTemplate.update(sql, new MapSqlParameterSource().addValue("owner", owner));
+  }
+
+  private Integer mapPartitionNo(ResultSet rs, int rowNum) throws SQLException {
+    return rs.getInt("partition_no");
+  }
+}
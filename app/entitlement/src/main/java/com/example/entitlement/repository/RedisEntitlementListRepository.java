@@ -0,0 +1,118 @@
+/*
+ * どこで: Entitlement Repository 層
+ * 何を: 権利一覧の読み取りキャッシュの共有層として、user_id ごとの一覧を Redis に読み書きする
+ * なぜ: replica のプロセス内キャッシュに無い一覧も DB へ届かせずに返し、replica 間で読み込みを分け合うため
+ */
+package com.example.entitlement.repository;
+
+import com.example.entitlement.api.EntitlementSummary;
+import com.example.entitlement.api.EntitlementsResponse;
+import com.example.entitlement.config.EntitlementReadCacheRedisProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@ConditionalOnProperty(name = "entitlement.read-cache.enabled", havingValue = "true")
+@ConditionalOnProperty(name = "entitlement.read-cache.redis.enabled", havingValue = "true")
+public class RedisEntitlementListRepository {
+
+  private static final String PUT_LUA_PATH = "lua/entitlement_list_put.lua";
+  private static final String INVALIDATE_LUA_PATH = "lua/entitlement_list_invalidate.lua";
+
+  @SuppressFBWarnings(
+      value = "EI_EXPOSE_REP2",
+      justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
+  private final StringRedisTemplate redisTemplate;
+
+  private final EntitlementReadCacheRedisProperties properties;
+  private final ObjectMapper objectMapper;
+  private final RedisScript<Long> putScript;
+  private final RedisScript<Long> invalidateScript;
+
+  public RedisEntitlementListRepository(
+      StringRedisTemplate redisTemplate,
+      EntitlementReadCacheRedisProperties properties,
+      ObjectMapper objectMapper) {
+    this.redisTemplate = redisTemplate;
+    this.properties = properties;
+    // SpotBugs の EI_EXPOSE_REP2 対応: 可変な ObjectMapper は copy したものを保持する
+    this.objectMapper = objectMapper.copy();
+    this.putScript = loadScript(PUT_LUA_PATH);
+    this.invalidateScript = loadScript(INVALIDATE_LUA_PATH);
+  }
+
+  public Optional<EntitlementsResponse> find(String userId) {
+    final String json = redisTemplate.opsForValue().get(listKey(userId));
+    if (json == null) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(objectMapper.readValue(json, EntitlementsResponse.class));
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("failed to parse cached entitlement list", ex);
+    }
+  }
+
+  // 読み込み中にコミットされた変更があれば載せずに false を返す
+  public boolean putIfCurrent(EntitlementsResponse response) {
+    final List<String> args = new ArrayList<>();
+    args.add(String.valueOf(properties.ttl().toMillis()));
+    args.add(toJson(response));
+    for (EntitlementSummary summary : response.entitlements()) {
+      args.add(summary.stockKeepingUnit());
+      args.add(String.valueOf(summary.version()));
+    }
+    final Long stored =
+        redisTemplate.execute(
+            putScript,
+            List.of(listKey(response.userId()), floorKey(response.userId())),
+            args.toArray());
+    return stored != null && stored > 0;
+  }
+
+  // 同じ version の 2 回目以降の通知では何もせず false を返す
+  public boolean invalidate(String userId, String stockKeepingUnit, long version) {
+    final Long invalidated =
+        redisTemplate.execute(
+            invalidateScript,
+            List.of(listKey(userId), floorKey(userId)),
+            stockKeepingUnit,
+            String.valueOf(version),
+            String.valueOf(properties.ttl().toMillis()));
+    return invalidated != null && invalidated > 0;
+  }
+
+  // 一覧と floor を同じ slot に置くため、user_id を hash tag にする
+  private String listKey(String userId) {
+    return properties.keyPrefix() + "{" + userId + "}";
+  }
+
+  private String floorKey(String userId) {
+    return listKey(userId) + ":floor";
+  }
+
+  private String toJson(EntitlementsResponse response) {
+    try {
+      return objectMapper.writeValueAsString(response);
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("failed to serialize entitlement list", ex);
+    }
+  }
+
+  private static RedisScript<Long> loadScript(String path) {
+    final DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+    script.setLocation(new ClassPathResource(path));
+    script.setResultType(Long.class);
+    return script;
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * どこで: Entitlement データアクセス
+ * 何を: outbox_events の区画を落としてよいか、claim の下限をどこまで進めてよいかを判定する
+ * なぜ: 区画の作成/削除/下限更新は共通の DailyPartitionRepository に任せ、outbox の状態の判定だけをここに置くため
+ */
+package com.example.entitlement.repository;
+
+import static com.example.common.JdbcTimestampUtils.toTimestamp;
+
+import com.example.common.partition.DailyPartitionRepository;
+import java.time.Instant;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class TablePartitionRepository extends DailyPartitionRepository {
+
+  private static final String UNPUBLISHED = "status IN ('PENDING', 'IN_FLIGHT')";
+
+  public TablePartitionRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+    super(jdbcTemplate);
+  }
+
+  // claim の対象になりうる行（PENDING/IN_FLIGHT）が区画に残っているか
+  public boolean hasUnpublishedOutboxRows(String partition) {
+    return exists(partition, UNPUBLISHED, new MapSqlParameterSource());
+  }
+
+  // 区画を落とすと消えてしまう行があるか。行単位の削除（PUBLISHED かつ published_at が threshold 以前）の
+  // 対象にならない行が 1 件でもあれば、その区画は残す。
+  public boolean hasOutboxRowsToKeep(String partition, Instant threshold) {
+    return exists(
+        partition,
+        "status <> 'PUBLISHED' OR published_at > :threshold",
+        new MapSqlParameterSource().addValue("threshold", toTimestamp(threshold)));
+  }
+
+  // 既定区画に残る未送信の行の最も古い created_at。無ければ null。
+  public Instant findOldestUnpublishedOutboxInDefault() {
+    return oldestCreatedAtInDefault("outbox_events", UNPUBLISHED);
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * どこで: Entitlement outbox の符号化
+ * 何を: EntitlementEvent の protobuf 符号化と、outbox 行から publish するバイト列/ヘッダ値の取り出しを担う
+ * なぜ: 符号化を書き込み時の 1 回に寄せ、publisher が行ごとに JSON を解析して組み立て直さずに済むようにするため
+ */
+package com.example.entitlement.service;
+
+import com.example.common.event.EntitlementEventPayload;
+import com.example.entitlement.model.OutboxEventRecord;
+import com.example.proto.entitlement.EntitlementEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class EntitlementEventCodec {
+
+  private final ObjectMapper objectMapper;
+
+  public ByteString encode(EntitlementEventPayload payload) {
+    return toEvent(payload.eventType(), payload).toByteString();
+  }
+
+  // payload_proto を持つ行はバイト列をそのまま送り、ヘッダとメトリクスに使う値だけを読む。
+  // 持たない行（protobuf 化より前に書かれた行）は従来どおり JSON から組み立てる。
+  public OutboxMessage decode(OutboxEventRecord record) {
+    if (record.payloadProto() != null) {
+      final EntitlementEvent event = parseProto(record.payloadProto());
+      return new OutboxMessage(
+          record.payloadProto(), event.getEventId(), event.getOccurredAt(), event.getTraceId());
+    }
+    final EntitlementEventPayload payload = parseJson(record.payloadJson());
+    return new OutboxMessage(
+        toEvent(record.eventType(), payload).toByteString(),
+        payload.eventId(),
+        payload.occurredAt(),
+        payload.traceId());
+  }
+
+  private EntitlementEvent parseProto(ByteString payloadProto) {
+    try {
+      return EntitlementEvent.parseFrom(payloadProto);
+    } catch (InvalidProtocolBufferException ex) {
+      throw new MalformedPayloadException("outbox payload parse failure", ex);
+    }
+  }
+
+  private EntitlementEventPayload parseJson(String payloadJson) {
+    try {
+      return objectMapper.readValue(payloadJson, EntitlementEventPayload.class);
+    } catch (JsonProcessingException ex) {
+      // 解析不能はリトライしても回復しない前提なので専用例外で即時FAILEDに寄せる
+      throw new MalformedPayloadException("outbox payload parse failure", ex);
+    }
+  }
+
+  private static EntitlementEvent toEvent(String eventType, EntitlementEventPayload payload) {
+    return EntitlementEvent.newBuilder()
+        .setEventId(payload.eventId())
+        .setEventType(mapEventType(eventType))
+        .setOccurredAt(payload.occurredAt())
+        .setUserId(payload.userId())
+        .setStockKeepingUnit(payload.stockKeepingUnit())
+        .setSource(payload.source())
+        .setSourceId(payload.sourceId())
+        .setVersion(payload.version())
+        .setTraceId(payload.traceId())
+        .build();
+  }
+
+  private static EntitlementEvent.EventType mapEventType(String eventType) {
+    return switch (eventType) {
+      case "EntitlementGranted" -> EntitlementEvent.EventType.ENTITLEMENT_GRANTED;
+      case "EntitlementRevoked" -> EntitlementEvent.EventType.ENTITLEMENT_REVOKED;
+      default -> throw new IllegalArgumentException("unknown event type: " + eventType);
+    };
+  }
+
+  // data は NATS に送るバイト列。残りはヘッダとメトリクスのために取り出した値。
+  public record OutboxMessage(ByteString data, String eventId, String occurredAt, String traceId) {}
+
+  public static final class MalformedPayloadException extends RuntimeException {
+    private MalformedPayloadException(String message, Throwable cause) {
+      super(message, cause);
+    }
+  }
+}
@@ -7,6 +7,7 @@ package com.example.entitlement.service;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
@@ -16,6 +17,7 @@ import java.time.Instant;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -28,18 +30,41 @@ public class EntitlementMetrics {
   private static final String METRIC_OUTBOX_PUBLISH_DELAY = "entitlement.outbox.publish.delay";
   private static final String METRIC_OUTBOX_BACKLOG_AGE = "entitlement.outbox.backlog.age";
   private static final String METRIC_OUTBOX_FAILED_CURRENT = "entitlement.outbox.failed.current";
+  private static final String METRIC_OUTBOX_PUBLISH_TOTAL = "entitlement.outbox.publish.total";
+  private static final String METRIC_OUTBOX_BATCH_DURATION = "entitlement.outbox.batch.duration";
+  private static final String METRIC_OUTBOX_BATCH_SIZE = "entitlement.outbox.batch.size";
+  private static final String METRIC_OUTBOX_WAKEUP_TOTAL = "entitlement.outbox.wakeup.total";
+  private static final String METRIC_OUTBOX_PARTITIONS_OWNED =
+      "entitlement.outbox.partitions.owned";
+  private static final String METRIC_READ_CACHE_REQUESTS = "entitlement.read_cache.requests.total";
+  private static final String METRIC_READ_CACHE_INVALIDATIONS =
+      "entitlement.read_cache.invalidations.total";
+  private static final String METRIC_READ_CACHE_STALENESS = "entitlement.read_cache.staleness";
+  private static final String METRIC_READ_CACHE_SIZE = "entitlement.read_cache.size";
 
   private final MeterRegistry meterRegistry;
   private final AtomicInteger outboxFailedCurrent = new AtomicInteger(0);
+  private final AtomicInteger outboxPartitionsOwned = new AtomicInteger(0);
   private final ConcurrentMap<String, Counter> commandCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> outboxPublishCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> outboxWakeupCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> readCacheCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> readCacheInvalidationCounters =
+      new ConcurrentHashMap<>();
   private final Timer outboxPublishDelayTimer;
   private final Timer outboxBacklogAgeTimer;
+  private final Timer outboxBatchDurationTimer;
+  private final DistributionSummary outboxBatchSizeSummary;
+  private final Timer readCacheStalenessTimer;
 
   public EntitlementMetrics(MeterRegistry meterRegistry) {
     this.meterRegistry = meterRegistry;
     Gauge.builder(METRIC_OUTBOX_FAILED_CURRENT, outboxFailedCurrent, AtomicInteger::get)
         .description("Current number of FAILED outbox events")
         .register(meterRegistry);
+    Gauge.builder(METRIC_OUTBOX_PARTITIONS_OWNED, outboxPartitionsOwned, AtomicInteger::get)
+        .description("Outbox publish partitions leased by this replica")
+        .register(meterRegistry);
     this.outboxPublishDelayTimer =
         Timer.builder(METRIC_OUTBOX_PUBLISH_DELAY)
             .description("Outbox publish delay from event creation to publish completion")
@@ -48,6 +73,18 @@ public class EntitlementMetrics {
         Timer.builder(METRIC_OUTBOX_BACKLOG_AGE)
             .description("Outbox backlog age when an event is claimed by publisher")
             .register(meterRegistry);
+    this.outboxBatchDurationTimer =
+        Timer.builder(METRIC_OUTBOX_BATCH_DURATION)
+            .description("Outbox batch time from claim to status update")
+            .register(meterRegistry);
+    this.outboxBatchSizeSummary =
+        DistributionSummary.builder(METRIC_OUTBOX_BATCH_SIZE)
+            .description("Number of outbox events claimed per batch")
+            .register(meterRegistry);
+    this.readCacheStalenessTimer =
+        Timer.builder(METRIC_READ_CACHE_STALENESS)
+            .description("Time a cached entitlement list stayed older than a committed change")
+            .register(meterRegistry);
   }
 
   public void recordCommand(String action, String result) {
@@ -77,6 +114,88 @@ public class EntitlementMetrics {
     outboxBacklogAgeTimer.record(Duration.between(createdAt, observedAt));
   }
 
+  // result は published / retry / failed / lock_lost。published の rate が outbox の送出スループット。
+  public void recordOutboxPublish(String result, int count) {
+    if (count <= 0) {
+      return;
+    }
+    outboxPublishCounters
+        .computeIfAbsent(
+            result,
+            ignored ->
+                Counter.builder(METRIC_OUTBOX_PUBLISH_TOTAL)
+                    .description("Outbox events finished by publisher per result")
+                    .tags(Tags.of("result", result))
+                    .register(meterRegistry))
+        .increment(count);
+  }
+
+  public void recordOutboxBatch(int size, Duration elapsed) {
+    outboxBatchSizeSummary.record(size);
+    outboxBatchDurationTimer.record(elapsed);
+  }
+
+  // source は notify / poll / backlog。coalesced=true は実行待ちの drain にまとめられた起床。
+  public void recordOutboxWakeup(String source, boolean coalesced) {
+    final String key = source + ":" + coalesced;
+    outboxWakeupCounters
+        .computeIfAbsent(
+            key,
+            ignored ->
+                Counter.builder(METRIC_OUTBOX_WAKEUP_TOTAL)
+                    .description("Outbox publisher wake-ups per source")
+                    .tags(Tags.of("source", source, "coalesced", String.valueOf(coalesced)))
+                    .register(meterRegistry))
+        .increment();
+  }
+
+  // result は local_hit / redis_hit / miss / strict_bypass / unsynced_bypass。
+  // (local_hit + redis_hit) / 全体 がヒット率、miss と *_bypass が DB へ届いた参照になる。
+  public void recordReadCache(String result) {
+    readCacheCounters
+        .computeIfAbsent(
+            result,
+            ignored ->
+                Counter.builder(METRIC_READ_CACHE_REQUESTS)
+                    .description("Entitlement list reads per cache result")
+                    .tags(Tags.of("result", result))
+                    .register(meterRegistry))
+        .increment();
+  }
+
+  // source は event（version の古い一覧を捨てた）/ resync（イベントの取りこぼしに備えて全消去した）
+  public void recordReadCacheInvalidation(String source) {
+    readCacheInvalidationCounters
+        .computeIfAbsent(
+            source,
+            ignored ->
+                Counter.builder(METRIC_READ_CACHE_INVALIDATIONS)
+                    .description("Entitlement list cache invalidations per source")
+                    .tags(Tags.of("source", source))
+                    .register(meterRegistry))
+        .increment();
+  }
+
+  // 変更のコミット（イベントの occurred_at）から、古い一覧を捨てるまでの時間。
+  // この間は他の replica が変更前の一覧を返しうる。
+  public void recordReadCacheStaleness(Instant occurredAt, Instant invalidatedAt) {
+    if (occurredAt == null || invalidatedAt == null || invalidatedAt.isBefore(occurredAt)) {
+      return;
+    }
+    readCacheStalenessTimer.record(Duration.between(occurredAt, invalidatedAt));
+  }
+
+  public void bindReadCacheSize(LongSupplier size) {
+    Gauge.builder(METRIC_READ_CACHE_SIZE, size, LongSupplier::getAsLong)
+        .description("Entitlement lists held in the in-process cache")
+        .strongReference(true)
+        .register(meterRegistry);
+  }
+
+  public void updateOutboxPartitionsOwned(int owned) {
+    outboxPartitionsOwned.set(owned);
+  }
+
   public void updateOutboxFailedCurrent(int failedCount) {
     outboxFailedCurrent.set(Math.max(failedCount, 0));
   }
@@ -0,0 +1,129 @@
+/*
+ * どこで: Entitlement outbox ワーカー
+ * 何を: 専用の DB 接続で LISTEN entitlement_outbox し、NOTIFY を受けたら outbox ワーカーを起こす
+ * なぜ: grant/revoke のコミットから publish までをポーリング間隔ではなく通知の遅れだけに縮めるため
+ */
+package com.example.entitlement.service;
+
+import com.example.entitlement.config.EntitlementOutboxListenProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import javax.sql.DataSource;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(
+    name = "entitlement.outbox.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+@ConditionalOnProperty(name = "nats.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "entitlement.outbox.listen.enabled", havingValue = "true")
+public class EntitlementOutboxListener {
+
+  static final String CHANNEL = "entitlement_outbox";
+
+  private static final Logger logger = LoggerFactory.getLogger(EntitlementOutboxListener.class);
+
+  private final EntitlementOutboxWorker worker;
+  private final EntitlementOutboxListenProperties properties;
+  // LISTEN はセッションに紐づくため、プールを通さず 1 本だけ張りっぱなしにする
+  private final DataSource listenDataSource;
+  private volatile boolean running;
+  private volatile Connection connection;
+  private Thread thread;
+
+  public EntitlementOutboxListener(
+      EntitlementOutboxWorker worker,
+      EntitlementOutboxListenProperties properties,
+      DataSourceProperties dataSourceProperties) {
+    this.worker = worker;
+    this.properties = properties;
+    this.listenDataSource =
+        dataSourceProperties
+            .initializeDataSourceBuilder()
+            .type(SimpleDriverDataSource.class)
+            .build();
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    thread = new Thread(this::listenLoop, "entitlement-outbox-listener");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    thread.interrupt();
+    closeQuietly();
+  }
+
+  private void listenLoop() {
+    final int pollTimeoutMillis = Math.toIntExact(properties.pollTimeout().toMillis());
+    while (running) {
+      try {
+        Connection current = connection;
+        if (current == null) {
+          current = connect();
+          // 接続していなかった間の通知は届かないため、1 度 claim を起こして取りこぼしを拾う
+          worker.onNotify();
+        }
+        final PGNotification[] notifications =
+            current.unwrap(PGConnection.class).getNotifications(pollTimeoutMillis);
+        // 1 回の受信に複数の通知があっても、起床は 1 回で足りる
+        if (notifications != null && notifications.length > 0) {
+          worker.onNotify();
+        }
+      } catch (SQLException ex) {
+        if (!running) {
+          return;
+        }
+        logger.warn("outbox listen connection failed; retrying", ex);
+        closeQuietly();
+        try {
+          Thread.sleep(properties.reconnectInterval().toMillis());
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  private Connection connect() throws SQLException {
+    final Connection opened = listenDataSource.getConnection();
+    try (Statement statement = opened.createStatement()) {
+      statement.execute("LISTEN " + CHANNEL);
+    } catch (SQLException ex) {
+      opened.close();
+      throw ex;
+    }
+    connection = opened;
+    return opened;
+  }
+
+  private void closeQuietly() {
+    final Connection current = connection;
+    connection = null;
+    if (current == null) {
+      return;
+    }
+    try {
+      current.close();
+    } catch (SQLException ex) {
+      logger.debug("outbox listen connection close failed", ex);
+    }
+  }
+}
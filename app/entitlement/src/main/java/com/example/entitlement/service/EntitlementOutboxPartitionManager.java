@@ -0,0 +1,113 @@
+/*
+ * どこで: Entitlement outbox ワーカー
+ * 何を: outbox の publish 区画をリースし、生きている publisher の数に合わせて取り分を増減する
+ * なぜ: 複数の replica で publish を分け持ちつつ、同じ aggregate_key を 1 か所から順に publish するため
+ */
+package com.example.entitlement.service;
+
+import com.example.entitlement.config.EntitlementOutboxPartitionProperties;
+import com.example.entitlement.repository.OutboxPartitionLeaseRepository;
+import jakarta.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(
+    name = "entitlement.outbox.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+@ConditionalOnProperty(name = "nats.enabled", havingValue = "true", matchIfMissing = true)
+@ConditionalOnProperty(name = "entitlement.outbox.partitioning.enabled", havingValue = "true")
+public class EntitlementOutboxPartitionManager {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(EntitlementOutboxPartitionManager.class);
+  private static final String HOSTNAME_ENV = "HOSTNAME";
+  private static final String DEFAULT_HOSTNAME = "unknown-host";
+
+  private final OutboxPartitionLeaseRepository leaseRepository;
+  private final EntitlementOutboxPartitionProperties properties;
+  private final EntitlementMetrics metrics;
+  private final Clock clock;
+  // 同じホストで複数プロセスが動いても区別できるよう、起動ごとに一意にする
+  private final String owner;
+  // rebalance のスレッドが差し替え、publisher のスレッドが読む
+  private volatile List<Integer> ownedPartitions = List.of();
+  private volatile Instant ownedUntil = Instant.EPOCH;
+
+  public EntitlementOutboxPartitionManager(
+      OutboxPartitionLeaseRepository leaseRepository,
+      EntitlementOutboxPartitionProperties properties,
+      EntitlementMetrics metrics,
+      Clock clock) {
+    this.leaseRepository = leaseRepository;
+    this.properties = properties;
+    this.metrics = metrics;
+    this.clock = clock;
+    this.owner = resolveHostname() + ":" + UUID.randomUUID();
+  }
+
+  // 更新に失敗し続けて期限を過ぎた区画は他へ移っている可能性があるため、空として扱う
+  public List<Integer> ownedPartitions() {
+    return Instant.now(clock).isBefore(ownedUntil) ? ownedPartitions : List.of();
+  }
+
+  public String owner() {
+    return owner;
+  }
+
+  @Scheduled(fixedDelayString = "${entitlement.outbox.partitioning.renew-interval:5s}")
+  public void rebalance() {
+    final Instant now = Instant.now(clock);
+    final Instant leaseUntil = now.plus(properties.leaseTtl());
+    try {
+      leaseRepository.heartbeat(owner, now, leaseUntil);
+      final List<Integer> owned = new ArrayList<>(leaseRepository.renew(owner, leaseUntil));
+      final int publishers = Math.max(1, leaseRepository.countLivePublishers(now));
+      final int target = Math.ceilDiv(leaseRepository.countPartitions(), publishers);
+      Collections.sort(owned);
+      if (owned.size() > target) {
+        // 増えた replica の分を番号の大きい側から手放す。処理中の行は行の lease で守られ、
+        // キーごとの順序は claim の条件で保たれるため、すぐ他へ渡してよい。
+        final List<Integer> excess = List.copyOf(owned.subList(target, owned.size()));
+        leaseRepository.release(owner, excess);
+        owned.removeAll(excess);
+      } else if (owned.size() < target) {
+        owned.addAll(leaseRepository.acquire(owner, target - owned.size(), now, leaseUntil));
+        Collections.sort(owned);
+      }
+      ownedPartitions = List.copyOf(owned);
+      ownedUntil = leaseUntil;
+      metrics.updateOutboxPartitionsOwned(owned.size());
+    } catch (RuntimeException ex) {
+      logger.warn("outbox partition lease renewal failed owner={}", owner, ex);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    ownedPartitions = List.of();
+    ownedUntil = Instant.EPOCH;
+    metrics.updateOutboxPartitionsOwned(0);
+    try {
+      leaseRepository.releaseAll(owner);
+    } catch (RuntimeException ex) {
+      // 解放できなくても lease 切れで他の replica が引き継ぐ
+      logger.warn("outbox partition lease release failed owner={}", owner, ex);
+    }
+  }
+
+  private static String resolveHostname() {
+    final String env = System.getenv(HOSTNAME_ENV);
+    return env == null || env.isBlank() ? DEFAULT_HOSTNAME : env;
+  }
+}
@@ -5,32 +5,37 @@
  */
 package com.example.entitlement.service;
 
-import com.example.common.event.EntitlementEventPayload;
 import com.example.entitlement.config.EntitlementNatsProperties;
 import com.example.entitlement.config.EntitlementOutboxProperties;
 import com.example.entitlement.model.OutboxEventRecord;
+import com.example.entitlement.model.OutboxFailureUpdate;
 import com.example.entitlement.model.OutboxStatus;
 import com.example.entitlement.repository.OutboxEventRepository;
-import com.example.proto.entitlement.EntitlementEvent;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.entitlement.service.EntitlementEventCodec.MalformedPayloadException;
+import com.example.entitlement.service.EntitlementEventCodec.OutboxMessage;
 import io.nats.client.JetStream;
-import io.nats.client.JetStreamApiException;
 import io.nats.client.api.PublishAck;
 import io.nats.client.impl.Headers;
-import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
-import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -55,103 +60,173 @@ public class EntitlementOutboxPublisher {
   private final OutboxEventRepository outboxEventRepository;
   private final EntitlementOutboxProperties properties;
   private final EntitlementNatsProperties natsProperties;
-  private final ObjectMapper objectMapper;
+  // 区画単位 publish が有効なときだけ存在する
+  private final Optional<EntitlementOutboxPartitionManager> partitionManager;
+  private final EntitlementEventCodec codec;
   private final EntitlementMetrics metrics;
   private final Clock clock;
+  // EntitlementOutboxWorker の publish スレッドからのみ更新する
+  private volatile Instant failedCountRefreshedAt = Instant.EPOCH;
 
-  public void publishPendingBatch() {
+  // claim した件数を返す。batchSize と同じなら滞留が残っている可能性がある。
+  public int publishPendingBatch() {
     final Instant now = Instant.now(clock);
     final String lockedBy = resolveLockedBy();
     final Instant leaseUntil = now.plus(properties.lease());
-    final List<OutboxEventRecord> pending =
-        outboxEventRepository.claimPending(properties.batchSize(), now, leaseUntil, lockedBy);
+    final long startNanos = System.nanoTime();
+    final List<OutboxEventRecord> pending = claim(now, leaseUntil, lockedBy);
+    if (pending.isEmpty()) {
+      refreshFailedCount(now, false);
+      return 0;
+    }
+    // 1 件ずつ puback を待たず、batch 全件を非同期 publish してから ack をまとめて待つ
+    final List<InFlightPublish> inFlight = new ArrayList<>(pending.size());
+    final List<OutboxFailureUpdate> failures = new ArrayList<>();
     for (OutboxEventRecord record : pending) {
       try {
-        final EntitlementEventPayload payload = parsePayload(record);
-        metrics.recordOutboxBacklogAge(Instant.parse(payload.occurredAt()), now);
-        final EntitlementEvent event = buildEvent(record, payload);
-        final Headers headers = buildHeaders(record, payload);
-        final PublishAck ack = publishWithAck(headers, event);
+        // 書き込み時に符号化したバイト列をそのまま送る（protobuf 化前の行だけ JSON から組み立てる）
+        final OutboxMessage message = codec.decode(record);
+        metrics.recordOutboxBacklogAge(Instant.parse(message.occurredAt()), now);
+        final Headers headers = buildHeaders(record, message);
+        inFlight.add(new InFlightPublish(record, message, publishAsync(headers, message)));
+      } catch (RuntimeException ex) {
+        failures.add(toFailureUpdate(record, ex, now));
+      }
+    }
+    final List<InFlightPublish> acked = awaitAcks(inFlight, failures, now);
+    // published_at と publish 遅延は ack が揃った時刻で付ける。claim 時刻では ack 待ちの分だけ短く見える
+    final Instant ackedAt = Instant.now(clock);
+    // 状態の書き戻しは成功/失敗それぞれ 1 回の UPDATE。ここで DB 更新に失敗した行は IN_FLIGHT の
+    // まま lease 切れで再 claim され、再 publish は Nats-Msg-Id の重複排除で吸収される。
+    markPublished(acked, lockedBy, ackedAt);
+    markFailures(failures, lockedBy);
+    metrics.recordOutboxBatch(pending.size(), Duration.ofNanos(System.nanoTime() - startNanos));
+    refreshFailedCount(
+        now, failures.stream().anyMatch(failure -> failure.status() == OutboxStatus.FAILED));
+    return pending.size();
+  }
+
+  private List<OutboxEventRecord> claim(Instant now, Instant leaseUntil, String lockedBy) {
+    if (partitionManager.isEmpty()) {
+      return outboxEventRepository.claimPending(properties.batchSize(), now, leaseUntil, lockedBy);
+    }
+    // 自分がリースしている区画だけを、aggregate_key ごとに先頭のイベントから claim する
+    return outboxEventRepository.claimPendingInOrder(
+        properties.batchSize(),
+        partitionManager.get().ownedPartitions(),
+        now,
+        leaseUntil,
+        lockedBy);
+  }
+
+  private List<InFlightPublish> awaitAcks(
+      List<InFlightPublish> inFlight, List<OutboxFailureUpdate> failures, Instant now) {
+    // ack は並行して返ってくるため、batch 全体で 1 つの期限を共有して順に回収する
+    final long deadline = System.nanoTime() + properties.ackTimeout().toNanos();
+    final List<InFlightPublish> acked = new ArrayList<>(inFlight.size());
+    for (InFlightPublish publish : inFlight) {
+      try {
+        final PublishAck ack =
+            publish
+                .ack()
+                .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
         if (ack == null) {
           throw new IllegalStateException("puback is missing");
         }
-        final int updated = outboxEventRepository.markPublished(record.eventId(), lockedBy, now);
-        if (updated == 0) {
-          logger.warn("outbox publish succeeded but lock was lost eventId={}", record.eventId());
-        } else {
-          metrics.recordOutboxPublishDelay(Instant.parse(payload.occurredAt()), now);
-        }
-      } catch (JetStreamApiException | IOException ex) {
-        handleFailure(record, ex, now, lockedBy);
-      } catch (DataAccessException ex) {
-        handleFailure(record, ex, now, lockedBy);
+        acked.add(publish);
+      } catch (ExecutionException ex) {
+        failures.add(toFailureUpdate(publish.record(), unwrap(ex), now));
+      } catch (TimeoutException ex) {
+        // 届いていても Nats-Msg-Id の重複排除窓内の再送なら JetStream 側で吸収される
+        publish.ack().cancel(false);
+        failures.add(
+            toFailureUpdate(publish.record(), new TimeoutException("puback timeout"), now));
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        failures.add(toFailureUpdate(publish.record(), ex, now));
       } catch (RuntimeException ex) {
-        handleFailure(record, ex, now, lockedBy);
+        failures.add(toFailureUpdate(publish.record(), ex, now));
       }
     }
-    metrics.updateOutboxFailedCurrent(outboxEventRepository.countFailed());
+    return acked;
   }
 
-  private EntitlementEventPayload parsePayload(OutboxEventRecord record) {
-    try {
-      return objectMapper.readValue(record.payloadJson(), EntitlementEventPayload.class);
-    } catch (JsonProcessingException ex) {
-      // パース不能はリトライしても回復しない前提なので専用例外で即時FAILEDに寄せる
-      throw new OutboxPayloadParseException("outbox payload parse failure", ex);
+  private void markPublished(List<InFlightPublish> acked, String lockedBy, Instant ackedAt) {
+    if (acked.isEmpty()) {
+      return;
     }
+    final Set<UUID> updated =
+        new HashSet<>(
+            outboxEventRepository.markPublished(
+                acked.stream().map(InFlightPublish::record).toList(), lockedBy, ackedAt));
+    for (InFlightPublish publish : acked) {
+      if (updated.contains(publish.record().eventId())) {
+        metrics.recordOutboxPublishDelay(Instant.parse(publish.message().occurredAt()), ackedAt);
+      } else {
+        logger.warn(
+            "outbox publish succeeded but lock was lost eventId={}", publish.record().eventId());
+      }
+    }
+    metrics.recordOutboxPublish("published", updated.size());
+    metrics.recordOutboxPublish("lock_lost", acked.size() - updated.size());
   }
 
-  private EntitlementEvent buildEvent(OutboxEventRecord record, EntitlementEventPayload payload) {
-    final EntitlementEvent.EventType eventType = mapEventType(record.eventType());
-    return EntitlementEvent.newBuilder()
-        .setEventId(payload.eventId())
-        .setEventType(eventType)
-        .setOccurredAt(payload.occurredAt())
-        .setUserId(payload.userId())
-        .setStockKeepingUnit(payload.stockKeepingUnit())
-        .setSource(payload.source())
-        .setSourceId(payload.sourceId())
-        .setVersion(payload.version())
-        .setTraceId(payload.traceId())
-        .build();
+  private void markFailures(List<OutboxFailureUpdate> failures, String lockedBy) {
+    if (failures.isEmpty()) {
+      return;
+    }
+    final Set<UUID> updated =
+        new HashSet<>(outboxEventRepository.markFailures(failures, lockedBy));
+    int retried = 0;
+    int failed = 0;
+    for (OutboxFailureUpdate failure : failures) {
+      if (!updated.contains(failure.eventId())) {
+        logger.warn(
+            "outbox retry skipped because lock was lost eventId={} attempt={}",
+            failure.eventId(),
+            failure.attemptCount());
+      } else if (failure.status() == OutboxStatus.FAILED) {
+        failed++;
+      } else {
+        retried++;
+      }
+    }
+    metrics.recordOutboxPublish("retry", retried);
+    metrics.recordOutboxPublish("failed", failed);
+    metrics.recordOutboxPublish("lock_lost", failures.size() - updated.size());
+  }
+
+  private void refreshFailedCount(Instant now, boolean movedToFailed) {
+    // COUNT(*) を batch ごとに流さないよう、FAILED が増えたとき以外は間隔を空けて数え直す
+    if (!movedToFailed
+        && now.isBefore(failedCountRefreshedAt.plus(properties.failedCountInterval()))) {
+      return;
+    }
+    failedCountRefreshedAt = now;
+    metrics.updateOutboxFailedCurrent(outboxEventRepository.countFailed());
   }
 
-  private Headers buildHeaders(OutboxEventRecord record, EntitlementEventPayload payload) {
+  private Headers buildHeaders(OutboxEventRecord record, OutboxMessage message) {
     final Headers headers = new Headers();
     // 重複排除キーとして event_id を NATS の標準ヘッダに載せる
-    headers.add(HEADER_MESSAGE_ID, payload.eventId());
+    headers.add(HEADER_MESSAGE_ID, message.eventId());
     headers.add(HEADER_EVENT_TYPE, record.eventType());
     headers.add(HEADER_AGGREGATE_KEY, record.aggregateKey());
-    headers.add(HEADER_OCCURRED_AT, payload.occurredAt());
-    headers.add(HEADER_TRACE_ID, payload.traceId());
+    headers.add(HEADER_OCCURRED_AT, message.occurredAt());
+    headers.add(HEADER_TRACE_ID, message.traceId());
     return headers;
   }
 
-  private PublishAck publishWithAck(Headers headers, EntitlementEvent event)
-      throws IOException, JetStreamApiException {
+  private CompletableFuture<PublishAck> publishAsync(Headers headers, OutboxMessage message) {
     // puback を受け取れた場合のみ publish 成功とみなす
-    return jetStream.publish(natsProperties.subject(), headers, event.toByteArray());
+    return jetStream.publishAsync(natsProperties.subject(), headers, message.data().toByteArray());
   }
 
-  private void handleFailure(OutboxEventRecord record, Exception ex, Instant now, String lockedBy) {
-    final boolean nonRetryable = ex instanceof OutboxPayloadParseException;
+  private OutboxFailureUpdate toFailureUpdate(OutboxEventRecord record, Exception ex, Instant now) {
+    final boolean nonRetryable = ex instanceof MalformedPayloadException;
     final int nextAttempt = nonRetryable ? properties.maxAttempts() : record.attemptCount() + 1;
     final boolean failed = nonRetryable || nextAttempt >= properties.maxAttempts();
     final Instant nextRetryAt = failed ? null : now.plus(computeBackoffDuration(nextAttempt));
-    final int updated =
-        outboxEventRepository.markFailure(
-            record.eventId(),
-            lockedBy,
-            nextAttempt,
-            failed ? OutboxStatus.FAILED : OutboxStatus.PENDING,
-            nextRetryAt,
-            truncateError(ex.getMessage()));
-    if (updated == 0) {
-      logger.warn(
-          "outbox retry skipped because lock was lost eventId={} attempt={}",
-          record.eventId(),
-          nextAttempt);
-    }
     if (failed) {
       if (nonRetryable) {
         // 運用アラート向けに error レベルで即時 FAILED を通知する
@@ -167,6 +242,18 @@ public class EntitlementOutboxPublisher {
           nextAttempt,
           ex);
     }
+    return new OutboxFailureUpdate(
+        record.eventId(),
+        record.createdAt(),
+        nextAttempt,
+        failed ? OutboxStatus.FAILED : OutboxStatus.PENDING,
+        nextRetryAt,
+        truncateError(ex.getMessage()));
+  }
+
+  private static Exception unwrap(ExecutionException ex) {
+    // publishAsync の失敗は JetStreamApiException / IOException などを cause に持つ
+    return ex.getCause() instanceof Exception cause ? cause : ex;
   }
 
   private Duration computeBackoffDuration(int attempt) {
@@ -193,14 +280,6 @@ public class EntitlementOutboxPublisher {
     return message.substring(0, maxLength);
   }
 
-  private EntitlementEvent.EventType mapEventType(String eventType) {
-    return switch (eventType) {
-      case "EntitlementGranted" -> EntitlementEvent.EventType.ENTITLEMENT_GRANTED;
-      case "EntitlementRevoked" -> EntitlementEvent.EventType.ENTITLEMENT_REVOKED;
-      default -> throw new IllegalArgumentException("unknown event type: " + eventType);
-    };
-  }
-
   private String resolveLockedBy() {
     final String env = System.getenv(HOSTNAME_ENV);
     if (env != null && !env.isBlank()) {
@@ -214,9 +293,6 @@ public class EntitlementOutboxPublisher {
     }
   }
 
-  private static final class OutboxPayloadParseException extends RuntimeException {
-    private OutboxPayloadParseException(String message, Throwable cause) {
-      super(message, cause);
-    }
-  }
+  private record InFlightPublish(
+      OutboxEventRecord record, OutboxMessage message, CompletableFuture<PublishAck> ack) {}
 }
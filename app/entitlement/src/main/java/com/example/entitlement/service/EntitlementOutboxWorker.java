@@ -1,11 +1,18 @@
 /*
  * どこで: Entitlement outbox ワーカー
- * 何を: スケジュールで outbox publish を起動する
- * なぜ: 定期的に未送信イベントを処理するため
+ * 何を: NOTIFY による起床と、安全網として残したスケジュールから outbox publish を起動する
+ * なぜ: grant/revoke のコミット直後に publish しつつ、通知を取りこぼしても定期的に未送信イベントを処理するため
  */
 package com.example.entitlement.service;
 
-import lombok.RequiredArgsConstructor;
+import com.example.entitlement.config.EntitlementOutboxProperties;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -16,13 +23,74 @@ import org.springframework.stereotype.Component;
     havingValue = "true",
     matchIfMissing = true)
 @ConditionalOnProperty(name = "nats.enabled", havingValue = "true", matchIfMissing = true)
-@RequiredArgsConstructor
 public class EntitlementOutboxWorker {
 
+  private static final Logger logger = LoggerFactory.getLogger(EntitlementOutboxWorker.class);
+
   private final EntitlementOutboxPublisher publisher;
+  private final EntitlementOutboxProperties properties;
+  private final EntitlementMetrics metrics;
+  // publish は 1 本のスレッドに寄せ、通知とポーリングが同時に batch を claim しないようにする
+  private final ExecutorService executor;
+  // drain が積まれている間に届いた起床は 1 回分にまとめる
+  private final AtomicBoolean drainQueued = new AtomicBoolean(false);
+
+  public EntitlementOutboxWorker(
+      EntitlementOutboxPublisher publisher,
+      EntitlementOutboxProperties properties,
+      EntitlementMetrics metrics) {
+    this.publisher = publisher;
+    this.properties = properties;
+    this.metrics = metrics;
+    this.executor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              final Thread thread = new Thread(runnable, "entitlement-outbox-publisher");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
 
   @Scheduled(fixedDelayString = "${entitlement.outbox.poll-interval}")
   public void run() {
-    publisher.publishPendingBatch();
+    wake("poll");
+  }
+
+  // LISTEN 接続が NOTIFY を受けたときに呼ぶ。ブロックせずに drain を積むだけ。
+  public void onNotify() {
+    wake("notify");
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private void wake(String source) {
+    if (!drainQueued.compareAndSet(false, true)) {
+      metrics.recordOutboxWakeup(source, true);
+      return;
+    }
+    metrics.recordOutboxWakeup(source, false);
+    try {
+      executor.execute(this::drain);
+    } catch (RejectedExecutionException ex) {
+      // 停止中は次回起動後のポーリングに任せる
+      drainQueued.set(false);
+    }
+  }
+
+  private void drain() {
+    // 先に解除し、drain 中に届いた通知で次の drain を積めるようにする
+    drainQueued.set(false);
+    try {
+      // batch が埋まっている間は滞留が残っているため、次の起床を待たずに続けて claim する
+      while (publisher.publishPendingBatch() >= properties.batchSize()
+          && !Thread.currentThread().isInterrupted()) {
+        metrics.recordOutboxWakeup("backlog", false);
+      }
+    } catch (RuntimeException ex) {
+      logger.warn("outbox publish batch failed", ex);
+    }
   }
 }
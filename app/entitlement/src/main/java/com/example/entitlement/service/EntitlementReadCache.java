@@ -0,0 +1,240 @@
+/*
+ * どこで: Entitlement サービス層
+ * 何を: ユーザ権利一覧をプロセス内（Caffeine）と任意の Redis の 2 段で保持し、コミットとイベントの version で更新/破棄する
+ * なぜ: プロフィール表示のたびに届く一覧参照を DB へ届かせず、変更後に古い一覧を返し続けないようにするため
+ */
+package com.example.entitlement.service;
+
+import com.example.entitlement.api.EntitlementSummary;
+import com.example.entitlement.api.EntitlementsResponse;
+import com.example.entitlement.config.EntitlementReadCacheProperties;
+import com.example.entitlement.model.EntitlementRecord;
+import com.example.entitlement.repository.RedisEntitlementListRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@Component
+@ConditionalOnProperty(name = "entitlement.read-cache.enabled", havingValue = "true")
+public class EntitlementReadCache {
+
+  static final String LOCAL_HIT = "local_hit";
+  static final String REDIS_HIT = "redis_hit";
+  static final String MISS = "miss";
+  static final String STRICT_BYPASS = "strict_bypass";
+  static final String UNSYNCED_BYPASS = "unsynced_bypass";
+
+  private static final Logger logger = LoggerFactory.getLogger(EntitlementReadCache.class);
+
+  private final Cache<String, EntitlementsResponse> cache;
+  // 読み込み中の user_id ごとの印。読み込み中にコミットやイベントが届いたら印を消し、
+  // その読み込み結果（変更前の一覧かもしれない）を載せないようにする。
+  private final ConcurrentMap<String, Object> pending = new ConcurrentHashMap<>();
+  private final Optional<RedisEntitlementListRepository> sharedRepository;
+  private final EntitlementMetrics metrics;
+  private final Clock clock;
+  // イベントを取りこぼさず受けられているか。購読が無い（nats.enabled=false）間は他の replica の
+  // 変更に気付けないため false とし、プロセス内の一覧を使わない。
+  private volatile BooleanSupplier eventFeedSynced = () -> false;
+
+  public EntitlementReadCache(
+      EntitlementReadCacheProperties properties,
+      Optional<RedisEntitlementListRepository> sharedRepository,
+      EntitlementMetrics metrics,
+      Clock clock) {
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(properties.maxEntries())
+            .expireAfterWrite(properties.ttl())
+            .build();
+    this.sharedRepository = sharedRepository;
+    this.metrics = metrics;
+    this.clock = clock;
+    metrics.bindReadCacheSize(cache::estimatedSize);
+  }
+
+  public void bindEventFeed(BooleanSupplier synced) {
+    this.eventFeedSynced = synced;
+  }
+
+  public EntitlementsResponse get(String userId, Function<String, EntitlementsResponse> loader) {
+    if (!eventFeedSynced.getAsBoolean()) {
+      // イベントが届かない間はプロセス内の一覧が古くなっても気付けないため使わない
+      metrics.recordReadCache(UNSYNCED_BYPASS);
+      return loadShared(userId, loader).response();
+    }
+    final EntitlementsResponse cached = cache.getIfPresent(userId);
+    if (cached != null) {
+      metrics.recordReadCache(LOCAL_HIT);
+      return cached;
+    }
+    final Object token = new Object();
+    pending.put(userId, token);
+    try {
+      final Loaded loaded = loadShared(userId, loader);
+      cache
+          .asMap()
+          .compute(
+              userId, (key, current) -> pending.remove(key, token) ? loaded.response() : current);
+      metrics.recordReadCache(loaded.result());
+      return loaded.response();
+    } finally {
+      pending.remove(userId, token);
+    }
+  }
+
+  public void recordStrictBypass() {
+    metrics.recordReadCache(STRICT_BYPASS);
+  }
+
+  // トランザクション中なら、コミットした後に書き込んだ権利を反映する（ロールバックでは何もしない）
+  public void applyAfterCommit(List<EntitlementRecord> records) {
+    if (records.isEmpty()) {
+      return;
+    }
+    final List<EntitlementRecord> committed = List.copyOf(records);
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      applyCommitted(committed);
+      return;
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            applyCommitted(committed);
+          }
+        });
+  }
+
+  // 書き込んだ replica では RETURNING の値がそのまま最新なので、捨てずに一覧の該当要素を置き換える
+  void applyCommitted(List<EntitlementRecord> records) {
+    for (EntitlementRecord record : records) {
+      invalidateShared(record.userId(), record.stockKeepingUnit(), record.version());
+      final EntitlementSummary summary =
+          new EntitlementSummary(
+              record.stockKeepingUnit(),
+              record.status().name(),
+              record.version(),
+              record.updatedAt());
+      cache
+          .asMap()
+          .compute(
+              record.userId(),
+              (key, current) -> {
+                pending.remove(key);
+                return current == null ? null : merge(current, summary);
+              });
+    }
+  }
+
+  // 他の replica のコミットはイベントで知る。持っている一覧の version が古いときだけ捨てる。
+  public void onEvent(String userId, String stockKeepingUnit, long version, Instant occurredAt) {
+    invalidateShared(userId, stockKeepingUnit, version);
+    final boolean[] evicted = {false};
+    cache
+        .asMap()
+        .compute(
+            userId,
+            (key, current) -> {
+              pending.remove(key);
+              if (current == null || versionOf(current, stockKeepingUnit) >= version) {
+                return current;
+              }
+              evicted[0] = true;
+              return null;
+            });
+    if (evicted[0]) {
+      metrics.recordReadCacheInvalidation("event");
+      metrics.recordReadCacheStaleness(occurredAt, Instant.now(clock));
+    }
+  }
+
+  // 再接続などでイベントを取りこぼした可能性があるときに、プロセス内の一覧をすべて捨てる
+  public void invalidateAll() {
+    pending.clear();
+    cache.invalidateAll();
+    metrics.recordReadCacheInvalidation("resync");
+  }
+
+  private Loaded loadShared(String userId, Function<String, EntitlementsResponse> loader) {
+    if (sharedRepository.isEmpty()) {
+      return new Loaded(loader.apply(userId), MISS);
+    }
+    final RedisEntitlementListRepository repository = sharedRepository.get();
+    try {
+      final Optional<EntitlementsResponse> shared = repository.find(userId);
+      if (shared.isPresent()) {
+        return new Loaded(shared.get(), REDIS_HIT);
+      }
+    } catch (RuntimeException ex) {
+      // Redis が使えなくても DB から返す。載せ直しも失敗する見込みが高いため試さない。
+      logger.warn("entitlement list cache read failed userId={}", userId, ex);
+      return new Loaded(loader.apply(userId), MISS);
+    }
+    final EntitlementsResponse loaded = loader.apply(userId);
+    try {
+      repository.putIfCurrent(loaded);
+    } catch (RuntimeException ex) {
+      logger.warn("entitlement list cache write failed userId={}", userId, ex);
+    }
+    return new Loaded(loaded, MISS);
+  }
+
+  private void invalidateShared(String userId, String stockKeepingUnit, long version) {
+    if (sharedRepository.isEmpty()) {
+      return;
+    }
+    try {
+      sharedRepository.get().invalidate(userId, stockKeepingUnit, version);
+    } catch (RuntimeException ex) {
+      // 他の replica もイベントで同じ無効化を行い、最後は ttl で消える
+      logger.warn(
+          "entitlement list cache invalidation failed userId={} sku={} version={}",
+          userId,
+          stockKeepingUnit,
+          version,
+          ex);
+    }
+  }
+
+  // 同じか新しい version を持っていればそのまま返す。一覧は updated_at の降順のため先頭に置く。
+  static EntitlementsResponse merge(EntitlementsResponse current, EntitlementSummary committed) {
+    final List<EntitlementSummary> entitlements = current.entitlements();
+    final List<EntitlementSummary> merged = new ArrayList<>(entitlements.size() + 1);
+    merged.add(committed);
+    for (EntitlementSummary summary : entitlements) {
+      if (!summary.stockKeepingUnit().equals(committed.stockKeepingUnit())) {
+        merged.add(summary);
+      } else if (summary.version() >= committed.version()) {
+        return current;
+      }
+    }
+    return new EntitlementsResponse(current.userId(), merged);
+  }
+
+  // 一覧に無い権利は、初回付与（version 0）より前の状態として扱う
+  private static long versionOf(EntitlementsResponse response, String stockKeepingUnit) {
+    for (EntitlementSummary summary : response.entitlements()) {
+      if (summary.stockKeepingUnit().equals(stockKeepingUnit)) {
+        return summary.version();
+      }
+    }
+    return -1;
+  }
+
+  private record Loaded(EntitlementsResponse response, String result) {}
+}
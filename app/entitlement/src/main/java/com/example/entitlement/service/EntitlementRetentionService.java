@@ -1,11 +1,13 @@
 /*
  * どこで: Entitlement retention サービス
- * 何を: idempotency/outbox の期限切れデータを削除する
+ * 何を: idempotency/outbox/監査ログの期限切れデータを削除する
  * なぜ: テーブル肥大化を防ぎ、運用負荷を下げるため
  */
 package com.example.entitlement.service;
 
 import com.example.entitlement.config.EntitlementOutboxProperties;
+import com.example.entitlement.config.EntitlementRetentionProperties;
+import com.example.entitlement.repository.EntitlementAuditRepository;
 import com.example.entitlement.repository.IdempotencyKeyRepository;
 import com.example.entitlement.repository.OutboxEventRepository;
 import java.time.Clock;
@@ -23,7 +25,10 @@ public class EntitlementRetentionService {
 
   private final IdempotencyKeyRepository idempotencyKeyRepository;
   private final OutboxEventRepository outboxEventRepository;
+  private final EntitlementAuditRepository auditRepository;
+  private final EntitlementTablePartitionManager partitionManager;
   private final EntitlementOutboxProperties outboxProperties;
+  private final EntitlementRetentionProperties retentionProperties;
   private final Clock clock;
 
   public void cleanup() {
@@ -31,14 +36,24 @@ public class EntitlementRetentionService {
     // idempotency は expires_at に TTL が反映済みなので、期限切れのみ削除する。
     final int deletedIdempotency = idempotencyKeyRepository.deleteExpired(now);
     // outbox は publish 済みのみ対象にするため、published_at の TTL を使う。
+    // 日の区画は区画ごと落とし、行単位の削除は既定区画に入った行だけに限る。
     final Instant outboxThreshold = now.minus(outboxProperties.publishedTtl());
+    final int droppedOutboxPartitions = partitionManager.dropExpiredOutbox(outboxThreshold);
     final int deletedOutbox = outboxEventRepository.deletePublishedOlderThan(outboxThreshold);
+    final Instant auditThreshold = now.minus(retentionProperties.auditTtl());
+    final int droppedAuditPartitions = partitionManager.dropExpiredAudit(auditThreshold);
+    final int deletedAudit = auditRepository.deleteOlderThan(auditThreshold);
     logger.info(
         "entitlement retention cleanup deleted idempotencyKeys={} outboxEvents={}"
-            + " outboxThreshold={} idempotencyThreshold={}",
+            + " outboxPartitions={} auditEvents={} auditPartitions={}"
+            + " outboxThreshold={} auditThreshold={} idempotencyThreshold={}",
         deletedIdempotency,
         deletedOutbox,
+        droppedOutboxPartitions,
+        deletedAudit,
+        droppedAuditPartitions,
         outboxThreshold,
+        auditThreshold,
         now);
   }
 }
@@ -1,6 +1,6 @@
 /*
  * どこで: Entitlement サービス層
- * 何を: 権利の付与/剥奪と outbox/audit/idempotency の更新を担う
+ * 何を: 権利の付与/剥奪（単件・一括）と outbox/audit/idempotency の更新、一覧の参照を担う
  * なぜ: トランザクション内で整合性を保つため
  */
 package com.example.entitlement.service;
@@ -9,29 +9,43 @@ import com.example.common.TraceIds;
 import com.example.common.event.EntitlementEventPayload;
 import com.example.entitlement.api.ApiErrorCode;
 import com.example.entitlement.api.ApiErrorResponse;
+import com.example.entitlement.api.EntitlementBatchItem;
+import com.example.entitlement.api.EntitlementBatchItemResult;
+import com.example.entitlement.api.EntitlementBatchRequest;
+import com.example.entitlement.api.EntitlementBatchResponse;
 import com.example.entitlement.api.EntitlementRequest;
 import com.example.entitlement.api.EntitlementResponse;
 import com.example.entitlement.api.EntitlementSummary;
 import com.example.entitlement.api.EntitlementsResponse;
 import com.example.entitlement.api.IdempotencyConflictException;
 import com.example.entitlement.api.InvalidEntitlementTransitionException;
+import com.example.entitlement.config.EntitlementCommandProperties;
 import com.example.entitlement.config.EntitlementIdempotencyProperties;
 import com.example.entitlement.model.EntitlementAuditRecord;
+import com.example.entitlement.model.EntitlementBatchCommand;
+import com.example.entitlement.model.EntitlementCommandOutcome;
 import com.example.entitlement.model.EntitlementRecord;
 import com.example.entitlement.model.EntitlementStatus;
 import com.example.entitlement.model.IdempotencyRecord;
+import com.example.entitlement.model.OutboxEventRecord;
 import com.example.entitlement.repository.EntitlementAuditRepository;
+import com.example.entitlement.repository.EntitlementCommandRepository;
 import com.example.entitlement.repository.EntitlementRepository;
 import com.example.entitlement.repository.IdempotencyKeyRepository;
 import com.example.entitlement.repository.OutboxEventRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -53,11 +67,16 @@ public class EntitlementService {
   private final OutboxEventRepository outboxEventRepository;
   private final EntitlementAuditRepository auditRepository;
   private final IdempotencyKeyRepository idempotencyKeyRepository;
+  private final EntitlementCommandRepository commandRepository;
   private final IdempotencyLockKeyGenerator lockKeyGenerator;
   private final RequestHasher requestHasher;
+  private final EntitlementEventCodec eventCodec;
   private final ObjectMapper objectMapper;
   private final EntitlementIdempotencyProperties idempotencyProperties;
+  private final EntitlementCommandProperties commandProperties;
   private final EntitlementMetrics metrics;
+  // entitlement.read-cache.enabled=true のときだけ存在する
+  private final Optional<EntitlementReadCache> readCache;
   private final Clock clock;
 
   @Transactional(noRollbackFor = InvalidEntitlementTransitionException.class)
@@ -74,7 +93,33 @@ public class EntitlementService {
         request, idempotencyKey, traceId, ACTION_REVOKE, EntitlementStatus.REVOKED, EVENT_REVOKED);
   }
 
-  public EntitlementsResponse listByUser(String userId) {
+  // 一括は entitlement.command.single-statement に関係なく、全件を CTE 連鎖の 1 文で書き込む。
+  // 状態衝突や冪等キーの競合は件ごとの結果で返し、トランザクションは全件まとめてコミットする。
+  @Transactional
+  public EntitlementBatchResponse grantBatch(EntitlementBatchRequest request, String traceId) {
+    return handleBatch(
+        request.items(), traceId, ACTION_GRANT, EntitlementStatus.ACTIVE, EVENT_GRANTED);
+  }
+
+  @Transactional
+  public EntitlementBatchResponse revokeBatch(EntitlementBatchRequest request, String traceId) {
+    return handleBatch(
+        request.items(), traceId, ACTION_REVOKE, EntitlementStatus.REVOKED, EVENT_REVOKED);
+  }
+
+  // strict=true は読み取りキャッシュを通さず DB の最新を返す（付与直後の確認など）
+  public EntitlementsResponse listByUser(String userId, boolean strict) {
+    if (readCache.isEmpty()) {
+      return loadByUser(userId);
+    }
+    if (strict) {
+      readCache.get().recordStrictBypass();
+      return loadByUser(userId);
+    }
+    return readCache.get().get(userId, this::loadByUser);
+  }
+
+  private EntitlementsResponse loadByUser(String userId) {
     final List<EntitlementSummary> items =
         entitlementRepository.findByUserId(userId).stream().map(this::toSummary).toList();
     return new EntitlementsResponse(userId, items);
@@ -94,6 +139,12 @@ public class EntitlementService {
     // 同一Idempotency-Keyの同時実行を直列化 (64-bit advisory lock)。
     final long lockKey = lockKeyGenerator.generate(idempotencyKey);
     idempotencyKeyRepository.lockByKey(lockKey);
+    // lock は 1 文に含めない。文のスナップショットはロック待ちの前に取られ、待つ間に
+    // コミットされた同一キーの冪等応答を見落とすため、取得後に始まる次の文で確認する。
+    if (commandProperties.singleStatement()) {
+      return applyInSingleStatement(
+          request, idempotencyKey, traceId, action, status, eventType, requestHash);
+    }
     // ロック取得後に再チェックし、登録済みなら同一レスポンスを再利用する。
     final Optional<IdempotencyRecord> existing = idempotencyKeyRepository.findByKey(idempotencyKey);
     if (existing.isPresent()) {
@@ -109,25 +160,20 @@ public class EntitlementService {
         throw new InvalidEntitlementTransitionException("already " + status.name());
       }
       final String eventId = UUID.randomUUID().toString();
-      final String payloadJson =
-          buildPayloadJson(record.get(), eventId, eventType, request, resolvedTraceId, now);
+      final ByteString payloadProto =
+          buildPayloadProto(record.get(), eventId, eventType, request, resolvedTraceId, now);
       // outbox に保存してから非同期 publish する
       outboxEventRepository.insert(
           UUID.fromString(eventId),
           eventType,
           buildAggregateKey(record.get().userId(), record.get().stockKeepingUnit()),
-          payloadJson,
+          payloadProto,
           now);
       // 監査ログを保存し、後から操作の根拠を確認できるようにする
       auditRepository.insert(buildAuditRecord(record.get(), action, request, idempotencyKey, now));
-      final EntitlementResponse response =
-          new EntitlementResponse(
-              record.get().userId(),
-              record.get().stockKeepingUnit(),
-              record.get().status().name(),
-              record.get().version(),
-              record.get().updatedAt());
+      final EntitlementResponse response = toResponse(record.get());
       storeIdempotency(idempotencyKey, requestHash, SUCCESS_STATUS_CODE, response, now);
+      refreshReadCacheAfterCommit(List.of(record.get()));
       metrics.recordCommand(action, "success");
       return response;
     } catch (InvalidEntitlementTransitionException ex) {
@@ -143,6 +189,254 @@ public class EntitlementService {
     }
   }
 
+  @SuppressFBWarnings(
+      value = "THROWS_METHOD_THROWS_RUNTIMEEXCEPTION",
+      justification = "失敗時メトリクス記録後に原例外を再送出し、既存の API 契約と例外分類を維持するため")
+  private EntitlementResponse applyInSingleStatement(
+      EntitlementRequest request,
+      String idempotencyKey,
+      String traceId,
+      String action,
+      EntitlementStatus status,
+      String eventType,
+      String requestHash) {
+    // 保存する応答の updated_at と RETURNING の値が一致するよう、DB の精度(マイクロ秒)に揃える
+    final Instant now = Instant.now(clock).truncatedTo(ChronoUnit.MICROS);
+    final String resolvedTraceId = resolveTraceId(traceId);
+    final String conflictMessage = "already " + status.name();
+    final EntitlementCommandOutcome outcome;
+    try {
+      // version は DB が採番するため、0 のまま符号化した payload に SQL 側で足す
+      final EntitlementRecord draft =
+          new EntitlementRecord(request.userId(), request.stockKeepingUnit(), status, 0, now);
+      final String eventId = UUID.randomUUID().toString();
+      final OutboxEventRecord event =
+          new OutboxEventRecord(
+              UUID.fromString(eventId),
+              eventType,
+              buildAggregateKey(draft.userId(), draft.stockKeepingUnit()),
+              null,
+              buildPayloadProto(draft, eventId, eventType, request, resolvedTraceId, now),
+              0,
+              now);
+      final Instant expiresAt = now.plus(Duration.ofHours(idempotencyProperties.ttlHours()));
+      final ApiErrorResponse errorResponse =
+          new ApiErrorResponse(ApiErrorCode.ENTITLEMENT_STATE_CONFLICT, conflictMessage);
+      outcome =
+          commandRepository.apply(
+              status,
+              buildAuditRecord(draft, action, request, idempotencyKey, now),
+              event,
+              new IdempotencyRecord(
+                  idempotencyKey,
+                  requestHash,
+                  SUCCESS_STATUS_CODE,
+                  toResponseJson(toResponse(draft)),
+                  expiresAt),
+              new IdempotencyRecord(
+                  idempotencyKey,
+                  requestHash,
+                  CONFLICT_STATUS_CODE,
+                  toResponseJson(errorResponse),
+                  expiresAt));
+    } catch (RuntimeException ex) {
+      metrics.recordCommand(action, "error");
+      throw ex;
+    }
+    // 以降の振り分けは従来経路と同じ結果・メトリクスになるようにする
+    if (outcome.reused().isPresent()) {
+      metrics.recordCommand(action, "idempotency_reused");
+      return reuseIdempotentResponse(outcome.reused().get(), requestHash);
+    }
+    if (!outcome.idempotencyStored()) {
+      // 同じ文の中で未期限切れが無いことを確かめているため、保存できないのは不変条件違反。
+      metrics.recordCommand(action, "error");
+      throw new IllegalStateException("idempotency invariant violated");
+    }
+    if (outcome.applied().isEmpty()) {
+      // 409 応答は同じ文で保存済みで、noRollbackFor によりそのままコミットされる
+      metrics.recordCommand(action, "conflict");
+      throw new InvalidEntitlementTransitionException(conflictMessage);
+    }
+    refreshReadCacheAfterCommit(List.of(outcome.applied().get()));
+    metrics.recordCommand(action, "success");
+    return toResponse(outcome.applied().get());
+  }
+
+  @SuppressFBWarnings(
+      value = "THROWS_METHOD_THROWS_RUNTIMEEXCEPTION",
+      justification = "失敗時メトリクス記録後に原例外を再送出し、既存の API 契約と例外分類を維持するため")
+  private EntitlementBatchResponse handleBatch(
+      List<EntitlementBatchItem> items,
+      String traceId,
+      String action,
+      EntitlementStatus status,
+      String eventType) {
+    requireDistinctItems(items);
+    // 冪等キーごとの advisory lock を昇順にまとめて取る。単件と同じ理由で書き込みの文とは分ける。
+    idempotencyKeyRepository.lockByKeys(
+        items.stream()
+            .mapToLong(item -> lockKeyGenerator.generate(item.idempotencyKey()))
+            .sorted()
+            .distinct()
+            .toArray());
+    // 保存する応答の updated_at と RETURNING の値が一致するよう、DB の精度(マイクロ秒)に揃える
+    final Instant now = Instant.now(clock).truncatedTo(ChronoUnit.MICROS);
+    final String resolvedTraceId = resolveTraceId(traceId);
+    final Instant expiresAt = now.plus(Duration.ofHours(idempotencyProperties.ttlHours()));
+    final ApiErrorResponse conflictResponse =
+        new ApiErrorResponse(ApiErrorCode.ENTITLEMENT_STATE_CONFLICT, "already " + status.name());
+    final List<String> requestHashes = new ArrayList<>(items.size());
+    final List<EntitlementCommandOutcome> outcomes;
+    try {
+      final List<EntitlementBatchCommand> commands = new ArrayList<>(items.size());
+      for (EntitlementBatchItem item : items) {
+        final EntitlementRequest request = item.toRequest();
+        final String requestHash = requestHasher.hash(action, request);
+        requestHashes.add(requestHash);
+        commands.add(
+            buildBatchCommand(
+                request,
+                item.idempotencyKey(),
+                requestHash,
+                resolvedTraceId,
+                action,
+                status,
+                eventType,
+                now,
+                expiresAt));
+      }
+      // 衝突時の応答は全件で同じため、冪等キーと request_hash は件ごとの値を SQL 側で使う
+      outcomes =
+          commandRepository.applyBatch(
+              status,
+              now,
+              commands,
+              new IdempotencyRecord(
+                  null, null, CONFLICT_STATUS_CODE, toResponseJson(conflictResponse), expiresAt));
+    } catch (RuntimeException ex) {
+      items.forEach(item -> metrics.recordCommand(action, "error"));
+      throw ex;
+    }
+    final List<EntitlementBatchItemResult> results = new ArrayList<>(items.size());
+    final List<EntitlementRecord> applied = new ArrayList<>(items.size());
+    for (int i = 0; i < items.size(); i++) {
+      outcomes.get(i).applied().ifPresent(applied::add);
+      results.add(
+          toBatchResult(
+              items.get(i).idempotencyKey(),
+              requestHashes.get(i),
+              outcomes.get(i),
+              action,
+              conflictResponse));
+    }
+    refreshReadCacheAfterCommit(applied);
+    return new EntitlementBatchResponse(results);
+  }
+
+  // 同じ冪等キーや同じ権利が 1 回の一括に 2 件あると、1 文の中で同じ行を 2 回書くことになるため弾く
+  private void requireDistinctItems(List<EntitlementBatchItem> items) {
+    final Set<String> idempotencyKeys = new HashSet<>();
+    final Set<List<String>> targets = new HashSet<>();
+    for (EntitlementBatchItem item : items) {
+      if (!idempotencyKeys.add(item.idempotencyKey())) {
+        throw new IllegalArgumentException("idempotency_key must be unique in items");
+      }
+      if (!targets.add(List.of(item.userId(), item.stockKeepingUnit()))) {
+        throw new IllegalArgumentException(
+            "user_id and stock_keeping_unit must be unique in items");
+      }
+    }
+  }
+
+  private EntitlementBatchCommand buildBatchCommand(
+      EntitlementRequest request,
+      String idempotencyKey,
+      String requestHash,
+      String traceId,
+      String action,
+      EntitlementStatus status,
+      String eventType,
+      Instant now,
+      Instant expiresAt) {
+    // version は DB が採番するため、0 のまま符号化した payload と応答に SQL 側で入れる
+    final EntitlementRecord draft =
+        new EntitlementRecord(request.userId(), request.stockKeepingUnit(), status, 0, now);
+    final String eventId = UUID.randomUUID().toString();
+    final OutboxEventRecord event =
+        new OutboxEventRecord(
+            UUID.fromString(eventId),
+            eventType,
+            buildAggregateKey(draft.userId(), draft.stockKeepingUnit()),
+            null,
+            buildPayloadProto(draft, eventId, eventType, request, traceId, now),
+            0,
+            now);
+    return new EntitlementBatchCommand(
+        buildAuditRecord(draft, action, request, idempotencyKey, now),
+        event,
+        new IdempotencyRecord(
+            idempotencyKey,
+            requestHash,
+            SUCCESS_STATUS_CODE,
+            toResponseJson(toResponse(draft)),
+            expiresAt));
+  }
+
+  // 振り分けとメトリクスは単件の 1 文経路と揃え、例外の代わりに件ごとの結果へ変換する
+  private EntitlementBatchItemResult toBatchResult(
+      String idempotencyKey,
+      String requestHash,
+      EntitlementCommandOutcome outcome,
+      String action,
+      ApiErrorResponse conflictResponse) {
+    if (outcome.reused().isPresent()) {
+      metrics.recordCommand(action, "idempotency_reused");
+      return reuseBatchResult(idempotencyKey, outcome.reused().get(), requestHash);
+    }
+    if (!outcome.idempotencyStored()) {
+      // 同じ文の中で未期限切れが無いことを確かめているため、保存できないのは不変条件違反。
+      metrics.recordCommand(action, "error");
+      throw new IllegalStateException("idempotency invariant violated");
+    }
+    if (outcome.applied().isEmpty()) {
+      metrics.recordCommand(action, "conflict");
+      return new EntitlementBatchItemResult(
+          idempotencyKey, CONFLICT_STATUS_CODE, null, conflictResponse);
+    }
+    metrics.recordCommand(action, "success");
+    return new EntitlementBatchItemResult(
+        idempotencyKey, SUCCESS_STATUS_CODE, toResponse(outcome.applied().get()), null);
+  }
+
+  private EntitlementBatchItemResult reuseBatchResult(
+      String idempotencyKey, IdempotencyRecord record, String requestHash) {
+    if (!record.requestHash().equals(requestHash)) {
+      return new EntitlementBatchItemResult(
+          idempotencyKey,
+          CONFLICT_STATUS_CODE,
+          null,
+          new ApiErrorResponse(ApiErrorCode.IDEMPOTENCY_KEY_CONFLICT, "Idempotency-Key conflict"));
+    }
+    try {
+      if (record.responseCode() == SUCCESS_STATUS_CODE) {
+        return new EntitlementBatchItemResult(
+            idempotencyKey,
+            SUCCESS_STATUS_CODE,
+            objectMapper.readValue(record.responseBodyJson(), EntitlementResponse.class),
+            null);
+      }
+      // 単件 API で保存したエラー応答も、保存したステータスと本文のまま返す
+      return new EntitlementBatchItemResult(
+          idempotencyKey,
+          record.responseCode(),
+          null,
+          objectMapper.readValue(record.responseBodyJson(), ApiErrorResponse.class));
+    } catch (JsonProcessingException ex) {
+      throw new IllegalStateException("failed to parse idempotency response", ex);
+    }
+  }
+
   private EntitlementResponse reuseIdempotentResponse(
       IdempotencyRecord record, String requestHash) {
     if (!record.requestHash().equals(requestHash)) {
@@ -178,16 +472,24 @@ public class EntitlementService {
 
   private void storeIdempotency(
       String idempotencyKey, String requestHash, int responseCode, Object response, Instant now) {
+    final String responseJson = toResponseJson(response);
+    final Instant expiresAt = now.plus(Duration.ofHours(idempotencyProperties.ttlHours()));
+    final IdempotencyRecord record =
+        new IdempotencyRecord(idempotencyKey, requestHash, responseCode, responseJson, expiresAt);
+    final int updated = idempotencyKeyRepository.upsertIfExpired(record);
+    if (updated == 0) {
+      // 先頭で競合判定済みのため、未期限切れ衝突は不変条件違反として扱う。
+      throw new IllegalStateException("idempotency invariant violated");
+    }
+  }
+
+  private void refreshReadCacheAfterCommit(List<EntitlementRecord> records) {
+    readCache.ifPresent(cache -> cache.applyAfterCommit(records));
+  }
+
+  private String toResponseJson(Object response) {
     try {
-      final String responseJson = objectMapper.writeValueAsString(response);
-      final Instant expiresAt = now.plus(Duration.ofHours(idempotencyProperties.ttlHours()));
-      final IdempotencyRecord record =
-          new IdempotencyRecord(idempotencyKey, requestHash, responseCode, responseJson, expiresAt);
-      final int updated = idempotencyKeyRepository.upsertIfExpired(record);
-      if (updated == 0) {
-        // 先頭で競合判定済みのため、未期限切れ衝突は不変条件違反として扱う。
-        throw new IllegalStateException("idempotency invariant violated");
-      }
+      return objectMapper.writeValueAsString(response);
     } catch (JsonProcessingException ex) {
       throw new IllegalStateException("failed to serialize idempotency response", ex);
     }
@@ -216,7 +518,7 @@ public class EntitlementService {
     throw new IllegalArgumentException("unsupported entitlement status: " + status);
   }
 
-  private String buildPayloadJson(
+  private ByteString buildPayloadProto(
       EntitlementRecord record,
       String eventId,
       String eventType,
@@ -234,11 +536,7 @@ public class EntitlementService {
             request.purchaseId(),
             record.version(),
             traceId);
-    try {
-      return objectMapper.writeValueAsString(payload);
-    } catch (JsonProcessingException ex) {
-      throw new IllegalStateException("failed to serialize outbox payload", ex);
-    }
+    return eventCodec.encode(payload);
   }
 
   private EntitlementAuditRecord buildAuditRecord(
@@ -268,6 +566,15 @@ public class EntitlementService {
     }
   }
 
+  private EntitlementResponse toResponse(EntitlementRecord record) {
+    return new EntitlementResponse(
+        record.userId(),
+        record.stockKeepingUnit(),
+        record.status().name(),
+        record.version(),
+        record.updatedAt());
+  }
+
   private EntitlementSummary toSummary(EntitlementRecord record) {
     return new EntitlementSummary(
         record.stockKeepingUnit(), record.status().name(), record.version(), record.updatedAt());
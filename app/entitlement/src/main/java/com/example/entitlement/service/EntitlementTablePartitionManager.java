@@ -0,0 +1,61 @@
+/*
+ * どこで: Entitlement の区画保守
+ * 何を: outbox_events/entitlement_audit の日単位パーティションを先に作り、保持期限を過ぎた区画を外して削除する
+ * なぜ: 期限切れの行を行単位の DELETE ではなく区画ごと落とし、肥大化と vacuum/ロックの負荷を無くすため
+ */
+package com.example.entitlement.service;
+
+import com.example.common.partition.DailyPartitionMaintainer;
+import com.example.entitlement.config.EntitlementTablePartitionProperties;
+import com.example.entitlement.repository.TablePartitionRepository;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.stereotype.Component;
+
+// 作成/削除の手順は共通の DailyPartitionMaintainer に任せ、ここでは表の一覧と区画を残す条件だけを決める
+@Component
+public class EntitlementTablePartitionManager {
+
+  static final String OUTBOX_TABLE = "outbox_events";
+  static final String AUDIT_TABLE = "entitlement_audit";
+
+  private static final List<String> TABLES = List.of(OUTBOX_TABLE, AUDIT_TABLE);
+
+  private final TablePartitionRepository partitionRepository;
+  private final DailyPartitionMaintainer maintainer;
+
+  public EntitlementTablePartitionManager(
+      TablePartitionRepository partitionRepository,
+      EntitlementTablePartitionProperties properties,
+      Clock clock) {
+    this.partitionRepository = partitionRepository;
+    this.maintainer =
+        new DailyPartitionMaintainer(
+            "entitlement",
+            partitionRepository,
+            TABLES,
+            properties.premakeDays(),
+            properties.lockTimeout(),
+            clock);
+  }
+
+  public void maintain() {
+    maintainer.maintain(
+        OUTBOX_TABLE,
+        partition -> partitionRepository.hasUnpublishedOutboxRows(partition.name()),
+        partitionRepository::findOldestUnpublishedOutboxInDefault);
+  }
+
+  // publish 済みで published_at が threshold 以前の行だけから成る区画を落とす
+  public int dropExpiredOutbox(Instant threshold) {
+    return maintainer.dropExpired(
+        OUTBOX_TABLE,
+        threshold,
+        partition -> partitionRepository.hasOutboxRowsToKeep(partition.name(), threshold));
+  }
+
+  public int dropExpiredAudit(Instant threshold) {
+    return maintainer.dropExpired(AUDIT_TABLE, threshold, partition -> false);
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * どこで: Entitlement 区画保守ワーカー
+ * 何を: 日単位パーティションの先行作成と claim の下限の更新をスケジュールで起動する
+ * なぜ: 書き込みの有無や retention の有効/無効に関係なく、日の区画を切らさないため
+ */
+package com.example.entitlement.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "entitlement.table-partitions.enabled", havingValue = "true")
+public class EntitlementTablePartitionWorker {
+
+  private final EntitlementTablePartitionManager partitionManager;
+
+  @Scheduled(
+      initialDelay = 0,
+      fixedDelayString = "${entitlement.table-partitions.maintenance-interval}")
+  public void run() {
+    // 起動直後に一度回し、今日の区画が無いまま書き込みが始まるのを避ける。
+    partitionManager.maintain();
+  }
+}
@@ -0,0 +1,17 @@
+-- どこで: Entitlement マイグレーション
+-- 何を: outbox_events への INSERT をコミット時に NOTIFY entitlement_outbox で知らせるトリガを作成する
+-- なぜ: publisher が固定間隔ポーリングを待たずに claim できるようにするため
+-- 文単位トリガにし、同一トランザクション内の同じ channel/payload の NOTIFY は Postgres が 1 通にまとめる
+CREATE FUNCTION notify_outbox_inserted() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+  PERFORM pg_notify('entitlement_outbox', '');
+  RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER outbox_events_notify_inserted
+  AFTER INSERT ON outbox_events
+  FOR EACH STATEMENT
+  EXECUTE FUNCTION notify_outbox_inserted();
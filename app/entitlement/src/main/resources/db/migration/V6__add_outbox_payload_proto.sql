@@ -0,0 +1,38 @@
+-- どこで: Entitlement マイグレーション
+-- 何を: outbox_events に publish するバイト列そのもの（EntitlementEvent の protobuf）を保存する列を追加する
+-- なぜ: publisher が行ごとに JSON を解析して protobuf を組み立て直す処理を無くすため
+-- 移行中の既存行は payload(JSONB) だけを持つため、どちらか一方があればよい制約に緩める
+ALTER TABLE outbox_events
+  ADD COLUMN payload_proto BYTEA;
+
+ALTER TABLE outbox_events
+  ALTER COLUMN payload DROP NOT NULL;
+
+ALTER TABLE outbox_events
+  ADD CONSTRAINT outbox_events_payload_present
+  CHECK (payload IS NOT NULL OR payload_proto IS NOT NULL);
+
+-- protobuf の varint フィールド（タグ + 値）を符号化する。CTE 連鎖の 1 文で DB が採番した
+-- version を、アプリが符号化したバイト列の末尾へ足すために使う（protobuf は後勝ちで結合できる）。
+-- proto3 の既定値 0 はフィールドごと省略する。負数は扱わない。
+CREATE FUNCTION protobuf_varint_field(field_number INT, value BIGINT) RETURNS BYTEA
+LANGUAGE plpgsql
+IMMUTABLE STRICT
+AS $$
+DECLARE
+  remaining BIGINT := value;
+  encoded BYTEA := set_byte('\x00'::bytea, 0, field_number << 3);
+BEGIN
+  IF value = 0 THEN
+    RETURN ''::bytea;
+  END IF;
+  IF value < 0 OR field_number < 1 OR field_number > 15 THEN
+    RAISE EXCEPTION 'unsupported protobuf varint field % = %', field_number, value;
+  END IF;
+  WHILE remaining >= 128 LOOP
+    encoded := encoded || set_byte('\x00'::bytea, 0, ((remaining & 127) | 128)::int);
+    remaining := remaining >> 7;
+  END LOOP;
+  RETURN encoded || set_byte('\x00'::bytea, 0, remaining::int);
+END;
+$$;
@@ -0,0 +1,39 @@
+-- どこで: Entitlement マイグレーション
+-- 何を: outbox_events に publish 順序の列（publish_seq）と aggregate_key 由来の publish 区画（publish_partition）を追加し、
+--       区画のリース表を作成する
+-- なぜ: 複数の publisher が区画を分け持ち、同じ aggregate_key のイベントを書き込み順に publish できるようにするため
+
+-- publish_seq は INSERT 時に採番する。同じ aggregate_key の書き込みは entitlements の行ロックで直列化され、
+-- outbox の INSERT は upsert の後に動くため、キーごとにはコミット順と一致する（created_at は待ち前の時刻）。
+ALTER TABLE outbox_events
+  ADD COLUMN publish_seq BIGINT GENERATED ALWAYS AS IDENTITY;
+
+-- 区画数を変えると処理中のキーが区画をまたぐため、変えるときは publisher を止めて移行する。
+ALTER TABLE outbox_events
+  ADD COLUMN publish_partition SMALLINT
+  GENERATED ALWAYS AS (mod(abs(hashtext(aggregate_key)::bigint), 64)::smallint) STORED;
+
+-- 区画ごとに未送信を古い順に拾う
+CREATE INDEX outbox_partition_pick_idx
+  ON outbox_events (publish_partition, publish_seq)
+  WHERE status IN ('PENDING', 'IN_FLIGHT');
+
+-- 同じ aggregate_key の未送信の先行イベントの有無を調べる
+CREATE INDEX outbox_aggregate_unpublished_idx
+  ON outbox_events (aggregate_key, publish_seq)
+  WHERE status IN ('PENDING', 'IN_FLIGHT');
+
+CREATE TABLE outbox_partition_leases (
+  partition_no SMALLINT PRIMARY KEY,
+  owner        TEXT,
+  lease_until  TIMESTAMPTZ
+);
+
+INSERT INTO outbox_partition_leases (partition_no)
+SELECT partition_no::smallint FROM generate_series(0, 63) AS partition_no;
+
+-- 区画を持っていない replica も取り分の計算に入るよう、publisher ごとの生存を別に記録する
+CREATE TABLE outbox_publishers (
+  owner       TEXT PRIMARY KEY,
+  alive_until TIMESTAMPTZ NOT NULL
+);
@@ -0,0 +1,214 @@
+-- どこで: Entitlement マイグレーション
+-- 何を: outbox_events と entitlement_audit を日単位（UTC）の範囲パーティションに作り替え、
+--       区画の作成/削除を行う関数と、claim が読む区画の下限を置く表を作成する
+-- なぜ: 保持期限を過ぎた行を行単位の DELETE ではなく区画ごと落とし、肥大化と vacuum/ロックの負荷を無くすため
+
+-- 日単位の区画 <parent>_pYYYYMMDD を from_day から to_day まで作る。既にある日は飛ばす。
+-- 既定区画に同じ範囲の行が残っている日は作れないため、警告して飛ばす（既定区画の行が消えれば次回作られる）。
+-- 親表へのロック待ちで書き込みを詰まらせないよう、lock_timeout_ms でロック待ちを打ち切る（0 は無制限）。
+CREATE FUNCTION create_daily_partitions(
+  parent TEXT, from_day DATE, to_day DATE, lock_timeout_ms INT) RETURNS INT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  schema_name TEXT;
+  partition_name TEXT;
+  partition_day DATE := from_day;
+  created INT := 0;
+BEGIN
+  SELECT n.nspname INTO STRICT schema_name
+  FROM pg_class c
+  JOIN pg_namespace n ON n.oid = c.relnamespace
+  WHERE c.oid = parent::regclass;
+  PERFORM set_config('lock_timeout', lock_timeout_ms || 'ms', true);
+  WHILE partition_day <= to_day LOOP
+    partition_name := parent || '_p' || to_char(partition_day, 'YYYYMMDD');
+    IF to_regclass(format('%I.%I', schema_name, partition_name)) IS NULL THEN
+      BEGIN
+        EXECUTE format(
+          'CREATE TABLE %I.%I PARTITION OF %I.%I FOR VALUES FROM (%L) TO (%L)',
+          schema_name,
+          partition_name,
+          schema_name,
+          parent,
+          partition_day::timestamp AT TIME ZONE 'UTC',
+          (partition_day + 1)::timestamp AT TIME ZONE 'UTC');
+        created := created + 1;
+      EXCEPTION
+        -- 他の replica が先に作った
+        WHEN duplicate_table THEN NULL;
+        WHEN check_violation THEN
+          RAISE WARNING 'default partition of % has rows for %; skipped', parent, partition_day;
+      END;
+    END IF;
+    partition_day := partition_day + 1;
+  END LOOP;
+  RETURN created;
+END;
+$$;
+
+-- 区画を親から外して削除する。削除してよいか（保持期限内の行や未送信の行が無いか）は呼び出し側で確かめる。
+CREATE FUNCTION drop_daily_partition(
+  parent TEXT, partition_name TEXT, lock_timeout_ms INT) RETURNS BOOLEAN
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  schema_name TEXT;
+BEGIN
+  SELECT n.nspname INTO STRICT schema_name
+  FROM pg_class c
+  JOIN pg_namespace n ON n.oid = c.relnamespace
+  WHERE c.oid = parent::regclass;
+  IF to_regclass(format('%I.%I', schema_name, partition_name)) IS NULL THEN
+    -- 他の replica が先に削除した
+    RETURN FALSE;
+  END IF;
+  PERFORM set_config('lock_timeout', lock_timeout_ms || 'ms', true);
+  -- 既定区画があると DETACH CONCURRENTLY は使えない。親へのロックはメタデータの更新の間だけに留まる。
+  EXECUTE format(
+    'ALTER TABLE %I.%I DETACH PARTITION %I.%I', schema_name, parent, schema_name, partition_name);
+  EXECUTE format('DROP TABLE %I.%I', schema_name, partition_name);
+  RETURN TRUE;
+END;
+$$;
+
+-- claim はこの時刻より前の日の区画を読まない（既定区画は常に読む）。未送信の行は古い区画に戻らないため、
+-- 区画の保守が未送信の行を持つ最も古い区画の開始時刻まで進める。
+CREATE TABLE partition_claim_bounds (
+  table_name TEXT PRIMARY KEY,
+  claim_from TIMESTAMPTZ NOT NULL
+);
+
+INSERT INTO partition_claim_bounds (table_name, claim_from)
+VALUES ('outbox_events', '-infinity');
+
+-- outbox_events
+-- 主キーには区画キーを含める必要があるため (event_id, created_at) にする。event_id はアプリが採番する UUID。
+-- identity 列は Postgres 16 ではパーティション表に置けないため、publish_seq は独立したシーケンスで採番する。
+DROP TRIGGER outbox_events_notify_inserted ON outbox_events;
+
+ALTER TABLE outbox_events RENAME TO outbox_events_unpartitioned;
+
+ALTER TABLE outbox_events_unpartitioned
+  RENAME CONSTRAINT outbox_events_pkey TO outbox_events_unpartitioned_pkey;
+
+DROP INDEX outbox_pick_idx;
+DROP INDEX outbox_inflight_lease_idx;
+DROP INDEX outbox_published_at_idx;
+DROP INDEX outbox_partition_pick_idx;
+DROP INDEX outbox_aggregate_unpublished_idx;
+
+CREATE SEQUENCE outbox_publish_seq;
+
+CREATE TABLE outbox_events (
+  event_id          UUID NOT NULL,
+  event_type        TEXT NOT NULL,
+  aggregate_key     TEXT NOT NULL,
+  payload           JSONB,
+  payload_proto     BYTEA,
+
+  status            TEXT NOT NULL CHECK (status IN ('PENDING','IN_FLIGHT','PUBLISHED','FAILED')),
+  attempt_count     INT  NOT NULL DEFAULT 0,
+
+  next_retry_at     TIMESTAMPTZ,
+  created_at        TIMESTAMPTZ NOT NULL DEFAULT now(),
+  published_at      TIMESTAMPTZ,
+
+  locked_by         TEXT,
+  locked_at         TIMESTAMPTZ,
+  lease_until       TIMESTAMPTZ,
+
+  last_error        TEXT,
+
+  publish_seq       BIGINT NOT NULL DEFAULT nextval('outbox_publish_seq'),
+  publish_partition SMALLINT
+    GENERATED ALWAYS AS (mod(abs(hashtext(aggregate_key)::bigint), 64)::smallint) STORED,
+
+  CONSTRAINT outbox_events_payload_present CHECK (payload IS NOT NULL OR payload_proto IS NOT NULL),
+  PRIMARY KEY (event_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE outbox_publish_seq OWNED BY outbox_events.publish_seq;
+
+-- 日の区画が無い時刻（移行前の行、区画の作成が遅れた日）の受け皿。行単位の DELETE で掃除する。
+CREATE TABLE outbox_events_default PARTITION OF outbox_events DEFAULT;
+
+SELECT create_daily_partitions(
+  'outbox_events', (now() AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date + 7, 0);
+
+INSERT INTO outbox_events (
+  event_id, event_type, aggregate_key, payload, payload_proto, status, attempt_count,
+  next_retry_at, created_at, published_at, locked_by, locked_at, lease_until, last_error,
+  publish_seq
+)
+SELECT
+  event_id, event_type, aggregate_key, payload, payload_proto, status, attempt_count,
+  next_retry_at, created_at, published_at, locked_by, locked_at, lease_until, last_error,
+  publish_seq
+FROM outbox_events_unpartitioned;
+
+SELECT setval(
+  'outbox_publish_seq', COALESCE((SELECT max(publish_seq) FROM outbox_events), 0) + 1, false);
+
+DROP TABLE outbox_events_unpartitioned;
+
+CREATE INDEX outbox_pick_idx
+  ON outbox_events (status, next_retry_at, created_at);
+
+CREATE INDEX outbox_inflight_lease_idx
+  ON outbox_events (lease_until, created_at)
+  WHERE status = 'IN_FLIGHT';
+
+CREATE INDEX outbox_partition_pick_idx
+  ON outbox_events (publish_partition, publish_seq)
+  WHERE status IN ('PENDING', 'IN_FLIGHT');
+
+CREATE INDEX outbox_aggregate_unpublished_idx
+  ON outbox_events (aggregate_key, publish_seq)
+  WHERE status IN ('PENDING', 'IN_FLIGHT');
+
+-- 行単位の削除が残るのは既定区画だけなので、削除用の索引は既定区画にだけ置く
+CREATE INDEX outbox_default_published_at_idx
+  ON outbox_events_default (published_at)
+  WHERE status = 'PUBLISHED';
+
+CREATE TRIGGER outbox_events_notify_inserted
+  AFTER INSERT ON outbox_events
+  FOR EACH STATEMENT
+  EXECUTE FUNCTION notify_outbox_inserted();
+
+-- entitlement_audit
+ALTER TABLE entitlement_audit RENAME TO entitlement_audit_unpartitioned;
+
+ALTER TABLE entitlement_audit_unpartitioned
+  RENAME CONSTRAINT entitlement_audit_pkey TO entitlement_audit_unpartitioned_pkey;
+
+CREATE TABLE entitlement_audit (
+  audit_id    UUID NOT NULL,
+  occurred_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  user_id     TEXT NOT NULL,
+  stock_keeping_unit         TEXT NOT NULL,
+  action      TEXT NOT NULL CHECK (action IN ('GRANT','REVOKE')),
+  source      TEXT,
+  source_id   TEXT,
+  request_id  TEXT,
+  detail      JSONB,
+  PRIMARY KEY (audit_id, occurred_at)
+) PARTITION BY RANGE (occurred_at);
+
+CREATE TABLE entitlement_audit_default PARTITION OF entitlement_audit DEFAULT;
+
+SELECT create_daily_partitions(
+  'entitlement_audit', (now() AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date + 7, 0);
+
+INSERT INTO entitlement_audit (
+  audit_id, occurred_at, user_id, stock_keeping_unit, action, source, source_id, request_id, detail
+)
+SELECT
+  audit_id, occurred_at, user_id, stock_keeping_unit, action, source, source_id, request_id, detail
+FROM entitlement_audit_unpartitioned;
+
+DROP TABLE entitlement_audit_unpartitioned;
+
+CREATE INDEX entitlement_audit_default_occurred_at_idx
+  ON entitlement_audit_default (occurred_at);
@@ -0,0 +1,23 @@
+-- どこで: Entitlement Redis Lua スクリプト
+-- 何を: コミット済みの version を下限（floor）に記録し、初めて知った version なら一覧を消す
+-- なぜ: コミットした replica と、イベントを受けた全 replica が同じ変更を何度通知しても、
+--       消すのは最初の 1 回だけにし、以後に載る一覧は floor で古さを判定できるようにするため
+--
+-- 想定 I/F:
+-- KEYS[1] = {prefix}{userId}（一覧の JSON）
+-- KEYS[2] = {prefix}{userId}:floor（stock_keeping_unit -> コミット済みの version の hash）
+-- ARGV[1] = stock_keeping_unit
+-- ARGV[2] = コミット済みの version
+-- ARGV[3] = 保持期間 millis
+--
+-- 戻り値: 1 = 下限を進めて一覧を消した / 0 = 同じか新しい version を記録済み
+
+local current = tonumber(redis.call('HGET', KEYS[2], ARGV[1]) or '-1')
+if tonumber(ARGV[2]) <= current then
+  return 0
+end
+
+redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+redis.call('PEXPIRE', KEYS[2], ARGV[3])
+redis.call('DEL', KEYS[1])
+return 1
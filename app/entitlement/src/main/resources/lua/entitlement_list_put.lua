@@ -0,0 +1,28 @@
+-- どこで: Entitlement Redis Lua スクリプト
+-- 何を: DB から読んだ権利一覧を、version の下限（floor）をすべて満たすときだけ Redis に載せる
+-- なぜ: DB を読んでから載せるまでの間にコミットされた変更があると、古い一覧が無効化の後に載って残るため
+--
+-- 想定 I/F:
+-- KEYS[1] = {prefix}{userId}（一覧の JSON）
+-- KEYS[2] = {prefix}{userId}:floor（stock_keeping_unit -> コミット済みの version の hash）
+-- ARGV[1] = 保持期間 millis
+-- ARGV[2] = 一覧の JSON
+-- ARGV[3..] = 一覧に含む stock_keeping_unit と version の組（sku, version, sku, version, ...）
+--
+-- 戻り値: 1 = 載せた / 0 = 一覧より新しい version がコミット済みのため載せなかった
+
+local versions = {}
+for i = 3, #ARGV, 2 do
+  versions[ARGV[i]] = tonumber(ARGV[i + 1])
+end
+
+local floor = redis.call('HGETALL', KEYS[2])
+for i = 1, #floor, 2 do
+  local version = versions[floor[i]]
+  if version == nil or version < tonumber(floor[i + 1]) then
+    return 0
+  end
+end
+
+redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[1])
+return 1
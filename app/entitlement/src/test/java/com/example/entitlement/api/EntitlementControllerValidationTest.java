@@ -68,4 +68,42 @@ class EntitlementControllerValidationTest {
         .andExpect(jsonPath("$.code").value("BAD_REQUEST"))
         .andExpect(jsonPath("$.message").value("user_id is required"));
   }
+
+  @Test
+  void grantBatchReturnsBadRequestWhenItemsEmpty() throws Exception {
+    mockMvc
+        .perform(
+            post("/v1/entitlements/grants:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"items\": []}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.code").value("BAD_REQUEST"))
+        .andExpect(jsonPath("$.message").value("items is required"));
+  }
+
+  @Test
+  void revokeBatchReturnsBadRequestWhenItemIdempotencyKeyMissing() throws Exception {
+    final String body =
+        """
+        {
+          "items": [
+            {
+              "user_id": "user-1",
+              "stock_keeping_unit": "sku-1",
+              "reason": "purchase",
+              "purchase_id": "purchase-1"
+            }
+          ]
+        }
+        """;
+
+    mockMvc
+        .perform(
+            post("/v1/entitlements/revokes:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.code").value("BAD_REQUEST"))
+        .andExpect(jsonPath("$.message").value("idempotency_key is required"));
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * どこで: Entitlement ベンチマーク
+ * 何を: grant を 1 件ずつ呼ぶ場合と一括 API でまとめて呼ぶ場合の処理件数/秒を比べる
+ * なぜ: 購入の取り込みや配布を一括にしたときの効果（目安は 10 倍以上）を実 Postgres で数値として確かめるため
+ */
+package com.example.entitlement.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.entitlement.AbstractPostgresContainerTest;
+import com.example.entitlement.api.EntitlementBatchItem;
+import com.example.entitlement.api.EntitlementBatchItemResult;
+import com.example.entitlement.api.EntitlementBatchRequest;
+import com.example.entitlement.api.EntitlementBatchResponse;
+import com.example.entitlement.api.EntitlementRequest;
+import com.example.entitlement.service.EntitlementService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+class EntitlementBatchThroughputBenchmarkTest extends AbstractPostgresContainerTest {
+
+  private static final int WARMUP_ITEMS = 1_000;
+  private static final int MEASURED_ITEMS = 10_000;
+  private static final int BATCH_SIZE = EntitlementBatchRequest.MAX_ITEMS;
+  private static final int ROUNDS = 3;
+
+  @Autowired private EntitlementService entitlementService;
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void setUp() {
+    cleanup();
+  }
+
+  @Test
+  void compareGrantThroughput() {
+    runSingle(WARMUP_ITEMS);
+    runBatch(WARMUP_ITEMS);
+    double singleBest = 0;
+    double batchBest = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      cleanup();
+      singleBest = Math.max(singleBest, runSingle(MEASURED_ITEMS));
+      cleanup();
+      batchBest = Math.max(batchBest, runBatch(MEASURED_ITEMS));
+    }
+    System.out.printf(
+        "single: %.0f items/s, batch(%d): %.0f items/s, speedup x%.1f%n",
+        singleBest, BATCH_SIZE, batchBest, batchBest / singleBest);
+  }
+
+  // 1 件ずつ API と同じトランザクション（@Transactional のサービス呼び出し）で付与し、件数/秒を返す
+  private double runSingle(int items) {
+    final String runId = UUID.randomUUID().toString();
+    final long start = System.nanoTime();
+    for (int i = 0; i < items; i++) {
+      entitlementService.grant(
+          new EntitlementRequest("user-" + runId + "-" + i, "sku-1", "purchase", "p-" + i),
+          runId + "-" + i,
+          "trace-" + i);
+    }
+    return itemsPerSecond(items, System.nanoTime() - start);
+  }
+
+  // BATCH_SIZE 件ずつ一括 API で付与し、件数/秒を返す
+  private double runBatch(int items) {
+    final String runId = UUID.randomUUID().toString();
+    final long start = System.nanoTime();
+    for (int offset = 0; offset < items; offset += BATCH_SIZE) {
+      final List<EntitlementBatchItem> batch = new ArrayList<>(BATCH_SIZE);
+      for (int i = offset; i < Math.min(items, offset + BATCH_SIZE); i++) {
+        batch.add(
+            new EntitlementBatchItem(
+                runId + "-" + i, "user-" + runId + "-" + i, "sku-1", "purchase", "p-" + i));
+      }
+      final EntitlementBatchResponse response =
+          entitlementService.grantBatch(new EntitlementBatchRequest(batch), "trace-" + offset);
+      assertThat(response.results())
+          .extracting(EntitlementBatchItemResult::status)
+          .containsOnly(HttpStatus.OK.value());
+    }
+    return itemsPerSecond(items, System.nanoTime() - start);
+  }
+
+  private void cleanup() {
+    final MapSqlParameterSource params = new MapSqlParameterSource();
+    jdbcTemplate.update("DELETE FROM entitlement_audit", params);
+    jdbcTemplate.update("DELETE FROM outbox_events", params);
+    jdbcTemplate.update("DELETE FROM entitlements", params);
+    jdbcTemplate.update("DELETE FROM idempotency_keys", params);
+  }
+
+  private static double itemsPerSecond(int items, long elapsedNanos) {
+    return items / (elapsedNanos / 1_000_000_000.0);
+  }
+}
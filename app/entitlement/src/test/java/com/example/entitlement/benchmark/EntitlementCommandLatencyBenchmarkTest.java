@@ -0,0 +1,160 @@
+/*
+ * どこで: Entitlement ベンチマーク
+ * 何を: grant/revoke 1 件の所要時間を、文ごとに往復する従来経路と CTE 連鎖の 1 文経路で比べる
+ * なぜ: トランザクション内の往復回数を 6 から 2 に減らした効果を実 Postgres で数値として確かめるため
+ */
+package com.example.entitlement.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.entitlement.AbstractPostgresContainerTest;
+import com.example.entitlement.api.EntitlementRequest;
+import com.example.entitlement.api.EntitlementResponse;
+import com.example.entitlement.config.EntitlementCommandProperties;
+import com.example.entitlement.config.EntitlementIdempotencyProperties;
+import com.example.entitlement.repository.EntitlementAuditRepository;
+import com.example.entitlement.repository.EntitlementCommandRepository;
+import com.example.entitlement.repository.EntitlementRepository;
+import com.example.entitlement.repository.IdempotencyKeyRepository;
+import com.example.entitlement.repository.OutboxEventRepository;
+import com.example.entitlement.service.EntitlementEventCodec;
+import com.example.entitlement.service.EntitlementMetrics;
+import com.example.entitlement.service.EntitlementService;
+import com.example.entitlement.service.IdempotencyLockKeyGenerator;
+import com.example.entitlement.service.RequestHasher;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("test")
+class EntitlementCommandLatencyBenchmarkTest extends AbstractPostgresContainerTest {
+
+  private static final int WARMUP_COMMANDS = 1_000;
+  // grant と revoke を交互に流すため偶数にする
+  private static final int MEASURED_COMMANDS = 5_000;
+  private static final int ROUNDS = 3;
+
+  @Autowired private EntitlementRepository entitlementRepository;
+  @Autowired private OutboxEventRepository outboxEventRepository;
+  @Autowired private EntitlementAuditRepository auditRepository;
+  @Autowired private IdempotencyKeyRepository idempotencyKeyRepository;
+  @Autowired private EntitlementCommandRepository commandRepository;
+  @Autowired private IdempotencyLockKeyGenerator lockKeyGenerator;
+  @Autowired private RequestHasher requestHasher;
+  @Autowired private ObjectMapper objectMapper;
+  @Autowired private EntitlementIdempotencyProperties idempotencyProperties;
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private TransactionTemplate transactionTemplate;
+
+  @BeforeEach
+  void setUp() {
+    transactionTemplate = new TransactionTemplate(transactionManager);
+    cleanup();
+  }
+
+  @Test
+  void compareCommandLatency() {
+    final EntitlementService multiStatement = newService(false);
+    final EntitlementService singleStatement = newService(true);
+    run(multiStatement, WARMUP_COMMANDS);
+    run(singleStatement, WARMUP_COMMANDS);
+    long[] multiBest = null;
+    long[] singleBest = null;
+    for (int round = 0; round < ROUNDS; round++) {
+      cleanup();
+      multiBest = better(multiBest, run(multiStatement, MEASURED_COMMANDS));
+      cleanup();
+      singleBest = better(singleBest, run(singleStatement, MEASURED_COMMANDS));
+    }
+    System.out.printf(
+        "multi-statement: p50=%.0fus p99=%.0fus, single-statement: p50=%.0fus p99=%.0fus,"
+            + " p50 speedup x%.1f%n",
+        percentileMicros(multiBest, 0.50),
+        percentileMicros(multiBest, 0.99),
+        percentileMicros(singleBest, 0.50),
+        percentileMicros(singleBest, 0.99),
+        percentileMicros(multiBest, 0.50) / percentileMicros(singleBest, 0.50));
+  }
+
+  // 利用者ごとに grant と revoke を 1 回ずつ流し、1 件ごとの所要時間(ns)を昇順で返す。
+  // 時間にはトランザクションの開始/コミットも含め、API 1 件分の DB 待ちとして比べる。
+  private long[] run(EntitlementService service, int commands) {
+    final long[] latencies = new long[commands];
+    final String runId = UUID.randomUUID().toString();
+    for (int i = 0; i < commands; i++) {
+      final EntitlementRequest request =
+          new EntitlementRequest("user-" + runId + "-" + (i / 2), "sku-1", "purchase", "p-" + i);
+      final String idempotencyKey = runId + "-" + i;
+      final String traceId = "trace-" + i;
+      final boolean grant = i % 2 == 0;
+      final long start = System.nanoTime();
+      final EntitlementResponse response =
+          transactionTemplate.execute(
+              status ->
+                  grant
+                      ? service.grant(request, idempotencyKey, traceId)
+                      : service.revoke(request, idempotencyKey, traceId));
+      latencies[i] = System.nanoTime() - start;
+      assertThat(response.version()).isEqualTo(grant ? 0 : 1);
+    }
+    Arrays.sort(latencies);
+    return latencies;
+  }
+
+  // Spring 管理の Bean は片方の設定しか持てないため、経路ごとにサービスを組み立てる。
+  // @Transactional が効かないので、トランザクションは呼び出し側の TransactionTemplate で張る。
+  private EntitlementService newService(boolean singleStatement) {
+    return new EntitlementService(
+        entitlementRepository,
+        outboxEventRepository,
+        auditRepository,
+        idempotencyKeyRepository,
+        commandRepository,
+        lockKeyGenerator,
+        requestHasher,
+        new EntitlementEventCodec(objectMapper),
+        objectMapper,
+        idempotencyProperties,
+        new EntitlementCommandProperties(singleStatement),
+        new EntitlementMetrics(new SimpleMeterRegistry()),
+        Optional.empty(),
+        Clock.systemUTC());
+  }
+
+  private void cleanup() {
+    final MapSqlParameterSource params = new MapSqlParameterSource();
+    jdbcTemplate.update("DELETE FROM entitlement_audit", params);
+    jdbcTemplate.update("DELETE FROM outbox_events", params);
+    jdbcTemplate.update("DELETE FROM entitlements", params);
+    jdbcTemplate.update("DELETE FROM idempotency_keys", params);
+  }
+
+  private static long[] better(long[] best, long[] candidate) {
+    if (best == null) {
+      return candidate;
+    }
+    return percentileMicros(candidate, 0.50) < percentileMicros(best, 0.50) ? candidate : best;
+  }
+
+  private static double percentileMicros(long[] sorted, double quantile) {
+    final int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+    return sorted[Math.max(index, 0)] / 1_000.0;
+  }
+}
@@ -33,8 +33,17 @@ class EntitlementSchedulePropertiesBindingTest {
               "entitlement.outbox.error-message-max-length=1000",
               "entitlement.outbox.lease=30s",
               "entitlement.outbox.published-ttl=24h",
+              "entitlement.outbox.ack-timeout=5s",
+              "entitlement.outbox.listen.enabled=true",
+              "entitlement.outbox.listen.poll-timeout=2s",
+              "entitlement.outbox.partitioning.lease-ttl=20s",
               "entitlement.retention.enabled=true",
-              "entitlement.retention.cleanup-interval=1h");
+              "entitlement.retention.cleanup-interval=1h",
+              "entitlement.table-partitions.enabled=true",
+              "entitlement.table-partitions.lock-timeout=2s",
+              "entitlement.read-cache.enabled=true",
+              "entitlement.read-cache.ttl=30s",
+              "entitlement.read-cache.redis.ttl=5m");
 
   @Test
   void contextStartsAndBindsDurationFields() {
@@ -45,6 +54,16 @@ class EntitlementSchedulePropertiesBindingTest {
               context.getBean(EntitlementOutboxProperties.class);
           final EntitlementRetentionProperties retentionProperties =
               context.getBean(EntitlementRetentionProperties.class);
+          final EntitlementOutboxListenProperties listenProperties =
+              context.getBean(EntitlementOutboxListenProperties.class);
+          final EntitlementOutboxPartitionProperties partitionProperties =
+              context.getBean(EntitlementOutboxPartitionProperties.class);
+          final EntitlementTablePartitionProperties tablePartitionProperties =
+              context.getBean(EntitlementTablePartitionProperties.class);
+          final EntitlementReadCacheProperties readCacheProperties =
+              context.getBean(EntitlementReadCacheProperties.class);
+          final EntitlementReadCacheRedisProperties readCacheRedisProperties =
+              context.getBean(EntitlementReadCacheRedisProperties.class);
 
           assertThat(outboxProperties.pollInterval()).isEqualTo(Duration.ofSeconds(1));
           assertThat(outboxProperties.backoffBase()).isEqualTo(Duration.ofSeconds(1));
@@ -52,7 +71,27 @@ class EntitlementSchedulePropertiesBindingTest {
           assertThat(outboxProperties.backoffMin()).isEqualTo(Duration.ofSeconds(1));
           assertThat(outboxProperties.lease()).isEqualTo(Duration.ofSeconds(30));
           assertThat(outboxProperties.publishedTtl()).isEqualTo(Duration.ofHours(24));
+          assertThat(outboxProperties.ackTimeout()).isEqualTo(Duration.ofSeconds(5));
+          // 未指定の間隔は既定値で埋まる
+          assertThat(outboxProperties.failedCountInterval()).isEqualTo(Duration.ofSeconds(30));
           assertThat(retentionProperties.cleanupInterval()).isEqualTo(Duration.ofHours(1));
+          assertThat(retentionProperties.auditTtl()).isEqualTo(Duration.ofDays(365));
+          assertThat(tablePartitionProperties.enabled()).isTrue();
+          assertThat(tablePartitionProperties.lockTimeout()).isEqualTo(Duration.ofSeconds(2));
+          assertThat(tablePartitionProperties.premakeDays()).isEqualTo(7);
+          assertThat(tablePartitionProperties.maintenanceInterval()).isEqualTo(Duration.ofHours(1));
+          assertThat(listenProperties.enabled()).isTrue();
+          assertThat(listenProperties.pollTimeout()).isEqualTo(Duration.ofSeconds(2));
+          assertThat(listenProperties.reconnectInterval()).isEqualTo(Duration.ofSeconds(5));
+          assertThat(partitionProperties.enabled()).isFalse();
+          assertThat(partitionProperties.leaseTtl()).isEqualTo(Duration.ofSeconds(20));
+          assertThat(partitionProperties.renewInterval()).isEqualTo(Duration.ofSeconds(5));
+          assertThat(readCacheProperties.enabled()).isTrue();
+          assertThat(readCacheProperties.ttl()).isEqualTo(Duration.ofSeconds(30));
+          assertThat(readCacheProperties.maxEntries()).isEqualTo(100_000);
+          assertThat(readCacheRedisProperties.enabled()).isFalse();
+          assertThat(readCacheRedisProperties.ttl()).isEqualTo(Duration.ofMinutes(5));
+          assertThat(readCacheRedisProperties.keyPrefix()).isEqualTo("entitlement:list:");
           // 既存の値も合わせてバインドされることを簡単に確認する
           assertThat(outboxProperties.batchSize()).isEqualTo(50);
           assertThat(outboxProperties.maxAttempts()).isEqualTo(10);
@@ -62,7 +101,12 @@ class EntitlementSchedulePropertiesBindingTest {
   @Configuration
   @EnableConfigurationProperties({
     EntitlementOutboxProperties.class,
-    EntitlementRetentionProperties.class
+    EntitlementOutboxListenProperties.class,
+    EntitlementOutboxPartitionProperties.class,
+    EntitlementTablePartitionProperties.class,
+    EntitlementRetentionProperties.class,
+    EntitlementReadCacheProperties.class,
+    EntitlementReadCacheRedisProperties.class
   })
   static class TestConfiguration {
     // ApplicationContextRunner 用の最小構成
@@ -0,0 +1,90 @@
+/*
+ * どこで: Entitlement 読み取りキャッシュのイベント購読テスト
+ * 何を: イベントの version を読み取りキャッシュへ渡すことと、切断/再接続時の扱いを確認する
+ * なぜ: 取りこぼしたイベントの分の古い一覧を、再接続の後に返し続けないことを保証するため
+ */
+package com.example.entitlement.nats;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.example.entitlement.config.EntitlementNatsProperties;
+import com.example.entitlement.service.EntitlementReadCache;
+import com.example.proto.entitlement.EntitlementEvent;
+import io.nats.client.Connection;
+import io.nats.client.Message;
+import io.nats.client.Statistics;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EntitlementReadCacheSubscriberTest {
+
+  private static final EntitlementNatsProperties PROPERTIES =
+      new EntitlementNatsProperties(
+          "entitlement.events", "entitlement-events", Duration.ofMinutes(2));
+
+  @Mock private Connection connection;
+
+  @Mock private Statistics statistics;
+
+  @Mock private EntitlementReadCache readCache;
+
+  @Mock private Message message;
+
+  @Test
+  void handleMessagePassesEventVersionToCache() {
+    final EntitlementEvent event =
+        EntitlementEvent.newBuilder()
+            .setEventId("event-1")
+            .setEventType(EntitlementEvent.EventType.ENTITLEMENT_REVOKED)
+            .setOccurredAt("2026-02-24T00:00:00Z")
+            .setUserId("user-1")
+            .setStockKeepingUnit("sku-1")
+            .setVersion(3)
+            .build();
+    when(message.getData()).thenReturn(event.toByteArray());
+
+    newSubscriber().handleMessage(message);
+
+    verify(readCache).onEvent("user-1", "sku-1", 3, Instant.parse("2026-02-24T00:00:00Z"));
+  }
+
+  @Test
+  void handleMessageIgnoresUnparsablePayload() {
+    when(message.getData()).thenReturn("not-protobuf".getBytes(StandardCharsets.UTF_8));
+
+    newSubscriber().handleMessage(message);
+
+    verifyNoInteractions(readCache);
+  }
+
+  @Test
+  void isSyncedResyncsOnceAfterReconnect() {
+    // 起動時に見た再接続回数は 0
+    final EntitlementReadCacheSubscriber subscriber = newSubscriber();
+
+    when(connection.getStatus()).thenReturn(Connection.Status.RECONNECTING);
+    assertThat(subscriber.isSynced()).isFalse();
+
+    when(connection.getStatus()).thenReturn(Connection.Status.CONNECTED);
+    when(connection.getStatistics()).thenReturn(statistics);
+    when(statistics.getReconnects()).thenReturn(1L);
+    assertThat(subscriber.isSynced()).isTrue();
+    assertThat(subscriber.isSynced()).isTrue();
+
+    verify(readCache, times(1)).invalidateAll();
+  }
+
+  private EntitlementReadCacheSubscriber newSubscriber() {
+    return new EntitlementReadCacheSubscriber(connection, PROPERTIES, readCache);
+  }
+}
@@ -10,7 +10,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.example.entitlement.AbstractPostgresContainerTest;
 import com.example.entitlement.model.OutboxEventRecord;
+import com.example.entitlement.model.OutboxFailureUpdate;
 import com.example.entitlement.model.OutboxStatus;
+import com.example.proto.entitlement.EntitlementEvent;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
@@ -30,6 +36,8 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
 
   private static final Duration TTL = Duration.ofHours(24);
   private static final Instant BASE_TIME = Instant.parse("2026-01-17T00:00:00Z");
+  private static final ByteString PAYLOAD_PROTO =
+      EntitlementEvent.newBuilder().setEventId("event-1").setVersion(3).build().toByteString();
 
   @Autowired private OutboxEventRepository outboxEventRepository;
 
@@ -47,12 +55,128 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
 
     final int inserted =
         outboxEventRepository.insert(
-            eventId, "EntitlementGranted", "user-1:sku-1", "{}", createdAt);
+            eventId, "EntitlementGranted", "user-1:sku-1", PAYLOAD_PROTO, createdAt);
 
     assertThat(inserted).isEqualTo(1);
     assertThat(fetchCreatedAt(eventId)).isEqualTo(createdAt);
   }
 
+  @Test
+  void claimPendingReturnsProtoPayloadAndLegacyJsonPayload() {
+    final UUID protoRow = UUID.randomUUID();
+    final UUID legacyRow = UUID.randomUUID();
+    outboxEventRepository.insert(
+        protoRow, "EntitlementGranted", "user-1:sku-1", PAYLOAD_PROTO, BASE_TIME);
+    insertClaimableRow(legacyRow, "PENDING", null, BASE_TIME.plusSeconds(1), null, null, null);
+
+    final List<OutboxEventRecord> claimed =
+        outboxEventRepository.claimPending(
+            10, BASE_TIME.plusSeconds(5), BASE_TIME.plusSeconds(35), "worker-1");
+
+    assertThat(claimed).extracting(OutboxEventRecord::eventId).containsExactly(protoRow, legacyRow);
+    assertThat(claimed.get(0).payloadProto()).isEqualTo(PAYLOAD_PROTO);
+    assertThat(claimed.get(0).payloadJson()).isNull();
+    // protobuf 化前の行は JSON だけを持つ
+    assertThat(claimed.get(1).payloadProto()).isNull();
+    assertThat(claimed.get(1).payloadJson()).isEqualTo("{}");
+  }
+
+  @Test
+  void claimPendingInOrderClaimsOnlyHeadOfEachAggregate() {
+    final UUID grant = UUID.randomUUID();
+    final UUID revoke = UUID.randomUUID();
+    final UUID otherKey = UUID.randomUUID();
+    // created_at は逆順にしても、書き込み順（publish_seq）で並ぶ
+    outboxEventRepository.insert(
+        grant, "EntitlementGranted", "user-1:sku-1", PAYLOAD_PROTO, BASE_TIME.plusSeconds(2));
+    outboxEventRepository.insert(
+        revoke, "EntitlementRevoked", "user-1:sku-1", PAYLOAD_PROTO, BASE_TIME.plusSeconds(1));
+    outboxEventRepository.insert(
+        otherKey, "EntitlementGranted", "user-2:sku-1", PAYLOAD_PROTO, BASE_TIME);
+    final List<Integer> partitions =
+        List.of(fetchPublishPartition(grant), fetchPublishPartition(otherKey));
+    final Instant now = BASE_TIME.plusSeconds(10);
+
+    final List<OutboxEventRecord> first =
+        outboxEventRepository.claimPendingInOrder(
+            10, partitions, now, now.plusSeconds(30), "worker-1");
+
+    // 同じキーの後続は、先頭が PUBLISHED になるまで claim しない
+    assertThat(first)
+        .extracting(OutboxEventRecord::eventId)
+        .containsExactlyInAnyOrder(grant, otherKey);
+    outboxEventRepository.markFailures(
+        List.of(
+            new OutboxFailureUpdate(
+                grant,
+                BASE_TIME.plusSeconds(2),
+                1,
+                OutboxStatus.PENDING,
+                now.plusSeconds(60),
+                "retry")),
+        "worker-1");
+    // 再試行待ちの先頭も後続を止める
+    assertThat(
+            outboxEventRepository.claimPendingInOrder(
+                10, partitions, now, now.plusSeconds(30), "worker-2"))
+        .isEmpty();
+
+    outboxEventRepository.markPublished(
+        first.stream().filter(record -> record.eventId().equals(otherKey)).toList(),
+        "worker-1",
+        now);
+    final List<OutboxEventRecord> retried =
+        outboxEventRepository.claimPendingInOrder(
+            10, partitions, now.plusSeconds(61), now.plusSeconds(91), "worker-2");
+    assertThat(retried).extracting(OutboxEventRecord::eventId).containsExactly(grant);
+    outboxEventRepository.markPublished(retried, "worker-2", now.plusSeconds(61));
+
+    assertThat(
+            outboxEventRepository.claimPendingInOrder(
+                10, partitions, now.plusSeconds(62), now.plusSeconds(92), "worker-2"))
+        .extracting(OutboxEventRecord::eventId)
+        .containsExactly(revoke);
+  }
+
+  @Test
+  void claimPendingInOrderSkipsPartitionsNotLeased() {
+    final UUID eventId = UUID.randomUUID();
+    outboxEventRepository.insert(
+        eventId, "EntitlementGranted", "user-1:sku-1", PAYLOAD_PROTO, BASE_TIME);
+    final int partition = fetchPublishPartition(eventId);
+    final Instant now = BASE_TIME.plusSeconds(1);
+
+    assertThat(
+            outboxEventRepository.claimPendingInOrder(
+                10, List.of((partition + 1) % 64), now, now.plusSeconds(30), "worker-1"))
+        .isEmpty();
+    assertThat(
+            outboxEventRepository.claimPendingInOrder(
+                10, List.of(), now, now.plusSeconds(30), "worker-1"))
+        .isEmpty();
+    assertThat(
+            outboxEventRepository.claimPendingInOrder(
+                10, List.of(partition), now, now.plusSeconds(30), "worker-1"))
+        .extracting(OutboxEventRecord::eventId)
+        .containsExactly(eventId);
+  }
+
+  @Test
+  void protobufVarintFieldMatchesProtobufEncoding() throws IOException {
+    // DB 採番の version を足す関数が、protobuf-java と同じバイト列を作ることを確認する
+    for (long value : new long[] {1L, 127L, 128L, 300L, 1L << 35, Long.MAX_VALUE}) {
+      final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      final CodedOutputStream output = CodedOutputStream.newInstance(expected);
+      output.writeInt64(EntitlementEvent.VERSION_FIELD_NUMBER, value);
+      output.flush();
+      assertThat(fetchVarintField(EntitlementEvent.VERSION_FIELD_NUMBER, value))
+          .as("value=%d", value)
+          .isEqualTo(expected.toByteArray());
+    }
+    // proto3 の既定値はフィールドごと省略する
+    assertThat(fetchVarintField(EntitlementEvent.VERSION_FIELD_NUMBER, 0L)).isEmpty();
+  }
+
   @Test
   void deletePublishedOlderThanRemovesOnlyOldPublished() {
     final Instant threshold = BASE_TIME.minus(TTL);
@@ -159,12 +283,19 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
     insertClaimableRow(
         eventId, "IN_FLIGHT", null, createdAt, "worker-1", lockedAt, lockedAt.plusSeconds(30));
 
-    final int updated = outboxEventRepository.markPublished(eventId, "worker-2", BASE_TIME);
-    assertThat(updated).isZero();
+    final List<OutboxEventRecord> claimed = List.of(claimedRecord(eventId, createdAt));
+    final List<UUID> updated = outboxEventRepository.markPublished(claimed, "worker-2", BASE_TIME);
+    assertThat(updated).isEmpty();
     assertThat(fetchStatus(eventId)).isEqualTo("IN_FLIGHT");
     assertThat(fetchLockedBy(eventId)).isEqualTo("worker-1");
-    final int updatedMatch = outboxEventRepository.markPublished(eventId, "worker-1", BASE_TIME);
-    assertThat(updatedMatch).isEqualTo(1);
+    // 区画キー（created_at）が違えば同じ event_id でも更新しない
+    assertThat(
+            outboxEventRepository.markPublished(
+                List.of(claimedRecord(eventId, createdAt.plusSeconds(1))), "worker-1", BASE_TIME))
+        .isEmpty();
+    final List<UUID> updatedMatch =
+        outboxEventRepository.markPublished(claimed, "worker-1", BASE_TIME);
+    assertThat(updatedMatch).containsExactly(eventId);
     assertThat(fetchStatus(eventId)).isEqualTo("PUBLISHED");
     assertThat(fetchLockedBy(eventId)).isNull();
     assertThat(fetchLockedAt(eventId)).isNull();
@@ -179,14 +310,14 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
     insertClaimableRow(
         eventId, "IN_FLIGHT", null, createdAt, "worker-1", lockedAt, lockedAt.plusSeconds(30));
 
-    final int updated =
-        outboxEventRepository.markFailure(eventId, "worker-2", 2, OutboxStatus.FAILED, null, "err");
-    assertThat(updated).isZero();
+    final List<OutboxFailureUpdate> failures =
+        List.of(new OutboxFailureUpdate(eventId, createdAt, 2, OutboxStatus.FAILED, null, "err"));
+    final List<UUID> updated = outboxEventRepository.markFailures(failures, "worker-2");
+    assertThat(updated).isEmpty();
     assertThat(fetchStatus(eventId)).isEqualTo("IN_FLIGHT");
     assertThat(fetchLockedBy(eventId)).isEqualTo("worker-1");
-    final int updatedMatch =
-        outboxEventRepository.markFailure(eventId, "worker-1", 2, OutboxStatus.FAILED, null, "err");
-    assertThat(updatedMatch).isEqualTo(1);
+    final List<UUID> updatedMatch = outboxEventRepository.markFailures(failures, "worker-1");
+    assertThat(updatedMatch).containsExactly(eventId);
     assertThat(fetchStatus(eventId)).isEqualTo("FAILED");
     assertThat(fetchLockedBy(eventId)).isNull();
     assertThat(fetchLockedAt(eventId)).isNull();
@@ -201,10 +332,12 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
     insertClaimableRow(
         eventId, "IN_FLIGHT", null, createdAt, "worker-1", lockedAt, lockedAt.plusSeconds(30));
 
-    final int updated =
-        outboxEventRepository.markFailure(
-            eventId, "worker-1", 2, OutboxStatus.PENDING, null, "err");
-    assertThat(updated).isEqualTo(1);
+    final List<UUID> updated =
+        outboxEventRepository.markFailures(
+            List.of(
+                new OutboxFailureUpdate(eventId, createdAt, 2, OutboxStatus.PENDING, null, "err")),
+            "worker-1");
+    assertThat(updated).containsExactly(eventId);
     assertThat(fetchStatus(eventId)).isEqualTo("PENDING");
   }
 
@@ -223,10 +356,13 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
         lockedAt,
         lockedAt.plusSeconds(30));
 
-    final int updated =
-        outboxEventRepository.markFailure(eventId, "worker-1", 3, OutboxStatus.FAILED, null, "err");
+    final List<UUID> updated =
+        outboxEventRepository.markFailures(
+            List.of(
+                new OutboxFailureUpdate(eventId, createdAt, 3, OutboxStatus.FAILED, null, "err")),
+            "worker-1");
 
-    assertThat(updated).isEqualTo(1);
+    assertThat(updated).containsExactly(eventId);
     assertThat(fetchStatus(eventId)).isEqualTo("FAILED");
     assertThat(fetchNextRetryAt(eventId)).isNull();
     assertThat(fetchLockedBy(eventId)).isNull();
@@ -234,6 +370,40 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
     assertThat(fetchLeaseUntil(eventId)).isNull();
   }
 
+  @Test
+  void markFailuresAppliesPerRowValuesInOneUpdate() {
+    final UUID retried = UUID.randomUUID();
+    final UUID failed = UUID.randomUUID();
+    final Instant lockedAt = BASE_TIME.minusSeconds(10);
+    final Instant nextRetryAt = BASE_TIME.plusSeconds(5);
+    insertClaimableRow(
+        retried, "IN_FLIGHT", null, BASE_TIME, "worker-1", lockedAt, lockedAt.plusSeconds(30));
+    insertClaimableRow(
+        failed, "IN_FLIGHT", null, BASE_TIME, "worker-1", lockedAt, lockedAt.plusSeconds(30));
+
+    final List<UUID> updated =
+        outboxEventRepository.markFailures(
+            List.of(
+                new OutboxFailureUpdate(
+                    retried, BASE_TIME, 1, OutboxStatus.PENDING, nextRetryAt, "retry"),
+                new OutboxFailureUpdate(
+                    failed, BASE_TIME, 10, OutboxStatus.FAILED, null, "gave up")),
+            "worker-1");
+
+    assertThat(updated).containsExactlyInAnyOrder(retried, failed);
+    assertThat(fetchStatus(retried)).isEqualTo("PENDING");
+    assertThat(fetchNextRetryAt(retried)).isEqualTo(nextRetryAt);
+    assertThat(fetchStatus(failed)).isEqualTo("FAILED");
+    assertThat(fetchNextRetryAt(failed)).isNull();
+    assertThat(outboxEventRepository.markPublished(List.of(), "worker-1", BASE_TIME)).isEmpty();
+  }
+
+  // claim の戻り値のうち、状態の書き戻しが使う event_id と created_at だけを持つ行
+  private static OutboxEventRecord claimedRecord(UUID eventId, Instant createdAt) {
+    return new OutboxEventRecord(
+        eventId, "EntitlementGranted", "user-1:sku-1", null, PAYLOAD_PROTO, 0, createdAt);
+  }
+
   private void insertOutboxRow(UUID eventId, String status, Instant publishedAt) {
     // publish対象外/対象を明確にするため、必要なカラムだけを明示的に投入する。
     final String sql =
@@ -321,6 +491,22 @@ class OutboxEventRepositoryTest extends AbstractPostgresContainerTest {
     jdbcTemplate.update(sql, params);
   }
 
+  private int fetchPublishPartition(UUID eventId) {
+    final Integer partition =
+        jdbcTemplate.queryForObject(
+            "SELECT publish_partition FROM outbox_events WHERE event_id = :eventId",
+            new MapSqlParameterSource().addValue("eventId", eventId),
+            Integer.class);
+    return partition == null ? -1 : partition;
+  }
+
+  private byte[] fetchVarintField(int fieldNumber, long value) {
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource().addValue("fieldNumber", fieldNumber).addValue("value", value);
+    return jdbcTemplate.queryForObject(
+        "SELECT protobuf_varint_field(:fieldNumber::int, :value::bigint)", params, byte[].class);
+  }
+
   private int countById(UUID eventId) {
     final MapSqlParameterSource params = new MapSqlParameterSource().addValue("eventId", eventId);
     final Integer count =
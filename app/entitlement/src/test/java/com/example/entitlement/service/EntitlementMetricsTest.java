@@ -8,10 +8,13 @@ package com.example.entitlement.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 class EntitlementMetricsTest {
@@ -28,6 +31,13 @@ class EntitlementMetricsTest {
     metrics.recordOutboxBacklogAge(createdAt, publishedAt);
     metrics.recordOutboxPublishDelay(createdAt, publishedAt);
     metrics.updateOutboxFailedCurrent(3);
+    metrics.recordOutboxPublish("published", 40);
+    metrics.recordOutboxPublish("retry", 0);
+    metrics.recordOutboxBatch(50, Duration.ofMillis(12));
+    metrics.updateOutboxPartitionsOwned(16);
+    metrics.recordOutboxWakeup("notify", false);
+    metrics.recordOutboxWakeup("notify", true);
+    metrics.recordOutboxWakeup("notify", true);
 
     final Counter command =
         registry
@@ -43,5 +53,64 @@ class EntitlementMetricsTest {
     assertThat(backlog.count()).isEqualTo(1L);
     assertThat(delay.count()).isEqualTo(1L);
     assertThat(failed.value()).isEqualTo(3.0d);
+    assertThat(registry.get("entitlement.outbox.partitions.owned").gauge().value())
+        .isEqualTo(16.0d);
+    assertThat(
+            registry
+                .get("entitlement.outbox.publish.total")
+                .tag("result", "published")
+                .counter()
+                .count())
+        .isEqualTo(40.0d);
+    // 0 件の結果はカウンタを作らない
+    assertThat(
+            registry.find("entitlement.outbox.publish.total").tag("result", "retry").counter())
+        .isNull();
+    final DistributionSummary batchSize = registry.get("entitlement.outbox.batch.size").summary();
+    assertThat(batchSize.totalAmount()).isEqualTo(50.0d);
+    assertThat(registry.get("entitlement.outbox.batch.duration").timer().count()).isEqualTo(1L);
+    assertThat(
+            registry
+                .get("entitlement.outbox.wakeup.total")
+                .tag("source", "notify")
+                .tag("coalesced", "true")
+                .counter()
+                .count())
+        .isEqualTo(2.0d);
+  }
+
+  @Test
+  void recordsReadCacheMetrics() {
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final EntitlementMetrics metrics = new EntitlementMetrics(registry);
+    final Instant occurredAt = Instant.parse("2026-02-24T00:00:00Z");
+
+    metrics.recordReadCache("local_hit");
+    metrics.recordReadCache("local_hit");
+    metrics.recordReadCache("miss");
+    metrics.recordReadCacheInvalidation("event");
+    metrics.recordReadCacheStaleness(occurredAt, occurredAt.plusMillis(250));
+    // 時計のずれで逆転した値は記録しない
+    metrics.recordReadCacheStaleness(occurredAt, occurredAt.minusMillis(1));
+    metrics.bindReadCacheSize(() -> 42L);
+
+    assertThat(
+            registry
+                .get("entitlement.read_cache.requests.total")
+                .tag("result", "local_hit")
+                .counter()
+                .count())
+        .isEqualTo(2.0d);
+    assertThat(
+            registry
+                .get("entitlement.read_cache.invalidations.total")
+                .tag("source", "event")
+                .counter()
+                .count())
+        .isEqualTo(1.0d);
+    final Timer staleness = registry.get("entitlement.read_cache.staleness").timer();
+    assertThat(staleness.count()).isEqualTo(1L);
+    assertThat(staleness.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(250.0d);
+    assertThat(registry.get("entitlement.read_cache.size").gauge().value()).isEqualTo(42.0d);
   }
 }
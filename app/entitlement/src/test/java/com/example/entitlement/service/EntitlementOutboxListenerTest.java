@@ -0,0 +1,101 @@
+/*
+ * どこで: Entitlement outbox LISTEN の統合テスト
+ * 何を: outbox_events への INSERT がコミット時に NOTIFY され、LISTEN 接続がワーカーを起こすことを検証する
+ * なぜ: トリガと LISTEN 接続のどちらが壊れても、publish がポーリング間隔まで遅れるだけで気付けないため
+ */
+package com.example.entitlement.service;
+
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.example.entitlement.AbstractPostgresContainerTest;
+import com.example.entitlement.config.EntitlementOutboxListenProperties;
+import com.example.entitlement.repository.OutboxEventRepository;
+import com.google.protobuf.ByteString;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EntitlementOutboxListenerTest extends AbstractPostgresContainerTest {
+
+  @Autowired private DataSourceProperties dataSourceProperties;
+
+  @Autowired private OutboxEventRepository outboxEventRepository;
+
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  private EntitlementOutboxWorker worker;
+  private EntitlementOutboxListener listener;
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate.update("DELETE FROM outbox_events", new MapSqlParameterSource());
+    // test プロファイルでは outbox を無効にしているため、ワーカーを差し替えて直接組み立てる
+    worker = mock(EntitlementOutboxWorker.class);
+    listener =
+        new EntitlementOutboxListener(
+            worker,
+            new EntitlementOutboxListenProperties(
+                true, Duration.ofMillis(200), Duration.ofMillis(200)),
+            dataSourceProperties);
+    listener.start();
+    // 接続直後の 1 回は取りこぼし対策の起床。これで LISTEN 済みになったと分かる。
+    verify(worker, timeout(5000).times(1)).onNotify();
+  }
+
+  @AfterEach
+  void tearDown() {
+    listener.stop();
+  }
+
+  @Test
+  void wakesWorkerOnceWhenOutboxRowsAreCommitted() {
+    // 同一トランザクション内の 2 件は 1 通の NOTIFY にまとまる
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              insertOutboxRow();
+              insertOutboxRow();
+            });
+
+    verify(worker, after(1000).times(2)).onNotify();
+  }
+
+  @Test
+  void doesNotWakeWorkerWhenTransactionRollsBack() {
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              insertOutboxRow();
+              status.setRollbackOnly();
+            });
+
+    verify(worker, after(1000).times(1)).onNotify();
+  }
+
+  private void insertOutboxRow() {
+    outboxEventRepository.insert(
+        UUID.randomUUID(),
+        "EntitlementGranted",
+        "user-1:sku-1",
+        ByteString.copyFromUtf8("payload"),
+        Instant.now());
+  }
+}
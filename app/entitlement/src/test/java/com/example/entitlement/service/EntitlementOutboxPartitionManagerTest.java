@@ -0,0 +1,110 @@
+/*
+ * どこで: Entitlement outbox 区画リースの統合テスト
+ * 何を: 複数の publisher が区画を重ならずに等分し、停止した publisher の区画を残りが引き継ぐことを検証する
+ * なぜ: 区画が重なるとキーごとの順序が崩れ、取り残されると publish が止まるため
+ */
+package com.example.entitlement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.example.entitlement.AbstractPostgresContainerTest;
+import com.example.entitlement.config.EntitlementOutboxPartitionProperties;
+import com.example.entitlement.repository.OutboxPartitionLeaseRepository;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EntitlementOutboxPartitionManagerTest extends AbstractPostgresContainerTest {
+
+  private static final int PARTITIONS = 64;
+
+  @Autowired private OutboxPartitionLeaseRepository leaseRepository;
+
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+
+  private final Clock clock = Clock.fixed(Instant.parse("2025-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate.update(
+        "UPDATE outbox_partition_leases SET owner = NULL, lease_until = NULL",
+        new MapSqlParameterSource());
+    jdbcTemplate.update("DELETE FROM outbox_publishers", new MapSqlParameterSource());
+  }
+
+  @Test
+  void splitsPartitionsEvenlyWithoutOverlap() {
+    final EntitlementOutboxPartitionManager first = newManager();
+    final EntitlementOutboxPartitionManager second = newManager();
+
+    // 1 台目は単独のうちに全区画を取り、2 台目の生存を見てから半分を手放す
+    first.rebalance();
+    assertThat(first.ownedPartitions()).hasSize(PARTITIONS);
+    second.rebalance();
+    assertThat(second.ownedPartitions()).isEmpty();
+    first.rebalance();
+    second.rebalance();
+
+    assertThat(first.ownedPartitions()).hasSize(PARTITIONS / 2);
+    assertThat(second.ownedPartitions()).hasSize(PARTITIONS / 2);
+    final Set<Integer> all = new HashSet<>(first.ownedPartitions());
+    all.addAll(second.ownedPartitions());
+    assertThat(all).hasSize(PARTITIONS);
+  }
+
+  @Test
+  void takesOverPartitionsReleasedOnShutdown() {
+    final EntitlementOutboxPartitionManager first = newManager();
+    final EntitlementOutboxPartitionManager second = newManager();
+    first.rebalance();
+    second.rebalance();
+    first.rebalance();
+    second.rebalance();
+
+    first.shutdown();
+    second.rebalance();
+
+    assertThat(first.ownedPartitions()).isEmpty();
+    assertThat(second.ownedPartitions()).hasSize(PARTITIONS);
+  }
+
+  @Test
+  void reassignsPartitionsWhoseLeaseExpired() {
+    final EntitlementOutboxPartitionManager manager = newManager();
+    manager.rebalance();
+
+    final EntitlementOutboxPartitionManager later =
+        new EntitlementOutboxPartitionManager(
+            leaseRepository,
+            properties(),
+            mock(EntitlementMetrics.class),
+            Clock.offset(clock, Duration.ofMinutes(1)));
+    later.rebalance();
+
+    // 期限切れの区画は他の publisher が取り直している
+    assertThat(later.ownedPartitions()).hasSize(PARTITIONS);
+  }
+
+  private EntitlementOutboxPartitionManager newManager() {
+    return new EntitlementOutboxPartitionManager(
+        leaseRepository, properties(), mock(EntitlementMetrics.class), clock);
+  }
+
+  private static EntitlementOutboxPartitionProperties properties() {
+    return new EntitlementOutboxPartitionProperties(
+        true, Duration.ofSeconds(15), Duration.ofSeconds(5));
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * どこで: Entitlement outbox publish のユニットテスト
- * 何を: outbox publish の puback/失敗/パース失敗の挙動を検証する
+ * 何を: outbox publish の puback/失敗/パース失敗/ack 期限切れと一括更新の挙動を検証する
  * なぜ: puback 受信時のみ publish 成功とみなし、失敗と非リトライを正しく扱うため
  */
 package com.example.entitlement.service;
@@ -8,9 +8,10 @@ package com.example.entitlement.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -22,10 +23,12 @@ import com.example.common.event.EntitlementEventPayload;
 import com.example.entitlement.config.EntitlementNatsProperties;
 import com.example.entitlement.config.EntitlementOutboxProperties;
 import com.example.entitlement.model.OutboxEventRecord;
+import com.example.entitlement.model.OutboxFailureUpdate;
 import com.example.entitlement.model.OutboxStatus;
 import com.example.entitlement.repository.OutboxEventRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.ByteString;
 import io.nats.client.JetStream;
 import io.nats.client.JetStreamApiException;
 import io.nats.client.api.PublishAck;
@@ -36,11 +39,14 @@ import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -63,7 +69,9 @@ class EntitlementOutboxPublisherTest {
           Duration.ofSeconds(1),
           1000,
           Duration.ofSeconds(30),
-          Duration.ofHours(24));
+          Duration.ofHours(24),
+          Duration.ofSeconds(5),
+          Duration.ofSeconds(30));
   private static final EntitlementNatsProperties NATS_PROPERTIES =
       new EntitlementNatsProperties(
           "entitlement.events", "entitlement-events", Duration.ofMinutes(2));
@@ -81,17 +89,8 @@ class EntitlementOutboxPublisherTest {
   @BeforeEach
   void setUp() {
     // 時刻に依存する処理が揺れないよう固定クロックを注入する
-    final Clock clock = Clock.fixed(FIXED_NOW, ZoneOffset.UTC);
     objectMapper = new ObjectMapper();
-    publisher =
-        new EntitlementOutboxPublisher(
-            jetStream,
-            outboxEventRepository,
-            PROPERTIES,
-            NATS_PROPERTIES,
-            objectMapper,
-            metrics,
-            clock);
+    publisher = newPublisher(PROPERTIES);
   }
 
   @Test
@@ -99,220 +98,287 @@ class EntitlementOutboxPublisherTest {
     // パース不能な payload を持つ outbox レコードを用意する
     final OutboxEventRecord record =
         new OutboxEventRecord(
-            UUID.randomUUID(), "EntitlementGranted", "user-1:sku-1", INVALID_JSON, 0);
+            UUID.randomUUID(),
+            "EntitlementGranted",
+            "user-1:sku-1",
+            INVALID_JSON,
+            null,
+            0,
+            FIXED_NOW);
 
     when(outboxEventRepository.claimPending(
             eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
         .thenReturn(List.of(record));
     // ロック喪失の警告を避けるために更新成功を返す
-    when(outboxEventRepository.markFailure(
-            eq(record.eventId()),
-            anyString(),
-            anyInt(),
-            eq(OutboxStatus.FAILED),
-            isNull(),
-            anyString()))
-        .thenReturn(1);
+    when(outboxEventRepository.markFailures(anyList(), anyString()))
+        .thenReturn(List.of(record.eventId()));
 
     publisher.publishPendingBatch();
 
     // 解析失敗時は publish も PUBLISHED 更新もしない
     verifyNoInteractions(jetStream);
-    verify(outboxEventRepository, never())
-        .markPublished(any(UUID.class), anyString(), any(Instant.class));
+    verify(outboxEventRepository, never()).markPublished(anyList(), anyString(), any());
 
     // FAILED への即時遷移を検証する
     final ArgumentCaptor<String> lockedByCaptor = ArgumentCaptor.forClass(String.class);
-    final ArgumentCaptor<Integer> attemptCaptor = ArgumentCaptor.forClass(Integer.class);
-    final ArgumentCaptor<Instant> nextRetryAtCaptor = ArgumentCaptor.forClass(Instant.class);
-    final ArgumentCaptor<String> errorCaptor = ArgumentCaptor.forClass(String.class);
-    verify(outboxEventRepository)
-        .markFailure(
-            eq(record.eventId()),
-            lockedByCaptor.capture(),
-            attemptCaptor.capture(),
-            eq(OutboxStatus.FAILED),
-            nextRetryAtCaptor.capture(),
-            errorCaptor.capture());
-
+    final OutboxFailureUpdate failure = captureSingleFailure(lockedByCaptor);
     assertThat(lockedByCaptor.getValue()).isNotBlank();
-    assertThat(attemptCaptor.getValue()).isEqualTo(PROPERTIES.maxAttempts());
-    assertThat(nextRetryAtCaptor.getValue()).isNull();
-    assertThat(errorCaptor.getValue()).isEqualTo("outbox payload parse failure");
+    assertThat(failure.eventId()).isEqualTo(record.eventId());
+    assertThat(failure.createdAt()).isEqualTo(record.createdAt());
+    assertThat(failure.status()).isEqualTo(OutboxStatus.FAILED);
+    assertThat(failure.attemptCount()).isEqualTo(PROPERTIES.maxAttempts());
+    assertThat(failure.nextRetryAt()).isNull();
+    assertThat(failure.lastError()).isEqualTo("outbox payload parse failure");
   }
 
   @Test
-  void publishPendingBatchMarksPublishedWhenPubAckIsReceived()
-      throws IOException, JetStreamApiException, JsonProcessingException {
-    final UUID eventId = UUID.randomUUID();
-    final OutboxEventRecord record = buildValidRecord(eventId);
+  void publishPendingBatchMovesToFailedWhenPayloadProtoIsMalformed() {
+    // 長さ区切りのフィールドが途中で切れた protobuf
+    final OutboxEventRecord record =
+        new OutboxEventRecord(
+            UUID.randomUUID(),
+            "EntitlementGranted",
+            "user-1:sku-1",
+            null,
+            ByteString.copyFrom(new byte[] {0x0a, 0x10, 0x61}),
+            0,
+            FIXED_NOW);
 
     when(outboxEventRepository.claimPending(
             eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
         .thenReturn(List.of(record));
-    when(jetStream.publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
-        .thenReturn(mock(PublishAck.class));
-    when(outboxEventRepository.markPublished(eq(eventId), anyString(), eq(FIXED_NOW)))
-        .thenReturn(1);
+    when(outboxEventRepository.markFailures(anyList(), anyString()))
+        .thenReturn(List.of(record.eventId()));
 
     publisher.publishPendingBatch();
 
-    verify(jetStream).publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class));
-    verify(outboxEventRepository).markPublished(eq(eventId), anyString(), eq(FIXED_NOW));
-    verify(outboxEventRepository, never())
-        .markFailure(
-            any(UUID.class),
-            anyString(),
-            anyInt(),
-            any(OutboxStatus.class),
-            any(Instant.class),
-            anyString());
+    verifyNoInteractions(jetStream);
+    final OutboxFailureUpdate failure = captureSingleFailure(ArgumentCaptor.forClass(String.class));
+    assertThat(failure.status()).isEqualTo(OutboxStatus.FAILED);
+    assertThat(failure.lastError()).isEqualTo("outbox payload parse failure");
   }
 
   @Test
-  void publishPendingBatchMarksFailureWhenPubAckFails()
-      throws IOException, JetStreamApiException, JsonProcessingException {
+  void publishPendingBatchSendsStoredProtoBytesAsIs() {
     final UUID eventId = UUID.randomUUID();
     final OutboxEventRecord record = buildValidRecord(eventId);
 
     when(outboxEventRepository.claimPending(
             eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
         .thenReturn(List.of(record));
-    when(jetStream.publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
-        .thenThrow(new IOException("nats publish failed"));
-    when(outboxEventRepository.markFailure(
-            eq(eventId),
-            anyString(),
-            anyInt(),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            anyString()))
-        .thenReturn(1);
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(PublishAck.class)));
+    when(outboxEventRepository.markPublished(eq(List.of(record)), anyString(), eq(FIXED_NOW)))
+        .thenReturn(List.of(eventId));
 
     publisher.publishPendingBatch();
 
-    verify(outboxEventRepository, never())
-        .markPublished(any(UUID.class), anyString(), any(Instant.class));
-    verify(outboxEventRepository)
-        .markFailure(
-            eq(eventId),
-            anyString(),
-            eq(1),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            anyString());
+    final ArgumentCaptor<Headers> headersCaptor = ArgumentCaptor.forClass(Headers.class);
+    final ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
+    verify(jetStream)
+        .publishAsync(
+            eq(NATS_PROPERTIES.subject()), headersCaptor.capture(), dataCaptor.capture());
+    assertThat(dataCaptor.getValue()).isEqualTo(record.payloadProto().toByteArray());
+    // ヘッダの値は保存したバイト列から読み出す
+    assertThat(headersCaptor.getValue().getFirst("Nats-Msg-Id")).isEqualTo(eventId.toString());
+    assertThat(headersCaptor.getValue().getFirst("occurred_at")).isEqualTo(FIXED_NOW.toString());
+    assertThat(headersCaptor.getValue().getFirst("trace_id")).isEqualTo("trace-1");
   }
 
   @Test
-  void publishPendingBatchMarksFailureWhenPubAckIsNull()
-      throws IOException, JetStreamApiException, JsonProcessingException {
+  void publishPendingBatchBuildsSameMessageFromLegacyJsonPayload() throws JsonProcessingException {
     final UUID eventId = UUID.randomUUID();
-    final OutboxEventRecord record = buildValidRecord(eventId);
 
     when(outboxEventRepository.claimPending(
             eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
-        .thenReturn(List.of(record));
-    when(jetStream.publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
-        .thenReturn(null);
-    when(outboxEventRepository.markFailure(
-            eq(eventId),
-            anyString(),
-            anyInt(),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            anyString()))
-        .thenReturn(1);
+        .thenReturn(List.of(buildLegacyJsonRecord(eventId)));
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(PublishAck.class)));
+    when(outboxEventRepository.markPublished(
+            eq(List.of(buildLegacyJsonRecord(eventId))), anyString(), eq(FIXED_NOW)))
+        .thenReturn(List.of(eventId));
 
     publisher.publishPendingBatch();
 
-    verify(outboxEventRepository, never())
-        .markPublished(any(UUID.class), anyString(), any(Instant.class));
-    verify(outboxEventRepository)
-        .markFailure(
-            eq(eventId),
-            anyString(),
-            eq(1),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            eq("puback is missing"));
+    // 移行中の JSON 行も、protobuf で保存した行と同じバイト列で publish される
+    final ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
+    verify(jetStream)
+        .publishAsync(eq(NATS_PROPERTIES.subject()), any(Headers.class), dataCaptor.capture());
+    assertThat(dataCaptor.getValue())
+        .isEqualTo(buildValidRecord(eventId).payloadProto().toByteArray());
+    verify(metrics).recordOutboxPublish("published", 1);
   }
 
   @Test
-  void publishPendingBatchMarksFailureWhenJetStreamApiExceptionOccurs()
-      throws IOException, JetStreamApiException, JsonProcessingException {
+  void publishPendingBatchMarksPublishedWhenPubAckIsReceived() {
     final UUID eventId = UUID.randomUUID();
     final OutboxEventRecord record = buildValidRecord(eventId);
-    final JetStreamApiException apiException = mock(JetStreamApiException.class);
-    when(apiException.getMessage()).thenReturn("nats api error");
 
     when(outboxEventRepository.claimPending(
             eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
         .thenReturn(List.of(record));
-    when(jetStream.publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
-        .thenThrow(apiException);
-    when(outboxEventRepository.markFailure(
-            eq(eventId),
-            anyString(),
-            anyInt(),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            anyString()))
-        .thenReturn(1);
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(PublishAck.class)));
+    when(outboxEventRepository.markPublished(eq(List.of(record)), anyString(), eq(FIXED_NOW)))
+        .thenReturn(List.of(eventId));
+
+    // ワーカーが続けて claim するか判断できるよう、claim した件数を返す
+    assertThat(publisher.publishPendingBatch()).isEqualTo(1);
+
+    verify(jetStream)
+        .publishAsync(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class));
+    verify(outboxEventRepository).markPublished(eq(List.of(record)), anyString(), eq(FIXED_NOW));
+    verify(outboxEventRepository, never()).markFailures(anyList(), anyString());
+    verify(metrics).recordOutboxPublish("published", 1);
+    verify(metrics).recordOutboxBatch(eq(1), any(Duration.class));
+  }
+
+  @Test
+  void publishPendingBatchStampsPublishedAtWhenAcksHaveArrived() {
+    final UUID eventId = UUID.randomUUID();
+    final OutboxEventRecord record = buildValidRecord(eventId);
+    final Instant ackedAt = FIXED_NOW.plusMillis(800);
+    // claim 時と ack 回収後で時刻を進め、どちらの時刻で書き戻すかを区別する
+    final Clock clock = mock(Clock.class);
+    when(clock.instant()).thenReturn(FIXED_NOW, ackedAt);
+    when(outboxEventRepository.claimPending(
+            eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
+        .thenReturn(List.of(record));
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(PublishAck.class)));
+    when(outboxEventRepository.markPublished(eq(List.of(record)), anyString(), eq(ackedAt)))
+        .thenReturn(List.of(eventId));
+
+    newPublisher(PROPERTIES, Optional.empty(), clock).publishPendingBatch();
+
+    verify(outboxEventRepository).markPublished(eq(List.of(record)), anyString(), eq(ackedAt));
+    verify(metrics).recordOutboxPublishDelay(any(Instant.class), eq(ackedAt));
+  }
+
+  @Test
+  void publishPendingBatchPublishesWholeBatchBeforeWaitingForAcks() {
+    final UUID firstId = UUID.randomUUID();
+    final UUID secondId = UUID.randomUUID();
+    final CompletableFuture<PublishAck> firstAck = new CompletableFuture<>();
+
+    when(outboxEventRepository.claimPending(
+            eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
+        .thenReturn(List.of(buildValidRecord(firstId), buildValidRecord(secondId)));
+    // 1 件目の ack は 2 件目を publish した時点で返す。1 件ずつ待つ実装だとここで期限切れになる。
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(firstAck)
+        .thenAnswer(
+            invocation -> {
+              firstAck.complete(mock(PublishAck.class));
+              return CompletableFuture.completedFuture(mock(PublishAck.class));
+            });
+    when(outboxEventRepository.markPublished(anyList(), anyString(), eq(FIXED_NOW)))
+        .thenReturn(List.of(firstId, secondId));
 
     publisher.publishPendingBatch();
 
-    verify(outboxEventRepository, never())
-        .markPublished(any(UUID.class), anyString(), any(Instant.class));
-    verify(outboxEventRepository)
-        .markFailure(
-            eq(eventId),
+    // publish 2 件の後に、成功分を 1 回の UPDATE でまとめて確定する
+    final InOrder order = inOrder(jetStream, outboxEventRepository);
+    order
+        .verify(jetStream, times(2))
+        .publishAsync(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class));
+    order
+        .verify(outboxEventRepository)
+        .markPublished(
+            eq(List.of(buildValidRecord(firstId), buildValidRecord(secondId))),
             anyString(),
-            eq(1),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            eq("nats api error"));
+            eq(FIXED_NOW));
+    verify(outboxEventRepository, never()).markFailures(anyList(), anyString());
   }
 
   @Test
-  void publishPendingBatchTruncatesErrorMessage()
-      throws IOException, JetStreamApiException, JsonProcessingException {
+  void publishPendingBatchMarksFailureWhenPubAckFails() {
+    final UUID eventId = UUID.randomUUID();
+
+    stubSinglePublish(eventId, CompletableFuture.failedFuture(new IOException("nats failed")));
+
+    publisher.publishPendingBatch();
+
+    verify(outboxEventRepository, never()).markPublished(anyList(), anyString(), any());
+    final OutboxFailureUpdate failure = captureSingleFailure(ArgumentCaptor.forClass(String.class));
+    assertThat(failure.eventId()).isEqualTo(eventId);
+    assertThat(failure.attemptCount()).isEqualTo(1);
+    assertThat(failure.status()).isEqualTo(OutboxStatus.PENDING);
+    assertThat(failure.nextRetryAt()).isAfter(FIXED_NOW);
+    assertThat(failure.lastError()).isEqualTo("nats failed");
+  }
+
+  @Test
+  void publishPendingBatchMarksFailureWhenPubAckIsNull() {
+    final UUID eventId = UUID.randomUUID();
+
+    stubSinglePublish(eventId, CompletableFuture.completedFuture(null));
+
+    publisher.publishPendingBatch();
+
+    verify(outboxEventRepository, never()).markPublished(anyList(), anyString(), any());
+    final OutboxFailureUpdate failure = captureSingleFailure(ArgumentCaptor.forClass(String.class));
+    assertThat(failure.attemptCount()).isEqualTo(1);
+    assertThat(failure.status()).isEqualTo(OutboxStatus.PENDING);
+    assertThat(failure.lastError()).isEqualTo("puback is missing");
+  }
+
+  @Test
+  void publishPendingBatchMarksFailureWhenJetStreamApiExceptionOccurs() {
+    final UUID eventId = UUID.randomUUID();
+    final JetStreamApiException apiException = mock(JetStreamApiException.class);
+    when(apiException.getMessage()).thenReturn("nats api error");
+
+    stubSinglePublish(eventId, CompletableFuture.failedFuture(apiException));
+
+    publisher.publishPendingBatch();
+
+    verify(outboxEventRepository, never()).markPublished(anyList(), anyString(), any());
+    final OutboxFailureUpdate failure = captureSingleFailure(ArgumentCaptor.forClass(String.class));
+    assertThat(failure.attemptCount()).isEqualTo(1);
+    assertThat(failure.status()).isEqualTo(OutboxStatus.PENDING);
+    assertThat(failure.lastError()).isEqualTo("nats api error");
+  }
+
+  @Test
+  void publishPendingBatchMarksFailureWhenPubAckTimesOut() {
+    final UUID eventId = UUID.randomUUID();
+    publisher = newPublisher(withAckTimeout(Duration.ofMillis(50)));
+    final CompletableFuture<PublishAck> neverAcked = new CompletableFuture<>();
+
+    stubSinglePublish(eventId, neverAcked);
+
+    publisher.publishPendingBatch();
+
+    verify(outboxEventRepository, never()).markPublished(anyList(), anyString(), any());
+    final OutboxFailureUpdate failure = captureSingleFailure(ArgumentCaptor.forClass(String.class));
+    assertThat(failure.status()).isEqualTo(OutboxStatus.PENDING);
+    assertThat(failure.lastError()).isEqualTo("puback timeout");
+    assertThat(neverAcked).isCancelled();
+  }
+
+  @Test
+  void publishPendingBatchTruncatesErrorMessage() {
     final UUID eventId = UUID.randomUUID();
-    final OutboxEventRecord record = buildValidRecord(eventId);
     final String longMessage = "x".repeat(PROPERTIES.errorMessageMaxLength() + 5);
 
-    when(outboxEventRepository.claimPending(
-            eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
-        .thenReturn(List.of(record));
-    when(jetStream.publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
-        .thenThrow(new IOException(longMessage));
-    when(outboxEventRepository.markFailure(
-            eq(eventId),
-            anyString(),
-            anyInt(),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            anyString()))
-        .thenReturn(1);
+    stubSinglePublish(eventId, CompletableFuture.failedFuture(new IOException(longMessage)));
 
     publisher.publishPendingBatch();
 
-    final ArgumentCaptor<String> errorCaptor = ArgumentCaptor.forClass(String.class);
-    verify(outboxEventRepository)
-        .markFailure(
-            eq(eventId),
-            anyString(),
-            eq(1),
-            eq(OutboxStatus.PENDING),
-            any(Instant.class),
-            errorCaptor.capture());
-    assertThat(errorCaptor.getValue()).hasSize(PROPERTIES.errorMessageMaxLength());
-    assertThat(errorCaptor.getValue())
+    final OutboxFailureUpdate failure = captureSingleFailure(ArgumentCaptor.forClass(String.class));
+    assertThat(failure.lastError()).hasSize(PROPERTIES.errorMessageMaxLength());
+    assertThat(failure.lastError())
         .isEqualTo(longMessage.substring(0, PROPERTIES.errorMessageMaxLength()));
   }
 
   @Test
-  void publishPendingBatchContinuesWhenMarkPublishedReturnsZero()
-      throws IOException, JetStreamApiException, JsonProcessingException {
+  void publishPendingBatchContinuesWhenMarkPublishedLosesSomeLocks() {
     final UUID firstId = UUID.randomUUID();
     final UUID secondId = UUID.randomUUID();
     final OutboxEventRecord first = buildValidRecord(firstId);
@@ -321,31 +387,148 @@ class EntitlementOutboxPublisherTest {
     when(outboxEventRepository.claimPending(
             eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
         .thenReturn(List.of(first, second));
-    when(jetStream.publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
-        .thenReturn(mock(PublishAck.class));
-    when(outboxEventRepository.markPublished(any(UUID.class), anyString(), eq(FIXED_NOW)))
-        .thenReturn(0, 1);
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(PublishAck.class)));
+    // 1 件目は別 worker に lease を奪われ、更新対象から外れた想定
+    when(outboxEventRepository.markPublished(anyList(), anyString(), eq(FIXED_NOW)))
+        .thenReturn(List.of(secondId));
 
     publisher.publishPendingBatch();
 
     verify(jetStream, times(2))
-        .publish(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class));
-    verify(outboxEventRepository, times(2))
-        .markPublished(any(UUID.class), anyString(), eq(FIXED_NOW));
-    verify(outboxEventRepository, never())
-        .markFailure(
-            any(UUID.class),
-            anyString(),
-            anyInt(),
-            any(OutboxStatus.class),
+        .publishAsync(eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class));
+    verify(outboxEventRepository).markPublished(anyList(), anyString(), eq(FIXED_NOW));
+    verify(outboxEventRepository, never()).markFailures(anyList(), anyString());
+    verify(metrics).recordOutboxPublish("published", 1);
+    verify(metrics).recordOutboxPublish("lock_lost", 1);
+  }
+
+  @Test
+  void publishPendingBatchClaimsOnlyLeasedPartitionsInOrderWhenPartitioned() {
+    final EntitlementOutboxPartitionManager partitionManager =
+        mock(EntitlementOutboxPartitionManager.class);
+    when(partitionManager.ownedPartitions()).thenReturn(List.of(3, 5));
+    final UUID eventId = UUID.randomUUID();
+    when(outboxEventRepository.claimPendingInOrder(
+            eq(PROPERTIES.batchSize()),
+            eq(List.of(3, 5)),
+            eq(FIXED_NOW),
             any(Instant.class),
-            anyString());
+            anyString()))
+        .thenReturn(List.of(buildValidRecord(eventId)));
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(CompletableFuture.completedFuture(mock(PublishAck.class)));
+    when(outboxEventRepository.markPublished(
+            eq(List.of(buildValidRecord(eventId))), anyString(), eq(FIXED_NOW)))
+        .thenReturn(List.of(eventId));
+
+    assertThat(newPublisher(PROPERTIES, Optional.of(partitionManager)).publishPendingBatch())
+        .isEqualTo(1);
+
+    verify(outboxEventRepository, never())
+        .claimPending(anyInt(), any(Instant.class), any(Instant.class), anyString());
+    verify(metrics).recordOutboxPublish("published", 1);
   }
 
-  private OutboxEventRecord buildValidRecord(UUID eventId) throws JsonProcessingException {
+  @Test
+  void publishPendingBatchRefreshesFailedCountOnlyAfterInterval() {
+    when(outboxEventRepository.claimPending(
+            eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
+        .thenReturn(List.of());
+    when(outboxEventRepository.countFailed()).thenReturn(2);
+
+    assertThat(publisher.publishPendingBatch()).isZero();
+    publisher.publishPendingBatch();
+
+    // 固定クロックでは間隔が経過しないため、2 回目の batch では数え直さない
+    verify(outboxEventRepository, times(1)).countFailed();
+    verify(metrics).updateOutboxFailedCurrent(2);
+  }
+
+  private void stubSinglePublish(UUID eventId, CompletableFuture<PublishAck> ack) {
+    when(outboxEventRepository.claimPending(
+            eq(PROPERTIES.batchSize()), eq(FIXED_NOW), any(Instant.class), anyString()))
+        .thenReturn(List.of(buildValidRecord(eventId)));
+    when(jetStream.publishAsync(
+            eq(NATS_PROPERTIES.subject()), any(Headers.class), any(byte[].class)))
+        .thenReturn(ack);
+    // ロック喪失の警告を避けるために更新成功を返す
+    when(outboxEventRepository.markFailures(anyList(), anyString())).thenReturn(List.of(eventId));
+  }
+
+  @SuppressWarnings("unchecked")
+  private OutboxFailureUpdate captureSingleFailure(ArgumentCaptor<String> lockedByCaptor) {
+    final ArgumentCaptor<List<OutboxFailureUpdate>> failuresCaptor =
+        ArgumentCaptor.forClass(List.class);
+    verify(outboxEventRepository).markFailures(failuresCaptor.capture(), lockedByCaptor.capture());
+    assertThat(failuresCaptor.getValue()).hasSize(1);
+    return failuresCaptor.getValue().get(0);
+  }
+
+  private EntitlementOutboxPublisher newPublisher(EntitlementOutboxProperties properties) {
+    return newPublisher(properties, Optional.empty());
+  }
+
+  private EntitlementOutboxPublisher newPublisher(
+      EntitlementOutboxProperties properties,
+      Optional<EntitlementOutboxPartitionManager> partitionManager) {
+    // 時刻に依存する処理が揺れないよう固定クロックを注入する
+    return newPublisher(properties, partitionManager, Clock.fixed(FIXED_NOW, ZoneOffset.UTC));
+  }
+
+  private EntitlementOutboxPublisher newPublisher(
+      EntitlementOutboxProperties properties,
+      Optional<EntitlementOutboxPartitionManager> partitionManager,
+      Clock clock) {
+    return new EntitlementOutboxPublisher(
+        jetStream,
+        outboxEventRepository,
+        properties,
+        NATS_PROPERTIES,
+        partitionManager,
+        new EntitlementEventCodec(objectMapper),
+        metrics,
+        clock);
+  }
+
+  private static EntitlementOutboxProperties withAckTimeout(Duration ackTimeout) {
+    return new EntitlementOutboxProperties(
+        PROPERTIES.enabled(),
+        PROPERTIES.pollInterval(),
+        PROPERTIES.batchSize(),
+        PROPERTIES.maxAttempts(),
+        PROPERTIES.backoffBase(),
+        PROPERTIES.backoffMax(),
+        PROPERTIES.backoffExponentBase(),
+        PROPERTIES.backoffJitterMin(),
+        PROPERTIES.backoffJitterMax(),
+        PROPERTIES.backoffMin(),
+        PROPERTIES.errorMessageMaxLength(),
+        PROPERTIES.lease(),
+        PROPERTIES.publishedTtl(),
+        ackTimeout,
+        PROPERTIES.failedCountInterval());
+  }
+
+  private OutboxEventRecord buildValidRecord(UUID eventId) {
+    final ByteString payloadProto =
+        new EntitlementEventCodec(objectMapper).encode(buildPayload(eventId));
+    return new OutboxEventRecord(
+        eventId, "EntitlementGranted", "user-1:sku-1", null, payloadProto, 0, FIXED_NOW);
+  }
+
+  // protobuf 化より前に書かれた、JSON の payload だけを持つ行
+  private OutboxEventRecord buildLegacyJsonRecord(UUID eventId) throws JsonProcessingException {
     // snake_case 変換を含めた payload 生成を ObjectMapper に任せる
-    final EntitlementEventPayload payload =
-        new EntitlementEventPayload(
+    final String payloadJson = objectMapper.writeValueAsString(buildPayload(eventId));
+    return new OutboxEventRecord(
+        eventId, "EntitlementGranted", "user-1:sku-1", payloadJson, null, 0, FIXED_NOW);
+  }
+
+  private static EntitlementEventPayload buildPayload(UUID eventId) {
+    return new EntitlementEventPayload(
             eventId.toString(),
             "EntitlementGranted",
             FIXED_NOW.toString(),
@@ -355,7 +538,5 @@ class EntitlementOutboxPublisherTest {
             "source-1",
             1L,
             "trace-1");
-    final String payloadJson = objectMapper.writeValueAsString(payload);
-    return new OutboxEventRecord(eventId, "EntitlementGranted", "user-1:sku-1", payloadJson, 0);
   }
 }
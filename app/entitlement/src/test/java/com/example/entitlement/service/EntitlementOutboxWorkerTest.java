@@ -0,0 +1,110 @@
+/*
+ * どこで: Entitlement outbox ワーカーのユニットテスト
+ * 何を: NOTIFY/ポーリングによる起床がまとめられ、滞留中は続けて claim することを検証する
+ * なぜ: 通知の集中で batch が重複実行されたり、満杯の batch の後に次の起床まで待ったりしないようにするため
+ */
+package com.example.entitlement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.entitlement.config.EntitlementOutboxProperties;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class EntitlementOutboxWorkerTest {
+
+  private static final EntitlementOutboxProperties PROPERTIES =
+      new EntitlementOutboxProperties(
+          true,
+          Duration.ofSeconds(5),
+          50,
+          10,
+          Duration.ofSeconds(1),
+          Duration.ofSeconds(60),
+          2.0d,
+          0.5d,
+          1.5d,
+          Duration.ofSeconds(1),
+          1000,
+          Duration.ofSeconds(30),
+          Duration.ofHours(24),
+          Duration.ofSeconds(5),
+          Duration.ofSeconds(30));
+
+  @Mock private EntitlementOutboxPublisher publisher;
+
+  @Mock private EntitlementMetrics metrics;
+
+  private EntitlementOutboxWorker worker;
+
+  @BeforeEach
+  void setUp() {
+    worker = new EntitlementOutboxWorker(publisher, PROPERTIES, metrics);
+  }
+
+  @AfterEach
+  void tearDown() {
+    worker.shutdown();
+  }
+
+  @Test
+  void wakeupsDuringRunningBatchAreCoalescedIntoOneDrain() throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    when(publisher.publishPendingBatch())
+        .thenAnswer(
+            invocation -> {
+              started.countDown();
+              assertThat(release.await(5, TimeUnit.SECONDS)).isTrue();
+              return 0;
+            })
+        .thenReturn(0);
+
+    worker.onNotify();
+    assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+    // 実行中の batch の後ろには drain を 1 回だけ積み、残りの起床はそれにまとめる
+    worker.onNotify();
+    worker.onNotify();
+    worker.run();
+    release.countDown();
+
+    verify(publisher, after(300).times(2)).publishPendingBatch();
+    verify(metrics).recordOutboxWakeup("notify", true);
+    verify(metrics).recordOutboxWakeup("poll", true);
+  }
+
+  @Test
+  void drainKeepsClaimingWhileBatchesAreFull() {
+    when(publisher.publishPendingBatch())
+        .thenReturn(PROPERTIES.batchSize(), PROPERTIES.batchSize(), 3);
+
+    worker.onNotify();
+
+    verify(publisher, timeout(1000).times(3)).publishPendingBatch();
+    verify(metrics, timeout(1000).times(2)).recordOutboxWakeup("backlog", false);
+  }
+
+  @Test
+  void drainSurvivesPublishFailure() {
+    when(publisher.publishPendingBatch()).thenThrow(new IllegalStateException("db down"));
+
+    worker.onNotify();
+    verify(publisher, timeout(1000).times(1)).publishPendingBatch();
+    // 失敗した drain の後でも次の起床で claim し直す
+    worker.run();
+
+    verify(publisher, timeout(1000).times(2)).publishPendingBatch();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * どこで: Entitlement 読み取りキャッシュの統合テスト
+ * 何を: 一覧の再利用、コミット後の置き換え、イベントの version による破棄、strict 参照の迂回とメトリクスを検証する
+ * なぜ: DB への参照を減らしても、コミット済みの変更より古い一覧を返し続けないことを保証するため
+ */
+package com.example.entitlement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.entitlement.AbstractPostgresContainerTest;
+import com.example.entitlement.api.EntitlementRequest;
+import com.example.entitlement.api.EntitlementSummary;
+import com.example.entitlement.api.EntitlementsResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest(properties = "entitlement.read-cache.enabled=true")
+@ActiveProfiles("test")
+class EntitlementReadCacheTest extends AbstractPostgresContainerTest {
+
+  private static final String SKU = "sku-1";
+  private static final String OTHER_SKU = "sku-2";
+
+  @Autowired private EntitlementService entitlementService;
+
+  @Autowired private EntitlementReadCache readCache;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+
+  @Autowired private PlatformTransactionManager transactionManager;
+
+  // キャッシュはコンテキストで共有されるため、テストごとに別の user_id を使う
+  private String userId;
+
+  @BeforeEach
+  void setUp() {
+    final MapSqlParameterSource params = new MapSqlParameterSource();
+    jdbcTemplate.update("DELETE FROM entitlement_audit", params);
+    jdbcTemplate.update("DELETE FROM outbox_events", params);
+    jdbcTemplate.update("DELETE FROM entitlements", params);
+    jdbcTemplate.update("DELETE FROM idempotency_keys", params);
+    userId = "user-" + UUID.randomUUID();
+    // test プロファイルは NATS を使わないため、イベントを受けられている状態を明示する
+    readCache.bindEventFeed(() -> true);
+  }
+
+  @Test
+  void listIsServedFromCacheAndStrictReadsDatabase() {
+    grant(SKU);
+    final double missBefore = requests(EntitlementReadCache.MISS);
+    final double hitBefore = requests(EntitlementReadCache.LOCAL_HIT);
+
+    final EntitlementsResponse first = entitlementService.listByUser(userId, false);
+    // キャッシュを通らない DB の直接更新は、2 回目の参照に見えない
+    revokeBehindCache(SKU);
+    final EntitlementsResponse second = entitlementService.listByUser(userId, false);
+    final EntitlementsResponse strict = entitlementService.listByUser(userId, true);
+
+    assertThat(second).isEqualTo(first);
+    assertThat(statusOf(strict, SKU)).isEqualTo("REVOKED");
+    assertThat(requests(EntitlementReadCache.MISS) - missBefore).isEqualTo(1);
+    assertThat(requests(EntitlementReadCache.LOCAL_HIT) - hitBefore).isEqualTo(1);
+    assertThat(requests(EntitlementReadCache.STRICT_BYPASS)).isPositive();
+  }
+
+  @Test
+  void commitReplacesCachedEntryWithoutReadingDatabase() {
+    grant(SKU);
+    entitlementService.listByUser(userId, false);
+    revokeBehindCache(SKU);
+
+    grant(OTHER_SKU);
+    final EntitlementsResponse cached = entitlementService.listByUser(userId, false);
+
+    // 付与した権利は先頭に入り、他の要素は DB を読み直さずにそのまま残る
+    assertThat(cached.entitlements())
+        .extracting(EntitlementSummary::stockKeepingUnit)
+        .containsExactly(OTHER_SKU, SKU);
+    assertThat(statusOf(cached, OTHER_SKU)).isEqualTo("ACTIVE");
+    assertThat(statusOf(cached, SKU)).isEqualTo("ACTIVE");
+  }
+
+  @Test
+  void rolledBackCommandLeavesCacheUntouched() {
+    grant(SKU);
+    final EntitlementsResponse before = entitlementService.listByUser(userId, false);
+
+    new TransactionTemplate(transactionManager)
+        .executeWithoutResult(
+            status -> {
+              grant(OTHER_SKU);
+              status.setRollbackOnly();
+            });
+
+    assertThat(entitlementService.listByUser(userId, false)).isEqualTo(before);
+    assertThat(entitlementService.listByUser(userId, true).entitlements()).hasSize(1);
+  }
+
+  @Test
+  void eventEvictsOnlyEntriesOlderThanItsVersion() {
+    grant(SKU);
+    entitlementService.listByUser(userId, false);
+    revokeBehindCache(SKU);
+    final long stalenessBefore = staleness().count();
+
+    // 既に持っている version の通知（自身のコミットのイベントなど）では捨てない
+    readCache.onEvent(userId, SKU, 0, Instant.now());
+    assertThat(statusOf(entitlementService.listByUser(userId, false), SKU)).isEqualTo("ACTIVE");
+
+    readCache.onEvent(userId, SKU, 1, Instant.now().minusSeconds(1));
+    assertThat(statusOf(entitlementService.listByUser(userId, false), SKU)).isEqualTo("REVOKED");
+    assertThat(staleness().count() - stalenessBefore).isEqualTo(1);
+  }
+
+  @Test
+  void unsyncedEventFeedBypassesLocalTier() {
+    grant(SKU);
+    entitlementService.listByUser(userId, false);
+    revokeBehindCache(SKU);
+
+    readCache.bindEventFeed(() -> false);
+    try {
+      assertThat(statusOf(entitlementService.listByUser(userId, false), SKU)).isEqualTo("REVOKED");
+    } finally {
+      readCache.bindEventFeed(() -> true);
+    }
+    assertThat(requests(EntitlementReadCache.UNSYNCED_BYPASS)).isPositive();
+  }
+
+  private void grant(String stockKeepingUnit) {
+    entitlementService.grant(
+        new EntitlementRequest(userId, stockKeepingUnit, "purchase", "purchase-1"),
+        UUID.randomUUID().toString(),
+        "trace-1");
+  }
+
+  private void revokeBehindCache(String stockKeepingUnit) {
+    jdbcTemplate.update(
+        "UPDATE entitlements SET status = 'REVOKED', version = version + 1"
+            + " WHERE user_id = :userId AND stock_keeping_unit = :stockKeepingUnit",
+        new MapSqlParameterSource()
+            .addValue("userId", userId)
+            .addValue("stockKeepingUnit", stockKeepingUnit));
+  }
+
+  private static String statusOf(EntitlementsResponse response, String stockKeepingUnit) {
+    return response.entitlements().stream()
+        .filter(summary -> summary.stockKeepingUnit().equals(stockKeepingUnit))
+        .map(EntitlementSummary::status)
+        .findFirst()
+        .orElse(null);
+  }
+
+  private double requests(String result) {
+    final Counter counter =
+        meterRegistry.find("entitlement.read_cache.requests.total").tag("result", result).counter();
+    return counter == null ? 0 : counter.count();
+  }
+
+  private Timer staleness() {
+    return meterRegistry.get("entitlement.read_cache.staleness").timer();
+  }
+}
@@ -0,0 +1,211 @@
+/*
+ * どこで: EntitlementService の統合テスト
+ * 何を: 一括付与/剥奪の件ごとの結果、まとめた書き込み、冪等キーの再利用と競合を検証する
+ * なぜ: 一括でも単件 API と同じ冪等性と状態衝突の振る舞いを保ち、1 件の失敗で全体を落とさないため
+ */
+package com.example.entitlement.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.entitlement.AbstractPostgresContainerTest;
+import com.example.entitlement.api.ApiErrorCode;
+import com.example.entitlement.api.EntitlementBatchItem;
+import com.example.entitlement.api.EntitlementBatchItemResult;
+import com.example.entitlement.api.EntitlementBatchRequest;
+import com.example.entitlement.api.EntitlementBatchResponse;
+import com.example.entitlement.api.EntitlementRequest;
+import com.example.entitlement.api.EntitlementResponse;
+import com.example.entitlement.api.InvalidEntitlementTransitionException;
+import com.example.entitlement.model.EntitlementStatus;
+import com.example.proto.entitlement.EntitlementEvent;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EntitlementServiceBatchTest extends AbstractPostgresContainerTest {
+
+  private static final String SKU = "sku-1";
+  private static final String REASON = "purchase";
+
+  @Autowired private EntitlementService entitlementService;
+
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void cleanup() {
+    final MapSqlParameterSource params = new MapSqlParameterSource();
+    jdbcTemplate.update("DELETE FROM entitlement_audit", params);
+    jdbcTemplate.update("DELETE FROM outbox_events", params);
+    jdbcTemplate.update("DELETE FROM entitlements", params);
+    jdbcTemplate.update("DELETE FROM idempotency_keys", params);
+  }
+
+  @Test
+  void grantBatchWritesEveryItemInInputOrder() throws InvalidProtocolBufferException {
+    final EntitlementBatchResponse response =
+        entitlementService.grantBatch(
+            batch(item("idem-1", "user-3"), item("idem-2", "user-1"), item("idem-3", "user-2")),
+            "trace-1");
+
+    assertThat(response.results())
+        .extracting(EntitlementBatchItemResult::idempotencyKey)
+        .containsExactly("idem-1", "idem-2", "idem-3");
+    assertThat(response.results())
+        .allSatisfy(
+            result -> {
+              assertThat(result.status()).isEqualTo(HttpStatus.OK.value());
+              assertThat(result.entitlement().status())
+                  .isEqualTo(EntitlementStatus.ACTIVE.name());
+              assertThat(result.error()).isNull();
+            });
+    assertThat(response.results().getFirst().entitlement().userId()).isEqualTo("user-3");
+    assertThat(countTable("entitlements")).isEqualTo(3);
+    assertThat(countTable("entitlement_audit")).isEqualTo(3);
+    assertThat(countTable("idempotency_keys")).isEqualTo(3);
+    // outbox は入力順に publish_seq が振られ、publish するバイト列に採番後の version が入る
+    final List<byte[]> payloads =
+        jdbcTemplate.queryForList(
+            "SELECT payload_proto FROM outbox_events ORDER BY publish_seq",
+            new MapSqlParameterSource(),
+            byte[].class);
+    assertThat(payloads).hasSize(3);
+    final EntitlementEvent first = EntitlementEvent.parseFrom(payloads.getFirst());
+    assertThat(first.getUserId()).isEqualTo("user-3");
+    assertThat(first.getVersion()).isZero();
+    assertThat(first.getTraceId()).isEqualTo("trace-1");
+  }
+
+  @Test
+  void grantBatchReportsStateConflictPerItemWithoutFailingOthers() {
+    entitlementService.grant(
+        new EntitlementRequest("user-2", SKU, REASON, "purchase-user-2"), "idem-single", "trace");
+
+    final EntitlementBatchResponse response =
+        entitlementService.grantBatch(
+            batch(item("idem-1", "user-1"), item("idem-2", "user-2")), "trace-1");
+
+    assertThat(response.results().get(0).status()).isEqualTo(HttpStatus.OK.value());
+    final EntitlementBatchItemResult conflict = response.results().get(1);
+    assertThat(conflict.status()).isEqualTo(HttpStatus.CONFLICT.value());
+    assertThat(conflict.entitlement()).isNull();
+    assertThat(conflict.error().code()).isEqualTo(ApiErrorCode.ENTITLEMENT_STATE_CONFLICT);
+    assertThat(conflict.error().message()).isEqualTo("already ACTIVE");
+    // 衝突した件は書き込まず、409 の応答だけを冪等に保存する
+    assertThat(countTable("outbox_events")).isEqualTo(2);
+    assertThat(countTable("idempotency_keys")).isEqualTo(3);
+    assertThatThrownBy(
+            () ->
+                entitlementService.grant(
+                    item("idem-2", "user-2").toRequest(), "idem-2", "trace-2"))
+        .isInstanceOf(InvalidEntitlementTransitionException.class)
+        .hasMessage("already ACTIVE");
+  }
+
+  @Test
+  void grantBatchReusesStoredResponsesAndDetectsChangedItems() {
+    final EntitlementBatchRequest request =
+        batch(item("idem-1", "user-1"), item("idem-2", "user-2"));
+    final EntitlementBatchResponse first = entitlementService.grantBatch(request, "trace-1");
+
+    final EntitlementBatchResponse replayed = entitlementService.grantBatch(request, "trace-2");
+    final EntitlementBatchResponse changed =
+        entitlementService.grantBatch(
+            batch(
+                item("idem-1", "user-1"),
+                new EntitlementBatchItem("idem-2", "user-2", SKU, REASON, "other-purchase")),
+            "trace-3");
+
+    // 再送では同じ応答を返し、副作用を増やさない
+    assertThat(replayed).isEqualTo(first);
+    assertThat(countTable("outbox_events")).isEqualTo(2);
+    assertThat(changed.results().get(0)).isEqualTo(first.results().get(0));
+    assertThat(changed.results().get(1).status()).isEqualTo(HttpStatus.CONFLICT.value());
+    assertThat(changed.results().get(1).error().code())
+        .isEqualTo(ApiErrorCode.IDEMPOTENCY_KEY_CONFLICT);
+  }
+
+  @Test
+  void batchSharesIdempotencyKeysWithSingleApi() {
+    final EntitlementResponse single =
+        entitlementService.grant(item("idem-1", "user-1").toRequest(), "idem-1", "trace-1");
+
+    final EntitlementBatchResponse response =
+        entitlementService.grantBatch(batch(item("idem-1", "user-1")), "trace-2");
+
+    assertThat(response.results().getFirst().entitlement()).isEqualTo(single);
+    assertThat(countTable("outbox_events")).isEqualTo(1);
+  }
+
+  @Test
+  void revokeBatchAdvancesVersion() {
+    entitlementService.grantBatch(
+        batch(item("idem-grant-1", "user-1"), item("idem-grant-2", "user-2")), "trace-1");
+
+    final EntitlementBatchResponse response =
+        entitlementService.revokeBatch(
+            batch(item("idem-revoke-1", "user-1"), item("idem-revoke-2", "user-2")), "trace-2");
+
+    assertThat(response.results())
+        .allSatisfy(
+            result -> {
+              assertThat(result.entitlement().status())
+                  .isEqualTo(EntitlementStatus.REVOKED.name());
+              assertThat(result.entitlement().version()).isEqualTo(1);
+            });
+    final List<String> actions =
+        jdbcTemplate.queryForList(
+            "SELECT action FROM entitlement_audit WHERE user_id = 'user-1' ORDER BY occurred_at",
+            new MapSqlParameterSource(),
+            String.class);
+    assertThat(actions).containsExactly("GRANT", "REVOKE");
+  }
+
+  @Test
+  void batchRejectsDuplicateItems() {
+    assertThatThrownBy(
+            () ->
+                entitlementService.grantBatch(
+                    batch(item("idem-1", "user-1"), item("idem-1", "user-2")), "trace-1"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("idempotency_key must be unique in items");
+    assertThatThrownBy(
+            () ->
+                entitlementService.grantBatch(
+                    batch(item("idem-1", "user-1"), item("idem-2", "user-1")), "trace-1"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("user_id and stock_keeping_unit must be unique in items");
+    assertThat(countTable("entitlements")).isZero();
+  }
+
+  private static EntitlementBatchRequest batch(EntitlementBatchItem... items) {
+    return new EntitlementBatchRequest(List.of(items));
+  }
+
+  private static EntitlementBatchItem item(String idempotencyKey, String userId) {
+    return new EntitlementBatchItem(idempotencyKey, userId, SKU, REASON, "purchase-" + userId);
+  }
+
+  private int countTable(String table) {
+    final String sql =
+        switch (table) {
+          case "entitlements" -> "SELECT count(*) FROM entitlements";
+          case "outbox_events" -> "SELECT count(*) FROM outbox_events";
+          case "entitlement_audit" -> "SELECT count(*) FROM entitlement_audit";
+          case "idempotency_keys" -> "SELECT count(*) FROM idempotency_keys";
+          default -> throw new IllegalArgumentException("unsupported table: " + table);
+        };
+    final Integer count =
+        jdbcTemplate.queryForObject(sql, new MapSqlParameterSource(), Integer.class);
+    return count == null ? 0 : count;
+  }
+}
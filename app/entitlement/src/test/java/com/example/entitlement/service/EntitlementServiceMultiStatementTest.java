@@ -0,0 +1,13 @@
+/*
+ * どこで: EntitlementService の統合テスト
+ * 何を: 文ごとに往復する従来の書き込み経路で EntitlementServiceTest と同じ検証を行う
+ * なぜ: 1 文の書き込みと従来経路で冪等性と状態衝突の振る舞いが揃っていることを保証するため
+ */
+package com.example.entitlement.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(properties = "entitlement.command.single-statement=false")
+@ActiveProfiles("test")
+class EntitlementServiceMultiStatementTest extends EntitlementServiceTest {}
@@ -18,12 +18,15 @@ import com.example.entitlement.api.InvalidEntitlementTransitionException;
 import com.example.entitlement.model.EntitlementStatus;
 import com.example.entitlement.model.IdempotencyRecord;
 import com.example.entitlement.repository.IdempotencyKeyRepository;
+import com.example.proto.entitlement.EntitlementEvent;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.InvalidProtocolBufferException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
@@ -239,6 +242,63 @@ class EntitlementServiceTest extends AbstractPostgresContainerTest {
     assertThat(countTable("idempotency_keys")).isEqualTo(idempotencyAfterFirst);
   }
 
+  @Test
+  void grantWritesAssignedVersionIntoOutboxPayloadAndStoredResponse()
+      throws JsonProcessingException, InvalidProtocolBufferException {
+    final EntitlementRequest request = new EntitlementRequest(USER_ID, SKU, REASON, PURCHASE_ID);
+
+    entitlementService.grant(request, "idem-version-1", "trace-1");
+    entitlementService.revoke(request, "idem-version-2", "trace-2");
+    final EntitlementResponse regranted =
+        entitlementService.grant(request, "idem-version-3", "trace-3");
+
+    // 再付与で version が進み、outbox の payload と保存した応答にも同じ version が入る
+    assertThat(regranted.version()).isEqualTo(2);
+    final byte[] payloadProto =
+        jdbcTemplate.queryForObject(
+            "SELECT payload_proto FROM outbox_events ORDER BY created_at DESC, event_type LIMIT 1",
+            new MapSqlParameterSource(),
+            byte[].class);
+    // outbox には publish するバイト列そのものを保存する
+    final EntitlementEvent event = EntitlementEvent.parseFrom(payloadProto);
+    assertThat(event.getVersion()).isEqualTo(2);
+    assertThat(event.getEventType()).isEqualTo(EntitlementEvent.EventType.ENTITLEMENT_GRANTED);
+    assertThat(event.getTraceId()).isEqualTo("trace-3");
+    assertThat(event.getUserId()).isEqualTo(USER_ID);
+    final Optional<IdempotencyRecord> stored = idempotencyKeyRepository.findByKey("idem-version-3");
+    assertThat(stored).isPresent();
+    assertThat(objectMapper.readValue(stored.get().responseBodyJson(), EntitlementResponse.class))
+        .isEqualTo(regranted);
+    assertThat(entitlementService.grant(request, "idem-version-3", "trace-4")).isEqualTo(regranted);
+  }
+
+  @Test
+  void revokeKeepsGrantedAtAndRecordsAudit() {
+    final EntitlementRequest request = new EntitlementRequest(USER_ID, SKU, REASON, PURCHASE_ID);
+
+    entitlementService.grant(request, "idem-audit-1", "trace-1");
+    final EntitlementResponse revoked =
+        entitlementService.revoke(request, "idem-audit-2", "trace-2");
+
+    assertThat(revoked.status()).isEqualTo(EntitlementStatus.REVOKED.name());
+    final Map<String, Object> row =
+        jdbcTemplate.queryForMap(
+            "SELECT granted_at, revoked_at FROM entitlements WHERE user_id = :userId",
+            new MapSqlParameterSource().addValue("userId", USER_ID));
+    assertThat(row.get("granted_at")).isNotNull();
+    assertThat(row.get("revoked_at")).isNotNull();
+    final List<String> actions =
+        jdbcTemplate.queryForList(
+            "SELECT action FROM entitlement_audit ORDER BY occurred_at",
+            new MapSqlParameterSource(),
+            String.class);
+    assertThat(actions).containsExactly("GRANT", "REVOKE");
+    assertThatThrownBy(() -> entitlementService.revoke(request, "idem-audit-3", "trace-3"))
+        .isInstanceOf(InvalidEntitlementTransitionException.class)
+        .hasMessage("already REVOKED");
+    assertThat(countTable("outbox_events")).isEqualTo(2);
+  }
+
   private int countTable(String table) {
     final String sql =
         switch (table) {
@@ -0,0 +1,221 @@
+/*
+ * どこで: Entitlement 日単位パーティション保守の統合テスト
+ * 何を: 区画の先行作成、claim の下限の更新、期限切れ区画の削除（未送信を含む区画は残す）を検証する
+ * なぜ: 区画の作成漏れは書き込みを既定区画へ溢れさせ、削除の判定を誤ると未送信のイベントを失うため
+ */
+package com.example.entitlement.service;
+
+import static com.example.common.JdbcTimestampUtils.toTimestamp;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.common.partition.DailyPartition;
+import com.example.entitlement.AbstractPostgresContainerTest;
+import com.example.entitlement.config.EntitlementTablePartitionProperties;
+import com.example.entitlement.model.EntitlementAuditRecord;
+import com.example.entitlement.model.OutboxEventRecord;
+import com.example.entitlement.repository.EntitlementAuditRepository;
+import com.example.entitlement.repository.OutboxEventRepository;
+import com.example.entitlement.repository.TablePartitionRepository;
+import com.google.protobuf.ByteString;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EntitlementTablePartitionManagerTest extends AbstractPostgresContainerTest {
+
+  // 他のテストが使う日付や今日の区画と重ならない過去の日で検証する
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2025-06-10");
+  private static final ByteString PAYLOAD_PROTO = ByteString.copyFromUtf8("payload");
+
+  @Autowired private TablePartitionRepository partitionRepository;
+
+  @Autowired private OutboxEventRepository outboxEventRepository;
+
+  @Autowired private EntitlementAuditRepository auditRepository;
+
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate.update("DELETE FROM outbox_events", new MapSqlParameterSource());
+    jdbcTemplate.update("DELETE FROM entitlement_audit", new MapSqlParameterSource());
+    partitionRepository.createDailyPartitions(
+        "outbox_events", FIRST_DAY, FIRST_DAY.plusDays(2), Duration.ofSeconds(3));
+    partitionRepository.createDailyPartitions(
+        "entitlement_audit", FIRST_DAY, FIRST_DAY.plusDays(2), Duration.ofSeconds(3));
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcTemplate.update("DELETE FROM outbox_events", new MapSqlParameterSource());
+    jdbcTemplate.update("DELETE FROM entitlement_audit", new MapSqlParameterSource());
+    for (String table : List.of("outbox_events", "entitlement_audit")) {
+      for (DailyPartition partition : partitionRepository.findDailyPartitions(table)) {
+        if (partition.day().getYear() == FIRST_DAY.getYear()) {
+          partitionRepository.dropPartition(table, partition.name(), Duration.ofSeconds(3));
+        }
+      }
+    }
+    partitionRepository.updateClaimFrom("outbox_events", Instant.parse("1970-01-01T00:00:00Z"));
+  }
+
+  @Test
+  void maintainCreatesPartitionsAheadOfToday() {
+    final LocalDate today = FIRST_DAY.plusDays(5);
+
+    newManager(today).maintain();
+
+    assertThat(partitionDays("outbox_events"))
+        .contains(today, today.plusDays(1), today.plusDays(2))
+        .doesNotContain(today.plusDays(3));
+    assertThat(partitionDays("entitlement_audit")).contains(today, today.plusDays(2));
+    // 作り直しても重複しない
+    newManager(today).maintain();
+    assertThat(partitionDays("outbox_events")).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void maintainAdvancesClaimFromToOldestPartitionWithUnpublishedRows() {
+    final UUID published = UUID.randomUUID();
+    final UUID pending = UUID.randomUUID();
+    insertOutbox(published, FIRST_DAY, FIRST_DAY.atStartOfDay(ZoneOffset.UTC).toInstant());
+    insertOutbox(pending, FIRST_DAY.plusDays(1), null);
+
+    newManager(FIRST_DAY.plusDays(5)).maintain();
+
+    assertThat(fetchClaimFrom())
+        .isEqualTo(FIRST_DAY.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+    // 下限より新しい区画の未送信は claim できる
+    final Instant now = FIRST_DAY.plusDays(5).atStartOfDay(ZoneOffset.UTC).toInstant();
+    assertThat(outboxEventRepository.claimPending(10, now, now.plusSeconds(30), "worker-1"))
+        .extracting(OutboxEventRecord::eventId)
+        .containsExactly(pending);
+  }
+
+  @Test
+  void maintainKeepsClaimFromAtOldestUnpublishedRowInDefaultPartition() {
+    // 日の区画が無い日の未送信は既定区画に入る。claim の下限がそれを飛び越えてはいけない。
+    final UUID pending = UUID.randomUUID();
+    final Instant createdAt = FIRST_DAY.minusDays(30).atStartOfDay(ZoneOffset.UTC).toInstant();
+    outboxEventRepository.insert(
+        pending, "EntitlementGranted", "user-1:sku-1", PAYLOAD_PROTO, createdAt);
+
+    newManager(FIRST_DAY.plusDays(5)).maintain();
+
+    assertThat(fetchClaimFrom()).isEqualTo(createdAt);
+    final Instant now = FIRST_DAY.plusDays(5).atStartOfDay(ZoneOffset.UTC).toInstant();
+    assertThat(outboxEventRepository.claimPending(10, now, now.plusSeconds(30), "worker-1"))
+        .extracting(OutboxEventRecord::eventId)
+        .containsExactly(pending);
+  }
+
+  @Test
+  void dropExpiredOutboxKeepsPartitionsWithRowsToKeep() {
+    final Instant dayEnd = FIRST_DAY.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    final Instant threshold = dayEnd.plus(Duration.ofDays(2));
+    // 1 日目: publish 済みのみ。2 日目: 未送信あり。3 日目: 期限より後に publish 済み。
+    insertOutbox(UUID.randomUUID(), FIRST_DAY, dayEnd.minusSeconds(60));
+    insertOutbox(UUID.randomUUID(), FIRST_DAY.plusDays(1), null);
+    insertOutbox(UUID.randomUUID(), FIRST_DAY.plusDays(2), threshold.plusSeconds(60));
+
+    final int dropped = newManager(FIRST_DAY.plusDays(5)).dropExpiredOutbox(threshold);
+
+    assertThat(dropped).isEqualTo(1);
+    assertThat(partitionDays("outbox_events"))
+        .doesNotContain(FIRST_DAY)
+        .contains(FIRST_DAY.plusDays(1), FIRST_DAY.plusDays(2));
+    assertThat(countRows("outbox_events")).isEqualTo(2);
+  }
+
+  @Test
+  void dropExpiredAuditDropsPartitionsEndingBeforeThreshold() {
+    for (int offset = 0; offset < 3; offset++) {
+      auditRepository.insert(
+          new EntitlementAuditRecord(
+              UUID.randomUUID(),
+              FIRST_DAY.plusDays(offset).atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(60),
+              "user-1",
+              "sku-1",
+              "GRANT",
+              "test",
+              "source-1",
+              "request-1",
+              null));
+    }
+    // 2 日目の途中が期限。2 日目の区画は期限内の行を含みうるため残す。
+    final Instant threshold =
+        FIRST_DAY.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(3600);
+
+    final int dropped = newManager(FIRST_DAY.plusDays(5)).dropExpiredAudit(threshold);
+
+    assertThat(dropped).isEqualTo(1);
+    assertThat(partitionDays("entitlement_audit"))
+        .doesNotContain(FIRST_DAY)
+        .contains(FIRST_DAY.plusDays(1), FIRST_DAY.plusDays(2));
+    assertThat(countRows("entitlement_audit")).isEqualTo(2);
+  }
+
+  private EntitlementTablePartitionManager newManager(LocalDate today) {
+    final Instant now = today.atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(3600);
+    final Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+    return new EntitlementTablePartitionManager(
+        partitionRepository,
+        new EntitlementTablePartitionProperties(
+            true, 2, Duration.ofHours(1), Duration.ofSeconds(3)),
+        clock);
+  }
+
+  private void insertOutbox(UUID eventId, LocalDate day, Instant publishedAt) {
+    outboxEventRepository.insert(
+        eventId,
+        "EntitlementGranted",
+        "user-1:sku-1",
+        PAYLOAD_PROTO,
+        day.atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(60));
+    if (publishedAt != null) {
+      jdbcTemplate.update(
+          "UPDATE outbox_events SET status = 'PUBLISHED', published_at = :publishedAt"
+              + " WHERE event_id = :eventId",
+          new MapSqlParameterSource()
+              .addValue("eventId", eventId)
+              .addValue("publishedAt", toTimestamp(publishedAt)));
+    }
+  }
+
+  private List<LocalDate> partitionDays(String table) {
+    return partitionRepository.findDailyPartitions(table).stream()
+        .map(DailyPartition::day)
+        .toList();
+  }
+
+  private int countRows(String table) {
+    final Integer count =
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM " + table, new MapSqlParameterSource(), Integer.class);
+    return count == null ? 0 : count;
+  }
+
+  private Instant fetchClaimFrom() {
+    final Timestamp claimFrom =
+        jdbcTemplate.queryForObject(
+            "SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'outbox_events'",
+            new MapSqlParameterSource(),
+            Timestamp.class);
+    return claimFrom == null ? null : claimFrom.toInstant();
+  }
+}
@@ -1,6 +1,6 @@
 /*
  * どこで: Gateway-BFF API
- * 何を: クライアント向け matchmaking API を公開する
+ * 何を: クライアント向け matchmaking API（Join/Status/Cancel と状態の long-poll/SSE、待ち時間推定）を公開する
  * なぜ: 直接 matchmaking を公開せず BFF 経由の境界を維持するため
  */
 package com.example.gateway_bff.api;
@@ -9,11 +9,17 @@ import com.example.gateway_bff.api.request.MatchmakingJoinRequest;
 import com.example.gateway_bff.api.response.MatchmakingCancelResponse;
 import com.example.gateway_bff.api.response.MatchmakingJoinResponse;
 import com.example.gateway_bff.api.response.MatchmakingMatchedPayloadResponse;
+import com.example.gateway_bff.api.response.MatchmakingWaitEstimateResponse;
 import com.example.gateway_bff.model.AuthenticatedUser;
 import com.example.gateway_bff.service.MatchmakingClient;
+import com.example.gateway_bff.service.MatchmakingStatusWatchService;
 import com.example.gateway_bff.service.OidcAuthenticatedUserService;
 import com.example.gateway_bff.service.dto.MatchmakingJoinTicketRequest;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -22,7 +28,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/v1/matchmaking")
@@ -31,6 +39,7 @@ public class MatchmakingController {
 
   private final OidcAuthenticatedUserService oidcAuthenticatedUserService;
   private final MatchmakingClient matchmakingClient;
+  private final MatchmakingStatusWatchService statusWatchService;
 
   @PostMapping("/queues/{mode}/tickets")
   public ResponseEntity<MatchmakingJoinResponse> joinTicket(
@@ -46,7 +55,22 @@ public class MatchmakingController {
             new MatchmakingJoinTicketRequest(
                 request.partySize(), request.attributes(), request.idempotencyKey()));
     return ResponseEntity.ok(
-        new MatchmakingJoinResponse(response.ticketId(), response.status(), response.expiresAt()));
+        new MatchmakingJoinResponse(
+            response.ticketId(),
+            response.status(),
+            response.expiresAt(),
+            MatchmakingWaitEstimateResponse.from(response.estimate())));
+  }
+
+  @GetMapping("/queues/{mode}/estimate")
+  public ResponseEntity<MatchmakingWaitEstimateResponse> estimateWait(
+      @PathVariable("mode") String mode,
+      @RequestParam(name = "bucket", required = false) String bucket,
+      Authentication authentication) {
+    // 推定はユーザーに依存しないが、他の matchmaking API と同じく有効なアカウントに限る
+    oidcAuthenticatedUserService.resolveAuthenticatedUser(authentication);
+    return ResponseEntity.ok(
+        MatchmakingWaitEstimateResponse.from(matchmakingClient.estimateWait(mode, bucket)));
   }
 
   @GetMapping("/tickets/{ticketId}")
@@ -54,17 +78,55 @@ public class MatchmakingController {
       getTicketStatus(@PathVariable("ticketId") String ticketId, Authentication authentication) {
     final AuthenticatedUser requester =
         oidcAuthenticatedUserService.resolveAuthenticatedUser(authentication);
-    final var response = matchmakingClient.getTicketStatus(ticketId, requester.userId());
-    final MatchmakingMatchedPayloadResponse matched =
-        response.matched() == null
-            ? null
-            : new MatchmakingMatchedPayloadResponse(
-                response.matched().matchId(),
-                response.matched().peerUserIds(),
-                response.matched().session());
     return ResponseEntity.ok(
-        new com.example.gateway_bff.api.response.MatchmakingTicketStatusResponse(
-            response.ticketId(), response.status(), response.expiresAt(), matched));
+        toStatusResponse(matchmakingClient.getTicketStatus(ticketId, requester.userId())));
+  }
+
+  /** QUEUED の間は応答を保留し、状態が変わるか timeout_seconds（上限 matchmaking.watch-wait）で現在の状態を返す。 */
+  @GetMapping("/tickets/{ticketId}/watch")
+  public CompletableFuture<
+          ResponseEntity<com.example.gateway_bff.api.response.MatchmakingTicketStatusResponse>>
+      watchTicketStatus(
+          @PathVariable("ticketId") String ticketId,
+          @RequestParam(name = "timeout_seconds", defaultValue = "25") long timeoutSeconds,
+          Authentication authentication) {
+    final AuthenticatedUser requester =
+        oidcAuthenticatedUserService.resolveAuthenticatedUser(authentication);
+    return statusWatchService
+        .watch(ticketId, requester.userId(), Duration.ofSeconds(timeoutSeconds))
+        .thenApply(response -> ResponseEntity.ok(toStatusResponse(response)));
+  }
+
+  /**
+   * 現在の状態を status イベントで送り、QUEUED の間は状態が返るたびに送る。終端状態か matchmaking.status-stream-timeout
+   * で閉じるため、QUEUED のまま閉じたらクライアントは張り直す。
+   */
+  @GetMapping(path = "/tickets/{ticketId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamTicketStatus(
+      @PathVariable("ticketId") String ticketId, Authentication authentication) {
+    final AuthenticatedUser requester =
+        oidcAuthenticatedUserService.resolveAuthenticatedUser(authentication);
+    // 最後の long-poll が戻るまで閉じないよう、ストリームの上限に 1 回分の待ちを足す
+    final SseEmitter emitter =
+        new SseEmitter(statusWatchService.streamTimeout().plusSeconds(30).toMillis());
+    statusWatchService
+        .stream(
+            ticketId,
+            requester.userId(),
+            status ->
+                emitter.send(SseEmitter.event().name("status").data(toStatusResponse(status))))
+        .whenComplete(
+            (ignored, error) -> {
+              if (error == null) {
+                emitter.complete();
+              } else {
+                emitter.completeWithError(
+                    error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+              }
+            });
+    return emitter;
   }
 
   @DeleteMapping("/tickets/{ticketId}")
@@ -75,4 +137,17 @@ public class MatchmakingController {
     final var response = matchmakingClient.cancelTicket(ticketId, requester.userId());
     return ResponseEntity.ok(new MatchmakingCancelResponse(response.ticketId(), response.status()));
   }
+
+  private com.example.gateway_bff.api.response.MatchmakingTicketStatusResponse toStatusResponse(
+      com.example.gateway_bff.service.dto.MatchmakingTicketStatusResponse response) {
+    final MatchmakingMatchedPayloadResponse matched =
+        response.matched() == null
+            ? null
+            : new MatchmakingMatchedPayloadResponse(
+                response.matched().matchId(),
+                response.matched().peerUserIds(),
+                response.matched().session());
+    return new com.example.gateway_bff.api.response.MatchmakingTicketStatusResponse(
+        response.ticketId(), response.status(), response.expiresAt(), matched);
+  }
 }
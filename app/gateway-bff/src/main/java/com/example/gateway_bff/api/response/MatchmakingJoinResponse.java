@@ -9,4 +9,8 @@ import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
-public record MatchmakingJoinResponse(String ticketId, String status, String expiresAt) {}
+public record MatchmakingJoinResponse(
+    String ticketId,
+    String status,
+    String expiresAt,
+    MatchmakingWaitEstimateResponse estimate) {}
@@ -0,0 +1,30 @@
+/*
+ * どこで: Gateway-BFF API DTO
+ * 何を: 待ち時間推定と、クライアントへ勧める状態確認間隔を返す
+ * なぜ: クライアントが推定に合わせて状態 API のポーリング間隔を決められるようにするため
+ */
+package com.example.gateway_bff.api.response;
+
+import com.example.gateway_bff.service.dto.MatchmakingWaitEstimate;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/** p50Ms/p90Ms は直近の成立が無い区画では null。 */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record MatchmakingWaitEstimateResponse(
+    String mode, String bucket, long sampleCount, Long p50Ms, Long p90Ms, long pollIntervalMs) {
+
+  /** 下流の推定を公開契約へ写す。推定が無い（旧版の matchmaking）場合は null。 */
+  public static MatchmakingWaitEstimateResponse from(MatchmakingWaitEstimate estimate) {
+    if (estimate == null) {
+      return null;
+    }
+    return new MatchmakingWaitEstimateResponse(
+        estimate.mode(),
+        estimate.bucket(),
+        estimate.sampleCount(),
+        estimate.p50Ms(),
+        estimate.p90Ms(),
+        estimate.pollIntervalMs());
+  }
+}
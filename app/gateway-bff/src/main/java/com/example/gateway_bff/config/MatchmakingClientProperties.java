@@ -5,15 +5,25 @@
  */
 package com.example.gateway_bff.config;
 
+import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+/**
+ * 役割: matchmaking 呼び出し設定を表す。 動作: watchWait は状態の long-poll 1 回で matchmaking
+ * に保留を頼む上限、statusStreamTimeout は SSE 1 本を保つ上限で、その間 long-poll を繰り返す。 前提: watchWait は matchmaking の
+ * status-watch.max-wait 以下、かつ spring.mvc.async.request-timeout より短くすること。
+ */
 @ConfigurationProperties(prefix = "matchmaking")
 public record MatchmakingClientProperties(
     String baseUrl,
     String joinTicketPath,
     String getTicketPath,
     String cancelTicketPath,
-    String userIdHeaderName) {
+    String estimateWaitPath,
+    String watchTicketPath,
+    String userIdHeaderName,
+    Duration watchWait,
+    Duration statusStreamTimeout) {
 
   public MatchmakingClientProperties {
     baseUrl = baseUrl == null ? "http://matchmaking:80" : baseUrl;
@@ -29,7 +39,17 @@ public record MatchmakingClientProperties(
         cancelTicketPath == null || cancelTicketPath.isBlank()
             ? "/v1/matchmaking/tickets/{ticketId}"
             : cancelTicketPath;
+    estimateWaitPath =
+        estimateWaitPath == null || estimateWaitPath.isBlank()
+            ? "/v1/matchmaking/queues/{mode}/estimate"
+            : estimateWaitPath;
+    watchTicketPath =
+        watchTicketPath == null || watchTicketPath.isBlank()
+            ? "/v1/matchmaking/tickets/{ticketId}/watch"
+            : watchTicketPath;
     userIdHeaderName =
         userIdHeaderName == null || userIdHeaderName.isBlank() ? "X-User-Id" : userIdHeaderName;
+    watchWait = watchWait == null ? Duration.ofSeconds(25) : watchWait;
+    statusStreamTimeout = statusStreamTimeout == null ? Duration.ofMinutes(5) : statusStreamTimeout;
   }
 }
@@ -5,8 +5,11 @@ import com.example.gateway_bff.service.dto.MatchmakingCancelTicketResponse;
 import com.example.gateway_bff.service.dto.MatchmakingJoinTicketRequest;
 import com.example.gateway_bff.service.dto.MatchmakingJoinTicketResponse;
 import com.example.gateway_bff.service.dto.MatchmakingTicketStatusResponse;
+import com.example.gateway_bff.service.dto.MatchmakingWaitEstimate;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
@@ -86,6 +89,45 @@ public class MatchmakingClient {
     }
   }
 
+  /**
+   * 役割: ticket が QUEUED を抜けるまで matchmaking に応答を保留させて状態を取得する。 動作: wait は秒単位に切り上げ、watchWait で切り詰めて
+   * timeout_seconds として渡す。 前提: 呼び出しスレッドは最長 wait の間ブロックするため、仮想スレッドから呼ぶこと。
+   */
+  public MatchmakingTicketStatusResponse watchTicketStatus(
+      String ticketId, String userId, Duration wait) {
+    validateTicketId(ticketId);
+    validateUserId(userId);
+    final Duration bounded =
+        wait.compareTo(properties.watchWait()) > 0 ? properties.watchWait() : wait;
+    final long timeoutSeconds = Math.max(0, (bounded.toMillis() + 999) / 1000);
+    try {
+      return requireStatusResponse(
+          matchmakingRestClient
+              .get()
+              .uri(
+                  uriBuilder ->
+                      uriBuilder
+                          .path(properties.watchTicketPath())
+                          .queryParam("timeout_seconds", timeoutSeconds)
+                          .build(ticketId))
+              .header(properties.userIdHeaderName(), userId)
+              .retrieve()
+              .body(MatchmakingTicketStatusResponse.class));
+    } catch (RestClientResponseException ex) {
+      throw mapResponseException(ex, "watchTicketStatus");
+    } catch (ResourceAccessException ex) {
+      throw mapResourceException(ex, "watchTicketStatus");
+    } catch (MatchmakingIntegrationException ex) {
+      throw ex;
+    } catch (RuntimeException ex) {
+      logger.warn("matchmaking watchTicketStatus response parse failed", ex);
+      throw new MatchmakingIntegrationException(
+          MatchmakingIntegrationException.Reason.INVALID_RESPONSE,
+          "matchmaking response parse failed",
+          ex);
+    }
+  }
+
   public MatchmakingCancelTicketResponse cancelTicket(String ticketId, String userId) {
     validateTicketId(ticketId);
     validateUserId(userId);
@@ -112,6 +154,36 @@ public class MatchmakingClient {
     }
   }
 
+  /** 役割: 区画の待ち時間推定を取得する。 動作: bucket 省略時は default 区画。 前提: ユーザーに依存しないため user id ヘッダーは付けない。 */
+  public MatchmakingWaitEstimate estimateWait(String mode, String bucket) {
+    validateMode(mode);
+    try {
+      return requireEstimateResponse(
+          matchmakingRestClient
+              .get()
+              .uri(
+                  uriBuilder ->
+                      uriBuilder
+                          .path(properties.estimateWaitPath())
+                          .queryParamIfPresent("bucket", Optional.ofNullable(bucket))
+                          .build(mode))
+              .retrieve()
+              .body(MatchmakingWaitEstimate.class));
+    } catch (RestClientResponseException ex) {
+      throw mapResponseException(ex, "estimateWait");
+    } catch (ResourceAccessException ex) {
+      throw mapResourceException(ex, "estimateWait");
+    } catch (MatchmakingIntegrationException ex) {
+      throw ex;
+    } catch (RuntimeException ex) {
+      logger.warn("matchmaking estimateWait response parse failed", ex);
+      throw new MatchmakingIntegrationException(
+          MatchmakingIntegrationException.Reason.INVALID_RESPONSE,
+          "matchmaking response parse failed",
+          ex);
+    }
+  }
+
   private MatchmakingJoinTicketResponse requireJoinResponse(
       MatchmakingJoinTicketResponse response) {
     if (response == null || isBlank(response.ticketId()) || isBlank(response.status())) {
@@ -142,6 +214,15 @@ public class MatchmakingClient {
     return response;
   }
 
+  private MatchmakingWaitEstimate requireEstimateResponse(MatchmakingWaitEstimate response) {
+    if (response == null || isBlank(response.mode())) {
+      throw new MatchmakingIntegrationException(
+          MatchmakingIntegrationException.Reason.INVALID_RESPONSE,
+          "matchmaking response is invalid");
+    }
+    return response;
+  }
+
   private MatchmakingIntegrationException mapResponseException(
       RestClientResponseException ex, String operation) {
     logger.warn(
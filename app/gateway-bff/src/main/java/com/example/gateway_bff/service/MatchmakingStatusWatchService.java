@@ -0,0 +1,94 @@
+/*
+ * どこで: Gateway-BFF サービス層
+ * 何を: matchmaking の状態 long-poll を仮想スレッドで待ち、long-poll と SSE の応答へつなぐ
+ * なぜ: 状態が変わるまで待つ接続にプラットフォームスレッドを占有させず、クライアントの状態ポーリングを減らすため
+ */
+package com.example.gateway_bff.service;
+
+import com.example.gateway_bff.config.MatchmakingClientProperties;
+import com.example.gateway_bff.service.dto.MatchmakingTicketStatusResponse;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.springframework.stereotype.Service;
+
+@Service
+public class MatchmakingStatusWatchService {
+
+  private static final String QUEUED = "QUEUED";
+  // 残りがこれより短ければ long-poll を重ねずにストリームを閉じ、クライアントの再接続に任せる
+  private static final Duration MIN_STREAM_WAIT = Duration.ofSeconds(1);
+
+  private final MatchmakingClient matchmakingClient;
+  private final MatchmakingClientProperties properties;
+  // 下流の long-poll 応答を待つ間ブロックするため、1 待機 1 仮想スレッドで動かす
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  public MatchmakingStatusWatchService(
+      MatchmakingClient matchmakingClient, MatchmakingClientProperties properties) {
+    this.matchmakingClient = matchmakingClient;
+    this.properties = properties;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** 役割: 状態の long-poll を待つ。 動作: matchmaking への保留付き呼び出しを仮想スレッドで行う。 前提: wait は watchWait で切り詰める。 */
+  public CompletableFuture<MatchmakingTicketStatusResponse> watch(
+      String ticketId, String userId, Duration wait) {
+    return CompletableFuture.supplyAsync(
+        () -> matchmakingClient.watchTicketStatus(ticketId, userId, wait), executor);
+  }
+
+  /**
+   * 役割: ticket の状態を終端まで listener へ流す。 動作: 現在の状態を呼び出しスレッドで読んで渡し、QUEUED の間は仮想スレッドで long-poll
+   * を繰り返して応答ごとに渡す。statusStreamTimeout を使い切ると QUEUED のまま完了する。 前提: 最初の読み取りの失敗（不在・権限なし）は同期的に投げ、以降の失敗と
+   * listener の IOException は戻り値の future を失敗させる。
+   */
+  public CompletableFuture<Void> stream(String ticketId, String userId, StatusListener listener) {
+    final long deadlineNanos = System.nanoTime() + properties.statusStreamTimeout().toNanos();
+    final MatchmakingTicketStatusResponse initial =
+        matchmakingClient.getTicketStatus(ticketId, userId);
+    deliver(listener, initial);
+    if (!QUEUED.equals(initial.status())) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return CompletableFuture.runAsync(
+        () -> {
+          MatchmakingTicketStatusResponse current = initial;
+          while (QUEUED.equals(current.status())) {
+            final Duration remaining = Duration.ofNanos(deadlineNanos - System.nanoTime());
+            if (remaining.compareTo(MIN_STREAM_WAIT) < 0) {
+              return;
+            }
+            current = matchmakingClient.watchTicketStatus(ticketId, userId, remaining);
+            deliver(listener, current);
+          }
+        },
+        executor);
+  }
+
+  public Duration streamTimeout() {
+    return properties.statusStreamTimeout();
+  }
+
+  private void deliver(StatusListener listener, MatchmakingTicketStatusResponse status) {
+    try {
+      listener.onStatus(status);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /** 状態を 1 件受け取る。SSE の送信失敗（切断）を IOException で返せるよう Consumer とは分ける。 */
+  @FunctionalInterface
+  public interface StatusListener {
+    void onStatus(MatchmakingTicketStatusResponse status) throws IOException;
+  }
+}
@@ -9,4 +9,5 @@ import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.annotation.JsonNaming;
 
 @JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
-public record MatchmakingJoinTicketResponse(String ticketId, String status, String expiresAt) {}
+public record MatchmakingJoinTicketResponse(
+    String ticketId, String status, String expiresAt, MatchmakingWaitEstimate estimate) {}
@@ -0,0 +1,13 @@
+/*
+ * どこで: Gateway-BFF 下流 DTO
+ * 何を: matchmaking の待ち時間推定（p50/p90 と勧める状態確認間隔）を表現する
+ * なぜ: Join 応答と推定 API の両方で同じ下流スキーマを受けるため
+ */
+package com.example.gateway_bff.service.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record MatchmakingWaitEstimate(
+    String mode, String bucket, long sampleCount, Long p50Ms, Long p90Ms, long pollIntervalMs) {}
@@ -1,24 +1,34 @@
 package com.example.gateway_bff.api;
 
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.example.gateway_bff.model.AuthenticatedUser;
 import com.example.gateway_bff.service.GatewayMetrics;
 import com.example.gateway_bff.service.MatchmakingClient;
 import com.example.gateway_bff.service.MatchmakingIntegrationException;
+import com.example.gateway_bff.service.MatchmakingStatusWatchService;
 import com.example.gateway_bff.service.OidcAuthenticatedUserService;
 import com.example.gateway_bff.service.dto.MatchmakingCancelTicketResponse;
 import com.example.gateway_bff.service.dto.MatchmakingJoinTicketResponse;
 import com.example.gateway_bff.service.dto.MatchmakingMatchedPayload;
 import com.example.gateway_bff.service.dto.MatchmakingTicketStatusResponse;
+import com.example.gateway_bff.service.dto.MatchmakingWaitEstimate;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -27,6 +37,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(MatchmakingController.class)
 @AutoConfigureMockMvc(addFilters = false)
@@ -37,6 +48,7 @@ class MatchmakingControllerTest {
 
   @MockitoBean private OidcAuthenticatedUserService oidcAuthenticatedUserService;
   @MockitoBean private MatchmakingClient matchmakingClient;
+  @MockitoBean private MatchmakingStatusWatchService statusWatchService;
   @MockitoBean private GatewayMetrics gatewayMetrics;
 
   @Test
@@ -45,7 +57,11 @@ class MatchmakingControllerTest {
         .thenReturn(new AuthenticatedUser("user-1", "ACTIVE", List.of("USER")));
     when(matchmakingClient.joinTicket(any(), any(), any()))
         .thenReturn(
-            new MatchmakingJoinTicketResponse("ticket-1", "QUEUED", "2026-02-24T12:01:00Z"));
+            new MatchmakingJoinTicketResponse(
+                "ticket-1",
+                "QUEUED",
+                "2026-02-24T12:01:00Z",
+                new MatchmakingWaitEstimate("casual", "default", 12, 8000L, 20000L, 2000)));
 
     mockMvc
         .perform(
@@ -57,7 +73,22 @@ class MatchmakingControllerTest {
                     """))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.ticket_id").value("ticket-1"))
-        .andExpect(jsonPath("$.status").value("QUEUED"));
+        .andExpect(jsonPath("$.status").value("QUEUED"))
+        .andExpect(jsonPath("$.estimate.poll_interval_ms").value(2000));
+  }
+
+  @Test
+  void estimateWaitReturns200() throws Exception {
+    when(oidcAuthenticatedUserService.resolveAuthenticatedUser(any()))
+        .thenReturn(new AuthenticatedUser("user-1", "ACTIVE", List.of("USER")));
+    when(matchmakingClient.estimateWait("rank", "apac"))
+        .thenReturn(new MatchmakingWaitEstimate("rank", "apac", 0, null, null, 1000));
+
+    mockMvc
+        .perform(get("/v1/matchmaking/queues/rank/estimate").param("bucket", "apac"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.bucket").value("apac"))
+        .andExpect(jsonPath("$.poll_interval_ms").value(1000));
   }
 
   @Test
@@ -79,6 +110,73 @@ class MatchmakingControllerTest {
         .andExpect(jsonPath("$.matched.match_id").value("match-1"));
   }
 
+  @Test
+  void watchTicketStatusRespondsWhenMatchmakingReturns() throws Exception {
+    when(oidcAuthenticatedUserService.resolveAuthenticatedUser(any()))
+        .thenReturn(new AuthenticatedUser("user-1", "ACTIVE", List.of("USER")));
+    final CompletableFuture<MatchmakingTicketStatusResponse> pending = new CompletableFuture<>();
+    when(statusWatchService.watch("ticket-1", "user-1", Duration.ofSeconds(10)))
+        .thenReturn(pending);
+
+    final MvcResult result =
+        mockMvc
+            .perform(get("/v1/matchmaking/tickets/ticket-1/watch").param("timeout_seconds", "10"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    pending.complete(
+        new MatchmakingTicketStatusResponse(
+            "ticket-1",
+            "MATCHED",
+            "2026-02-24T12:01:00Z",
+            new MatchmakingMatchedPayload("match-1", List.of("user-2"), Map.of())));
+
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value("MATCHED"))
+        .andExpect(jsonPath("$.matched.peer_user_ids[0]").value("user-2"));
+  }
+
+  @Test
+  void streamTicketStatusSendsStatusEvents() throws Exception {
+    when(oidcAuthenticatedUserService.resolveAuthenticatedUser(any()))
+        .thenReturn(new AuthenticatedUser("user-1", "ACTIVE", List.of("USER")));
+    when(statusWatchService.streamTimeout()).thenReturn(Duration.ofMinutes(5));
+    when(statusWatchService.stream(eq("ticket-1"), eq("user-1"), any()))
+        .thenAnswer(
+            invocation -> {
+              final MatchmakingStatusWatchService.StatusListener listener =
+                  invocation.getArgument(2);
+              listener.onStatus(
+                  new MatchmakingTicketStatusResponse(
+                      "ticket-1", "QUEUED", "2026-02-24T12:01:00Z", null));
+              listener.onStatus(
+                  new MatchmakingTicketStatusResponse(
+                      "ticket-1",
+                      "MATCHED",
+                      "2026-02-24T12:01:00Z",
+                      new MatchmakingMatchedPayload("match-1", List.of(), Map.of())));
+              return CompletableFuture.completedFuture(null);
+            });
+
+    final MvcResult result =
+        mockMvc
+            .perform(get("/v1/matchmaking/tickets/ticket-1/events"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(
+            content()
+                .string(
+                    allOf(
+                        containsString("event:status"),
+                        containsString("\"status\":\"QUEUED\""),
+                        containsString("\"match_id\":\"match-1\""))));
+  }
+
   @Test
   void cancelTicketReturns200() throws Exception {
     when(oidcAuthenticatedUserService.resolveAuthenticatedUser(any()))
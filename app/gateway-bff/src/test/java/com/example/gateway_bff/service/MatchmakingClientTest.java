@@ -16,6 +16,7 @@ import com.example.gateway_bff.config.MatchmakingClientProperties;
 import com.example.gateway_bff.service.dto.MatchmakingJoinTicketRequest;
 import java.net.ConnectException;
 import java.net.SocketTimeoutException;
+import java.time.Duration;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
@@ -49,6 +50,47 @@ class MatchmakingClientTest {
     fixture.server.verify();
   }
 
+  @Test
+  void estimateWaitPassesBucketAsQueryParameter() {
+    final ClientFixture fixture = newFixture();
+    fixture
+        .server
+        .expect(
+            requestTo("http://matchmaking.test/v1/matchmaking/queues/rank/estimate?bucket=apac"))
+        .andExpect(method(GET))
+        .andRespond(
+            withSuccess(
+                """
+                {"mode":"rank","bucket":"apac","sample_count":3,"p50_ms":8916,"p90_ms":null,
+                 "poll_interval_ms":2229}
+                """,
+                MediaType.APPLICATION_JSON));
+
+    final var response = fixture.client.estimateWait("rank", "apac");
+
+    assertThat(response.p50Ms()).isEqualTo(8916L);
+    assertThat(response.p90Ms()).isNull();
+    assertThat(response.pollIntervalMs()).isEqualTo(2229L);
+    fixture.server.verify();
+  }
+
+  @Test
+  void estimateWaitOmitsBucketWhenNotGiven() {
+    final ClientFixture fixture = newFixture();
+    fixture
+        .server
+        .expect(requestTo("http://matchmaking.test/v1/matchmaking/queues/casual/estimate"))
+        .andRespond(
+            withSuccess(
+                """
+                {"mode":"casual","bucket":"default","sample_count":0,"poll_interval_ms":1000}
+                """,
+                MediaType.APPLICATION_JSON));
+
+    assertThat(fixture.client.estimateWait("casual", null).bucket()).isEqualTo("default");
+    fixture.server.verify();
+  }
+
   @Test
   void getTicketStatusCallsMatchmakingWithUserIdHeader() {
     final ClientFixture fixture = newFixture();
@@ -69,6 +111,32 @@ class MatchmakingClientTest {
     assertThat(response.status()).isEqualTo("QUEUED");
   }
 
+  @Test
+  void watchTicketStatusCapsTimeoutAtWatchWait() {
+    final ClientFixture fixture = newFixture();
+    fixture
+        .server
+        .expect(
+            requestTo(
+                "http://matchmaking.test/v1/matchmaking/tickets/ticket-1/watch?timeout_seconds=25"))
+        .andExpect(method(GET))
+        .andExpect(header("X-User-Id", "user-1"))
+        .andRespond(
+            withSuccess(
+                """
+                {"ticket_id":"ticket-1","status":"MATCHED","expires_at":"2026-02-24T12:01:00Z",
+                 "matched":{"match_id":"match-1","peer_user_ids":["user-2"],"session":{}}}
+                """,
+                MediaType.APPLICATION_JSON));
+
+    final var response =
+        fixture.client.watchTicketStatus("ticket-1", "user-1", Duration.ofMinutes(5));
+
+    assertThat(response.status()).isEqualTo("MATCHED");
+    assertThat(response.matched().matchId()).isEqualTo("match-1");
+    fixture.server.verify();
+  }
+
   @Test
   void cancelTicketCallsMatchmakingWithUserIdHeader() {
     final ClientFixture fixture = newFixture();
@@ -233,7 +301,11 @@ class MatchmakingClientTest {
             "/v1/matchmaking/queues/{mode}/tickets",
             "/v1/matchmaking/tickets/{ticketId}",
             "/v1/matchmaking/tickets/{ticketId}",
-            "X-User-Id");
+            "/v1/matchmaking/queues/{mode}/estimate",
+            "/v1/matchmaking/tickets/{ticketId}/watch",
+            "X-User-Id",
+            Duration.ofSeconds(25),
+            Duration.ofMinutes(5));
     return new ClientFixture(new MatchmakingClient(restClient, properties), server);
   }
 
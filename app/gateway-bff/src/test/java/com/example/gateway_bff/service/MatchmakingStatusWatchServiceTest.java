@@ -0,0 +1,109 @@
+package com.example.gateway_bff.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.gateway_bff.config.MatchmakingClientProperties;
+import com.example.gateway_bff.service.dto.MatchmakingTicketStatusResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+class MatchmakingStatusWatchServiceTest {
+
+  private final MatchmakingClient matchmakingClient = Mockito.mock(MatchmakingClient.class);
+  private final MatchmakingStatusWatchService service =
+      new MatchmakingStatusWatchService(
+          matchmakingClient,
+          new MatchmakingClientProperties(
+              null, null, null, null, null, null, null, null, Duration.ofMinutes(5)));
+
+  @AfterEach
+  void tearDown() {
+    service.shutdown();
+  }
+
+  @Test
+  void streamLongPollsUntilTicketLeavesQueued() throws Exception {
+    when(matchmakingClient.getTicketStatus("ticket-1", "user-1")).thenReturn(status("QUEUED"));
+    when(matchmakingClient.watchTicketStatus(eq("ticket-1"), eq("user-1"), any()))
+        .thenReturn(status("QUEUED"))
+        .thenReturn(status("MATCHED"));
+    final List<String> sent = new ArrayList<>();
+
+    service
+        .stream("ticket-1", "user-1", response -> sent.add(response.status()))
+        .get(5, TimeUnit.SECONDS);
+
+    assertThat(sent).containsExactly("QUEUED", "QUEUED", "MATCHED");
+  }
+
+  @Test
+  void streamCompletesWithoutLongPollWhenAlreadyTerminal() throws Exception {
+    when(matchmakingClient.getTicketStatus("ticket-1", "user-1")).thenReturn(status("CANCELLED"));
+    final List<String> sent = new ArrayList<>();
+
+    service
+        .stream("ticket-1", "user-1", response -> sent.add(response.status()))
+        .get(5, TimeUnit.SECONDS);
+
+    assertThat(sent).containsExactly("CANCELLED");
+    verify(matchmakingClient, never()).watchTicketStatus(any(), any(), any());
+  }
+
+  @Test
+  void streamFailsWhenListenerCannotSend() {
+    when(matchmakingClient.getTicketStatus("ticket-1", "user-1")).thenReturn(status("QUEUED"));
+    when(matchmakingClient.watchTicketStatus(eq("ticket-1"), eq("user-1"), any()))
+        .thenReturn(status("MATCHED"));
+    final List<String> sent = new ArrayList<>();
+
+    final var future =
+        service.stream(
+            "ticket-1",
+            "user-1",
+            response -> {
+              if (!sent.isEmpty()) {
+                throw new IOException("client disconnected");
+              }
+              sent.add(response.status());
+            });
+
+    assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS))
+        .isInstanceOf(ExecutionException.class)
+        .hasCauseInstanceOf(UncheckedIOException.class);
+  }
+
+  @Test
+  void watchDelegatesToLongPollOnVirtualThread() throws Exception {
+    when(matchmakingClient.watchTicketStatus("ticket-1", "user-1", Duration.ofSeconds(10)))
+        .thenAnswer(
+            invocation -> {
+              assertThat(Thread.currentThread().isVirtual()).isTrue();
+              return status("MATCHED");
+            });
+
+    assertThat(
+            service
+                .watch("ticket-1", "user-1", Duration.ofSeconds(10))
+                .get(5, TimeUnit.SECONDS)
+                .status())
+        .isEqualTo("MATCHED");
+  }
+
+  private static MatchmakingTicketStatusResponse status(String status) {
+    return new MatchmakingTicketStatusResponse("ticket-1", status, "2026-02-24T12:01:00Z", null);
+  }
+}
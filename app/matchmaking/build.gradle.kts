@@ -2,11 +2,13 @@ plugins {
     id("org.springframework.boot")
     id("io.spring.dependency-management")
     id("com.google.cloud.tools.jib")
+    id("me.champeau.jmh")
 }
 
 val jnatsVersion: String by rootProject.extra
 val lombokVersion: String by rootProject.extra
 val logstashLogbackEncoderVersion: String by rootProject.extra
+val testcontainersBomVersion: String by rootProject.extra
 
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
@@ -25,6 +27,54 @@ dependencies {
     annotationProcessor("org.projectlombok:lombok:$lombokVersion")
 
     testImplementation("org.springframework.boot:spring-boot-starter-test")
+    testImplementation(platform("org.testcontainers:testcontainers-bom:$testcontainersBomVersion"))
+    testImplementation("org.testcontainers:junit-jupiter")
+}
+
+// ベンチマークと Redis Cluster の結合テストはコンテナを起動し時間もかかるため、通常の test/check からは除外する。
+tasks.test {
+    useJUnitPlatform {
+        excludeTags("benchmark", "redis-cluster")
+    }
+}
+
+// cluster 配置の key（key-layout: cluster）を 3 ノードの Redis Cluster コンテナで確かめる。
+tasks.register<Test>("redisClusterTest") {
+    description = "Runs matchmaking repository tests against a local 3-node Redis Cluster container."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("redis-cluster")
+    }
+}
+
+tasks.register<Test>("benchmark") {
+    description = "Runs matchmaking benchmarks against a local Redis container."
+    group = "verification"
+    testClassesDirs = sourceSets.test.get().output.classesDirs
+    classpath = sourceSets.test.get().runtimeClasspath
+    useJUnitPlatform {
+        includeTags("benchmark")
+    }
+    testLogging {
+        showStandardStreams = true
+    }
+    // trace 再生の入力・倍速・baseline を -Dbench.trace=... のように渡せるようにする
+    System.getProperties().stringPropertyNames()
+        .filter { it.startsWith("bench.") }
+        .forEach { systemProperty(it, System.getProperty(it)) }
+}
+
+// JMH は Redis コンテナの共通基盤（AbstractRedisContainerTest）を使うため test の出力と依存も取り込む。
+// 結果は JSON で残し、jmh-result-baseline.json などと見比べる。
+jmh {
+    includeTests.set(true)
+    fork.set(1)
+    warmupIterations.set(2)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
 }
 
 tasks.named<org.springframework.boot.gradle.tasks.bundling.BootJar>("bootJar") {
@@ -0,0 +1,87 @@
+/*
+ * どこで: Matchmaking JMH ベンチマーク
+ * 何を: match_many.lua 1 回の所要時間を、1 回で取り切るペア数ごとに実 Redis で計測する
+ * なぜ: worker-batch-size を変えたときに 1 回の Lua 実行がどれだけ Redis を占有するかを確認するため
+ */
+package com.example.matchmaking.benchmark;
+
+import com.example.matchmaking.AbstractRedisContainerTest;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.RedisLuaMatchmakingMatchRepository;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 役割: matchMany 1 回の遅延分布を測る。 動作: 呼び出しごとに queue を maxPairs ペア分だけ積み直すため、計測対象は Lua 1 回に限られる。 前提:
+ * 積み直しは計測時間に含まれない（Level.Invocation の setup）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MatchManyBenchmark extends AbstractRedisContainerTest {
+
+  private static final MatchMode MODE = MatchMode.CASUAL;
+  private static final QueueBucket BUCKET = QueueBucket.defaultOf(MODE);
+
+  @Param({"1", "25", "100"})
+  public int maxPairs;
+
+  private StringRedisTemplate redisTemplate;
+  private RedisLuaMatchmakingMatchRepository matchRepository;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    redisTemplate = newRedisTemplate();
+    matchRepository =
+        new RedisLuaMatchmakingMatchRepository(
+            newScriptExecutor(redisTemplate), MatchmakingKeyLayout.standalone(), true);
+  }
+
+  @Setup(Level.Invocation)
+  public void seedQueue() {
+    final long now = Instant.now().toEpochMilli();
+    final String expiresAtMillis = String.valueOf(now + 600_000);
+    redisTemplate.executePipelined(
+        (RedisCallback<Object>)
+            connection -> {
+              final StringRedisConnection stringConnection = (StringRedisConnection) connection;
+              connection.serverCommands().flushDb();
+              for (int i = 0; i < maxPairs * 2; i++) {
+                final String ticketId = UUID.randomUUID().toString();
+                stringConnection.hMSet(
+                    "mm:ticket:" + ticketId,
+                    Map.of(
+                        "user_id", "user-" + i,
+                        "mode", MODE.value(),
+                        "status", "QUEUED",
+                        "created_at", Instant.ofEpochMilli(now + i).toString(),
+                        "expires_at_epoch_millis", expiresAtMillis));
+                stringConnection.zAdd("mm:queue:" + MODE.value(), now + i, ticketId);
+              }
+              return null;
+            });
+  }
+
+  @Benchmark
+  public List<MatchPair> matchMany() {
+    return matchRepository.matchMany(BUCKET, Instant.now(), maxPairs);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * どこで: Matchmaking JMH ベンチマーク
+ * 何を: join / join→成立 / join→cancel / 状態参照を repository と Lua スクリプト単位で実 Redis に対して計測する
+ * なぜ: 1 操作あたりのスループットと遅延分布を、スクリプトや key 構成の変更前後で比べるため
+ */
+package com.example.matchmaking.benchmark;
+
+import com.example.matchmaking.AbstractRedisContainerTest;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.TicketRecord;
+import com.example.matchmaking.model.TicketStatusSnapshot;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.RedisLuaMatchmakingMatchRepository;
+import com.example.matchmaking.repository.RedisMatchmakingTicketRepository;
+import com.example.matchmaking.repository.RedisScriptExecutor;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 役割: ticket 操作 1 回あたりのコストを測る。 動作: iteration ごとに DB を空にし、状態参照用の MATCHED ticket を 1 組作り直す。 前提: Redis
+ * は AbstractRedisContainerTest のコンテナを使う。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TicketLifecycleBenchmark extends AbstractRedisContainerTest {
+
+  private static final QueueBucket BUCKET = QueueBucket.defaultOf(MatchMode.CASUAL);
+  private static final Duration TICKET_TTL = Duration.ofMinutes(10);
+
+  private final AtomicLong sequence = new AtomicLong();
+  private StringRedisTemplate redisTemplate;
+  private RedisMatchmakingTicketRepository ticketRepository;
+  private RedisLuaMatchmakingMatchRepository matchRepository;
+  private String matchedTicketId;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    redisTemplate = newRedisTemplate();
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(new SimpleMeterRegistry());
+    final RedisScriptExecutor scriptExecutor = newScriptExecutor(redisTemplate, metrics);
+    final MatchmakingKeyLayout keys = MatchmakingKeyLayout.standalone();
+    ticketRepository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate, scriptExecutor, keys, REDIS_PROPERTIES, metrics);
+    matchRepository = new RedisLuaMatchmakingMatchRepository(scriptExecutor, keys, true);
+  }
+
+  @Setup(Level.Iteration)
+  public void setUpIteration() {
+    redisTemplate.execute(
+        (RedisCallback<Object>)
+            connection -> {
+              connection.serverCommands().flushDb();
+              return null;
+            });
+    matchedTicketId = join().ticketId();
+    join();
+    matchRepository.matchMany(BUCKET, Instant.now(), 1);
+  }
+
+  @Benchmark
+  public TicketRecord join() {
+    final long id = sequence.incrementAndGet();
+    return ticketRepository.createOrReuseTicket(
+        BUCKET, "user-" + id, "idem-" + id, "{}", null, 1, TICKET_TTL, TICKET_TTL);
+  }
+
+  /** 2 人が join して 1 ペア成立するまで。成立 1 件あたりの join 2 回 + matcher 1 回のコスト。 */
+  @Benchmark
+  public List<MatchPair> joinPairAndMatch() {
+    join();
+    join();
+    return matchRepository.matchMany(BUCKET, Instant.now(), 1);
+  }
+
+  @Benchmark
+  public Optional<TicketRecord> joinAndCancel() {
+    final TicketRecord ticket = join();
+    return ticketRepository.cancelTicket(ticket.ticketId(), ticket.userId());
+  }
+
+  /** MATCHED ticket の状態参照（ticket と match record を 1 回の EVALSHA で読む）。 */
+  @Benchmark
+  public Optional<TicketStatusSnapshot> status() {
+    return ticketRepository.findTicketStatus(matchedTicketId);
+  }
+}
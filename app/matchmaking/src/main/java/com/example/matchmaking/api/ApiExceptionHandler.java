@@ -34,6 +34,13 @@ public class ApiExceptionHandler {
         .body(new ApiErrorResponse("MATCHMAKING_TICKET_FORBIDDEN", ex.getMessage()));
   }
 
+  @ExceptionHandler(IdempotencyConflictException.class)
+  public ResponseEntity<ApiErrorResponse> handleIdempotencyConflict(
+      IdempotencyConflictException ex) {
+    return ResponseEntity.status(HttpStatus.CONFLICT)
+        .body(new ApiErrorResponse("MATCHMAKING_IDEMPOTENCY_CONFLICT", ex.getMessage()));
+  }
+
   @ExceptionHandler(RuntimeException.class)
   public ResponseEntity<ApiErrorResponse> handleRuntime(RuntimeException ex) {
     return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
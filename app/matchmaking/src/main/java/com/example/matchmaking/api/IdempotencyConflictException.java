@@ -0,0 +1,12 @@
+/*
+ * どこで: Matchmaking API
+ * 何を: idempotency_key の再利用で attributes が異なることを表現する
+ * なぜ: 同一キーで別条件の Join を既存 ticket として返さず、409 応答へ変換するため
+ */
+package com.example.matchmaking.api;
+
+public class IdempotencyConflictException extends RuntimeException {
+  public IdempotencyConflictException(String message) {
+    super(message);
+  }
+}
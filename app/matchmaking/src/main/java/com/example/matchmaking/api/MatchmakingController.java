@@ -1,6 +1,6 @@
 /*
  * どこで: Matchmaking API
- * 何を: Join/Status/Cancel エンドポイントを公開する
+ * 何を: Join/Status/Cancel と状態の long-poll、待ち時間推定のエンドポイントを公開する
  * なぜ: クライアントからのマッチメイク要求を受け付ける入口を提供するため
  */
 package com.example.matchmaking.api;
@@ -9,8 +9,11 @@ import com.example.matchmaking.api.request.JoinMatchmakingTicketRequest;
 import com.example.matchmaking.api.response.CancelMatchmakingTicketResponse;
 import com.example.matchmaking.api.response.JoinMatchmakingTicketResponse;
 import com.example.matchmaking.api.response.TicketStatusResponse;
+import com.example.matchmaking.api.response.WaitTimeEstimateResponse;
 import com.example.matchmaking.service.MatchmakingService;
 import jakarta.validation.Valid;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -20,6 +23,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -38,12 +42,30 @@ public class MatchmakingController {
     return ResponseEntity.ok(matchmakingService.join(mode, userId, request));
   }
 
+  @GetMapping("/queues/{mode}/estimate")
+  public ResponseEntity<WaitTimeEstimateResponse> estimateWait(
+      @PathVariable("mode") String mode,
+      @RequestParam(name = "bucket", required = false) String bucket) {
+    return ResponseEntity.ok(matchmakingService.estimateWait(mode, bucket));
+  }
+
   @GetMapping("/tickets/{ticketId}")
   public ResponseEntity<TicketStatusResponse> getTicketStatus(
       @PathVariable("ticketId") String ticketId, @RequestHeader(HEADER_USER_ID) String userId) {
     return ResponseEntity.ok(matchmakingService.getTicketStatus(ticketId, userId));
   }
 
+  /** QUEUED の間は応答を保留し、状態が変わるか timeout_seconds（上限 status-watch.max-wait）で現在の状態を返す。 */
+  @GetMapping("/tickets/{ticketId}/watch")
+  public CompletableFuture<ResponseEntity<TicketStatusResponse>> watchTicketStatus(
+      @PathVariable("ticketId") String ticketId,
+      @RequestHeader(HEADER_USER_ID) String userId,
+      @RequestParam(name = "timeout_seconds", defaultValue = "30") long timeoutSeconds) {
+    return matchmakingService
+        .watchTicketStatus(ticketId, userId, Duration.ofSeconds(timeoutSeconds))
+        .thenApply(ResponseEntity::ok);
+  }
+
   @DeleteMapping("/tickets/{ticketId}")
   public ResponseEntity<CancelMatchmakingTicketResponse> cancelTicket(
       @PathVariable("ticketId") String ticketId, @RequestHeader(HEADER_USER_ID) String userId) {
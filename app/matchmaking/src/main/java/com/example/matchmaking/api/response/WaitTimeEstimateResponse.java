@@ -0,0 +1,14 @@
+/*
+ * どこで: Matchmaking API レスポンス DTO
+ * 何を: 区画ごとの待ち時間推定と、クライアントへ勧める状態確認間隔を定義する
+ * なぜ: クライアントが推定に合わせて状態 API のポーリング間隔を決められるようにするため
+ */
+package com.example.matchmaking.api.response;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+
+/** p50Ms/p90Ms は直近の成立が無い区画では null。 */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+public record WaitTimeEstimateResponse(
+    String mode, String bucket, long sampleCount, Long p50Ms, Long p90Ms, long pollIntervalMs) {}
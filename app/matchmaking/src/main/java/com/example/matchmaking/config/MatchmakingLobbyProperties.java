@@ -0,0 +1,27 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: mode ごとのロビー編成（チーム人数・チーム数）を保持する
+ * なぜ: 1v1 以外の試合形式を mode 単位で設定だけで切り替えるため
+ */
+package com.example.matchmaking.config;
+
+import com.example.matchmaking.model.LobbyShape;
+import com.example.matchmaking.model.MatchMode;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: mode ごとのロビー編成を表す。 動作: modes のキーは mode 値（casual/rank）で、未設定の mode は従来の 1v1 として扱う。 前提:
+ * party_size の上限はその mode の teamSize になる。
+ */
+@ConfigurationProperties(prefix = "matchmaking.lobby")
+public record MatchmakingLobbyProperties(Map<String, LobbyShape> modes) {
+
+  public MatchmakingLobbyProperties {
+    modes = modes == null ? Map.of() : Map.copyOf(modes);
+  }
+
+  public LobbyShape shapeOf(MatchMode mode) {
+    return modes.getOrDefault(mode.value(), LobbyShape.ONE_VS_ONE);
+  }
+}
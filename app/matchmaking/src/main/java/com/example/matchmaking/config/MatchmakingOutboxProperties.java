@@ -0,0 +1,34 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: match 成立イベントの outbox stream を NATS へ中継する relay の設定を保持する
+ * なぜ: 中継の遅れと 1 回あたりの Redis/NATS 負荷、停止した relay からの引き継ぎ時間を環境ごとに調整するため
+ */
+package com.example.matchmaking.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: outbox relay の設定を表す。 動作: pollInterval ごとに batchSize 件ずつ、最大 maxBatches 回まで stream を読んで非同期
+ * publish し、ack を publishTimeout まで待つ。claimIdle を超えて未確認のエントリは他の relay からも再送対象として引き取る。 前提:
+ * enabled=false（または nats.enabled=false）で relay が無いときは、stream を縮める者がいないため matcher も outbox へ積まない。
+ */
+@ConfigurationProperties(prefix = "matchmaking.outbox")
+public record MatchmakingOutboxProperties(
+    boolean enabled,
+    String group,
+    Duration pollInterval,
+    int batchSize,
+    int maxBatches,
+    Duration claimIdle,
+    Duration publishTimeout) {
+
+  public MatchmakingOutboxProperties {
+    group = group == null || group.isBlank() ? "nats-relay" : group;
+    pollInterval = pollInterval == null ? Duration.ofMillis(100) : pollInterval;
+    batchSize = batchSize < 1 ? 100 : batchSize;
+    maxBatches = maxBatches < 1 ? 10 : maxBatches;
+    claimIdle = claimIdle == null ? Duration.ofSeconds(30) : claimIdle;
+    publishTimeout = publishTimeout == null ? Duration.ofSeconds(5) : publishTimeout;
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: queue を区画分割する attributes と、attribute ごとに許す値・数値帯の範囲を保持する
+ * なぜ: mode/region/skill 帯などの分割軸を環境ごとに切り替えつつ、区画数を設定した組み合わせに閉じるため
+ */
+package com.example.matchmaking.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: queue 区画の分割軸を定義する。 動作: attributes の順に値を連結して区画 ID を作る。bandWidths に含まれる attribute
+ * は数値を帯幅で割った帯番号へ丸め、bandRanges の範囲内の帯だけを使う。それ以外の attribute は allowedValues
+ * に列挙した値だけを使う。範囲外・未列挙の値は "any" に寄せる。 前提: attributes が空なら分割せず default 区画のみを使う。
+ */
+@ConfigurationProperties(prefix = "matchmaking.queue-buckets")
+public record MatchmakingQueueBucketProperties(
+    List<String> attributes,
+    Map<String, Integer> bandWidths,
+    Map<String, List<String>> allowedValues,
+    Map<String, BandRange> bandRanges) {
+
+  public MatchmakingQueueBucketProperties {
+    attributes = attributes == null ? List.of() : List.copyOf(attributes);
+    bandWidths = bandWidths == null ? Map.of() : Map.copyOf(bandWidths);
+    bandRanges = bandRanges == null ? Map.of() : Map.copyOf(bandRanges);
+    final Map<String, List<String>> normalizedValues = new HashMap<>();
+    if (allowedValues != null) {
+      // 照合は正規化後の値で行うため、設定値も小文字に揃えておく
+      allowedValues.forEach(
+          (attribute, values) ->
+              normalizedValues.put(
+                  attribute,
+                  values == null
+                      ? List.of()
+                      : values.stream().map(value -> value.toLowerCase(Locale.ROOT)).toList()));
+    }
+    allowedValues = Map.copyOf(normalizedValues);
+  }
+
+  /** 数値 attribute で使う帯番号の範囲（両端を含む）。 */
+  public record BandRange(long min, long max) {}
+}
@@ -0,0 +1,22 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: rating ベースのマッチャーの有効化と許容幅の広げ方を保持する
+ * なぜ: FIFO とレーティング近傍マッチを設定だけで切り替え、許容幅を運用で調整できるようにするため
+ */
+package com.example.matchmaking.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: rating マッチャーの設定を表す。 動作: 許容幅は baseWindow + widenPerSecond * 待機秒で広がり maxWindow で頭打ちになる。
+ * candidatesPerSide は rating の上下それぞれで検証する候補数の上限。 前提: enabled=false の場合は FIFO マッチャーが使われる。
+ */
+@ConfigurationProperties(prefix = "matchmaking.rating")
+public record MatchmakingRatingProperties(
+    boolean enabled,
+    String attribute,
+    double defaultRating,
+    double baseWindow,
+    double widenPerSecond,
+    double maxWindow,
+    int candidatesPerSide) {}
@@ -0,0 +1,23 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: 期限切れ ticket をまとめて失効させる reaper の実行間隔とバッチ件数を保持する
+ * なぜ: 参照時の失効書き込みをやめた代わりに、失効の遅れと 1 回あたりの Redis 負荷を環境ごとに調整するため
+ */
+package com.example.matchmaking.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: 区画ごとの expiry reaper の設定を表す。 動作: worker は担当区画を処理する前に、interval ごとに期限到来分を batchSize 件ずつ最大
+ * maxBatches 回まで失効させる。 前提: 失効の遅れは interval と worker の idle back-off の大きい方まで生じうる。
+ */
+@ConfigurationProperties(prefix = "matchmaking.reaper")
+public record MatchmakingReaperProperties(Duration interval, int batchSize, int maxBatches) {
+
+  public MatchmakingReaperProperties {
+    interval = interval == null ? Duration.ofSeconds(1) : interval;
+    batchSize = batchSize < 1 ? 500 : batchSize;
+    maxBatches = maxBatches < 1 ? 10 : maxBatches;
+  }
+}
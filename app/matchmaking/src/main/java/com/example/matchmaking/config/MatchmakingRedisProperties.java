@@ -0,0 +1,42 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: Redis スクリプト計測の閾値と、key の配置（単一ノード / クラスタ）、ticket hash の書き込み形式を保持する
+ * なぜ: 遅いスクリプトから tick の遅れの原因を辿れるようにし、単一 primary の CPU を超える規模では区画を shard へ分散できるようにするため
+ */
+package com.example.matchmaking.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: Redis 利用の設定を表す。 動作: slowScriptThreshold 以上かかったスクリプト呼び出しを key と走査件数付きで WARN
+ * ログに残す。keyLayout=cluster なら区画ごとの hash tag 付き key（mm:{mode:bucket}:queue など）を使う。ticketEncoding
+ * は新しく作る ticket の形式で、読み取りはどちらの形式も扱う。 前提: 所要時間はクライアントから見た往復時間で、Redis の SLOWLOG より通信分だけ長い。keyLayout
+ * を切り替えると既存の key は読まれなくなるため、切り替えは空の Redis で行う。ticketEncoding の既定は legacy で、compact
+ * へは全 replica が compact を読める版になってから明示的に切り替える。
+ */
+@ConfigurationProperties(prefix = "matchmaking.redis")
+public record MatchmakingRedisProperties(
+    Duration slowScriptThreshold, KeyLayout keyLayout, TicketEncoding ticketEncoding) {
+
+  public MatchmakingRedisProperties {
+    slowScriptThreshold = slowScriptThreshold == null ? Duration.ofMillis(20) : slowScriptThreshold;
+    keyLayout = keyLayout == null ? KeyLayout.STANDALONE : keyLayout;
+    ticketEncoding = ticketEncoding == null ? TicketEncoding.LEGACY : ticketEncoding;
+  }
+
+  /** key の配置。STANDALONE は従来の mm:queue:{mode}[:{bucket}] 形式。 */
+  public enum KeyLayout {
+    STANDALONE,
+    CLUSTER
+  }
+
+  /**
+   * ticket hash の書き込み形式。COMPACT は短い field 名と epoch millis だけを持ち、冪等キーを ticket ID に畳み込む。LEGACY
+   * は移行前の形式。
+   */
+  public enum TicketEncoding {
+    COMPACT,
+    LEGACY
+  }
+}
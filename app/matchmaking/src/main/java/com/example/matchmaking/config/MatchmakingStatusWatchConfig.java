@@ -0,0 +1,34 @@
+/*
+ * どこで: Matchmaking インフラ設定
+ * 何を: ticket 状態変化通知の Redis pub/sub 購読を Bean 化する
+ * なぜ: 他 pod の worker が成立させた ticket を待つ long-poll/SSE を、次のポーリングを待たずに返すため
+ */
+package com.example.matchmaking.config;
+
+import com.example.matchmaking.service.TicketStatusSignal;
+import java.nio.charset.StandardCharsets;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@ConditionalOnProperty(name = "matchmaking.status-watch.enabled", havingValue = "true")
+public class MatchmakingStatusWatchConfig {
+
+  @Bean
+  RedisMessageListenerContainer matchmakingStatusWatchListenerContainer(
+      RedisConnectionFactory connectionFactory,
+      MatchmakingStatusWatchProperties properties,
+      TicketStatusSignal statusSignal) {
+    final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.addMessageListener(
+        (message, pattern) ->
+            statusSignal.onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+        new ChannelTopic(properties.channel()));
+    return container;
+  }
+}
@@ -0,0 +1,25 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: ticket 状態の long-poll/SSE 待機の上限と、状態変化通知の channel を保持する
+ * なぜ: 状態 API のポーリング量を減らしつつ、1 pod が抱える待機数と 1 回の待ち時間を環境ごとに抑えるため
+ */
+package com.example.matchmaking.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: ticket 状態の待機設定を表す。 動作: enabled=true なら worker の成立と Cancel が channel へ ticket ID を publish
+ * し、待機中の long-poll/SSE を起こす。1 回の待機は maxWait まで、pod 内の同時待機は maxWaiters 件まで。 前提: enabled=false
+ * や上限超過時は待たずに現在の状態を返す。spring.mvc.async.request-timeout は maxWait より長くすること。
+ */
+@ConfigurationProperties(prefix = "matchmaking.status-watch")
+public record MatchmakingStatusWatchProperties(
+    boolean enabled, String channel, Duration maxWait, int maxWaiters) {
+
+  public MatchmakingStatusWatchProperties {
+    channel = channel == null || channel.isBlank() ? "mm:ticket-status" : channel;
+    maxWait = maxWait == null ? Duration.ofSeconds(30) : maxWait;
+    maxWaiters = maxWaiters < 1 ? 10000 : maxWaiters;
+  }
+}
@@ -0,0 +1,21 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: ticket 状態のクライアント側キャッシュの有効/無効と上限件数を保持する
+ * なぜ: 状態ポーリングを Redis へ届かせずに返せるようにしつつ、RESP3 を使えない環境では切れるようにするため
+ */
+package com.example.matchmaking.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: ticket 状態キャッシュの設定を表す。 動作: enabled=true で Redis の CLIENT TRACKING
+ * による無効化通知付きキャッシュを使い、maxEntries を超えたら最も古く参照された ticket から捨てる。 前提: Redis 6 以降の単一ノード（または replica を持つ
+ * primary）に RESP3 で接続できること。
+ */
+@ConfigurationProperties(prefix = "matchmaking.ticket-cache")
+public record MatchmakingTicketCacheProperties(boolean enabled, int maxEntries) {
+
+  public MatchmakingTicketCacheProperties {
+    maxEntries = maxEntries <= 0 ? 10000 : maxEntries;
+  }
+}
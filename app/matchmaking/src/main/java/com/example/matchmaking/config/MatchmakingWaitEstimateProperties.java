@@ -0,0 +1,32 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: 待ち時間推定の集計窓と更新間隔、クライアントへ勧める状態確認間隔の範囲を保持する
+ * なぜ: 推定の追従の速さと Redis 負荷、状態 API へのポーリング量を環境ごとに調整するため
+ */
+package com.example.matchmaking.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: 待ち時間推定の設定を表す。 動作: 成立した ticket の待ち時間を window 単位の Redis hash に集め、直近 windows 個を合算した分布を
+ * refreshInterval ごとに読み直す。勧める状態確認間隔は p50 の 1/4 を minPollInterval〜maxPollInterval に収めた値。 前提:
+ * enabled=false なら推定は常に空で、状態確認間隔は minPollInterval を返す。
+ */
+@ConfigurationProperties(prefix = "matchmaking.wait-estimate")
+public record MatchmakingWaitEstimateProperties(
+    boolean enabled,
+    Duration window,
+    int windows,
+    Duration refreshInterval,
+    Duration minPollInterval,
+    Duration maxPollInterval) {
+
+  public MatchmakingWaitEstimateProperties {
+    window = window == null ? Duration.ofMinutes(1) : window;
+    windows = windows < 1 ? 10 : windows;
+    refreshInterval = refreshInterval == null ? Duration.ofSeconds(5) : refreshInterval;
+    minPollInterval = minPollInterval == null ? Duration.ofSeconds(1) : minPollInterval;
+    maxPollInterval = maxPollInterval == null ? Duration.ofSeconds(10) : maxPollInterval;
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * どこで: Matchmaking インフラ設定
+ * 何を: worker 起床通知の Redis pub/sub 購読を Bean 化する
+ * なぜ: 他 pod の Join で ticket が入った区画を、担当 pod の worker がすぐ処理できるようにするため
+ */
+package com.example.matchmaking.config;
+
+import com.example.matchmaking.service.MatchmakingWakeupSignal;
+import java.nio.charset.StandardCharsets;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+@ConditionalOnProperty(name = "matchmaking.wakeup.enabled", havingValue = "true")
+public class MatchmakingWakeupConfig {
+
+  @Bean
+  RedisMessageListenerContainer matchmakingWakeupListenerContainer(
+      RedisConnectionFactory connectionFactory,
+      MatchmakingWakeupProperties properties,
+      MatchmakingWakeupSignal wakeupSignal) {
+    final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+    container.setConnectionFactory(connectionFactory);
+    container.addMessageListener(
+        (message, pattern) ->
+            wakeupSignal.onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+        new ChannelTopic(properties.channel()));
+    return container;
+  }
+}
@@ -0,0 +1,24 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: Join 起点で worker を起こすイベント駆動モードの設定を保持する
+ * なぜ: 固定間隔ポーリングを fallback に残しつつ、起床経路と idle 時の back-off 上限を環境ごとに調整するため
+ */
+package com.example.matchmaking.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: worker 起床通知の設定を表す。 動作: enabled=true なら Join が同一 pod 内の worker と channel 購読中の他 pod
+ * へ区画単位で起床を通知し、マッチ可能な ticket がない区画のポーリング間隔を maxIdleBackoff まで倍々に広げる。 前提: enabled=false の場合は
+ * worker-poll-interval の固定ポーリングのみで動く。
+ */
+@ConfigurationProperties(prefix = "matchmaking.wakeup")
+public record MatchmakingWakeupProperties(
+    boolean enabled, String channel, Duration maxIdleBackoff) {
+
+  public MatchmakingWakeupProperties {
+    channel = channel == null || channel.isBlank() ? "mm:wakeup" : channel;
+    maxIdleBackoff = maxIdleBackoff == null ? Duration.ofSeconds(8) : maxIdleBackoff;
+  }
+}
@@ -0,0 +1,22 @@
+/*
+ * どこで: Matchmaking 設定
+ * 何を: worker が queue 区画を lease で分担する際の期限と pod 内並列度を保持する
+ * なぜ: replica 数や区画数に応じて hand-off 時間と並列度を環境ごとに調整できるようにするため
+ */
+package com.example.matchmaking.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 役割: 区画 lease の設定を表す。 動作: ttl は lease と worker 生存登録の期限で、停止した replica の区画は ttl 以内に他 replica
+ * へ移る。parallelism は 1 pod 内で同時に処理する区画数の上限。 前提: ttl は worker-poll-interval より十分長くする。
+ */
+@ConfigurationProperties(prefix = "matchmaking.worker-lease")
+public record MatchmakingWorkerLeaseProperties(boolean enabled, Duration ttl, int parallelism) {
+
+  public MatchmakingWorkerLeaseProperties {
+    ttl = ttl == null ? Duration.ofSeconds(5) : ttl;
+    parallelism = Math.max(1, parallelism);
+  }
+}
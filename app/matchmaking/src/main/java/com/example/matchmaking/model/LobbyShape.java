@@ -0,0 +1,33 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: 1 試合のチーム人数とチーム数を表す
+ * なぜ: 1v1 固定だったマッチ成立を、mode ごとに 2v2/4v4/5v5 などへ広げるため
+ */
+package com.example.matchmaking.model;
+
+/**
+ * 役割: ロビーの編成形を表す。 動作: teamSize 人のチームを teamCount 個そろえたときに 1 試合が成立する。 前提: teamSize は 1 以上、teamCount は
+ * 2 以上。
+ */
+public record LobbyShape(int teamSize, int teamCount) {
+
+  /** lobby 設定の無い mode が使う従来の 1v1。 */
+  public static final LobbyShape ONE_VS_ONE = new LobbyShape(1, 2);
+
+  public LobbyShape {
+    if (teamSize < 1) {
+      throw new IllegalArgumentException("teamSize must be positive");
+    }
+    if (teamCount < 2) {
+      throw new IllegalArgumentException("teamCount must be at least 2");
+    }
+  }
+
+  public int playersPerLobby() {
+    return teamSize * teamCount;
+  }
+
+  public boolean isOneVsOne() {
+    return teamSize == 1 && teamCount == 2;
+  }
+}
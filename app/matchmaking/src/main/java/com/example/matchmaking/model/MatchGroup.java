@@ -0,0 +1,29 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: 成立した 1 ロビー分の party とチーム割り当てを表す
+ * なぜ: 2 ticket 固定の MatchPair では複数人・複数 party の試合を表現できないため
+ */
+package com.example.matchmaking.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 役割: 成立したロビーを表す。 動作: members は party 単位で、team は 0 始まりのチーム番号。 前提: 全 member は同一 mode・同一区画の ticket。
+ */
+public record MatchGroup(String matchId, MatchMode mode, Instant matchedAt, List<Member> members) {
+
+  public MatchGroup {
+    members = members == null ? List.of() : List.copyOf(members);
+  }
+
+  /**
+   * 役割: ロビー内の 1 party を表す。 動作: createdAt は Lua が返した queue score から復元した enqueue 時刻で、取得できない場合は null。
+   * 前提: partySize は 1 以上。
+   */
+  public record Member(String ticketId, int team, int partySize, Instant createdAt) {}
+
+  public int playerCount() {
+    return members.stream().mapToInt(Member::partySize).sum();
+  }
+}
@@ -0,0 +1,14 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: outbox stream に積まれた match 成立イベント 1 件を表す
+ * なぜ: relay が stream のエントリ ID と publish 内容を組で扱い、ack 対象を特定できるようにするため
+ */
+package com.example.matchmaking.model;
+
+import java.time.Instant;
+
+/**
+ * 役割: 未中継の match 成立イベントを表す。 動作: entryId は stream のエントリ ID で、matchedAt は Lua に渡した成立時刻。 前提: matchId
+ * は成立ごとに一意。
+ */
+public record MatchOutboxEntry(String entryId, String matchId, MatchMode mode, Instant matchedAt) {}
@@ -2,5 +2,21 @@ package com.example.matchmaking.model;
 
 import java.time.Instant;
 
+/**
+ * 役割: 成立した 1 試合分の ticket ペアを表す。 動作: ticket1CreatedAt/ticket2CreatedAt は Lua が返した queue score から復元した
+ * enqueue 時刻で、取得できない場合は null。 前提: ticketId1/ticketId2 は同一 mode の ticket。
+ */
 public record MatchPair(
-    String matchId, MatchMode mode, String ticketId1, String ticketId2, Instant matchedAt) {}
+    String matchId,
+    MatchMode mode,
+    String ticketId1,
+    String ticketId2,
+    Instant matchedAt,
+    Instant ticket1CreatedAt,
+    Instant ticket2CreatedAt) {
+
+  public MatchPair(
+      String matchId, MatchMode mode, String ticketId1, String ticketId2, Instant matchedAt) {
+    this(matchId, mode, ticketId1, ticketId2, matchedAt, null, null);
+  }
+}
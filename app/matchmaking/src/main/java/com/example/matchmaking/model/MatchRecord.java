@@ -0,0 +1,41 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: matcher が成立時に書く mm:match:{matchId} の内容を表す
+ * なぜ: ticket 状態の参照で対戦相手とセッション情報を追加の問い合わせなしに返すため
+ */
+package com.example.matchmaking.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 役割: 成立した 1 試合の参加者一覧を表す。 動作: participants は成立時の ticket 順で、team は 0 始まりのチーム番号（1v1 は 0 と 1）。 前提:
+ * userId は ticket の所有者で、party の同行者は含まない。
+ */
+public record MatchRecord(
+    String matchId, MatchMode mode, Instant matchedAt, List<Participant> participants) {
+
+  public MatchRecord {
+    participants = participants == null ? List.of() : List.copyOf(participants);
+  }
+
+  /** 役割: 試合に参加した 1 ticket を表す。 動作: 値を保持するだけ。 前提: ticketId は空でないこと。 */
+  public record Participant(String ticketId, String userId, int team) {}
+
+  /** 役割: 指定 ticket から見た対戦相手/味方の user id を返す。 動作: 自分の ticket を除いた参加者を成立時の順で返す。 前提: なし。 */
+  public List<String> peerUserIdsOf(String ticketId) {
+    return participants.stream()
+        .filter(participant -> !participant.ticketId().equals(ticketId))
+        .map(Participant::userId)
+        .toList();
+  }
+
+  /** 役割: 指定 ticket のチーム番号を返す。 動作: 参加していなければ -1 を返す。 前提: なし。 */
+  public int teamOf(String ticketId) {
+    return participants.stream()
+        .filter(participant -> participant.ticketId().equals(ticketId))
+        .mapToInt(Participant::team)
+        .findFirst()
+        .orElse(-1);
+  }
+}
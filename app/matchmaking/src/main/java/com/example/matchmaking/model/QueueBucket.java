@@ -0,0 +1,29 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: mode 内で attributes により分割した queue 区画を表現する
+ * なぜ: 1 つの Sorted Set に全 ticket が集中しないよう、マッチ対象を区画単位に閉じるため
+ */
+package com.example.matchmaking.model;
+
+public record QueueBucket(MatchMode mode, String id) {
+
+  /** 分割設定が無い場合や移行前 ticket が属する区画 ID。queue key は従来の mm:queue:{mode} のまま。 */
+  public static final String DEFAULT_ID = "default";
+
+  public QueueBucket {
+    if (mode == null) {
+      throw new IllegalArgumentException("mode is required");
+    }
+    if (id == null || id.isBlank()) {
+      id = DEFAULT_ID;
+    }
+  }
+
+  public static QueueBucket defaultOf(MatchMode mode) {
+    return new QueueBucket(mode, DEFAULT_ID);
+  }
+
+  public boolean isDefault() {
+    return DEFAULT_ID.equals(id);
+  }
+}
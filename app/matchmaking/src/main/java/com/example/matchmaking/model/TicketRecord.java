@@ -15,4 +15,31 @@ public record TicketRecord(
     Instant createdAt,
     Instant expiresAt,
     String attributesJson,
-    String matchId) {}
+    String matchId,
+    String bucket) {
+
+  public TicketRecord(
+      String ticketId,
+      String userId,
+      MatchMode mode,
+      TicketStatus status,
+      Instant createdAt,
+      Instant expiresAt,
+      String attributesJson,
+      String matchId) {
+    this(
+        ticketId,
+        userId,
+        mode,
+        status,
+        createdAt,
+        expiresAt,
+        attributesJson,
+        matchId,
+        QueueBucket.DEFAULT_ID);
+  }
+
+  public QueueBucket queueBucket() {
+    return new QueueBucket(mode, bucket);
+  }
+}
@@ -0,0 +1,12 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: 状態参照 1 回で読んだ ticket と match record の組を表す
+ * なぜ: MATCHED 応答に必要な情報を 1 往復で Service へ渡すため
+ */
+package com.example.matchmaking.model;
+
+/**
+ * 役割: ticket と、成立済みならその match record を保持する。 動作: match は MATCHED 以外、または record が失効済みなら null。 前提:
+ * ticket は null でないこと。
+ */
+public record TicketStatusSnapshot(TicketRecord ticket, MatchRecord match) {}
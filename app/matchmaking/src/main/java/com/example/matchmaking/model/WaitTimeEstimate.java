@@ -0,0 +1,17 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: 区画ごとの待ち時間推定（直近の成立件数と p50/p90、クライアントへ勧める状態確認間隔）を表す
+ * なぜ: 推定の計算を定期処理に寄せ、API からは出来上がった値を O(1) で返すため
+ */
+package com.example.matchmaking.model;
+
+import java.time.Duration;
+
+/** p50/p90 は直近の成立が無ければ null。pollInterval は推定が無い間も必ず入る。 */
+public record WaitTimeEstimate(
+    QueueBucket bucket, long samples, Duration p50, Duration p90, Duration pollInterval) {
+
+  public static WaitTimeEstimate empty(QueueBucket bucket, Duration pollInterval) {
+    return new WaitTimeEstimate(bucket, 0, null, null, pollInterval);
+  }
+}
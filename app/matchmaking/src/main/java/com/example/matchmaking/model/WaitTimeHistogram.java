@@ -0,0 +1,83 @@
+/*
+ * どこで: Matchmaking ドメインモデル
+ * 何を: マッチ成立までの待ち時間を対数幅の固定ビンで数えるヒストグラムと、そこからの分位点推定を提供する
+ * なぜ: replica ごとの件数を Redis の HINCRBY で足し合わせるだけで全体の分布になる、合算可能な streaming 分位点推定にするため
+ */
+package com.example.matchmaking.model;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * 役割: 待ち時間の分布を表す。 動作: ビン i は [FIRST_BOUND * GROWTH^(i-1), FIRST_BOUND * GROWTH^i) ミリ秒を数え（ビン 0 は
+ * FIRST_BOUND 未満）、分位点は該当ビンの上端で返す。 前提: 相対誤差はビン幅（約 20%）以内。最後のビンは上端を超える値もまとめて数える。
+ */
+public final class WaitTimeHistogram {
+
+  public static final int BINS = 64;
+  private static final double FIRST_BOUND_MILLIS = 100.0;
+  private static final double GROWTH = 1.2;
+  private static final double LOG_GROWTH = Math.log(GROWTH);
+
+  private final long[] counts;
+
+  public WaitTimeHistogram() {
+    this.counts = new long[BINS];
+  }
+
+  private WaitTimeHistogram(long[] counts) {
+    this.counts = counts;
+  }
+
+  /** 役割: ビンごとの件数からヒストグラムを作る。 動作: 配列はコピーし、BINS を超える要素は捨てる。 前提: counts は null でないこと。 */
+  public static WaitTimeHistogram of(long[] counts) {
+    return new WaitTimeHistogram(Arrays.copyOf(counts, BINS));
+  }
+
+  /** 待ち時間が入るビン番号。負の値は 0 として扱う。 */
+  public static int binOf(Duration waited) {
+    final long millis = Math.max(0, waited.toMillis());
+    if (millis < FIRST_BOUND_MILLIS) {
+      return 0;
+    }
+    final int bin = (int) Math.floor(Math.log(millis / FIRST_BOUND_MILLIS) / LOG_GROWTH) + 1;
+    return Math.min(bin, BINS - 1);
+  }
+
+  /** ビンの上端（ミリ秒）。 */
+  public static long upperBoundMillis(int bin) {
+    return Math.round(FIRST_BOUND_MILLIS * Math.pow(GROWTH, bin));
+  }
+
+  public void add(int bin, long count) {
+    counts[bin] += count;
+  }
+
+  public long total() {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    return total;
+  }
+
+  /**
+   * 役割: 分位点を推定する。 動作: 累積件数が quantile * total に達したビンの上端を返す。 前提: 件数が 0 なら null。quantile は 0 より大きく 1
+   * 以下。
+   */
+  public Duration quantile(double quantile) {
+    final long total = total();
+    if (total == 0) {
+      return null;
+    }
+    final double rank = quantile * total;
+    long cumulative = 0;
+    for (int bin = 0; bin < BINS; bin++) {
+      cumulative += counts[bin];
+      if (cumulative >= rank) {
+        return Duration.ofMillis(upperBoundMillis(bin));
+      }
+    }
+    return Duration.ofMillis(upperBoundMillis(BINS - 1));
+  }
+}
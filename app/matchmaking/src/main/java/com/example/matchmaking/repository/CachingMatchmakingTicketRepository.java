@@ -0,0 +1,277 @@
+/*
+ * どこで: Matchmaking Redis リポジトリ
+ * 何を: ticket 状態の参照を RESP3 の CLIENT TRACKING 付き接続で読み、無効化通知が来るまでプロセス内で返す
+ * なぜ: Gateway 経由の状態ポーリングが毎回 Redis へ届くため、変化のない ticket への参照を Redis 往復なしで返すため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.config.MatchmakingTicketCacheProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.TicketRecord;
+import com.example.matchmaking.model.TicketStatusSnapshot;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateListener;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.push.PushMessage;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PreDestroy;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@Primary
+@ConditionalOnProperty(name = "matchmaking.ticket-cache.enabled", havingValue = "true")
+// 区画ごとに key の名前空間が変わる cluster 配置では無効化通知を ticket へ振り分けられないため、standalone のときだけ置く
+@ConditionalOnProperty(
+    name = "matchmaking.redis.key-layout",
+    havingValue = "standalone",
+    matchIfMissing = true)
+public class CachingMatchmakingTicketRepository implements MatchmakingTicketRepository {
+
+  private static final Logger logger =
+      LoggerFactory.getLogger(CachingMatchmakingTicketRepository.class);
+  private static final String INVALIDATE = "invalidate";
+
+  private final RedisMatchmakingTicketRepository delegate;
+  private final MatchmakingKeyLayout keys;
+  private final MatchmakingMetrics metrics;
+  private final TicketStatusCache cache;
+  private final String statusScriptSource;
+  private final String statusScriptSha;
+  private final AtomicBoolean trackingActive = new AtomicBoolean(false);
+
+  @SuppressFBWarnings(
+      value = "EI_EXPOSE_REP2",
+      justification = "RedisClient は LettuceConnectionFactory が所有する共有クライアントで防御的コピーが不可能なため")
+  private final RedisClient client;
+
+  private final StatefulRedisConnection<String, String> connection;
+  private final RedisConnectionStateListener connectionListener;
+
+  public CachingMatchmakingTicketRepository(
+      RedisMatchmakingTicketRepository delegate,
+      LettuceConnectionFactory connectionFactory,
+      MatchmakingKeyLayout keys,
+      MatchmakingMetrics metrics,
+      MatchmakingTicketCacheProperties properties) {
+    this.delegate = delegate;
+    this.keys = keys;
+    this.metrics = metrics;
+    this.cache = new TicketStatusCache(properties.maxEntries(), keys);
+    final RedisScript<?> statusScript =
+        RedisLuaMatchmakingMatchRepository.loadScript(
+            RedisMatchmakingTicketRepository.STATUS_LUA_PATH);
+    this.statusScriptSource = statusScript.getScriptAsString();
+    this.statusScriptSha = statusScript.getSha1();
+    if (!(connectionFactory.getRequiredNativeClient() instanceof RedisClient redisClient)) {
+      throw new IllegalStateException(
+          "matchmaking.ticket-cache requires a standalone Redis connection");
+    }
+    this.client = redisClient;
+    this.connection = redisClient.connect(StringCodec.UTF8);
+    this.connection.addListener(this::onPush);
+    // 通知を取りこぼしうる区間（切断〜再接続後の追跡再開）に読んだ値を残さないよう、接続状態が変わるたびに全消去する
+    this.connectionListener =
+        new RedisConnectionStateListener() {
+          @Override
+          public void onRedisConnected(RedisChannelHandler<?, ?> handler, SocketAddress address) {
+            if (handler == connection) {
+              enableTracking();
+            }
+          }
+
+          @Override
+          public void onRedisDisconnected(RedisChannelHandler<?, ?> handler) {
+            if (handler == connection) {
+              trackingActive.set(false);
+              cache.invalidateAll();
+            }
+          }
+
+          @Override
+          public void onRedisExceptionCaught(RedisChannelHandler<?, ?> handler, Throwable cause) {
+            // 例外後に切断されれば onRedisDisconnected で全消去される
+          }
+        };
+    redisClient.addListener(connectionListener);
+    connection.sync().clientTracking(TrackingArgs.Builder.enabled());
+    trackingActive.set(true);
+    metrics.bindTicketCacheSize(cache::size);
+  }
+
+  @PreDestroy
+  public void close() {
+    trackingActive.set(false);
+    client.removeListener(connectionListener);
+    connection.close();
+  }
+
+  @Override
+  public TicketRecord createOrReuseTicket(
+      QueueBucket bucket,
+      String userId,
+      String idempotencyKey,
+      String attributesJson,
+      Double rating,
+      int partySize,
+      Duration ticketTtl,
+      Duration idempotencyTtl) {
+    return delegate.createOrReuseTicket(
+        bucket,
+        userId,
+        idempotencyKey,
+        attributesJson,
+        rating,
+        partySize,
+        ticketTtl,
+        idempotencyTtl);
+  }
+
+  @Override
+  public Optional<TicketRecord> findTicketById(String ticketId) {
+    return delegate.findTicketById(ticketId);
+  }
+
+  /**
+   * 役割: ticket 状態を返す。 動作: キャッシュにあれば Redis へ問い合わせずに変換して返し、なければ追跡付き接続で状態スクリプトを実行して結果を載せる。
+   * 追跡が切れている間はキャッシュを使わず通常の経路で読む。 前提: 状態スクリプトが読んだ ticket/match key は Redis がこの接続に対して追跡する。
+   */
+  @Override
+  public Optional<TicketStatusSnapshot> findTicketStatus(String ticketId) {
+    if (!trackingActive.get()) {
+      metrics.recordTicketCache("bypass");
+      return delegate.findTicketStatus(ticketId);
+    }
+    final List<?> cached = cache.get(ticketId);
+    if (cached != null) {
+      metrics.recordTicketCache("hit");
+      return RedisMatchmakingTicketRepository.toStatusSnapshot(ticketId, cached);
+    }
+    metrics.recordTicketCache("miss");
+    final Object token = cache.begin(ticketId);
+    final List<?> result = readTracked(ticketId);
+    if (result != null) {
+      cache.complete(ticketId, token, result);
+    }
+    return RedisMatchmakingTicketRepository.toStatusSnapshot(ticketId, result);
+  }
+
+  /** 状態変化の pub/sub 通知は無効化通知と別の接続で届き順序が保証されないため、通知を受けた側が明示的に捨てる。 */
+  @Override
+  public void evictTicketStatus(String ticketId) {
+    cache.invalidateTicket(ticketId);
+  }
+
+  @Override
+  public Optional<TicketRecord> cancelTicket(String ticketId, String userId) {
+    final Optional<TicketRecord> cancelled = delegate.cancelTicket(ticketId, userId);
+    // 無効化通知は非同期に届くため、取り消した本人の直後の参照に古い QUEUED を返さないよう先に捨てる
+    cache.invalidateTicket(ticketId);
+    return cancelled;
+  }
+
+  @Override
+  public long queueDepth(QueueBucket bucket) {
+    return delegate.queueDepth(bucket);
+  }
+
+  @Override
+  public Optional<Long> oldestQueueAgeSeconds(QueueBucket bucket) {
+    return delegate.oldestQueueAgeSeconds(bucket);
+  }
+
+  @Override
+  public List<QueueBucket> activeBuckets(MatchMode mode) {
+    return delegate.activeBuckets(mode);
+  }
+
+  @Override
+  public boolean removeBucketIfEmpty(QueueBucket bucket) {
+    return delegate.removeBucketIfEmpty(bucket);
+  }
+
+  @Override
+  public int reapExpired(QueueBucket bucket, Instant now, int limit) {
+    return delegate.reapExpired(bucket, now, limit);
+  }
+
+  /** 状態スクリプトを追跡付き接続で実行する。MATCHED なら通常経路と同じく match key を宣言して読み直す。 */
+  private List<?> readTracked(String ticketId) {
+    final String ticketKey = keys.ticketKey(ticketId);
+    final List<?> result = evalTracked(new String[] {ticketKey}, "");
+    final String matchId = RedisMatchmakingTicketRepository.statusMatchId(result);
+    if (matchId == null) {
+      return result;
+    }
+    return evalTracked(new String[] {ticketKey, keys.matchKey(ticketId, matchId)}, matchId);
+  }
+
+  private List<?> evalTracked(String[] scriptKeys, String matchId) {
+    final long startNanos = System.nanoTime();
+    try {
+      return connection
+          .sync()
+          .evalsha(statusScriptSha, ScriptOutputType.MULTI, scriptKeys, matchId);
+    } catch (RedisNoScriptException ex) {
+      return connection
+          .sync()
+          .eval(statusScriptSource, ScriptOutputType.MULTI, scriptKeys, matchId);
+    } finally {
+      metrics.recordScript("status", Duration.ofNanos(System.nanoTime() - startNanos));
+      metrics.recordRedisCalls("status", 1);
+    }
+  }
+
+  private void enableTracking() {
+    // 再接続時は Lettuce が CLIENT TRACKING を復元しないため張り直し、応答までに読んだ値は捨てる
+    connection
+        .async()
+        .clientTracking(TrackingArgs.Builder.enabled())
+        .whenComplete(
+            (ok, error) -> {
+              if (error != null) {
+                logger.warn("failed to re-enable ticket cache tracking", error);
+                return;
+              }
+              cache.invalidateAll();
+              trackingActive.set(true);
+            });
+  }
+
+  @SuppressWarnings("unchecked")
+  private void onPush(PushMessage message) {
+    if (!INVALIDATE.equals(message.getType())) {
+      return;
+    }
+    final List<Object> content = message.getContent(StringCodec.UTF8::decodeKey);
+    final List<String> keys = content.size() < 2 ? null : (List<String>) content.get(1);
+    if (keys == null) {
+      // FLUSHALL/FLUSHDB では key なしの通知が届く
+      cache.invalidateAll();
+      metrics.recordTicketCacheInvalidations(1);
+      return;
+    }
+    for (String key : keys) {
+      cache.invalidate(key);
+    }
+    metrics.recordTicketCacheInvalidations(keys.size());
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * どこで: Matchmaking Redis リポジトリ
+ * 何を: queue/ticket/match/outbox などの key 名を、単一ノード用とクラスタ用の配置で組み立てる
+ * なぜ: Redis Cluster では 1 スクリプトが触る key を同じ slot に置く必要があり、区画ごとに hash tag で寄せて shard へ分散させるため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.config.MatchmakingRedisProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.stereotype.Component;
+
+/**
+ * 役割: key の配置を表す。 動作: standalone は従来の mm:queue:{mode}[:{bucket}] 形式、cluster は区画の key をすべて
+ * mm:{mode:bucket}: の名前空間に置いて ticket key を同じ slot へ寄せる。どちらも ticket ID に区画を埋め込み、Cancel などが ID
+ * だけで区画の key を求められるようにする。 前提: 区画 ID は QueueBucketResolver が [a-z0-9_-] と ':' だけで組み立てたもの。
+ */
+@Component
+public class MatchmakingKeyLayout {
+
+  private static final String PREFIX = "mm:";
+  private static final String STANDALONE_OUTBOX_STREAM = "mm:outbox:matches";
+  private static final String OUTBOX_REGISTRY_KEY = "mm:outbox:streams";
+  private static final String TICKET_SEGMENT = "ticket:";
+  private static final String MATCH_SEGMENT = "match:";
+
+  private final boolean cluster;
+
+  public MatchmakingKeyLayout(MatchmakingRedisProperties properties) {
+    this(properties.keyLayout() == MatchmakingRedisProperties.KeyLayout.CLUSTER);
+  }
+
+  private MatchmakingKeyLayout(boolean cluster) {
+    this.cluster = cluster;
+  }
+
+  public static MatchmakingKeyLayout standalone() {
+    return new MatchmakingKeyLayout(false);
+  }
+
+  public static MatchmakingKeyLayout cluster() {
+    return new MatchmakingKeyLayout(true);
+  }
+
+  public boolean isCluster() {
+    return cluster;
+  }
+
+  /**
+   * 役割: 新しい ticket ID を払い出す。 動作: 配置によらず "{mode}:{bucket}:{UUID}" を返す。 前提: ID から区画を復元するため、ID
+   * の形を変えないこと。
+   */
+  public String newTicketId(QueueBucket bucket) {
+    return tag(bucket) + ":" + UUID.randomUUID();
+  }
+
+  /**
+   * 役割: compact 形式の ticket ID を冪等キーから決める。 動作: 冪等の範囲（standalone は mode、cluster は区画）と
+   * userId、冪等キーから名前ベースの UUID を作り、区画を前置する。 前提: 同じ入力には同じ ID を返し、Join はこの ticket
+   * の有無で冪等判定を行う。区画を変えた再送は cluster と同じく別の Join になる。
+   */
+  public String idempotentTicketId(QueueBucket bucket, String userId, String idempotencyKey) {
+    final String scope = cluster ? tag(bucket) : bucket.mode().value();
+    final String id =
+        UUID.nameUUIDFromBytes(
+                (scope + "\n" + userId + "\n" + idempotencyKey).getBytes(StandardCharsets.UTF_8))
+            .toString();
+    return tag(bucket) + ":" + id;
+  }
+
+  /**
+   * 役割: Lua が ticket/match key を組み立てるときの名前空間を返す。 動作: standalone は "mm:"、cluster は
+   * "mm:{mode:bucket}:" を返し、スクリプトは名前空間 .. "ticket:" .. ticket_id のように連結する。 前提: 区画の queue と同じ slot
+   * に落ちる。
+   */
+  public String namespace(QueueBucket bucket) {
+    return cluster ? PREFIX + "{" + tag(bucket) + "}:" : PREFIX;
+  }
+
+  /**
+   * 役割: ticket ID からその ticket の名前空間を返す。 動作: ID に埋め込んだ区画の名前空間を返す。区画を読み取れない ID は standalone
+   * と同じ名前空間を返す（cluster では存在しない ticket として扱われる）。 前提: なし。
+   */
+  public String namespaceOf(String ticketId) {
+    return bucketOf(ticketId).map(this::namespace).orElse(PREFIX);
+  }
+
+  /**
+   * 役割: ticket ID から区画を読み取る。 動作: 末尾の UUID を除いた "{mode}:{bucket}" を解釈し、解釈できない ID（区画を埋め込む前の
+   * standalone の UUID など）では空を返す。 前提: ID は {@link #newTicketId} が払い出した形。
+   */
+  public Optional<QueueBucket> bucketOf(String ticketId) {
+    final int modeEnd = ticketId.indexOf(':');
+    final int bucketEnd = ticketId.lastIndexOf(':');
+    if (modeEnd <= 0 || bucketEnd <= modeEnd + 1) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          new QueueBucket(
+              MatchMode.fromValue(ticketId.substring(0, modeEnd)),
+              ticketId.substring(modeEnd + 1, bucketEnd)));
+    } catch (IllegalArgumentException ex) {
+      return Optional.empty();
+    }
+  }
+
+  public String ticketKey(String ticketId) {
+    return namespaceOf(ticketId) + TICKET_SEGMENT + ticketId;
+  }
+
+  /** match record は参加 ticket と同じ名前空間に置く（cluster では区画の slot）。 */
+  public String matchKey(String ticketId, String matchId) {
+    return namespaceOf(ticketId) + MATCH_SEGMENT + matchId;
+  }
+
+  /**
+   * 役割: standalone で全 ticket key に共通する接頭辞を返す。 動作: key からこの接頭辞を除いた残りが ticket ID になる。 前提: cluster
+   * では区画ごとに接頭辞が変わるため呼べない（IllegalStateException）。
+   */
+  public String ticketKeyPrefix() {
+    return sharedNamespace() + TICKET_SEGMENT;
+  }
+
+  /** standalone で全 match record の key に共通する接頭辞。cluster では呼べない。 */
+  public String matchKeyPrefix() {
+    return sharedNamespace() + MATCH_SEGMENT;
+  }
+
+  public String queueKey(MatchMode mode) {
+    return queueKey(QueueBucket.defaultOf(mode));
+  }
+
+  public String queueKey(QueueBucket bucket) {
+    return bucketKey("queue", bucket);
+  }
+
+  public String ratingKey(QueueBucket bucket) {
+    return bucketKey("rating", bucket);
+  }
+
+  public String expiryKey(QueueBucket bucket) {
+    return bucketKey("expiry", bucket);
+  }
+
+  /**
+   * 役割: matcher の Lua が成立イベントを積む stream を返す。 動作: standalone は全区画共通の 1 本、cluster は区画ごとの stream。 前提:
+   * なし。
+   */
+  public String outboxKey(QueueBucket bucket) {
+    return cluster ? namespace(bucket) + "outbox" : sharedOutboxKey();
+  }
+
+  /** standalone で全区画が共有する outbox stream。 */
+  public String sharedOutboxKey() {
+    return STANDALONE_OUTBOX_STREAM;
+  }
+
+  /** 待ち時間ヒストグラムの時間窓ごとの hash。区画の他の key と同じ slot に置く。 */
+  public String waitTimeKey(QueueBucket bucket, long window) {
+    return bucketKey("wait", bucket) + ":" + window;
+  }
+
+  /**
+   * 役割: cluster で relay が読む区画ごとの outbox stream の登録簿を返す。 動作: Set の member が stream key。 前提:
+   * standalone では使わない。
+   */
+  public String outboxRegistryKey() {
+    return OUTBOX_REGISTRY_KEY;
+  }
+
+  /** 区画 index は mode ごとに 1 つで、cluster でも区画の slot とは別の slot に置く。 */
+  public String bucketIndexKey(MatchMode mode) {
+    return PREFIX + "buckets:" + mode.value();
+  }
+
+  /**
+   * 役割: Join の冪等キーを返す。 動作: standalone は mode 単位、cluster は ticket と同じ slot に置くため区画単位で一意にする。 前提:
+   * cluster では区画を決める attributes を変えた再送は別の Join として扱われる。
+   */
+  public String idempotencyKey(QueueBucket bucket, String userId, String idempotencyKey) {
+    if (cluster) {
+      return namespace(bucket) + "idemp:" + userId + ":" + idempotencyKey;
+    }
+    return PREFIX + "idemp:" + userId + ":" + bucket.mode().value() + ":" + idempotencyKey;
+  }
+
+  private String sharedNamespace() {
+    if (cluster) {
+      throw new IllegalStateException("cluster key layout has no namespace shared by all buckets");
+    }
+    return PREFIX;
+  }
+
+  private String bucketKey(String kind, QueueBucket bucket) {
+    if (cluster) {
+      return namespace(bucket) + kind;
+    }
+    final String base = PREFIX + kind + ":" + bucket.mode().value();
+    return bucket.isDefault() ? base : base + ":" + bucket.id();
+  }
+
+  private static String tag(QueueBucket bucket) {
+    return bucket.mode().value() + ":" + bucket.id();
+  }
+}
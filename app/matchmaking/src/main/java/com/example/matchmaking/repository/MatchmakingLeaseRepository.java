@@ -0,0 +1,30 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: worker の生存登録と queue 区画 lease の取得/解放を抽象化する
+ * なぜ: 区画の担当決めを Redis 実装から切り離し、worker の分担ロジックをテストしやすくするため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.model.QueueBucket;
+import java.time.Duration;
+
+public interface MatchmakingLeaseRepository {
+
+  /**
+   * 役割: worker の生存を登録する。 動作: 生存時刻を更新し、ttl を過ぎた worker を除いた生存数（自分を含む）を返す。 前提: workerId は replica
+   * ごとに一意であること。
+   */
+  long heartbeat(String workerId, Duration ttl);
+
+  /**
+   * 役割: 区画の lease を取得する。 動作: 未保持なら取得し、自分が保持中なら期限を延長して true を返す。他 worker が保持中なら false を返す。 前提:
+   * bucket と workerId は null でないこと。
+   */
+  boolean tryAcquire(QueueBucket bucket, String workerId, Duration ttl);
+
+  /** 役割: 区画の lease を手放す。 動作: 自分が保持している場合のみ削除する。 前提: bucket と workerId は null でないこと。 */
+  void release(QueueBucket bucket, String workerId);
+
+  /** 役割: worker の生存登録を外す。 動作: 停止時に呼び、他 replica の担当数計算から即座に除外させる。 前提: workerId は null でないこと。 */
+  void unregister(String workerId);
+}
@@ -0,0 +1,22 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: 複数 party をチームへ詰めてロビーを成立させる原子的処理を抽象化する
+ * なぜ: 1v1 の matcher と分けて、チーム編成の Lua 実装を worker から切り離すため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.model.LobbyShape;
+import com.example.matchmaking.model.MatchGroup;
+import com.example.matchmaking.model.QueueBucket;
+import java.time.Instant;
+import java.util.List;
+
+public interface MatchmakingLobbyRepository {
+
+  /**
+   * 役割: 区画の queue から最大 maxLobbies 個のロビーを 1 回の原子処理で成立させる。 動作: 待ち時間の長い party から順に shape
+   * のチームへ詰め、全チームが埋まったロビーだけを MATCHED にして返す。埋まらなかった party は queue に残す。 前提: bucket と shape は null
+   * でなく、maxLobbies は 1 以上、now は現在時刻を渡す。
+   */
+  List<MatchGroup> formLobbies(QueueBucket bucket, Instant now, LobbyShape shape, int maxLobbies);
+}
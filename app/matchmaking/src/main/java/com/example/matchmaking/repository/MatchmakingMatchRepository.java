@@ -1,20 +1,20 @@
 /*
  * どこで: Matchmaking Repository 層
- * 何を: 2件マッチングの原子的処理を抽象化する
+ * 何を: 区画の queue からのマッチ成立の原子的処理を抽象化する
  * なぜ: Lua スクリプト実行を Service から分離しテスト容易性を高めるため
  */
 package com.example.matchmaking.repository;
 
-import com.example.matchmaking.model.MatchMode;
 import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.QueueBucket;
 import java.time.Instant;
-import java.util.Optional;
+import java.util.List;
 
 public interface MatchmakingMatchRepository {
 
   /**
-   * 役割: queue から 2件を取り出し、MATCHED 更新と match_id 付与を原子的に行う。 動作: 成立時は MatchPair
-   * を返し、不成立（人数不足/競合/期限切れのみ）なら empty を返す。 前提: mode は null でなく、matchedAt は現在時刻を渡す。
+   * 役割: 区画の queue から最大 maxPairs ペアを 1 回の原子処理で成立させる。 動作: 各 MatchPair に queue score 由来の created_at
+   * を詰めて返し、成立 0 件なら空リストを返す。 前提: bucket は null でなく、maxPairs は 1 以上、now は現在時刻を渡す。
    */
-  Optional<MatchPair> matchTwo(MatchMode mode, Instant matchedAt);
+  List<MatchPair> matchMany(QueueBucket bucket, Instant now, int maxPairs);
 }
@@ -0,0 +1,39 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: match 成立イベントの outbox stream の読み出しと確認応答を抽象化する
+ * なぜ: relay を Redis Streams の consumer group 操作から切り離し、publish の流れだけを扱えるようにするため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.model.MatchOutboxEntry;
+import java.time.Duration;
+import java.util.List;
+
+public interface MatchmakingOutboxRepository {
+
+  /**
+   * 役割: 中継対象の outbox stream を返す。 動作: standalone 配置では全区画共通の 1 本、cluster 配置では Join 時に登録された区画ごとの
+   * stream を返す。 前提: 以降の操作はすべて stream 単位で行う。
+   */
+  List<String> streams();
+
+  /**
+   * 役割: relay 用の consumer group を用意する。 動作: stream と group がなければ先頭から読む group を作り、既にあれば何もしない。 前提: なし。
+   */
+  void ensureGroup(String stream);
+
+  /**
+   * 役割: 配信済みのまま確認されていないエントリを引き取る。 動作: minIdle 以上未確認のエントリを最大 count 件、consumer の担当へ付け替えて返す。 前提: 停止した
+   * relay や publish に失敗したエントリの再送に使う。
+   */
+  List<MatchOutboxEntry> claimStale(String stream, String consumer, Duration minIdle, int count);
+
+  /** 役割: 未配信のエントリを読む。 動作: group で未配信のエントリを最大 count 件、consumer へ配信して返す。 前提: count は 1 以上。 */
+  List<MatchOutboxEntry> readNew(String stream, String consumer, int count);
+
+  /**
+   * 役割: publish が確認されたエントリを片付ける。 動作: entryIds を XACK し、最古の未確認エントリより前を 1 往復で XTRIM する。 前提: entryIds
+   * は同じ stream から読んだもので JetStream の ack を受け取ったもの。戻り値は ack した件数。
+   */
+  int acknowledge(String stream, List<String> entryIds);
+}
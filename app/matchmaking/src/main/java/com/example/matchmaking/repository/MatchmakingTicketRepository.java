@@ -6,41 +6,81 @@
 package com.example.matchmaking.repository;
 
 import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
 import com.example.matchmaking.model.TicketRecord;
+import com.example.matchmaking.model.TicketStatusSnapshot;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 public interface MatchmakingTicketRepository {
 
   /**
    * 役割: Join 時に冪等キーを評価し、新規 ticket を作るか既存 ticket を返す。 動作: 既存 idempotency key が有効なら既存 ticket
-   * を返し、無効/未登録なら新規 ticket を作成する。 前提: mode, userId, idempotencyKey は空でないこと。
+   * を返し、無効/未登録なら新規 ticket を作成し bucket の queue へ投入する。rating が非 null なら rating index にも登録し、partySize
+   * はロビー編成で 1 単位として扱う人数として保存する。 既存 ticket と attributes が異なる場合は IdempotencyConflictException を投げる。
+   * 前提: bucket, userId, idempotencyKey は空でないこと。
    */
   TicketRecord createOrReuseTicket(
-      MatchMode mode,
+      QueueBucket bucket,
       String userId,
       String idempotencyKey,
       String attributesJson,
+      Double rating,
+      int partySize,
       Duration ticketTtl,
       Duration idempotencyTtl);
 
   /**
-   * 役割: ticketId からチケット状態を取得する。 動作: ticket hash が存在する場合は record を返し、存在しなければ empty を返す。 前提: ticketId
-   * は空でないこと。
+   * 役割: ticketId からチケット状態を取得する。 動作: ticket hash が存在する場合は record を返し、存在しなければ empty を返す。期限を過ぎた QUEUED
+   * は EXPIRED として返すが、保存値は書き換えない。 前提: ticketId は空でないこと。
    */
   Optional<TicketRecord> findTicketById(String ticketId);
 
   /**
-   * 役割: キャンセル要求を適用する。 動作: status=QUEUED の場合は CANCELLED へ遷移し、既に終端状態ならそのまま返す。 前提: ticketId は空でないこと。
+   * 役割: 状態 API 向けに ticket と match record をまとめて取得する。 動作: ticket hash を読み、match_id があれば
+   * mm:match:{matchId} を宣言してもう 1 往復で ticket と合わせて読み直す（成立前の参照は 1 往復）。ticket が存在しなければ empty
+   * を返す。期限の扱いは findTicketById と同じ。 前提: ticketId は空でないこと。
    */
-  Optional<TicketRecord> cancelTicket(String ticketId);
+  Optional<TicketStatusSnapshot> findTicketStatus(String ticketId);
 
-  /** 役割: Queue の深さを返す。 動作: mode ごとの Sorted Set の要素数を返す。 前提: mode は null でないこと。 */
-  long queueDepth(MatchMode mode);
+  /**
+   * 役割: プロセス内に持つ ticket 状態を捨てる。 動作: 次の findTicketStatus が Redis から読み直す。キャッシュを持たない実装では何もしない。 前提:
+   * 状態変化の通知を受けた直後など、無効化通知より先に最新の状態が要るときに呼ぶ。
+   */
+  default void evictTicketStatus(String ticketId) {}
+
+  /**
+   * 役割: キャンセル要求を適用する。 動作: 所有者が一致し status=QUEUED の場合のみ CANCELLED へ原子的に遷移し、終端状態や所有者不一致なら変更せずに返す。 前提:
+   * ticketId, userId は空でないこと。
+   */
+  Optional<TicketRecord> cancelTicket(String ticketId, String userId);
+
+  /** 役割: Queue の深さを返す。 動作: 区画ごとの Sorted Set の要素数を返す。 前提: bucket は null でないこと。 */
+  long queueDepth(QueueBucket bucket);
+
+  /**
+   * 役割: Queue 先頭 ticket の経過時間を取得する。 動作: 先頭 ticket の enqueue 時刻が取れれば秒数を返し、空キューなら empty を返す。 前提:
+   * bucket は null でないこと。
+   */
+  Optional<Long> oldestQueueAgeSeconds(QueueBucket bucket);
+
+  /**
+   * 役割: mode 内で ticket を保持しうる区画の一覧を返す。 動作: 区画 index に登録された区画へ default 区画を加えて返す。 前提: mode は null
+   * でないこと。
+   */
+  List<QueueBucket> activeBuckets(MatchMode mode);
+
+  /**
+   * 役割: 空になった区画を index から外す。 動作: queue が空の場合のみ原子的に index から削除し true を返す。 前提: bucket は null でないこと。
+   */
+  boolean removeBucketIfEmpty(QueueBucket bucket);
 
   /**
-   * 役割: Queue 先頭 ticket の経過時間を取得する。 動作: 先頭 ticket の enqueue 時刻が取れれば秒数を返し、空キューなら empty を返す。 前提: mode
-   * は null でないこと。
+   * 役割: 区画内で期限を迎えた ticket を失効させる。 動作: expiry index から now 以前の ticket を最大 limit 件読み、その ticket key
+   * を宣言したスクリプトで QUEUED なら EXPIRED にして queue/rating index から外す。期限到来が無ければ読み取り 1 往復で終わる。 前提: limit
+   * は 1 以上。戻り値は index から外した件数で、limit と等しければ残りがある。
    */
-  Optional<Long> oldestQueueAgeSeconds(MatchMode mode);
+  int reapExpired(QueueBucket bucket, Instant now, int limit);
 }
@@ -0,0 +1,22 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: 区画ごとの待ち時間ヒストグラムを時間窓単位で加算・合算読み取りする操作を抽象化する
+ * なぜ: replica 間で共有する推定の保存先を推定ロジックから切り離し、テストしやすくするため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.WaitTimeHistogram;
+import java.time.Duration;
+
+public interface MatchmakingWaitTimeRepository {
+
+  /**
+   * 役割: この replica が数えた件数を共有ヒストグラムへ足す。 動作: 0 でないビンだけを加算し、窓の key に ttl を付け直す。 前提: counts の長さは
+   * {@link WaitTimeHistogram#BINS}。
+   */
+  void addSamples(QueueBucket bucket, long window, long[] counts, Duration ttl);
+
+  /** 役割: 窓 fromWindow〜toWindow（両端を含む）を合算して返す。 動作: 無い窓は 0 件として扱う。 前提: fromWindow <= toWindow。 */
+  WaitTimeHistogram readSamples(QueueBucket bucket, long fromWindow, long toWindow);
+}
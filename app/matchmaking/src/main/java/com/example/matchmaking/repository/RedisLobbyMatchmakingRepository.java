@@ -0,0 +1,120 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: party をチームへ詰めるロビー編成を Lua で原子的に行う
+ * なぜ: party の選定・チーム割り当て・MATCHED 更新の間に他 worker や Cancel が割り込まないようにするため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.model.LobbyShape;
+import com.example.matchmaking.model.MatchGroup;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.service.MatchmakingOutboxRelay;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class RedisLobbyMatchmakingRepository implements MatchmakingLobbyRepository {
+
+  private static final String LUA_PATH = "lua/match_lobby.lua";
+  private static final String RESULT_MATCHED = "matched";
+  private static final int FIXED_ARGS = 6;
+  private static final int FIELDS_PER_MEMBER = 4;
+  // 戻り値の 2 要素目は走査件数（RedisScriptExecutor が計測に使う）で、ロビーはその後に並ぶ
+  private static final int FIRST_RESULT_INDEX = 2;
+  // 大きい party が入らず読み飛ばす分を見込み、1 ロビーの人数の倍まで queue 先頭を走査する
+  private static final int SCAN_FACTOR = 2;
+  private static final int SCAN_SLACK = 16;
+
+  private final RedisScriptExecutor scriptExecutor;
+  private final MatchmakingKeyLayout keys;
+  private final RedisScript<List> matchLobbyScript;
+  private final boolean outboxRelayed;
+
+  @Autowired
+  public RedisLobbyMatchmakingRepository(
+      RedisScriptExecutor scriptExecutor,
+      MatchmakingKeyLayout keys,
+      Optional<MatchmakingOutboxRelay> outboxRelay) {
+    this(scriptExecutor, keys, outboxRelay.isPresent());
+  }
+
+  public RedisLobbyMatchmakingRepository(
+      RedisScriptExecutor scriptExecutor, MatchmakingKeyLayout keys, boolean outboxRelayed) {
+    this.scriptExecutor = scriptExecutor;
+    this.keys = keys;
+    this.outboxRelayed = outboxRelayed;
+    this.matchLobbyScript = RedisLuaMatchmakingMatchRepository.loadMatcherScript(LUA_PATH);
+  }
+
+  @Override
+  public List<MatchGroup> formLobbies(
+      QueueBucket bucket, Instant now, LobbyShape shape, int maxLobbies) {
+    if (maxLobbies < 1) {
+      throw new IllegalArgumentException("maxLobbies must be positive");
+    }
+    final Object[] args = new Object[FIXED_ARGS + maxLobbies];
+    args[0] = String.valueOf(now.toEpochMilli());
+    args[1] = String.valueOf(shape.teamSize());
+    args[2] = String.valueOf(shape.teamCount());
+    args[3] = String.valueOf(maxLobbies);
+    args[4] = String.valueOf(maxLobbies * shape.playersPerLobby() * SCAN_FACTOR + SCAN_SLACK);
+    args[5] = keys.namespace(bucket);
+    for (int i = 0; i < maxLobbies; i++) {
+      args[FIXED_ARGS + i] = UUID.randomUUID().toString();
+    }
+    final List<?> result =
+        scriptExecutor.executeMatcher(
+            "match_lobby",
+            matchLobbyScript,
+            RedisLuaMatchmakingMatchRepository.matcherKeys(
+                outboxRelayed,
+                keys.outboxKey(bucket),
+                keys.queueKey(bucket),
+                keys.ratingKey(bucket)),
+            args);
+    return parseGroups(result, bucket.mode(), now);
+  }
+
+  /**
+   * 役割: match_lobby.lua の戻り値を MatchGroup へ変換する。 動作: 先頭が "matched" でなければ空リストを返し、走査件数の後ろからロビーごとに
+   * match_id と member 数、member ごとの 4 要素を読み取る。 前提: result は match_lobby.lua の戻り値。
+   */
+  static List<MatchGroup> parseGroups(List<?> result, MatchMode mode, Instant now) {
+    if (result == null || result.isEmpty()) {
+      return List.of();
+    }
+    if (!RESULT_MATCHED.equals(String.valueOf(result.get(0)))) {
+      return List.of();
+    }
+    final List<MatchGroup> groups = new ArrayList<>();
+    int index = FIRST_RESULT_INDEX;
+    while (index + 1 < result.size()) {
+      final String matchId = String.valueOf(result.get(index));
+      final int memberCount = toInt(result.get(index + 1));
+      index += 2;
+      final List<MatchGroup.Member> members = new ArrayList<>(memberCount);
+      for (int m = 0; m < memberCount; m++) {
+        members.add(
+            new MatchGroup.Member(
+                String.valueOf(result.get(index)),
+                toInt(result.get(index + 1)),
+                toInt(result.get(index + 2)),
+                RedisLuaMatchmakingMatchRepository.parseScore(result.get(index + 3))));
+        index += FIELDS_PER_MEMBER;
+      }
+      groups.add(new MatchGroup(matchId, mode, now, members));
+    }
+    return groups;
+  }
+
+  private static int toInt(Object raw) {
+    return raw instanceof Number number ? number.intValue() : Integer.parseInt(String.valueOf(raw));
+  }
+}
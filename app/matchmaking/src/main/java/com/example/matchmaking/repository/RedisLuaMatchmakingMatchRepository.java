@@ -2,57 +2,156 @@ package com.example.matchmaking.repository;
 
 import com.example.matchmaking.model.MatchMode;
 import com.example.matchmaking.model.MatchPair;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.service.MatchmakingOutboxRelay;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
 @Repository
+@ConditionalOnProperty(
+    name = "matchmaking.rating.enabled",
+    havingValue = "false",
+    matchIfMissing = true)
 public class RedisLuaMatchmakingMatchRepository implements MatchmakingMatchRepository {
 
-  private static final String LUA_PATH = "lua/match_two.lua";
+  private static final String MATCH_MANY_LUA_PATH = "lua/match_many.lua";
+  private static final String MATCHER_PRELUDE_LUA_PATH = "lua/matcher_prelude.lua";
   private static final String RESULT_MATCHED = "matched";
+  private static final int MATCH_MANY_FIELDS_PER_PAIR = 5;
+  private static final int MATCH_MANY_FIXED_ARGS = 3;
+  // 戻り値の 2 要素目は走査件数（RedisScriptExecutor が計測に使う）で、成立分はその後に並ぶ
+  private static final int FIRST_RESULT_INDEX = 2;
 
-  @SuppressFBWarnings(
-      value = "EI_EXPOSE_REP2",
-      justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
-  private final StringRedisTemplate redisTemplate;
+  private final RedisScriptExecutor scriptExecutor;
+  private final MatchmakingKeyLayout keys;
+  private final RedisScript<List> matchManyScript;
+  private final boolean outboxRelayed;
 
-  private final RedisScript<List> matchTwoScript;
+  @Autowired
+  public RedisLuaMatchmakingMatchRepository(
+      RedisScriptExecutor scriptExecutor,
+      MatchmakingKeyLayout keys,
+      Optional<MatchmakingOutboxRelay> outboxRelay) {
+    this(scriptExecutor, keys, outboxRelay.isPresent());
+  }
 
-  public RedisLuaMatchmakingMatchRepository(StringRedisTemplate redisTemplate) {
-    this.redisTemplate = redisTemplate;
-    final DefaultRedisScript<List> script = new DefaultRedisScript<>();
-    script.setLocation(new ClassPathResource(LUA_PATH));
-    script.setResultType(List.class);
-    this.matchTwoScript = script;
+  /** outboxRelayed=false では成立イベントを outbox へ積まない（読む relay が無く stream が伸び続けるため）。 */
+  public RedisLuaMatchmakingMatchRepository(
+      RedisScriptExecutor scriptExecutor, MatchmakingKeyLayout keys, boolean outboxRelayed) {
+    this.scriptExecutor = scriptExecutor;
+    this.keys = keys;
+    this.outboxRelayed = outboxRelayed;
+    this.matchManyScript = loadMatcherScript(MATCH_MANY_LUA_PATH);
   }
 
   @Override
-  public Optional<MatchPair> matchTwo(MatchMode mode, Instant matchedAt) {
-    final String queueKey = RedisMatchmakingTicketRepository.queueKey(mode);
-    final String matchId = UUID.randomUUID().toString();
+  public List<MatchPair> matchMany(QueueBucket bucket, Instant now, int maxPairs) {
+    if (maxPairs < 1) {
+      throw new IllegalArgumentException("maxPairs must be positive");
+    }
+    final MatchMode mode = bucket.mode();
+    final Object[] args = new Object[MATCH_MANY_FIXED_ARGS + maxPairs];
+    args[0] = String.valueOf(now.toEpochMilli());
+    args[1] = String.valueOf(maxPairs);
+    args[2] = keys.namespace(bucket);
+    for (int i = 0; i < maxPairs; i++) {
+      args[MATCH_MANY_FIXED_ARGS + i] = UUID.randomUUID().toString();
+    }
     final List<?> result =
-        redisTemplate.execute(
-            matchTwoScript, List.of(queueKey), String.valueOf(matchedAt.toEpochMilli()), matchId);
-    if (result == null || result.size() < 4) {
-      return Optional.empty();
+        scriptExecutor.executeMatcher(
+            "match_many",
+            matchManyScript,
+            matcherKeys(outboxRelayed, keys.outboxKey(bucket), keys.queueKey(bucket)),
+            args);
+    return parsePairs(result, mode, now);
+  }
+
+  /**
+   * 役割: matcher スクリプトの KEYS を組み立てる。 動作: relay が outbox を読むときだけ末尾に outbox stream を加え、読まないときは外して
+   * Lua に XADD させない。 前提: outbox stream は各 matcher の KEYS の末尾に置く。
+   */
+  static List<String> matcherKeys(boolean outboxRelayed, String outboxKey, String... keys) {
+    final List<String> result = new ArrayList<>(List.of(keys));
+    if (outboxRelayed) {
+      result.add(outboxKey);
+    }
+    return result;
+  }
+
+  /**
+   * 役割: match_many.lua 形式の戻り値を MatchPair へ変換する。 動作: 先頭が "matched" でなければ空リストを返し、走査件数の後ろからペアごとの 5
+   * 要素を読み取る。 前提: 同形式を返す他の Lua マッチャーからも利用する。
+   */
+  static List<MatchPair> parsePairs(List<?> result, MatchMode mode, Instant now) {
+    if (result == null || result.isEmpty()) {
+      return List.of();
     }
     if (!RESULT_MATCHED.equals(String.valueOf(result.get(0)))) {
-      return Optional.empty();
-    }
-    return Optional.of(
-        new MatchPair(
-            String.valueOf(result.get(3)),
-            mode,
-            String.valueOf(result.get(1)),
-            String.valueOf(result.get(2)),
-            matchedAt));
+      return List.of();
+    }
+    final List<MatchPair> pairs = new ArrayList<>();
+    final int pairCount = (result.size() - FIRST_RESULT_INDEX) / MATCH_MANY_FIELDS_PER_PAIR;
+    for (int p = 0; p < pairCount; p++) {
+      final int base = FIRST_RESULT_INDEX + p * MATCH_MANY_FIELDS_PER_PAIR;
+      pairs.add(
+          new MatchPair(
+              String.valueOf(result.get(base + 2)),
+              mode,
+              String.valueOf(result.get(base)),
+              String.valueOf(result.get(base + 1)),
+              now,
+              parseScore(result.get(base + 3)),
+              parseScore(result.get(base + 4))));
+    }
+    return pairs;
+  }
+
+  static RedisScript<List> loadScript(String path) {
+    final DefaultRedisScript<List> script = new DefaultRedisScript<>();
+    script.setLocation(new ClassPathResource(path));
+    script.setResultType(List.class);
+    return script;
+  }
+
+  /**
+   * 役割: matcher スクリプトを読み込む。 動作: 共通部（matcher_prelude.lua）を本文の前に連結し、1 つのスクリプトとして EVALSHA
+   * する。 前提: 本文は共通部の matcher_functions で match record と ticket 状態の関数を受け取ること。
+   */
+  static RedisScript<List> loadMatcherScript(String path) {
+    final DefaultRedisScript<List> script = new DefaultRedisScript<>();
+    script.setScriptText(readScript(MATCHER_PRELUDE_LUA_PATH) + "\n" + readScript(path));
+    script.setResultType(List.class);
+    return script;
+  }
+
+  private static String readScript(String path) {
+    try {
+      return new ClassPathResource(path).getContentAsString(StandardCharsets.UTF_8);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("failed to read lua script " + path, ex);
+    }
+  }
+
+  static Instant parseScore(Object raw) {
+    if (raw == null) {
+      return null;
+    }
+    try {
+      return Instant.ofEpochMilli((long) Double.parseDouble(String.valueOf(raw)));
+    } catch (NumberFormatException ex) {
+      return null;
+    }
   }
 }
@@ -0,0 +1,79 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: worker 生存登録と queue 区画 lease を Redis の Lua で原子的に操作する
+ * なぜ: 全 replica が同じ queue を叩く競合をなくし、区画ごとに担当 replica を 1 つへ絞るため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.model.QueueBucket;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class RedisMatchmakingLeaseRepository implements MatchmakingLeaseRepository {
+
+  private static final String WORKERS_KEY = "mm:workers";
+  private static final String HEARTBEAT_LUA_PATH = "lua/worker_heartbeat.lua";
+  private static final String ACQUIRE_LUA_PATH = "lua/lease_acquire.lua";
+  private static final String RELEASE_LUA_PATH = "lua/lease_release.lua";
+
+  @SuppressFBWarnings(
+      value = "EI_EXPOSE_REP2",
+      justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
+  private final StringRedisTemplate redisTemplate;
+
+  private final RedisScript<Long> heartbeatScript;
+  private final RedisScript<Long> acquireScript;
+  private final RedisScript<Long> releaseScript;
+
+  public RedisMatchmakingLeaseRepository(StringRedisTemplate redisTemplate) {
+    this.redisTemplate = redisTemplate;
+    this.heartbeatScript = loadScript(HEARTBEAT_LUA_PATH);
+    this.acquireScript = loadScript(ACQUIRE_LUA_PATH);
+    this.releaseScript = loadScript(RELEASE_LUA_PATH);
+  }
+
+  @Override
+  public long heartbeat(String workerId, Duration ttl) {
+    final Long live =
+        redisTemplate.execute(
+            heartbeatScript, List.of(WORKERS_KEY), workerId, String.valueOf(ttl.toMillis()));
+    // 自分の登録直後なので 0 は通常起こらないが、分母に使うため最低 1 とする
+    return live == null ? 1 : Math.max(1, live);
+  }
+
+  @Override
+  public boolean tryAcquire(QueueBucket bucket, String workerId, Duration ttl) {
+    final Long acquired =
+        redisTemplate.execute(
+            acquireScript, List.of(leaseKey(bucket)), workerId, String.valueOf(ttl.toMillis()));
+    return acquired != null && acquired > 0;
+  }
+
+  @Override
+  public void release(QueueBucket bucket, String workerId) {
+    redisTemplate.execute(releaseScript, List.of(leaseKey(bucket)), workerId);
+  }
+
+  @Override
+  public void unregister(String workerId) {
+    redisTemplate.opsForZSet().remove(WORKERS_KEY, workerId);
+  }
+
+  static String leaseKey(QueueBucket bucket) {
+    return "mm:lease:" + bucket.mode().value() + ":" + bucket.id();
+  }
+
+  private static RedisScript<Long> loadScript(String path) {
+    final DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+    script.setLocation(new ClassPathResource(path));
+    script.setResultType(Long.class);
+    return script;
+  }
+}
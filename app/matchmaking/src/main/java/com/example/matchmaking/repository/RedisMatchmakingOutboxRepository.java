@@ -0,0 +1,191 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: match 成立イベントの outbox を Redis Streams の consumer group で読み出し、ack/trim する
+ * なぜ: matcher の Lua が ticket 更新と同じ呼び出しで積んだイベントを、NATS 障害時も失わずに少なくとも 1 回配信するため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.config.MatchmakingOutboxProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchOutboxEntry;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class RedisMatchmakingOutboxRepository implements MatchmakingOutboxRepository {
+
+  private static final String ACK_LUA_PATH = "lua/outbox_ack.lua";
+  private static final String FIELD_MATCH_ID = "match_id";
+  private static final String FIELD_MODE = "mode";
+  private static final String FIELD_MATCHED_AT = "matched_at";
+  private static final String BUSY_GROUP = "BUSYGROUP";
+
+  @SuppressFBWarnings(
+      value = "EI_EXPOSE_REP2",
+      justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
+  private final StringRedisTemplate redisTemplate;
+
+  private final MatchmakingKeyLayout keys;
+  private final MatchmakingOutboxProperties properties;
+  private final MatchmakingMetrics metrics;
+  private final RedisScript<List> ackScript;
+
+  public RedisMatchmakingOutboxRepository(
+      StringRedisTemplate redisTemplate,
+      MatchmakingKeyLayout keys,
+      MatchmakingOutboxProperties properties,
+      MatchmakingMetrics metrics) {
+    this.redisTemplate = redisTemplate;
+    this.keys = keys;
+    this.properties = properties;
+    this.metrics = metrics;
+    this.ackScript = RedisLuaMatchmakingMatchRepository.loadScript(ACK_LUA_PATH);
+  }
+
+  @Override
+  public List<String> streams() {
+    if (!keys.isCluster()) {
+      return List.of(keys.sharedOutboxKey());
+    }
+    final Set<String> members = redisTemplate.opsForSet().members(keys.outboxRegistryKey());
+    metrics.recordRedisCalls("outbox_streams", 1);
+    return members == null ? List.of() : members.stream().sorted().toList();
+  }
+
+  @Override
+  public void ensureGroup(String stream) {
+    try {
+      // relay より先に積まれたエントリも配信するよう、group は stream の先頭から読む
+      redisTemplate
+          .opsForStream()
+          .createGroup(stream, ReadOffset.from("0"), properties.group());
+    } catch (DataAccessException ex) {
+      final String message = ex.getMostSpecificCause().getMessage();
+      if (message == null || !message.contains(BUSY_GROUP)) {
+        throw ex;
+      }
+    }
+  }
+
+  @Override
+  public List<MatchOutboxEntry> claimStale(
+      String stream, String consumer, Duration minIdle, int count) {
+    final PendingMessages pending =
+        redisTemplate
+            .opsForStream()
+            .pending(stream, properties.group(), Range.unbounded(), count);
+    metrics.recordRedisCalls("outbox_pending", 1);
+    final List<RecordId> stale = new ArrayList<>();
+    for (PendingMessage message : pending) {
+      if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0) {
+        stale.add(message.getId());
+      }
+    }
+    if (stale.isEmpty()) {
+      return List.of();
+    }
+    final List<MapRecord<String, Object, Object>> claimed =
+        redisTemplate
+            .opsForStream()
+            .claim(
+                stream, properties.group(), consumer, minIdle, stale.toArray(new RecordId[0]));
+    metrics.recordRedisCalls("outbox_claim", 1);
+    return toEntries(claimed);
+  }
+
+  @Override
+  public List<MatchOutboxEntry> readNew(String stream, String consumer, int count) {
+    final List<MapRecord<String, Object, Object>> records =
+        redisTemplate
+            .opsForStream()
+            .read(
+                Consumer.from(properties.group(), consumer),
+                StreamReadOptions.empty().count(count),
+                StreamOffset.create(stream, ReadOffset.lastConsumed()));
+    metrics.recordRedisCalls("outbox_read", 1);
+    return toEntries(records);
+  }
+
+  @Override
+  public int acknowledge(String stream, List<String> entryIds) {
+    if (entryIds.isEmpty()) {
+      return 0;
+    }
+    final Object[] args = new Object[entryIds.size() + 1];
+    args[0] = properties.group();
+    for (int i = 0; i < entryIds.size(); i++) {
+      args[i + 1] = entryIds.get(i);
+    }
+    final List<?> result = redisTemplate.execute(ackScript, List.of(stream), args);
+    metrics.recordRedisCalls("outbox_ack", 1);
+    if (result == null || result.isEmpty()) {
+      return 0;
+    }
+    return ((Number) result.get(0)).intValue();
+  }
+
+  private static List<MatchOutboxEntry> toEntries(List<MapRecord<String, Object, Object>> records) {
+    if (records == null || records.isEmpty()) {
+      return List.of();
+    }
+    final List<MatchOutboxEntry> entries = new ArrayList<>(records.size());
+    for (MapRecord<String, Object, Object> record : records) {
+      entries.add(toEntry(record.getId().getValue(), record.getValue()));
+    }
+    return entries;
+  }
+
+  /**
+   * 役割: stream のフィールドを MatchOutboxEntry へ変換する。 動作: 解釈できない mode/matched_at は null にし、relay
+   * が再送しても直らないエントリとして扱えるようにする。 前提: fields は matcher の Lua が XADD した内容。
+   */
+  static MatchOutboxEntry toEntry(String entryId, Map<Object, Object> fields) {
+    final Object matchId = fields.get(FIELD_MATCH_ID);
+    return new MatchOutboxEntry(
+        entryId,
+        matchId == null ? null : String.valueOf(matchId),
+        parseMode(fields.get(FIELD_MODE)),
+        parseMillis(fields.get(FIELD_MATCHED_AT)));
+  }
+
+  private static MatchMode parseMode(Object value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return MatchMode.fromValue(String.valueOf(value));
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+  }
+
+  private static Instant parseMillis(Object value) {
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Instant.ofEpochMilli(Long.parseLong(String.valueOf(value)));
+    } catch (NumberFormatException ex) {
+      return null;
+    }
+  }
+}
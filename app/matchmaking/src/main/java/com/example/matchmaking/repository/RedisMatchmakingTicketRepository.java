@@ -1,19 +1,35 @@
 package com.example.matchmaking.repository;
 
+import com.example.matchmaking.api.IdempotencyConflictException;
+import com.example.matchmaking.config.MatchmakingRedisProperties;
 import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchRecord;
+import com.example.matchmaking.model.QueueBucket;
 import com.example.matchmaking.model.TicketRecord;
 import com.example.matchmaking.model.TicketStatus;
+import com.example.matchmaking.model.TicketStatusSnapshot;
 import com.example.matchmaking.service.MatchmakingMetrics;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
 @Repository
@@ -24,138 +40,257 @@ public class RedisMatchmakingTicketRepository implements MatchmakingTicketReposi
   private static final String FIELD_STATUS = "status";
   private static final String FIELD_CREATED_AT = "created_at";
   private static final String FIELD_EXPIRES_AT = "expires_at";
-  private static final String FIELD_EXPIRES_AT_EPOCH_MILLIS = "expires_at_epoch_millis";
   private static final String FIELD_ATTRIBUTES = "attributes";
   private static final String FIELD_MATCH_ID = "match_id";
+  private static final String FIELD_BUCKET = "bucket";
+  // compact 形式の field。status の値は旧形式と同じ文字列を使う
+  private static final String COMPACT_USER_ID = "u";
+  private static final String COMPACT_MODE = "m";
+  private static final String COMPACT_STATUS = "s";
+  private static final String COMPACT_CREATED_AT = "c";
+  private static final String COMPACT_EXPIRES_AT = "e";
+  private static final String COMPACT_MATCH_ID = "x";
+  private static final String COMPACT_BUCKET = "b";
+  // 区画を埋め込む前の standalone ticket の Cancel が区画を求めるために読む field
+  // （compact の mode/bucket、旧形式の mode/bucket の順）
+  private static final List<Object> STORED_BUCKET_FIELDS =
+      List.of(COMPACT_MODE, COMPACT_BUCKET, FIELD_MODE, FIELD_BUCKET);
+  private static final int FINGERPRINT_BYTES = 16;
+  private static final String REMOVE_BUCKET_LUA_PATH = "lua/remove_bucket_if_empty.lua";
+  private static final String JOIN_LUA_PATH = "lua/join_ticket.lua";
+  private static final String CANCEL_LUA_PATH = "lua/cancel_ticket.lua";
+  private static final String REAP_LUA_PATH = "lua/reap_expired.lua";
+  static final String STATUS_LUA_PATH = "lua/read_ticket_status.lua";
+  private static final String MATCH_FIELD_MATCHED_AT = "matched_at";
+  private static final String MATCH_FIELD_TICKET_IDS = "ticket_ids";
+  private static final String MATCH_FIELD_USER_IDS = "user_ids";
+  private static final String MATCH_FIELD_TEAMS = "teams";
+  private static final String JOIN_EXISTING = "existing";
+  private static final String JOIN_CONFLICT = "conflict";
+  private static final String JOIN_LEGACY = "legacy";
+  private static final String CANCEL_NOT_FOUND = "not_found";
+  private static final String CANCEL_CANCELLED = "cancelled";
+  private static final String CANCEL_EXPIRED = "expired";
 
   @SuppressFBWarnings(
       value = "EI_EXPOSE_REP2",
       justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
   private final StringRedisTemplate redisTemplate;
 
+  private final RedisScriptExecutor scriptExecutor;
+  private final MatchmakingKeyLayout keys;
+  private final boolean compact;
   private final MatchmakingMetrics metrics;
+  private final Set<String> registeredOutboxStreams = ConcurrentHashMap.newKeySet();
+  private final RedisScript<Long> removeBucketIfEmptyScript;
+  private final RedisScript<List> joinScript;
+  private final RedisScript<List> cancelScript;
+  private final RedisScript<List> reapScript;
+  private final RedisScript<List> statusScript;
 
   public RedisMatchmakingTicketRepository(
-      StringRedisTemplate redisTemplate, MatchmakingMetrics metrics) {
+      StringRedisTemplate redisTemplate,
+      RedisScriptExecutor scriptExecutor,
+      MatchmakingKeyLayout keys,
+      MatchmakingRedisProperties redisProperties,
+      MatchmakingMetrics metrics) {
     this.redisTemplate = redisTemplate;
+    this.scriptExecutor = scriptExecutor;
+    this.keys = keys;
+    this.compact =
+        redisProperties.ticketEncoding() == MatchmakingRedisProperties.TicketEncoding.COMPACT;
     this.metrics = metrics;
+    final DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+    script.setLocation(new ClassPathResource(REMOVE_BUCKET_LUA_PATH));
+    script.setResultType(Long.class);
+    this.removeBucketIfEmptyScript = script;
+    this.joinScript = RedisLuaMatchmakingMatchRepository.loadScript(JOIN_LUA_PATH);
+    this.cancelScript = RedisLuaMatchmakingMatchRepository.loadScript(CANCEL_LUA_PATH);
+    this.reapScript = RedisLuaMatchmakingMatchRepository.loadScript(REAP_LUA_PATH);
+    this.statusScript = RedisLuaMatchmakingMatchRepository.loadScript(STATUS_LUA_PATH);
   }
 
   @Override
   public TicketRecord createOrReuseTicket(
-      MatchMode mode,
+      QueueBucket bucket,
       String userId,
       String idempotencyKey,
       String attributesJson,
+      Double rating,
+      int partySize,
       Duration ticketTtl,
       Duration idempotencyTtl) {
-    final String idempotencyRedisKey = idempotencyKey(userId, mode, idempotencyKey);
-    final ValueOperations<String, String> valueOps = redisTemplate.opsForValue();
-    final String existingTicketId = valueOps.get(idempotencyRedisKey);
-    if (existingTicketId != null && !existingTicketId.isBlank()) {
-      final Optional<TicketRecord> existing = findTicketById(existingTicketId);
-      if (existing.isPresent()) {
-        return existing.get();
-      }
-    }
-
+    final MatchMode mode = bucket.mode();
     final Instant now = Instant.now();
     final Instant expiresAt = now.plus(ticketTtl);
-    final String ticketId = UUID.randomUUID().toString();
-    final String ticketKey = ticketKey(ticketId);
-
-    final Map<String, String> fields = new HashMap<>();
-    fields.put(FIELD_USER_ID, userId);
-    fields.put(FIELD_MODE, mode.value());
-    fields.put(FIELD_STATUS, TicketStatus.QUEUED.name());
-    fields.put(FIELD_CREATED_AT, now.toString());
-    fields.put(FIELD_EXPIRES_AT, expiresAt.toString());
-    fields.put(FIELD_EXPIRES_AT_EPOCH_MILLIS, String.valueOf(expiresAt.toEpochMilli()));
-    fields.put(FIELD_ATTRIBUTES, attributesJson == null ? "{}" : attributesJson);
-
-    redisTemplate.opsForHash().putAll(ticketKey, fields);
-    redisTemplate.expire(ticketKey, ticketTtl);
-    redisTemplate.opsForZSet().add(queueKey(mode), ticketId, now.toEpochMilli());
-    valueOps.set(idempotencyRedisKey, ticketId, idempotencyTtl);
-
+    // compact 形式は冪等キーから ticket ID を決め、ticket の有無で冪等判定するため mm:idemp:* を作らない
+    final String ticketId =
+        compact
+            ? keys.idempotentTicketId(bucket, userId, idempotencyKey)
+            : keys.newTicketId(bucket);
+    final Duration hashTtl =
+        compact && idempotencyTtl.compareTo(ticketTtl) > 0 ? idempotencyTtl : ticketTtl;
+    final String attributes = attributesJson == null ? "{}" : attributesJson;
+    // cluster では区画 index が別 slot のため、スクリプトの外で登録する
+    final boolean indexInScript = !bucket.isDefault() && !keys.isCluster();
+    final List<String> joinKeys =
+        new ArrayList<>(
+            List.of(
+                keys.idempotencyKey(bucket, userId, idempotencyKey),
+                keys.ticketKey(ticketId),
+                keys.queueKey(bucket),
+                keys.ratingKey(bucket),
+                keys.expiryKey(bucket)));
+    if (indexInScript) {
+      joinKeys.add(keys.bucketIndexKey(mode));
+    }
+    final Object[] joinArgs = {
+      ticketId,
+      userId,
+      mode.value(),
+      bucket.id(),
+      now.toString(),
+      expiresAt.toString(),
+      String.valueOf(expiresAt.toEpochMilli()),
+      String.valueOf(now.toEpochMilli()),
+      attributes,
+      attributesHash(attributes),
+      rating == null ? "" : String.valueOf(rating),
+      String.valueOf(hashTtl.toMillis()),
+      String.valueOf(idempotencyTtl.toMillis()),
+      indexInScript ? "1" : "0",
+      String.valueOf(partySize),
+      compact ? "compact" : "legacy",
+      attributesFingerprint(attributes),
+      ""
+    };
+    List<?> result = scriptExecutor.execute("join", joinScript, joinKeys, joinArgs);
+    if (result != null && result.size() >= 2 && JOIN_LEGACY.equals(result.get(0))) {
+      // 移行前の冪等キーが指す ticket は ID を読むまで key が分からないため、その key を宣言して呼び直す
+      final String legacyTicketId = String.valueOf(result.get(1));
+      joinKeys.add(keys.ticketKey(legacyTicketId));
+      joinArgs[joinArgs.length - 1] = legacyTicketId;
+      result = scriptExecutor.execute("join", joinScript, joinKeys, joinArgs);
+    }
+    if (result == null || result.size() < 2 || JOIN_LEGACY.equals(result.get(0))) {
+      throw new IllegalStateException("unexpected join script result");
+    }
+    if (keys.isCluster()) {
+      registerBucket(bucket);
+    }
+    final String outcome = String.valueOf(result.get(0));
+    final String resultTicketId = String.valueOf(result.get(1));
+    if (JOIN_CONFLICT.equals(outcome)) {
+      throw new IdempotencyConflictException(
+          "idempotency_key already used with different attributes");
+    }
+    if (JOIN_EXISTING.equals(outcome)) {
+      return toRecord(resultTicketId, toFieldMap(result, 2));
+    }
     return new TicketRecord(
-        ticketId,
-        userId,
-        mode,
-        TicketStatus.QUEUED,
-        now,
-        expiresAt,
-        fields.get(FIELD_ATTRIBUTES),
-        null);
+        ticketId, userId, mode, TicketStatus.QUEUED, now, expiresAt, attributes, null, bucket.id());
   }
 
   @Override
   public Optional<TicketRecord> findTicketById(String ticketId) {
-    final Map<Object, Object> raw = redisTemplate.opsForHash().entries(ticketKey(ticketId));
+    final Map<Object, Object> raw = redisTemplate.opsForHash().entries(keys.ticketKey(ticketId));
     if (raw.isEmpty()) {
       return Optional.empty();
     }
-    final Map<String, String> fields = normalizeFields(raw);
-    final MatchMode mode = MatchMode.fromValue(fields.get(FIELD_MODE));
-    TicketStatus status = parseStatus(fields.get(FIELD_STATUS));
-    final Instant expiresAt = parseInstant(fields.get(FIELD_EXPIRES_AT));
-    if (status == TicketStatus.QUEUED && expiresAt != null && !Instant.now().isBefore(expiresAt)) {
-      status = TicketStatus.EXPIRED;
-      redisTemplate
-          .opsForHash()
-          .put(ticketKey(ticketId), FIELD_STATUS, TicketStatus.EXPIRED.name());
-      redisTemplate.opsForZSet().remove(queueKey(mode), ticketId);
-      metrics.recordMatchResult("expired");
+    // 失効の書き込みは reaper に任せ、参照は読み取りだけで済ませる
+    return Optional.of(toRecord(ticketId, normalizeFields(raw)));
+  }
+
+  @Override
+  public Optional<TicketStatusSnapshot> findTicketStatus(String ticketId) {
+    final String ticketKey = keys.ticketKey(ticketId);
+    List<?> result = scriptExecutor.execute("status", statusScript, List.of(ticketKey), "");
+    final String matchId = statusMatchId(result);
+    if (matchId != null) {
+      // match record の key は match_id を読むまで分からないため、成立後の参照だけ key を宣言して読み直す
+      result =
+          scriptExecutor.execute(
+              "status",
+              statusScript,
+              List.of(ticketKey, keys.matchKey(ticketId, matchId)),
+              matchId);
     }
+    return toStatusSnapshot(ticketId, result);
+  }
 
-    return Optional.of(
-        new TicketRecord(
-            ticketId,
-            fields.get(FIELD_USER_ID),
-            mode,
-            status,
-            parseInstant(fields.get(FIELD_CREATED_AT)),
-            expiresAt,
-            fields.getOrDefault(FIELD_ATTRIBUTES, "{}"),
-            fields.get(FIELD_MATCH_ID)));
+  /**
+   * 役割: read_ticket_status.lua の戻り値から ticket の match_id を取り出す。 動作: ticket 分のフィールドから compact 形式の x
+   * か旧形式の match_id を探し、無ければ null を返す。 前提: result は状態スクリプトの戻り値。
+   */
+  static String statusMatchId(List<?> result) {
+    if (result == null || result.isEmpty() || !(result.get(0) instanceof Number count)) {
+      return null;
+    }
+    final int end = Math.min(result.size(), 1 + count.intValue() * 2);
+    for (int i = 1; i + 1 < end; i += 2) {
+      final String field = String.valueOf(result.get(i));
+      if (FIELD_MATCH_ID.equals(field) || COMPACT_MATCH_ID.equals(field)) {
+        final String matchId = String.valueOf(result.get(i + 1));
+        return matchId.isEmpty() ? null : matchId;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * 役割: read_ticket_status.lua の戻り値を TicketStatusSnapshot へ変換する。 動作: ticket が無ければ空を返し、MATCHED で
+   * match record が残っていれば参加者も組み立てる。 前提: EXPIRED の判定は変換時点の時刻で行うため、同じ戻り値を後から変換し直してもよい。
+   */
+  static Optional<TicketStatusSnapshot> toStatusSnapshot(String ticketId, List<?> result) {
+    if (result == null || result.isEmpty() || ((Number) result.get(0)).intValue() == 0) {
+      return Optional.empty();
+    }
+    final int ticketValues = ((Number) result.get(0)).intValue() * 2;
+    final TicketRecord ticket =
+        toRecord(ticketId, toFieldMap(result.subList(0, 1 + ticketValues), 1));
+    final Map<String, String> matchFields = toFieldMap(result, 1 + ticketValues);
+    final MatchRecord match =
+        ticket.matchId() == null || matchFields.isEmpty()
+            ? null
+            : toMatchRecord(ticket.matchId(), ticket.mode(), matchFields);
+    return Optional.of(new TicketStatusSnapshot(ticket, match));
   }
 
   @Override
-  public Optional<TicketRecord> cancelTicket(String ticketId) {
-    final Optional<TicketRecord> existing = findTicketById(ticketId);
-    if (existing.isEmpty()) {
+  public Optional<TicketRecord> cancelTicket(String ticketId, String userId) {
+    final Optional<List<String>> cancelKeys = cancelKeys(ticketId);
+    if (cancelKeys.isEmpty()) {
+      return Optional.empty();
+    }
+    final List<?> result =
+        scriptExecutor.execute(
+            "cancel",
+            cancelScript,
+            cancelKeys.get(),
+            ticketId,
+            userId,
+            String.valueOf(Instant.now().toEpochMilli()));
+    if (result == null || result.isEmpty() || CANCEL_NOT_FOUND.equals(result.get(0))) {
       return Optional.empty();
     }
-    final TicketRecord record = existing.get();
-    if (record.status() != TicketStatus.QUEUED) {
-      return existing;
+    final String outcome = String.valueOf(result.get(0));
+    if (CANCEL_CANCELLED.equals(outcome)) {
+      metrics.recordMatchResult("cancelled");
+    } else if (CANCEL_EXPIRED.equals(outcome)) {
+      metrics.recordMatchResult("expired");
     }
-
-    final String ticketKey = ticketKey(ticketId);
-    redisTemplate.opsForHash().put(ticketKey, FIELD_STATUS, TicketStatus.CANCELLED.name());
-    redisTemplate.opsForZSet().remove(queueKey(record.mode()), ticketId);
-
-    return Optional.of(
-        new TicketRecord(
-            record.ticketId(),
-            record.userId(),
-            record.mode(),
-            TicketStatus.CANCELLED,
-            record.createdAt(),
-            record.expiresAt(),
-            record.attributesJson(),
-            record.matchId()));
+    return Optional.of(toRecord(ticketId, toFieldMap(result, 1)));
   }
 
   @Override
-  public long queueDepth(MatchMode mode) {
-    final Long depth = redisTemplate.opsForZSet().size(queueKey(mode));
+  public long queueDepth(QueueBucket bucket) {
+    final Long depth = redisTemplate.opsForZSet().size(keys.queueKey(bucket));
     return depth == null ? 0 : depth;
   }
 
   @Override
-  public Optional<Long> oldestQueueAgeSeconds(MatchMode mode) {
-    final var values = redisTemplate.opsForZSet().rangeWithScores(queueKey(mode), 0, 0);
+  public Optional<Long> oldestQueueAgeSeconds(QueueBucket bucket) {
+    final var values = redisTemplate.opsForZSet().rangeWithScores(keys.queueKey(bucket), 0, 0);
     if (values == null || values.isEmpty()) {
       return Optional.empty();
     }
@@ -168,16 +303,255 @@ public class RedisMatchmakingTicketRepository implements MatchmakingTicketReposi
     return Optional.of(ageMillis / 1000);
   }
 
-  static String ticketKey(String ticketId) {
-    return "mm:ticket:" + ticketId;
+  @Override
+  public List<QueueBucket> activeBuckets(MatchMode mode) {
+    final List<QueueBucket> buckets = new ArrayList<>();
+    // 分割設定の導入前に投入された ticket を取りこぼさないよう default 区画は常に走査する
+    buckets.add(QueueBucket.defaultOf(mode));
+    final Set<String> members = redisTemplate.opsForSet().members(keys.bucketIndexKey(mode));
+    if (members != null) {
+      for (String member : members) {
+        final QueueBucket bucket = new QueueBucket(mode, member);
+        if (!bucket.isDefault()) {
+          buckets.add(bucket);
+        }
+      }
+    }
+    return buckets;
+  }
+
+  @Override
+  public boolean removeBucketIfEmpty(QueueBucket bucket) {
+    if (bucket.isDefault()) {
+      return false;
+    }
+    if (keys.isCluster()) {
+      return removeClusterBucketIfEmpty(bucket);
+    }
+    final Long removed =
+        redisTemplate.execute(
+            removeBucketIfEmptyScript,
+            List.of(
+                keys.queueKey(bucket), keys.expiryKey(bucket), keys.bucketIndexKey(bucket.mode())),
+            bucket.id());
+    return removed != null && removed > 0;
   }
 
-  static String queueKey(MatchMode mode) {
-    return "mm:queue:" + mode.value();
+  /**
+   * 役割: cluster 配置で空の区画を index から外す。 動作: 区画 slot のスクリプトで空を確かめてから別 slot の index を SREM し、その間に Join
+   * が入っていれば index へ戻す。 前提: Join はスクリプトの後に index へ SADD するため、SREM 後の再確認で取りこぼさない。
+   */
+  private boolean removeClusterBucketIfEmpty(QueueBucket bucket) {
+    final Long empty =
+        redisTemplate.execute(
+            removeBucketIfEmptyScript,
+            List.of(keys.queueKey(bucket), keys.expiryKey(bucket)),
+            bucket.id());
+    if (empty == null || empty == 0) {
+      return false;
+    }
+    final String indexKey = keys.bucketIndexKey(bucket.mode());
+    final Long removed = redisTemplate.opsForSet().remove(indexKey, bucket.id());
+    final Long depth = redisTemplate.opsForZSet().size(keys.queueKey(bucket));
+    if (depth != null && depth > 0) {
+      redisTemplate.opsForSet().add(indexKey, bucket.id());
+      return false;
+    }
+    return removed != null && removed > 0;
+  }
+
+  /**
+   * 役割: cluster 配置で Join した区画を matcher と relay の走査対象へ登録する。 動作: 区画 index へ SADD し、区画の outbox stream
+   * はプロセス内で初回だけ登録簿へ SADD する。 前提: どちらも区画とは別 slot のため Join のスクリプトには含められない。
+   */
+  private void registerBucket(QueueBucket bucket) {
+    if (!bucket.isDefault()) {
+      redisTemplate.opsForSet().add(keys.bucketIndexKey(bucket.mode()), bucket.id());
+    }
+    final String outboxKey = keys.outboxKey(bucket);
+    if (registeredOutboxStreams.add(outboxKey)) {
+      redisTemplate.opsForSet().add(keys.outboxRegistryKey(), outboxKey);
+    }
   }
 
-  static String idempotencyKey(String userId, MatchMode mode, String idempotencyKey) {
-    return "mm:idemp:" + userId + ":" + mode.value() + ":" + idempotencyKey;
+  private Optional<List<String>> cancelKeys(String ticketId) {
+    final String ticketKey = keys.ticketKey(ticketId);
+    // スクリプトが触る queue/rating/expiry を必ず KEYS で宣言する。key 名は MatchmakingKeyLayout だけが組み立てる
+    // 区画は ticket ID から求め、Cancel をスクリプト 1 往復に保つ（区画は作成後に変わらない）
+    final Optional<QueueBucket> fromId = keys.bucketOf(ticketId);
+    // 区画を埋め込む前に払い出した standalone の ID だけは ticket hash の mode/bucket を読む
+    final Optional<QueueBucket> bucket =
+        fromId.isPresent() || keys.isCluster() ? fromId : storedBucket(ticketKey);
+    return bucket.map(
+        value ->
+            List.of(
+                ticketKey, keys.queueKey(value), keys.ratingKey(value), keys.expiryKey(value)));
+  }
+
+  private Optional<QueueBucket> storedBucket(String ticketKey) {
+    final List<Object> values =
+        redisTemplate.opsForHash().multiGet(ticketKey, STORED_BUCKET_FIELDS);
+    metrics.recordRedisCalls("cancel", 1);
+    if (values == null || values.size() < 4) {
+      return Optional.empty();
+    }
+    final Object mode = values.get(0) != null ? values.get(0) : values.get(2);
+    if (mode == null) {
+      return Optional.empty();
+    }
+    final Object bucket = values.get(0) != null ? values.get(1) : values.get(3);
+    return Optional.of(
+        new QueueBucket(
+            MatchMode.fromValue(mode.toString()), bucket == null ? null : bucket.toString()));
+  }
+
+  @Override
+  public int reapExpired(QueueBucket bucket, Instant now, int limit) {
+    final String expiryKey = keys.expiryKey(bucket);
+    // ticket key は KEYS で宣言する必要があるため、期限到来分の ID を先に読む。何も無い tick はこの 1 往復で終わる
+    final Set<String> due =
+        redisTemplate
+            .opsForZSet()
+            .rangeByScore(expiryKey, Double.NEGATIVE_INFINITY, now.toEpochMilli(), 0, limit);
+    metrics.recordRedisCalls("reap", 1);
+    if (due == null || due.isEmpty()) {
+      return 0;
+    }
+    final List<String> reapKeys =
+        new ArrayList<>(List.of(expiryKey, keys.queueKey(bucket), keys.ratingKey(bucket)));
+    final List<String> reapArgs = new ArrayList<>();
+    reapArgs.add(String.valueOf(now.toEpochMilli()));
+    for (String ticketId : due) {
+      reapKeys.add(keys.ticketKey(ticketId));
+      reapArgs.add(ticketId);
+    }
+    final List<?> result =
+        scriptExecutor.execute("reap", reapScript, reapKeys, reapArgs.toArray());
+    if (result == null || result.size() < 2) {
+      return 0;
+    }
+    final int expired = ((Number) result.get(1)).intValue();
+    if (expired > 0) {
+      metrics.recordMatchResult("expired", expired);
+    }
+    return ((Number) result.get(0)).intValue();
+  }
+
+  /**
+   * 役割: ticket hash の内容を TicketRecord へ変換する。 動作: QUEUED のまま期限を過ぎていれば EXPIRED として返す（保存値は変更しない）。 前提:
+   * fields は HGETALL の内容。compact 形式（status が "s"）と旧形式のどちらも受け付ける。
+   */
+  private static TicketRecord toRecord(String ticketId, Map<String, String> fields) {
+    if (fields.containsKey(COMPACT_STATUS)) {
+      return toCompactRecord(ticketId, fields);
+    }
+    final MatchMode mode = MatchMode.fromValue(fields.get(FIELD_MODE));
+    final QueueBucket bucket = new QueueBucket(mode, fields.get(FIELD_BUCKET));
+    TicketStatus status = parseStatus(fields.get(FIELD_STATUS));
+    final Instant expiresAt = parseInstant(fields.get(FIELD_EXPIRES_AT));
+    if (status == TicketStatus.QUEUED && expiresAt != null && !Instant.now().isBefore(expiresAt)) {
+      status = TicketStatus.EXPIRED;
+    }
+    return new TicketRecord(
+        ticketId,
+        fields.get(FIELD_USER_ID),
+        mode,
+        status,
+        parseInstant(fields.get(FIELD_CREATED_AT)),
+        expiresAt,
+        fields.getOrDefault(FIELD_ATTRIBUTES, "{}"),
+        fields.get(FIELD_MATCH_ID),
+        bucket.id());
+  }
+
+  /**
+   * 役割: compact 形式の ticket hash を TicketRecord へ変換する。 動作: 時刻は epoch millis から復元し、省略された bucket は
+   * default とする。 前提: attributes は保存しないため "{}" を返す（Join 後に attributes を読む経路はない）。
+   */
+  private static TicketRecord toCompactRecord(String ticketId, Map<String, String> fields) {
+    final MatchMode mode = MatchMode.fromValue(fields.get(COMPACT_MODE));
+    final QueueBucket bucket = new QueueBucket(mode, fields.get(COMPACT_BUCKET));
+    TicketStatus status = parseStatus(fields.get(COMPACT_STATUS));
+    final Instant expiresAt = parseEpochMillis(fields.get(COMPACT_EXPIRES_AT));
+    if (status == TicketStatus.QUEUED && expiresAt != null && !Instant.now().isBefore(expiresAt)) {
+      status = TicketStatus.EXPIRED;
+    }
+    return new TicketRecord(
+        ticketId,
+        fields.get(COMPACT_USER_ID),
+        mode,
+        status,
+        parseEpochMillis(fields.get(COMPACT_CREATED_AT)),
+        expiresAt,
+        "{}",
+        fields.get(COMPACT_MATCH_ID),
+        bucket.id());
+  }
+
+  /**
+   * 役割: match record の hash 内容を MatchRecord へ変換する。 動作: ticket_ids/user_ids/teams
+   * のカンマ区切りを位置で対応付け、欠けた値は空文字と team 0 で補う。 前提: fields は matcher の Lua が書いた mm:match:{matchId}
+   * の内容で、mode は参照元 ticket の mode。
+   */
+  static MatchRecord toMatchRecord(String matchId, MatchMode mode, Map<String, String> fields) {
+    final List<String> ticketIds = splitList(fields.get(MATCH_FIELD_TICKET_IDS));
+    final List<String> userIds = splitList(fields.get(MATCH_FIELD_USER_IDS));
+    final List<String> teams = splitList(fields.get(MATCH_FIELD_TEAMS));
+    final List<MatchRecord.Participant> participants = new ArrayList<>(ticketIds.size());
+    for (int i = 0; i < ticketIds.size(); i++) {
+      participants.add(
+          new MatchRecord.Participant(
+              ticketIds.get(i),
+              i < userIds.size() ? userIds.get(i) : "",
+              i < teams.size() ? Integer.parseInt(teams.get(i)) : 0));
+    }
+    final String matchedAt = fields.get(MATCH_FIELD_MATCHED_AT);
+    return new MatchRecord(
+        matchId,
+        mode,
+        matchedAt == null ? null : Instant.ofEpochMilli(Long.parseLong(matchedAt)),
+        participants);
+  }
+
+  private static List<String> splitList(String value) {
+    return value == null || value.isEmpty() ? List.of() : List.of(value.split(",", -1));
+  }
+
+  private static Map<String, String> toFieldMap(List<?> values, int offset) {
+    final Map<String, String> fields = new HashMap<>();
+    for (int i = offset; i + 1 < values.size(); i += 2) {
+      fields.put(String.valueOf(values.get(i)), String.valueOf(values.get(i + 1)));
+    }
+    return fields;
+  }
+
+  /**
+   * 役割: 冪等再利用時の同一性判定に使う attributes の指紋を返す。 動作: JSON 文字列の SHA-256 を hex で返す。 前提: JSON はキー順が正規化済み。
+   */
+  static String attributesHash(String attributesJson) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of()
+          .formatHex(digest.digest(attributesJson.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 algorithm not available", ex);
+    }
+  }
+
+  /**
+   * 役割: compact 形式の ticket に保存する attributes の指紋を返す。 動作: SHA-256 の先頭 16 byte を base64url（22 文字）で返す。
+   * 前提: 冪等再送の取り違え検出にだけ使い、hash の値を listpack の上限（64 byte）より十分短く保つ。
+   */
+  static String attributesFingerprint(String attributesJson) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      final byte[] hash = digest.digest(attributesJson.getBytes(StandardCharsets.UTF_8));
+      return Base64.getUrlEncoder()
+          .withoutPadding()
+          .encodeToString(Arrays.copyOf(hash, FINGERPRINT_BYTES));
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 algorithm not available", ex);
+    }
   }
 
   private Map<String, String> normalizeFields(Map<Object, Object> raw) {
@@ -189,11 +563,15 @@ public class RedisMatchmakingTicketRepository implements MatchmakingTicketReposi
     return map;
   }
 
-  private TicketStatus parseStatus(String value) {
+  private static TicketStatus parseStatus(String value) {
     return value == null ? TicketStatus.EXPIRED : TicketStatus.valueOf(value);
   }
 
-  private Instant parseInstant(String value) {
+  private static Instant parseInstant(String value) {
     return value == null || value.isBlank() ? null : Instant.parse(value);
   }
+
+  private static Instant parseEpochMillis(String value) {
+    return value == null || value.isBlank() ? null : Instant.ofEpochMilli(Long.parseLong(value));
+  }
 }
@@ -0,0 +1,69 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: 区画ごとの待ち時間ヒストグラムを時間窓単位の Redis hash に加算し、直近の窓を合算して読む
+ * なぜ: replica ごとに数えた成立時の待ち時間を全 replica で共有し、どの replica の API からも同じ推定を返すため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.WaitTimeHistogram;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class RedisMatchmakingWaitTimeRepository implements MatchmakingWaitTimeRepository {
+
+  private static final String ADD_LUA_PATH = "lua/wait_add.lua";
+  private static final String READ_LUA_PATH = "lua/wait_read.lua";
+
+  private final RedisScriptExecutor scriptExecutor;
+  private final MatchmakingKeyLayout keys;
+  private final RedisScript<List> addScript;
+  private final RedisScript<List> readScript;
+
+  public RedisMatchmakingWaitTimeRepository(
+      RedisScriptExecutor scriptExecutor, MatchmakingKeyLayout keys) {
+    this.scriptExecutor = scriptExecutor;
+    this.keys = keys;
+    this.addScript = RedisLuaMatchmakingMatchRepository.loadScript(ADD_LUA_PATH);
+    this.readScript = RedisLuaMatchmakingMatchRepository.loadScript(READ_LUA_PATH);
+  }
+
+  @Override
+  public void addSamples(QueueBucket bucket, long window, long[] counts, Duration ttl) {
+    final List<Object> args = new ArrayList<>();
+    args.add(String.valueOf(ttl.toMillis()));
+    for (int bin = 0; bin < counts.length; bin++) {
+      if (counts[bin] != 0) {
+        args.add(String.valueOf(bin));
+        args.add(String.valueOf(counts[bin]));
+      }
+    }
+    if (args.size() == 1) {
+      return;
+    }
+    scriptExecutor.execute(
+        "wait_add", addScript, List.of(keys.waitTimeKey(bucket, window)), args.toArray());
+  }
+
+  @Override
+  public WaitTimeHistogram readSamples(QueueBucket bucket, long fromWindow, long toWindow) {
+    final List<String> windowKeys = new ArrayList<>();
+    for (long window = fromWindow; window <= toWindow; window++) {
+      windowKeys.add(keys.waitTimeKey(bucket, window));
+    }
+    final List<?> result =
+        scriptExecutor.execute(
+            "wait_read", readScript, windowKeys, String.valueOf(WaitTimeHistogram.BINS));
+    final long[] counts = new long[WaitTimeHistogram.BINS];
+    if (result != null) {
+      for (int bin = 0; bin < Math.min(result.size(), counts.length); bin++) {
+        counts[bin] = result.get(bin) instanceof Number number ? number.longValue() : 0;
+      }
+    }
+    return WaitTimeHistogram.of(counts);
+  }
+}
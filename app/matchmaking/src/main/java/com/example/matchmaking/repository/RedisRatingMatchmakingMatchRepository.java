@@ -0,0 +1,84 @@
+/*
+ * どこで: Matchmaking Repository 層
+ * 何を: rating 近傍かつ待ち時間で許容幅を広げるマッチングを Lua で原子的に行う
+ * なぜ: FIFO では実力差を無視して組まれるため、rating index を使い近い相手を 1 tick でまとめて探すため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.config.MatchmakingRatingProperties;
+import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.service.MatchmakingOutboxRelay;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@ConditionalOnProperty(name = "matchmaking.rating.enabled", havingValue = "true")
+public class RedisRatingMatchmakingMatchRepository implements MatchmakingMatchRepository {
+
+  private static final String LUA_PATH = "lua/match_rating.lua";
+  private static final int FIXED_ARGS = 8;
+
+  private final RedisScriptExecutor scriptExecutor;
+  private final MatchmakingKeyLayout keys;
+  private final MatchmakingRatingProperties properties;
+  private final RedisScript<List> matchRatingScript;
+  private final boolean outboxRelayed;
+
+  @Autowired
+  public RedisRatingMatchmakingMatchRepository(
+      RedisScriptExecutor scriptExecutor,
+      MatchmakingKeyLayout keys,
+      MatchmakingRatingProperties properties,
+      Optional<MatchmakingOutboxRelay> outboxRelay) {
+    this(scriptExecutor, keys, properties, outboxRelay.isPresent());
+  }
+
+  public RedisRatingMatchmakingMatchRepository(
+      RedisScriptExecutor scriptExecutor,
+      MatchmakingKeyLayout keys,
+      MatchmakingRatingProperties properties,
+      boolean outboxRelayed) {
+    this.scriptExecutor = scriptExecutor;
+    this.keys = keys;
+    this.properties = properties;
+    this.outboxRelayed = outboxRelayed;
+    this.matchRatingScript = RedisLuaMatchmakingMatchRepository.loadMatcherScript(LUA_PATH);
+  }
+
+  @Override
+  public List<MatchPair> matchMany(QueueBucket bucket, Instant now, int maxPairs) {
+    if (maxPairs < 1) {
+      throw new IllegalArgumentException("maxPairs must be positive");
+    }
+    final Object[] args = new Object[FIXED_ARGS + maxPairs];
+    args[0] = String.valueOf(now.toEpochMilli());
+    args[1] = String.valueOf(maxPairs);
+    args[2] = String.valueOf(properties.baseWindow());
+    args[3] = String.valueOf(properties.widenPerSecond());
+    args[4] = String.valueOf(properties.maxWindow());
+    args[5] = String.valueOf(Math.max(1, properties.candidatesPerSide()));
+    args[6] = keys.namespace(bucket);
+    args[7] = String.valueOf(properties.defaultRating());
+    for (int i = 0; i < maxPairs; i++) {
+      args[FIXED_ARGS + i] = UUID.randomUUID().toString();
+    }
+    final List<?> result =
+        scriptExecutor.executeMatcher(
+            "match_rating",
+            matchRatingScript,
+            RedisLuaMatchmakingMatchRepository.matcherKeys(
+                outboxRelayed,
+                keys.outboxKey(bucket),
+                keys.queueKey(bucket),
+                keys.ratingKey(bucket)),
+            args);
+    return RedisLuaMatchmakingMatchRepository.parsePairs(result, bucket.mode(), now);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * どこで: Matchmaking Redis リポジトリ
+ * 何を: Lua スクリプトの実行をスクリプト名ごとに計測し、遅い呼び出しを key と走査件数付きでログに残す
+ * なぜ: Lettuce のコマンド計測では EVALSHA がひとまとめになり、どのスクリプトが tick を遅くしているか区別できないため
+ */
+package com.example.matchmaking.repository;
+
+import com.example.matchmaking.config.MatchmakingRedisProperties;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.time.Duration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+@Component
+public class RedisScriptExecutor {
+
+  private static final Logger logger = LoggerFactory.getLogger(RedisScriptExecutor.class);
+  private static final int SCANNED_INDEX = 1;
+
+  @SuppressFBWarnings(
+      value = "EI_EXPOSE_REP2",
+      justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
+  private final StringRedisTemplate redisTemplate;
+
+  private final MatchmakingMetrics metrics;
+  private final Duration slowScriptThreshold;
+
+  public RedisScriptExecutor(
+      StringRedisTemplate redisTemplate,
+      MatchmakingMetrics metrics,
+      MatchmakingRedisProperties properties) {
+    this.redisTemplate = redisTemplate;
+    this.metrics = metrics;
+    this.slowScriptThreshold = properties.slowScriptThreshold();
+  }
+
+  /**
+   * 役割: スクリプトを 1 回実行して計測する。 動作: 所要時間を mm.redis.script.duration{script} に、往復 1 回を
+   * mm.redis.calls.total{operation=script} に記録し、閾値以上なら先頭 key 付きで WARN ログを出す。 前提: keys は 1 件以上。
+   */
+  public List<?> execute(
+      String script, RedisScript<List> redisScript, List<String> keys, Object... args) {
+    final long startNanos = System.nanoTime();
+    try {
+      return redisTemplate.execute(redisScript, keys, args);
+    } finally {
+      final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+      record(script, keys, elapsed, -1);
+    }
+  }
+
+  /**
+   * 役割: matcher スクリプトを実行して計測する。 動作: execute と同じ記録に加え、戻り値 2 要素目の走査件数を
+   * mm.redis.script.scanned{script} に載せ、遅い呼び出しのログにも含める。例外で終わった呼び出しも走査件数 -1（不明）として時間と往復を記録する。
+   * 前提: スクリプトは {状態, scanned, ...} の形で返すこと。
+   */
+  public List<?> executeMatcher(
+      String script, RedisScript<List> redisScript, List<String> keys, Object... args) {
+    final long startNanos = System.nanoTime();
+    List<?> result = null;
+    try {
+      result = redisTemplate.execute(redisScript, keys, args);
+      return result;
+    } finally {
+      final Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+      final int scanned = scannedOf(result);
+      if (scanned >= 0) {
+        metrics.recordScriptScanned(script, scanned);
+      }
+      record(script, keys, elapsed, scanned);
+    }
+  }
+
+  private void record(String script, List<String> keys, Duration elapsed, int scanned) {
+    metrics.recordScript(script, elapsed);
+    metrics.recordRedisCalls(script, 1);
+    if (elapsed.compareTo(slowScriptThreshold) >= 0) {
+      logger.warn(
+          "slow redis script script={} key={} elapsedMs={} scanned={}",
+          script,
+          keys.isEmpty() ? "" : keys.get(0),
+          elapsed.toMillis(),
+          scanned < 0 ? "n/a" : scanned);
+    }
+  }
+
+  private static int scannedOf(List<?> result) {
+    if (result == null || result.size() <= SCANNED_INDEX) {
+      return -1;
+    }
+    final Object raw = result.get(SCANNED_INDEX);
+    if (raw instanceof Number number) {
+      return number.intValue();
+    }
+    try {
+      return Integer.parseInt(String.valueOf(raw));
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * どこで: Matchmaking Redis リポジトリ
+ * 何を: ticket 状態スクリプトの戻り値を ticket ごとに保持し、Redis の無効化通知で捨てる
+ * なぜ: 変化のない ticket への状態ポーリングを Redis へ届かせずに返しつつ、変化した瞬間に古い値を返さないようにするため
+ */
+package com.example.matchmaking.repository;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 役割: 上限付きの ticket 状態キャッシュを表す。 動作: 参照順の LRU で maxEntries を超えた分を捨て、読み込み中に届いた無効化は pending
+ * の印を消すことで、その読み込み結果を載せないようにする。 前提: 値は read_ticket_status.lua の戻り値そのもので、変換は参照のたびに行う。
+ */
+final class TicketStatusCache {
+
+  private final String ticketKeyPrefix;
+  private final String matchKeyPrefix;
+  private final LruMap entries;
+  private final Map<String, Object> pending = new HashMap<>();
+
+  /** keys は standalone の配置であること。無効化通知の key 名をこの配置の接頭辞で ticket / match に振り分ける。 */
+  TicketStatusCache(int maxEntries, MatchmakingKeyLayout keys) {
+    this.ticketKeyPrefix = keys.ticketKeyPrefix();
+    this.matchKeyPrefix = keys.matchKeyPrefix();
+    this.entries = new LruMap(maxEntries);
+  }
+
+  synchronized List<?> get(String ticketId) {
+    final CachedStatus entry = entries.get(ticketId);
+    return entry == null ? null : entry.result();
+  }
+
+  /**
+   * 役割: Redis から読む直前に印を付ける。 動作: ticket ごとに新しい印を置き、以前の読み込みの印は上書きする。 前提: 戻り値を {@link
+   * #complete} へ渡すこと。
+   */
+  synchronized Object begin(String ticketId) {
+    final Object token = new Object();
+    pending.put(ticketId, token);
+    return token;
+  }
+
+  /**
+   * 役割: 読み込んだ結果を載せる。 動作: 読み込み中に無効化が届いていなければ（印が残っていれば）載せて true を返す。 前提: token は {@link
+   * #begin} の戻り値。
+   */
+  synchronized boolean complete(String ticketId, Object token, List<?> result) {
+    if (!pending.remove(ticketId, token)) {
+      return false;
+    }
+    entries.put(
+        ticketId,
+        new CachedStatus(
+            List.copyOf(result), RedisMatchmakingTicketRepository.statusMatchId(result)));
+    return true;
+  }
+
+  /**
+   * 役割: 無効化通知の key 1 件を反映する。 動作: ticket key ならその ticket を、match key ならその match を参照する ticket を捨てる。
+   * match の参照先は読み込み中の結果から分からないため、読み込み中の印はすべて消す。 前提: key は Redis の key 名そのもの。
+   */
+  synchronized void invalidate(String key) {
+    if (key.startsWith(ticketKeyPrefix)) {
+      invalidateTicket(key.substring(ticketKeyPrefix.length()));
+      return;
+    }
+    if (key.startsWith(matchKeyPrefix)) {
+      final String matchId = key.substring(matchKeyPrefix.length());
+      final Iterator<CachedStatus> it = entries.values().iterator();
+      while (it.hasNext()) {
+        if (matchId.equals(it.next().matchId())) {
+          it.remove();
+        }
+      }
+      pending.clear();
+    }
+  }
+
+  synchronized void invalidateTicket(String ticketId) {
+    entries.remove(ticketId);
+    pending.remove(ticketId);
+  }
+
+  /** 役割: すべて捨てる。 動作: 読み込み中の印も消す。 前提: 通知の取りこぼしがありうるとき（FLUSHALL や再接続）に呼ぶ。 */
+  synchronized void invalidateAll() {
+    entries.clear();
+    pending.clear();
+  }
+
+  synchronized int size() {
+    return entries.size();
+  }
+
+  private record CachedStatus(List<?> result, String matchId) {}
+
+  private static final class LruMap extends LinkedHashMap<String, CachedStatus> {
+
+    private static final long serialVersionUID = 1L;
+    private final int maxEntries;
+
+    LruMap(int maxEntries) {
+      super(16, 0.75f, true);
+      this.maxEntries = maxEntries;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, CachedStatus> eldest) {
+      return size() > maxEntries;
+    }
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * どこで: Matchmaking サービス層
+ * 何を: 成立した ticket の待ち時間を区画ごとに数えて Redis で replica 間に合算し、p50/p90 と勧める状態確認間隔を保持する
+ * なぜ: クライアントが待ち時間の見当なしに状態 API を短い間隔で叩き続けるのをやめ、推定に合わせた間隔へ誘導するため
+ */
+package com.example.matchmaking.service;
+
+import com.example.matchmaking.config.MatchmakingWaitEstimateProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.WaitTimeEstimate;
+import com.example.matchmaking.model.WaitTimeHistogram;
+import com.example.matchmaking.repository.MatchmakingTicketRepository;
+import com.example.matchmaking.repository.MatchmakingWaitTimeRepository;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MatchWaitTimeEstimator {
+
+  private static final Logger logger = LoggerFactory.getLogger(MatchWaitTimeEstimator.class);
+  private static final double POLL_FRACTION_OF_MEDIAN = 0.25;
+
+  private final MatchmakingWaitEstimateProperties properties;
+  private final MatchmakingWaitTimeRepository waitTimeRepository;
+  private final MatchmakingTicketRepository ticketRepository;
+  private final MatchmakingMetrics metrics;
+  // worker スレッドが加算し、refresh が読み取りと同時に 0 へ戻して Redis へ送る
+  private final ConcurrentMap<QueueBucket, AtomicLongArray> pending = new ConcurrentHashMap<>();
+  private final ConcurrentMap<QueueBucket, WaitTimeEstimate> estimates = new ConcurrentHashMap<>();
+
+  public MatchWaitTimeEstimator(
+      MatchmakingWaitEstimateProperties properties,
+      MatchmakingWaitTimeRepository waitTimeRepository,
+      MatchmakingTicketRepository ticketRepository,
+      MatchmakingMetrics metrics) {
+    this.properties = properties;
+    this.waitTimeRepository = waitTimeRepository;
+    this.ticketRepository = ticketRepository;
+    this.metrics = metrics;
+  }
+
+  /** 役割: 成立した ticket の待ち時間を数える。 動作: プロセス内の件数に足すだけで Redis へは触れない。 前提: worker のスレッドから呼ぶ。 */
+  public void record(QueueBucket bucket, Duration waited) {
+    if (!properties.enabled() || waited.isNegative()) {
+      return;
+    }
+    pending
+        .computeIfAbsent(bucket, key -> new AtomicLongArray(WaitTimeHistogram.BINS))
+        .incrementAndGet(WaitTimeHistogram.binOf(waited));
+  }
+
+  /** 役割: 区画の最新の推定を返す。 動作: refresh が作った値を読むだけ。 前提: まだ推定が無い区画は空の推定を返す。 */
+  public WaitTimeEstimate estimate(QueueBucket bucket) {
+    final WaitTimeEstimate estimate = estimates.get(bucket);
+    return estimate == null
+        ? WaitTimeEstimate.empty(bucket, properties.minPollInterval())
+        : estimate;
+  }
+
+  /**
+   * 役割: 数えた件数を Redis へ送り、推定を作り直す。 動作: 現在の窓へ加算した後、有効な区画と推定を持つ区画について直近 windows 個の窓を合算し、p50/p90
+   * を求める。直近に成立が無くなった区画の推定は捨てる。 前提: 送信に失敗した件数は次回に持ち越す。
+   */
+  @Scheduled(fixedDelayString = "${matchmaking.wait-estimate.refresh-interval:5s}")
+  public void refresh() {
+    if (!properties.enabled()) {
+      return;
+    }
+    final long windowMillis = properties.window().toMillis();
+    final long currentWindow = System.currentTimeMillis() / windowMillis;
+    // 最古の窓を読み終えるまで消えないよう、保持期間は読む窓数より 1 つ長く取る
+    final Duration ttl = properties.window().multipliedBy(properties.windows() + 1L);
+    for (Map.Entry<QueueBucket, AtomicLongArray> entry : pending.entrySet()) {
+      flush(entry.getKey(), entry.getValue(), currentWindow, ttl);
+    }
+    for (QueueBucket bucket : bucketsToRefresh()) {
+      try {
+        final WaitTimeHistogram histogram =
+            waitTimeRepository.readSamples(
+                bucket, currentWindow - properties.windows() + 1, currentWindow);
+        if (histogram.total() == 0) {
+          estimates.remove(bucket);
+          continue;
+        }
+        estimates.put(bucket, toEstimate(bucket, histogram));
+      } catch (RuntimeException ex) {
+        logger.warn(
+            "wait time estimate refresh failed mode={} bucket={}",
+            bucket.mode().value(),
+            bucket.id(),
+            ex);
+        metrics.recordDependencyError("wait_estimate_read");
+      }
+    }
+  }
+
+  private void flush(QueueBucket bucket, AtomicLongArray counts, long window, Duration ttl) {
+    final long[] drained = new long[counts.length()];
+    for (int bin = 0; bin < drained.length; bin++) {
+      drained[bin] = counts.getAndSet(bin, 0);
+    }
+    try {
+      waitTimeRepository.addSamples(bucket, window, drained, ttl);
+    } catch (RuntimeException ex) {
+      for (int bin = 0; bin < drained.length; bin++) {
+        counts.addAndGet(bin, drained[bin]);
+      }
+      logger.warn(
+          "wait time estimate flush failed mode={} bucket={}",
+          bucket.mode().value(),
+          bucket.id(),
+          ex);
+      metrics.recordDependencyError("wait_estimate_flush");
+    }
+  }
+
+  /** 区画 index の区画に、index から外れても直近の推定を持つ区画と自分が数えた区画を加える。 */
+  private Set<QueueBucket> bucketsToRefresh() {
+    final Set<QueueBucket> buckets = new LinkedHashSet<>(estimates.keySet());
+    buckets.addAll(pending.keySet());
+    for (MatchMode mode : MatchMode.values()) {
+      try {
+        buckets.addAll(ticketRepository.activeBuckets(mode));
+      } catch (RuntimeException ex) {
+        logger.warn("wait time estimate bucket lookup failed mode={}", mode.value(), ex);
+        metrics.recordDependencyError("wait_estimate_read");
+      }
+    }
+    return buckets;
+  }
+
+  private WaitTimeEstimate toEstimate(QueueBucket bucket, WaitTimeHistogram histogram) {
+    final Duration p50 = histogram.quantile(0.5);
+    final Duration p90 = histogram.quantile(0.9);
+    final long pollMillis =
+        Math.max(
+            properties.minPollInterval().toMillis(),
+            Math.min(
+                properties.maxPollInterval().toMillis(),
+                Math.round(p50.toMillis() * POLL_FRACTION_OF_MEDIAN)));
+    return new WaitTimeEstimate(
+        bucket, histogram.total(), p50, p90, Duration.ofMillis(pollMillis));
+  }
+}
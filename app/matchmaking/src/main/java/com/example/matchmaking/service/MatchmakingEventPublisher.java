@@ -1,15 +1,16 @@
 package com.example.matchmaking.service;
 
 import com.example.matchmaking.config.MatchmakingNatsProperties;
-import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.MatchOutboxEntry;
 import com.example.proto.matchmaking.MatchmakingEvent;
 import io.nats.client.JetStream;
-import io.nats.client.JetStreamApiException;
+import io.nats.client.api.PublishAck;
 import io.nats.client.impl.Headers;
-import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.MDC;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
@@ -29,27 +30,37 @@ public class MatchmakingEventPublisher {
     this.clock = clock;
   }
 
-  public void publishMatched(MatchPair pair) {
-    if (pair == null || pair.matchId() == null || pair.matchId().isBlank()) {
+  /**
+   * 役割: outbox の match 成立イベントを JetStream へ非同期 publish する。 動作: event_id を match_id
+   * から決定的に導き、Nats-Msg-Id に載せて relay の再送を duplicate window 内で重複排除させる。ack は返した future で受け取る。 前提:
+   * entry の matchId と mode は null でないこと。
+   */
+  public CompletableFuture<PublishAck> publishMatchFound(MatchOutboxEntry entry) {
+    if (entry == null || entry.matchId() == null || entry.matchId().isBlank()) {
       throw new IllegalArgumentException("matchId is required");
     }
-    final String eventId = UUID.randomUUID().toString();
+    if (entry.mode() == null) {
+      throw new IllegalArgumentException("mode is required");
+    }
+    final String eventId = eventIdOf(entry.matchId());
+    final Instant occurredAt = entry.matchedAt() == null ? Instant.now(clock) : entry.matchedAt();
     final MatchmakingEvent event =
         MatchmakingEvent.newBuilder()
             .setEventId(eventId)
             .setEventType(MatchmakingEvent.EventType.MATCH_FOUND)
-            .setOccurredAt(Instant.now(clock).toString())
-            .setMatchId(pair.matchId())
-            .setMode(pair.mode().value())
+            .setOccurredAt(occurredAt.toString())
+            .setMatchId(entry.matchId())
+            .setMode(entry.mode().value())
             .setTraceId(resolveTraceId())
             .build();
     final Headers headers = new Headers();
     headers.add("Nats-Msg-Id", eventId);
-    try {
-      jetStream.publish(properties.subject(), headers, event.toByteArray());
-    } catch (IOException | JetStreamApiException ex) {
-      throw new IllegalStateException("failed to publish matchmaking event", ex);
-    }
+    return jetStream.publishAsync(properties.subject(), headers, event.toByteArray());
+  }
+
+  static String eventIdOf(String matchId) {
+    return UUID.nameUUIDFromBytes(("MATCH_FOUND:" + matchId).getBytes(StandardCharsets.UTF_8))
+        .toString();
   }
 
   private String resolveTraceId() {
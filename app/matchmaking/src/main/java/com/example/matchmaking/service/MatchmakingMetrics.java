@@ -2,6 +2,7 @@ package com.example.matchmaking.service;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
@@ -10,6 +11,7 @@ import java.time.Duration;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -20,10 +22,22 @@ public class MatchmakingMetrics {
 
   private final MeterRegistry meterRegistry;
   private final Timer timeToMatchTimer;
+  private final Timer joinTimer;
+  private final Timer outboxLagTimer;
+  private final Counter outboxPublishedCounter;
   private final ConcurrentMap<String, AtomicLong> queueDepth = new ConcurrentHashMap<>();
   private final ConcurrentMap<String, AtomicLong> oldestAge = new ConcurrentHashMap<>();
   private final ConcurrentMap<String, Counter> matchResultCounters = new ConcurrentHashMap<>();
   private final ConcurrentMap<String, Counter> dependencyErrorCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> wakeupCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> redisCallCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Timer> scriptTimers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, DistributionSummary> scriptScanSummaries =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Timer> tickPhaseTimers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> ticketCacheCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Counter> statusWatchCounters = new ConcurrentHashMap<>();
+  private final AtomicLong ownedPartitions = new AtomicLong(0);
 
   public MatchmakingMetrics(MeterRegistry meterRegistry) {
     this.meterRegistry = meterRegistry;
@@ -31,27 +45,128 @@ public class MatchmakingMetrics {
         Timer.builder("mm.time_to_match")
             .description("Time from ticket creation to match completion")
             .register(meterRegistry);
+    this.joinTimer =
+        Timer.builder("mm.join.duration")
+            .description("Join API processing time including Redis round-trips")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.outboxLagTimer =
+        Timer.builder("mm.outbox.lag")
+            .description("Time from match completion to JetStream ack via the outbox relay")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    this.outboxPublishedCounter =
+        Counter.builder("mm.outbox.published.total")
+            .description("Match events relayed from the outbox and acknowledged by JetStream")
+            .register(meterRegistry);
+    Gauge.builder("mm.worker.owned_partitions", ownedPartitions, AtomicLong::get)
+        .description("Queue partitions leased by this worker replica")
+        .register(meterRegistry);
   }
 
-  public void updateQueueDepth(String mode, long depth) {
-    final AtomicLong value = queueDepth.computeIfAbsent(mode, this::registerQueueDepthGauge);
+  public void updateQueueDepth(String mode, String bucket, long depth) {
+    final AtomicLong value =
+        queueDepth.computeIfAbsent(
+            gaugeKey(mode, bucket), key -> registerQueueGauge("mm.queue.depth", mode, bucket));
     value.set(Math.max(0, depth));
   }
 
-  public void updateOldestQueueAge(String mode, long ageSeconds) {
-    final AtomicLong value = oldestAge.computeIfAbsent(mode, this::registerOldestAgeGauge);
+  public void updateOldestQueueAge(String mode, String bucket, long ageSeconds) {
+    final AtomicLong value =
+        oldestAge.computeIfAbsent(
+            gaugeKey(mode, bucket), key -> registerQueueGauge("mm.queue.oldest_age", mode, bucket));
     value.set(Math.max(0, ageSeconds));
   }
 
+  public void updateOwnedPartitions(int count) {
+    ownedPartitions.set(Math.max(0, count));
+  }
+
   public void recordMatchResult(String result) {
-    matchResultCounters.computeIfAbsent(result, this::registerMatchResultCounter).increment();
+    recordMatchResult(result, 1);
+  }
+
+  public void recordMatchResult(String result, int count) {
+    matchResultCounters.computeIfAbsent(result, this::registerMatchResultCounter).increment(count);
+  }
+
+  public void recordTimeToMatch(Duration duration) {
+    // 秒へ丸めるとイベント駆動化によるサブ秒の短縮が見えないため、Duration のまま記録する
+    if (duration.isNegative()) {
+      return;
+    }
+    timeToMatchTimer.record(duration);
+  }
+
+  public void recordJoin(Duration duration) {
+    joinTimer.record(duration);
+  }
+
+  /** 役割: 操作ごとの Redis 往復回数を数える。 動作: mm.join.duration の件数で割ると 1 操作あたりの往復数になる。 前提: calls は 0 以上。 */
+  public void recordRedisCalls(String operation, int calls) {
+    redisCallCounters.computeIfAbsent(operation, this::registerRedisCallCounter).increment(calls);
+  }
+
+  /**
+   * 役割: Lua スクリプト 1 回の所要時間を記録する。 動作: スクリプト名ごとのヒストグラムに載せる。 前提: Lettuce の
+   * lettuce.command.completion{command=EVALSHA} はスクリプトを区別しないため、こちらで内訳を見る。
+   */
+  public void recordScript(String script, Duration duration) {
+    scriptTimers.computeIfAbsent(script, this::registerScriptTimer).record(duration);
+  }
+
+  /** 役割: matcher スクリプトが 1 回で状態を確かめた ticket 数を記録する。 動作: 走査上限に張り付いていれば無効 ticket が溜まっている。 前提: なし。 */
+  public void recordScriptScanned(String script, int scanned) {
+    scriptScanSummaries.computeIfAbsent(script, this::registerScriptScanSummary).record(scanned);
+  }
+
+  /** 役割: worker tick と relay の処理段階ごとの所要時間を記録する。 動作: phase ごとのヒストグラムに載せる。 前提: なし。 */
+  public void recordTickPhase(String phase, Duration duration) {
+    tickPhaseTimers.computeIfAbsent(phase, this::registerTickPhaseTimer).record(duration);
+  }
+
+  /**
+   * 役割: ticket 状態キャッシュの参照結果を数える。 動作: result は hit/miss/bypass（追跡が切れていて Redis へ直接読んだ）。 前提: hit の割合が
+   * 1 回あたりに省けた状態スクリプト呼び出しの割合になる。
+   */
+  public void recordTicketCache(String result) {
+    ticketCacheCounters.computeIfAbsent(result, this::registerTicketCacheCounter).increment();
+  }
+
+  /** 役割: Redis から届いた無効化通知の key 数を数える。 動作: 全消去の通知は 1 件として数える。 前提: なし。 */
+  public void recordTicketCacheInvalidations(int keys) {
+    ticketCacheInvalidationCounter().increment(keys);
+  }
+
+  /** 役割: ticket 状態キャッシュの保持件数を gauge に載せる。 動作: 参照のたびに size を呼ぶ。 前提: キャッシュ 1 つにつき 1 回だけ呼ぶ。 */
+  public void bindTicketCacheSize(IntSupplier size) {
+    Gauge.builder("mm.ticket_cache.size", size, IntSupplier::getAsInt)
+        .description("Ticket status entries held in the client-side cache")
+        .strongReference(true)
+        .register(meterRegistry);
+  }
+
+  /** outcome は changed（状態変化で応答）/timeout/immediate（待たずに応答）/rejected（待機上限超過）。 */
+  public void recordStatusWatch(String outcome) {
+    statusWatchCounters.computeIfAbsent(outcome, this::registerStatusWatchCounter).increment();
+  }
+
+  public void bindStatusWatchers(IntSupplier waiters) {
+    Gauge.builder("mm.status_watch.waiters", waiters, IntSupplier::getAsInt)
+        .description("Long-poll and SSE status requests waiting for a ticket to leave QUEUED")
+        .strongReference(true)
+        .register(meterRegistry);
+  }
+
+  public void recordOutboxPublished(int count) {
+    outboxPublishedCounter.increment(count);
   }
 
-  public void recordTimeToMatchSeconds(long seconds) {
-    if (seconds < 0) {
+  public void recordOutboxLag(Duration duration) {
+    if (duration.isNegative()) {
       return;
     }
-    timeToMatchTimer.record(Duration.ofSeconds(seconds));
+    outboxLagTimer.record(duration);
   }
 
   public void recordDependencyError(String errorType) {
@@ -60,18 +175,18 @@ public class MatchmakingMetrics {
         .increment();
   }
 
-  private AtomicLong registerQueueDepthGauge(String mode) {
-    final AtomicLong value = new AtomicLong(0);
-    Gauge.builder("mm.queue.depth", value, AtomicLong::get)
-        .tags(Tags.of("mode", mode))
-        .register(meterRegistry);
-    return value;
+  public void recordWakeup(String source) {
+    wakeupCounters.computeIfAbsent(source, this::registerWakeupCounter).increment();
+  }
+
+  private String gaugeKey(String mode, String bucket) {
+    return mode + "|" + bucket;
   }
 
-  private AtomicLong registerOldestAgeGauge(String mode) {
+  private AtomicLong registerQueueGauge(String name, String mode, String bucket) {
     final AtomicLong value = new AtomicLong(0);
-    Gauge.builder("mm.queue.oldest_age", value, AtomicLong::get)
-        .tags(Tags.of("mode", mode))
+    Gauge.builder(name, value, AtomicLong::get)
+        .tags(Tags.of("mode", mode, "bucket", bucket))
         .register(meterRegistry);
     return value;
   }
@@ -87,4 +202,58 @@ public class MatchmakingMetrics {
         .tags(Tags.of("type", errorType))
         .register(meterRegistry);
   }
+
+  private Counter registerTicketCacheCounter(String result) {
+    return Counter.builder("mm.ticket_cache.requests.total")
+        .tags(Tags.of("result", result))
+        .register(meterRegistry);
+  }
+
+  private Counter ticketCacheInvalidationCounter() {
+    return Counter.builder("mm.ticket_cache.invalidations.total")
+        .description("Keys invalidated by Redis client tracking push messages")
+        .register(meterRegistry);
+  }
+
+  private Counter registerStatusWatchCounter(String outcome) {
+    return Counter.builder("mm.status_watch.total")
+        .tags(Tags.of("outcome", outcome))
+        .register(meterRegistry);
+  }
+
+  private Counter registerWakeupCounter(String source) {
+    return Counter.builder("mm.worker.wakeup.total")
+        .tags(Tags.of("source", source))
+        .register(meterRegistry);
+  }
+
+  private Timer registerScriptTimer(String script) {
+    return Timer.builder("mm.redis.script.duration")
+        .description("Lua script execution time including the Redis round-trip")
+        .tags(Tags.of("script", script))
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private DistributionSummary registerScriptScanSummary(String script) {
+    return DistributionSummary.builder("mm.redis.script.scanned")
+        .description("Tickets inspected by one matcher script call")
+        .tags(Tags.of("script", script))
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private Timer registerTickPhaseTimer(String phase) {
+    return Timer.builder("mm.worker.tick.phase.duration")
+        .description("Time spent in each matchmaker tick phase")
+        .tags(Tags.of("phase", phase))
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+  }
+
+  private Counter registerRedisCallCounter(String operation) {
+    return Counter.builder("mm.redis.calls.total")
+        .tags(Tags.of("operation", operation))
+        .register(meterRegistry);
+  }
 }
@@ -0,0 +1,167 @@
+/*
+ * どこで: Matchmaking outbox relay サービス
+ * 何を: outbox stream のエントリを JetStream へ非同期 publish し、ack を受けたものだけを stream から片付ける
+ * なぜ: NATS の往復遅延をマッチ処理から外しつつ、publish に失敗した成立イベントも再送で少なくとも 1 回届けるため
+ */
+package com.example.matchmaking.service;
+
+import com.example.matchmaking.config.MatchmakingOutboxProperties;
+import com.example.matchmaking.model.MatchOutboxEntry;
+import com.example.matchmaking.repository.MatchmakingOutboxRepository;
+import io.nats.client.api.PublishAck;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+@Service
+@ConditionalOnProperty(
+    name = "matchmaking.outbox.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+@ConditionalOnProperty(name = "nats.enabled", havingValue = "true", matchIfMissing = true)
+public class MatchmakingOutboxRelay {
+
+  private static final Logger logger = LoggerFactory.getLogger(MatchmakingOutboxRelay.class);
+
+  private final MatchmakingOutboxRepository outboxRepository;
+  private final MatchmakingEventPublisher eventPublisher;
+  private final MatchmakingOutboxProperties properties;
+  private final MatchmakingMetrics metrics;
+  private final Clock clock;
+  private final String consumer = "relay-" + UUID.randomUUID();
+  private final Set<String> readyStreams = ConcurrentHashMap.newKeySet();
+
+  public MatchmakingOutboxRelay(
+      MatchmakingOutboxRepository outboxRepository,
+      MatchmakingEventPublisher eventPublisher,
+      MatchmakingOutboxProperties properties,
+      MatchmakingMetrics metrics,
+      Clock clock) {
+    this.outboxRepository = outboxRepository;
+    this.eventPublisher = eventPublisher;
+    this.properties = properties;
+    this.metrics = metrics;
+    this.clock = clock;
+  }
+
+  /**
+   * 役割: outbox の 1 バッチを中継する。 動作: 中継対象の stream ごとに relayStream を 1 回ずつ行う。 前提: 戻り値は stream
+   * ごとの読み出し件数の最大値で、batchSize と等しければいずれかの stream に残りがある。
+   */
+  public int relayBatch() {
+    int max = 0;
+    for (String stream : outboxRepository.streams()) {
+      max = Math.max(max, relayStream(stream));
+    }
+    return max;
+  }
+
+  /**
+   * 役割: 1 本の stream から 1 バッチを中継する。 動作: claimIdle を過ぎた未確認エントリを先に引き取り、残り枠で未配信エントリを読む。全件を publishAsync
+   * してから ack をまとめて待ち、ack を受けたエントリだけを 1 往復で XACK/XTRIM する。 前提: 戻り値は読み出した件数。
+   */
+  private int relayStream(String stream) {
+    final List<MatchOutboxEntry> entries = readBatch(stream);
+    if (entries.isEmpty()) {
+      return 0;
+    }
+    final List<String> done = new ArrayList<>(entries.size());
+    final Map<MatchOutboxEntry, CompletableFuture<PublishAck>> inflight = new LinkedHashMap<>();
+    final long publishStartNanos = System.nanoTime();
+    for (MatchOutboxEntry entry : entries) {
+      if (entry.matchId() == null || entry.mode() == null) {
+        // 再送しても直らないため、ログに残して stream から外す
+        logger.error("outbox entry is malformed and dropped entryId={}", entry.entryId());
+        metrics.recordDependencyError("outbox_malformed");
+        done.add(entry.entryId());
+        continue;
+      }
+      try {
+        inflight.put(entry, eventPublisher.publishMatchFound(entry));
+      } catch (RuntimeException ex) {
+        recordPublishFailure(entry, ex);
+      }
+    }
+    final int published = awaitAcks(inflight, done);
+    metrics.recordTickPhase("publish", Duration.ofNanos(System.nanoTime() - publishStartNanos));
+    outboxRepository.acknowledge(stream, done);
+    if (published > 0) {
+      metrics.recordOutboxPublished(published);
+    }
+    return entries.size();
+  }
+
+  private List<MatchOutboxEntry> readBatch(String stream) {
+    try {
+      if (!readyStreams.contains(stream)) {
+        outboxRepository.ensureGroup(stream);
+        readyStreams.add(stream);
+      }
+      final int batchSize = properties.batchSize();
+      final List<MatchOutboxEntry> entries =
+          new ArrayList<>(
+              outboxRepository.claimStale(stream, consumer, properties.claimIdle(), batchSize));
+      if (entries.size() < batchSize) {
+        entries.addAll(outboxRepository.readNew(stream, consumer, batchSize - entries.size()));
+      }
+      return entries;
+    } catch (RuntimeException ex) {
+      // stream ごと消えた場合に備え、次回は group を作り直してから読む
+      readyStreams.remove(stream);
+      throw ex;
+    }
+  }
+
+  /** ack を 1 件ずつ待たず、まとめて投げた publish の ack を共通の期限までに揃える。 */
+  private int awaitAcks(
+      Map<MatchOutboxEntry, CompletableFuture<PublishAck>> inflight, List<String> done) {
+    final long deadline = System.nanoTime() + properties.publishTimeout().toNanos();
+    int published = 0;
+    for (Map.Entry<MatchOutboxEntry, CompletableFuture<PublishAck>> item : inflight.entrySet()) {
+      final MatchOutboxEntry entry = item.getKey();
+      try {
+        final long remaining = Math.max(0, deadline - System.nanoTime());
+        final PublishAck ack = item.getValue().get(remaining, TimeUnit.NANOSECONDS);
+        if (ack == null) {
+          throw new IllegalStateException("puback is missing");
+        }
+        done.add(entry.entryId());
+        published++;
+        if (entry.matchedAt() != null) {
+          metrics.recordOutboxLag(Duration.between(entry.matchedAt(), Instant.now(clock)));
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (ExecutionException | TimeoutException | RuntimeException ex) {
+        // 未確認のまま残し、claimIdle 経過後にいずれかの relay が再送する
+        recordPublishFailure(entry, ex);
+      }
+    }
+    return published;
+  }
+
+  private void recordPublishFailure(MatchOutboxEntry entry, Exception ex) {
+    logger.warn(
+        "outbox publish failed and will be retried entryId={} matchId={}",
+        entry.entryId(),
+        entry.matchId(),
+        ex);
+    metrics.recordDependencyError("outbox_publish");
+  }
+}
@@ -8,16 +8,29 @@ import com.example.matchmaking.api.response.CancelMatchmakingTicketResponse;
 import com.example.matchmaking.api.response.JoinMatchmakingTicketResponse;
 import com.example.matchmaking.api.response.MatchedTicketPayload;
 import com.example.matchmaking.api.response.TicketStatusResponse;
+import com.example.matchmaking.api.response.WaitTimeEstimateResponse;
+import com.example.matchmaking.config.MatchmakingLobbyProperties;
 import com.example.matchmaking.config.MatchmakingProperties;
+import com.example.matchmaking.config.MatchmakingRatingProperties;
 import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchRecord;
+import com.example.matchmaking.model.QueueBucket;
 import com.example.matchmaking.model.TicketRecord;
 import com.example.matchmaking.model.TicketStatus;
+import com.example.matchmaking.model.TicketStatusSnapshot;
+import com.example.matchmaking.model.WaitTimeEstimate;
 import com.example.matchmaking.repository.MatchmakingTicketRepository;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -26,6 +39,13 @@ public class MatchmakingService {
   private final MatchmakingTicketRepository ticketRepository;
   private final MatchmakingProperties properties;
   private final MatchmakingMetrics metrics;
+  private final QueueBucketResolver queueBucketResolver;
+  private final MatchmakingRatingProperties ratingProperties;
+  private final MatchmakingLobbyProperties lobbyProperties;
+  private final MatchmakingWakeupSignal wakeupSignal;
+  private final MatchWaitTimeEstimator waitTimeEstimator;
+  private final TicketStatusSignal statusSignal;
+  private final TicketStatusWatcher statusWatcher;
 
   @SuppressFBWarnings(
       value = "EI_EXPOSE_REP2",
@@ -36,46 +56,148 @@ public class MatchmakingService {
       MatchmakingTicketRepository ticketRepository,
       MatchmakingProperties properties,
       MatchmakingMetrics metrics,
+      QueueBucketResolver queueBucketResolver,
+      MatchmakingRatingProperties ratingProperties,
+      MatchmakingLobbyProperties lobbyProperties,
+      MatchmakingWakeupSignal wakeupSignal,
+      MatchWaitTimeEstimator waitTimeEstimator,
+      TicketStatusSignal statusSignal,
+      TicketStatusWatcher statusWatcher,
       ObjectMapper objectMapper) {
     this.ticketRepository = ticketRepository;
     this.properties = properties;
     this.metrics = metrics;
+    this.queueBucketResolver = queueBucketResolver;
+    this.ratingProperties = ratingProperties;
+    this.lobbyProperties = lobbyProperties;
+    this.wakeupSignal = wakeupSignal;
+    this.waitTimeEstimator = waitTimeEstimator;
+    this.statusSignal = statusSignal;
+    this.statusWatcher = statusWatcher;
     this.objectMapper = objectMapper;
   }
 
   public JoinMatchmakingTicketResponse join(
       String mode, String userId, JoinMatchmakingTicketRequest request) {
+    final long startNanos = System.nanoTime();
+    try {
+      return doJoin(mode, userId, request);
+    } finally {
+      metrics.recordJoin(Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+  }
+
+  private JoinMatchmakingTicketResponse doJoin(
+      String mode, String userId, JoinMatchmakingTicketRequest request) {
     final MatchMode matchMode = validateJoinRequest(mode, userId, request);
     final String attributesJson = serializeAttributes(request.attributes());
+    final QueueBucket bucket = queueBucketResolver.resolve(matchMode, request.attributes());
     final TicketRecord record =
         ticketRepository.createOrReuseTicket(
-            matchMode,
+            bucket,
             userId,
             request.idempotencyKey(),
             attributesJson,
+            resolveRating(request.attributes()),
+            request.partySize(),
             properties.ticketTtl(),
             properties.idempotencyTtl());
+    if (record.status() == TicketStatus.QUEUED) {
+      wakeupSignal.notifyJoined(record.queueBucket());
+    }
     return new JoinMatchmakingTicketResponse(
-        record.ticketId(), record.status().name(), toIsoOrNull(record.expiresAt()));
+        record.ticketId(),
+        record.status().name(),
+        toIsoOrNull(record.expiresAt()),
+        toEstimateResponse(waitTimeEstimator.estimate(record.queueBucket())));
+  }
+
+  /**
+   * 役割: 区画の待ち時間推定を返す。 動作: worker が集めた推定をメモリから読むだけで Redis へは触れない。 前提: bucket 省略時は default
+   * 区画。Join 応答の estimate.bucket をそのまま渡せる。
+   */
+  public WaitTimeEstimateResponse estimateWait(String mode, String bucket) {
+    if (mode == null || mode.isBlank()) {
+      throw new InvalidMatchmakingRequestException("mode is required");
+    }
+    return toEstimateResponse(
+        waitTimeEstimator.estimate(new QueueBucket(parseMode(mode), bucket)));
   }
 
   public TicketStatusResponse getTicketStatus(String ticketId, String userId) {
     validateTicketIdAndUserId(ticketId, userId);
-    final TicketRecord record = requireOwnedTicket(ticketId, userId);
-    return toStatusResponse(record);
+    return toStatusResponse(readOwnedStatus(ticketId, userId));
+  }
+
+  /**
+   * 役割: ticket が QUEUED を抜けるか wait が経過するまで待ってから状態を返す。 動作: 先に待機を登録してから状態を読み、QUEUED
+   * でなければすぐ返す。待機中はスレッドを占有せず、状態変化の通知か期限で起きて 1 回だけ読み直す。wait は status-watch.max-wait と
+   * ticket の残り期限で切り詰め、待機できない場合（無効・上限超過）は現在の状態を返す。 前提: 所有者確認と不在時の例外は getTicketStatus
+   * と同じで、呼び出し時に同期的に投げる。
+   */
+  public CompletableFuture<TicketStatusResponse> watchTicketStatus(
+      String ticketId, String userId, Duration wait) {
+    validateTicketIdAndUserId(ticketId, userId);
+    final boolean wantsWait = wait != null && wait.isPositive();
+    final CompletableFuture<Boolean> waiter =
+        wantsWait ? statusWatcher.register(ticketId, wait) : null;
+    final TicketStatusSnapshot snapshot;
+    try {
+      snapshot = readOwnedStatus(ticketId, userId);
+    } catch (RuntimeException ex) {
+      if (waiter != null) {
+        waiter.cancel(false);
+      }
+      throw ex;
+    }
+    if (waiter == null || snapshot.ticket().status() != TicketStatus.QUEUED) {
+      if (waiter != null) {
+        waiter.cancel(false);
+      }
+      metrics.recordStatusWatch(wantsWait && waiter == null ? "rejected" : "immediate");
+      return CompletableFuture.completedFuture(toStatusResponse(snapshot));
+    }
+    final Instant expiresAt = snapshot.ticket().expiresAt();
+    if (expiresAt != null) {
+      // 期限を過ぎた QUEUED は読み直すと EXPIRED になるため、期限で起きて失効を知らせる
+      waiter.completeOnTimeout(
+          false,
+          Math.max(0, expiresAt.toEpochMilli() - System.currentTimeMillis()),
+          TimeUnit.MILLISECONDS);
+    }
+    return waiter.thenApplyAsync(
+        changed -> {
+          metrics.recordStatusWatch(changed ? "changed" : "timeout");
+          if (changed) {
+            ticketRepository.evictTicketStatus(ticketId);
+          }
+          return toStatusResponse(readOwnedStatus(ticketId, userId));
+        },
+        statusWatcher.executor());
   }
 
   public CancelMatchmakingTicketResponse cancelTicket(String ticketId, String userId) {
     validateTicketIdAndUserId(ticketId, userId);
-    final TicketRecord existing = requireOwnedTicket(ticketId, userId);
-    final TicketRecord cancelled =
+    // 所有者確認と QUEUED→CANCELLED 遷移は Lua 内で 1 往復にまとめ、cancelled 計測も遷移時に repository が行う
+    final TicketRecord result =
         ticketRepository
-            .cancelTicket(ticketId)
+            .cancelTicket(ticketId, userId)
             .orElseThrow(() -> new TicketNotFoundException(ticketId));
-    if (existing.status() == TicketStatus.QUEUED && cancelled.status() == TicketStatus.CANCELLED) {
-      metrics.recordMatchResult("cancelled");
+    ensureOwner(result, userId);
+    if (result.status() == TicketStatus.CANCELLED) {
+      statusSignal.notifyChanged(List.of(result.ticketId()));
     }
-    return new CancelMatchmakingTicketResponse(cancelled.ticketId(), cancelled.status().name());
+    return new CancelMatchmakingTicketResponse(result.ticketId(), result.status().name());
+  }
+
+  private TicketStatusSnapshot readOwnedStatus(String ticketId, String userId) {
+    // ticket と match record を 1 往復で読み、MATCHED でも対戦相手の追加参照をしない
+    final TicketStatusSnapshot snapshot =
+        ticketRepository
+            .findTicketStatus(ticketId)
+            .orElseThrow(() -> new TicketNotFoundException(ticketId));
+    ensureOwner(snapshot.ticket(), userId);
+    return snapshot;
   }
 
   private MatchMode validateJoinRequest(
@@ -90,8 +212,15 @@ public class MatchmakingService {
     if (request == null) {
       throw new InvalidMatchmakingRequestException("request is required");
     }
-    if (request.partySize() == null || request.partySize() != 1) {
-      throw new InvalidMatchmakingRequestException("party_size must be 1");
+    // party はチームを分けず 1 単位で詰めるため、1 チームの人数を超える party は受け付けない
+    final int maxPartySize = lobbyProperties.shapeOf(matchMode).teamSize();
+    if (request.partySize() == null
+        || request.partySize() < 1
+        || request.partySize() > maxPartySize) {
+      throw new InvalidMatchmakingRequestException(
+          maxPartySize == 1
+              ? "party_size must be 1"
+              : "party_size must be between 1 and " + maxPartySize);
     }
     if (request.idempotencyKey() == null || request.idempotencyKey().isBlank()) {
       throw new InvalidMatchmakingRequestException("idempotency_key is required");
@@ -116,36 +245,78 @@ public class MatchmakingService {
     }
   }
 
-  private TicketRecord requireOwnedTicket(String ticketId, String userId) {
-    final TicketRecord record =
-        ticketRepository
-            .findTicketById(ticketId)
-            .orElseThrow(() -> new TicketNotFoundException(ticketId));
-    ensureOwner(record, userId);
-    return record;
-  }
-
   private void ensureOwner(TicketRecord record, String userId) {
     if (!userId.equals(record.userId())) {
       throw new TicketAccessDeniedException(record.ticketId());
     }
   }
 
-  private TicketStatusResponse toStatusResponse(TicketRecord record) {
+  private TicketStatusResponse toStatusResponse(TicketStatusSnapshot snapshot) {
+    final TicketRecord record = snapshot.ticket();
     final MatchedTicketPayload matched =
         record.status() == TicketStatus.MATCHED
                 && record.matchId() != null
                 && !record.matchId().isBlank()
-            ? new MatchedTicketPayload(record.matchId(), List.of(), Map.of())
+            ? toMatchedPayload(record, snapshot.match())
             : null;
     return new TicketStatusResponse(
         record.ticketId(), record.status().name(), toIsoOrNull(record.expiresAt()), matched);
   }
 
+  /**
+   * 役割: MATCHED 応答の対戦相手とセッション情報を組み立てる。 動作: match record があれば自分以外の参加者を peer とし、mode/matched_at/team
+   * を session に入れる。record が失効済みなら match_id だけを返す。 前提: record は MATCHED。
+   */
+  private MatchedTicketPayload toMatchedPayload(TicketRecord record, MatchRecord match) {
+    if (match == null) {
+      return new MatchedTicketPayload(record.matchId(), List.of(), Map.of());
+    }
+    final Map<String, Object> session = new LinkedHashMap<>();
+    session.put("mode", match.mode().value());
+    if (match.matchedAt() != null) {
+      session.put("matched_at", match.matchedAt().toString());
+    }
+    final int team = match.teamOf(record.ticketId());
+    if (team >= 0) {
+      session.put("team", team);
+    }
+    return new MatchedTicketPayload(
+        record.matchId(), match.peerUserIdsOf(record.ticketId()), session);
+  }
+
+  /**
+   * 役割: rating マッチャー用の rating 値を attributes から取り出す。 動作: マッチャー無効時は null、属性が数値でなければ defaultRating
+   * を返す。 前提: attributes は null を許容する。
+   */
+  private Double resolveRating(Map<String, Object> attributes) {
+    if (!ratingProperties.enabled()) {
+      return null;
+    }
+    final Object value = attributes == null ? null : attributes.get(ratingProperties.attribute());
+    if (value instanceof Number number && Double.isFinite(number.doubleValue())) {
+      return number.doubleValue();
+    }
+    return ratingProperties.defaultRating();
+  }
+
+  private WaitTimeEstimateResponse toEstimateResponse(WaitTimeEstimate estimate) {
+    return new WaitTimeEstimateResponse(
+        estimate.bucket().mode().value(),
+        estimate.bucket().id(),
+        estimate.samples(),
+        estimate.p50() == null ? null : estimate.p50().toMillis(),
+        estimate.p90() == null ? null : estimate.p90().toMillis(),
+        estimate.pollInterval().toMillis());
+  }
+
   private String serializeAttributes(Map<String, Object> attributes) {
     final Map<String, Object> safeAttributes = attributes == null ? Map.of() : attributes;
     try {
-      return objectMapper.writeValueAsString(safeAttributes);
+      // 冪等再利用時の attributes 比較がキー順に左右されないよう、キー順を正規化して保存する
+      return objectMapper
+          .writer()
+          .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+          .writeValueAsString(safeAttributes);
     } catch (JsonProcessingException ex) {
       throw new InvalidMatchmakingRequestException("attributes serialization failed");
     }
@@ -0,0 +1,97 @@
+/*
+ * どこで: Matchmaking サービス層
+ * 何を: Join 時に該当区画の worker を起こす通知を、同一 pod 内と Redis pub/sub の両経路で送る
+ * なぜ: 固定間隔ポーリングの待ち（最大 1 poll 分）を Join 直後のマッチで解消し、time-to-match を縮めるため
+ */
+package com.example.matchmaking.service;
+
+import com.example.matchmaking.config.MatchmakingWakeupProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class MatchmakingWakeupSignal {
+
+  private static final Logger logger = LoggerFactory.getLogger(MatchmakingWakeupSignal.class);
+  private static final String SEPARATOR = "|";
+
+  @SuppressFBWarnings(
+      value = "EI_EXPOSE_REP2",
+      justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
+  private final StringRedisTemplate redisTemplate;
+
+  private final MatchmakingWakeupProperties properties;
+  private final MatchmakingMetrics metrics;
+  private final String instanceId = UUID.randomUUID().toString();
+  private volatile Consumer<QueueBucket> listener = bucket -> {};
+
+  public MatchmakingWakeupSignal(
+      StringRedisTemplate redisTemplate,
+      MatchmakingWakeupProperties properties,
+      MatchmakingMetrics metrics) {
+    this.redisTemplate = redisTemplate;
+    this.properties = properties;
+    this.metrics = metrics;
+  }
+
+  /** 役割: 起床通知の受け手を登録する。 動作: 後から登録した受け手で置き換える。 前提: 受け手はブロックせずに戻ること。 */
+  public void register(Consumer<QueueBucket> listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * 役割: Join で ticket が入った区画を worker へ知らせる。 動作: 同一 pod の受け手を直接呼び、他 pod 向けに channel へ publish
+   * する。publish 失敗は Join を失敗させず、fallback ポーリングに任せる。 前提: bucket は null でないこと。
+   */
+  public void notifyJoined(QueueBucket bucket) {
+    if (!properties.enabled()) {
+      return;
+    }
+    deliver(bucket, "local");
+    try {
+      redisTemplate.convertAndSend(properties.channel(), encode(bucket));
+    } catch (RuntimeException ex) {
+      logger.warn(
+          "matchmaking wakeup publish failed mode={} bucket={}",
+          bucket.mode().value(),
+          bucket.id(),
+          ex);
+      metrics.recordDependencyError("wakeup_publish");
+    }
+  }
+
+  /**
+   * 役割: 他 pod から届いた起床通知を受け手へ渡す。 動作: 自分が publish した通知と解釈できない payload は無視する。 前提: payload は
+   * notifyJoined が publish した形式。
+   */
+  public void onMessage(String payload) {
+    final String[] parts = payload == null ? new String[0] : payload.split("\\|", 3);
+    if (parts.length != 3 || instanceId.equals(parts[0])) {
+      return;
+    }
+    final MatchMode mode;
+    try {
+      mode = MatchMode.fromValue(parts[1]);
+    } catch (IllegalArgumentException ex) {
+      logger.warn("matchmaking wakeup payload ignored payload={}", payload);
+      return;
+    }
+    deliver(new QueueBucket(mode, parts[2]), "remote");
+  }
+
+  private void deliver(QueueBucket bucket, String source) {
+    metrics.recordWakeup(source);
+    listener.accept(bucket);
+  }
+
+  private String encode(QueueBucket bucket) {
+    return instanceId + SEPARATOR + bucket.mode().value() + SEPARATOR + bucket.id();
+  }
+}
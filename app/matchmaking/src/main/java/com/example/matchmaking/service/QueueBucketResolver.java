@@ -0,0 +1,79 @@
+/*
+ * どこで: Matchmaking サービス層
+ * 何を: Join 時の attributes から ticket を投入する queue 区画を決定する
+ * なぜ: region/skill 帯などで queue を分割し、各 Sorted Set を小さく保つため
+ */
+package com.example.matchmaking.service;
+
+import com.example.matchmaking.config.MatchmakingQueueBucketProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import org.springframework.stereotype.Component;
+
+@Component
+public class QueueBucketResolver {
+
+  static final String MISSING_VALUE = "any";
+  private static final int MAX_VALUE_LENGTH = 32;
+
+  private final MatchmakingQueueBucketProperties properties;
+
+  public QueueBucketResolver(MatchmakingQueueBucketProperties properties) {
+    this.properties = properties;
+  }
+
+  /**
+   * 役割: attributes から queue 区画を決める。 動作: 設定された attribute 順に正規化した値を ':' で連結し、分割設定が無ければ default
+   * 区画を返す。欠損/不正値と、許可リスト・帯範囲の外の値は "any" に寄せる。 前提: mode は null でないこと。
+   */
+  public QueueBucket resolve(MatchMode mode, Map<String, Object> attributes) {
+    if (properties.attributes().isEmpty()) {
+      return QueueBucket.defaultOf(mode);
+    }
+    final Map<String, Object> safeAttributes = attributes == null ? Map.of() : attributes;
+    final StringJoiner joiner = new StringJoiner(":");
+    for (String attribute : properties.attributes()) {
+      joiner.add(bucketValue(attribute, safeAttributes.get(attribute)));
+    }
+    return new QueueBucket(mode, joiner.toString());
+  }
+
+  private String bucketValue(String attribute, Object value) {
+    if (value == null) {
+      return MISSING_VALUE;
+    }
+    final Integer bandWidth = properties.bandWidths().get(attribute);
+    if (bandWidth != null && bandWidth > 0) {
+      return bandValue(attribute, value, bandWidth);
+    }
+    // 区画数を設定した組み合わせに閉じるため、許可リストに無い値は全て "any" に寄せる
+    final List<String> allowed = properties.allowedValues().getOrDefault(attribute, List.of());
+    final String normalized = normalize(String.valueOf(value));
+    return allowed.contains(normalized) ? normalized : MISSING_VALUE;
+  }
+
+  private String bandValue(String attribute, Object value, int bandWidth) {
+    if (!(value instanceof Number number)) {
+      return MISSING_VALUE;
+    }
+    final long band = Math.floorDiv(number.longValue(), (long) bandWidth);
+    final MatchmakingQueueBucketProperties.BandRange range =
+        properties.bandRanges().get(attribute);
+    if (range == null || band < range.min() || band > range.max()) {
+      return MISSING_VALUE;
+    }
+    return String.valueOf(band);
+  }
+
+  private String normalize(String value) {
+    // 区切り文字の混入を防ぐため、文字種と長さを揃えてから許可リストと照合する
+    final String normalized = value.trim().toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_-]", "_");
+    return normalized.length() > MAX_VALUE_LENGTH
+        ? normalized.substring(0, MAX_VALUE_LENGTH)
+        : normalized;
+  }
+}
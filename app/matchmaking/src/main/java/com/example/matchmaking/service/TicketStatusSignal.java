@@ -0,0 +1,81 @@
+/*
+ * どこで: Matchmaking サービス層
+ * 何を: ticket が QUEUED を抜けたことを、同一 pod 内と Redis pub/sub の両経路で状態待機へ知らせる
+ * なぜ: 成立や Cancel を待つ long-poll/SSE を、どの pod で待っていても変化の直後に返すため
+ */
+package com.example.matchmaking.service;
+
+import com.example.matchmaking.config.MatchmakingStatusWatchProperties;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TicketStatusSignal {
+
+  private static final Logger logger = LoggerFactory.getLogger(TicketStatusSignal.class);
+  // ticket ID は区画名を含みうるため、区画名に現れない改行で区切る
+  private static final String SEPARATOR = "\n";
+
+  @SuppressFBWarnings(
+      value = "EI_EXPOSE_REP2",
+      justification = "StringRedisTemplate は Spring 管理の共有コンポーネントで防御的コピーが不可能なため")
+  private final StringRedisTemplate redisTemplate;
+
+  private final MatchmakingStatusWatchProperties properties;
+  private final MatchmakingMetrics metrics;
+  private final String instanceId = UUID.randomUUID().toString();
+  private volatile Consumer<String> listener = ticketId -> {};
+
+  public TicketStatusSignal(
+      StringRedisTemplate redisTemplate,
+      MatchmakingStatusWatchProperties properties,
+      MatchmakingMetrics metrics) {
+    this.redisTemplate = redisTemplate;
+    this.properties = properties;
+    this.metrics = metrics;
+  }
+
+  /** 役割: 状態変化の受け手を登録する。 動作: 後から登録した受け手で置き換える。 前提: 受け手はブロックせずに戻ること。 */
+  public void register(Consumer<String> listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * 役割: QUEUED を抜けた ticket を状態待機へ知らせる。 動作: 同一 pod の受け手を直接呼び、他 pod 向けにまとめて 1 回 publish する。publish
+   * 失敗は呼び出し元を失敗させず、待機側のタイムアウトに任せる。 前提: ticketIds は空でもよい。
+   */
+  public void notifyChanged(Collection<String> ticketIds) {
+    if (!properties.enabled() || ticketIds.isEmpty()) {
+      return;
+    }
+    ticketIds.forEach(listener);
+    try {
+      redisTemplate.convertAndSend(
+          properties.channel(), instanceId + SEPARATOR + String.join(SEPARATOR, ticketIds));
+    } catch (RuntimeException ex) {
+      logger.warn("ticket status publish failed tickets={}", ticketIds.size(), ex);
+      metrics.recordDependencyError("status_watch_publish");
+    }
+  }
+
+  /**
+   * 役割: 他 pod から届いた状態変化を受け手へ渡す。 動作: 自分が publish した通知と空の payload は無視する。 前提: payload は notifyChanged
+   * が publish した形式。
+   */
+  public void onMessage(String payload) {
+    final List<String> parts =
+        payload == null ? List.of() : Arrays.asList(payload.split(SEPARATOR));
+    if (parts.size() < 2 || instanceId.equals(parts.get(0))) {
+      return;
+    }
+    parts.subList(1, parts.size()).forEach(listener);
+  }
+}
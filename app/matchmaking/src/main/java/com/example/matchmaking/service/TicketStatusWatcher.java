@@ -0,0 +1,105 @@
+/*
+ * どこで: Matchmaking サービス層
+ * 何を: ticket ごとに状態変化を待つ long-poll/SSE の待機を保持し、状態変化通知で起こす
+ * なぜ: 待機中の要求にスレッドを占有させず、成立や Cancel の直後に 1 回だけ状態を読み直して返すため
+ */
+package com.example.matchmaking.service;
+
+import com.example.matchmaking.config.MatchmakingStatusWatchProperties;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.stereotype.Component;
+
+@Component
+public class TicketStatusWatcher {
+
+  private final MatchmakingStatusWatchProperties properties;
+  private final ConcurrentMap<String, Set<CompletableFuture<Boolean>>> waiters =
+      new ConcurrentHashMap<>();
+  private final AtomicInteger waiterCount = new AtomicInteger();
+  // 起きた待機の読み直しは Redis 往復を伴うため、通知スレッドやタイマースレッドで行わない
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  public TicketStatusWatcher(
+      MatchmakingStatusWatchProperties properties,
+      TicketStatusSignal statusSignal,
+      MatchmakingMetrics metrics) {
+    this.properties = properties;
+    statusSignal.register(this::onChanged);
+    metrics.bindStatusWatchers(waiterCount::get);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * 役割: ticket の状態変化の待機を登録する。 動作: 状態変化通知で true、timeout（maxWait で切り詰める）経過で false
+   * で完了し、完了時に登録を外す。cancel(false) でも登録を外せる。 前提: 取りこぼさないよう状態を読む前に登録すること。無効時や同時待機が maxWaiters
+   * に達している場合は null を返す。
+   */
+  public CompletableFuture<Boolean> register(String ticketId, Duration timeout) {
+    if (!properties.enabled()) {
+      return null;
+    }
+    if (waiterCount.incrementAndGet() > properties.maxWaiters()) {
+      waiterCount.decrementAndGet();
+      return null;
+    }
+    final CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+    // 空になった集合を外す unregister と競合しないよう、追加も同じ key の compute 内で行う
+    waiters.compute(
+        ticketId,
+        (key, ticketWaiters) -> {
+          final Set<CompletableFuture<Boolean>> target =
+              ticketWaiters == null ? ConcurrentHashMap.newKeySet() : ticketWaiters;
+          target.add(waiter);
+          return target;
+        });
+    waiter.whenComplete((changed, error) -> unregister(ticketId, waiter));
+    final Duration bounded =
+        timeout.compareTo(properties.maxWait()) > 0 ? properties.maxWait() : timeout;
+    waiter.completeOnTimeout(false, bounded.toMillis(), TimeUnit.MILLISECONDS);
+    return waiter;
+  }
+
+  /** 待機が起きた後の読み直しを流す executor。仮想スレッドで動くため Redis 往復で待ってよい。 */
+  public Executor executor() {
+    return executor;
+  }
+
+  int waiterCount() {
+    return waiterCount.get();
+  }
+
+  private void onChanged(String ticketId) {
+    final Set<CompletableFuture<Boolean>> ticketWaiters = waiters.get(ticketId);
+    if (ticketWaiters == null) {
+      return;
+    }
+    for (CompletableFuture<Boolean> waiter : ticketWaiters) {
+      waiter.complete(true);
+    }
+  }
+
+  private void unregister(String ticketId, CompletableFuture<Boolean> waiter) {
+    waiters.computeIfPresent(
+        ticketId,
+        (key, ticketWaiters) -> {
+          if (ticketWaiters.remove(waiter)) {
+            waiterCount.decrementAndGet();
+          }
+          return ticketWaiters.isEmpty() ? null : ticketWaiters;
+        });
+  }
+}
@@ -1,14 +1,38 @@
 package com.example.matchmaking.worker;
 
+import com.example.matchmaking.config.MatchmakingLobbyProperties;
 import com.example.matchmaking.config.MatchmakingProperties;
+import com.example.matchmaking.config.MatchmakingReaperProperties;
+import com.example.matchmaking.config.MatchmakingWakeupProperties;
+import com.example.matchmaking.config.MatchmakingWorkerLeaseProperties;
+import com.example.matchmaking.model.LobbyShape;
+import com.example.matchmaking.model.MatchGroup;
 import com.example.matchmaking.model.MatchMode;
 import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.repository.MatchmakingLeaseRepository;
+import com.example.matchmaking.repository.MatchmakingLobbyRepository;
 import com.example.matchmaking.repository.MatchmakingMatchRepository;
 import com.example.matchmaking.repository.MatchmakingTicketRepository;
-import com.example.matchmaking.service.MatchmakingEventPublisher;
+import com.example.matchmaking.service.MatchWaitTimeEstimator;
 import com.example.matchmaking.service.MatchmakingMetrics;
+import com.example.matchmaking.service.MatchmakingWakeupSignal;
+import com.example.matchmaking.service.TicketStatusSignal;
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
@@ -26,57 +50,373 @@ public class MatchmakerWorker {
 
   private final MatchmakingMetrics metrics;
   private final MatchmakingProperties properties;
+  private final MatchmakingWorkerLeaseProperties leaseProperties;
+  private final MatchmakingWakeupProperties wakeupProperties;
+  private final MatchmakingReaperProperties reaperProperties;
+  private final MatchmakingLobbyProperties lobbyProperties;
   private final MatchmakingTicketRepository ticketRepository;
   private final MatchmakingMatchRepository matchRepository;
-  private final MatchmakingEventPublisher eventPublisher;
+  private final MatchmakingLobbyRepository lobbyRepository;
+  private final MatchmakingLeaseRepository leaseRepository;
+  private final MatchWaitTimeEstimator waitTimeEstimator;
+  private final TicketStatusSignal statusSignal;
+  private final String workerId = UUID.randomUUID().toString();
+  private final ExecutorService executor;
+  // scheduler スレッドからのみ更新し、停止時の解放でだけ別スレッドから読む
+  private volatile Set<QueueBucket> ownedBuckets = Set.of();
+  private final Set<QueueBucket> pendingWakeups = ConcurrentHashMap.newKeySet();
+  // 処理中の区画と、処理中に届いた再実行の要求。tick と起床が同じ区画を並行して走査しないようにする
+  private final Set<QueueBucket> runningBuckets = ConcurrentHashMap.newKeySet();
+  private final Set<QueueBucket> rerunRequests = ConcurrentHashMap.newKeySet();
+  private final ConcurrentMap<QueueBucket, IdleBackoff> idleBackoffs = new ConcurrentHashMap<>();
+  private final ConcurrentMap<QueueBucket, Long> nextReapAtMillis = new ConcurrentHashMap<>();
 
   public MatchmakerWorker(
       MatchmakingMetrics metrics,
       MatchmakingProperties properties,
+      MatchmakingWorkerLeaseProperties leaseProperties,
+      MatchmakingWakeupProperties wakeupProperties,
+      MatchmakingReaperProperties reaperProperties,
+      MatchmakingLobbyProperties lobbyProperties,
       MatchmakingTicketRepository ticketRepository,
       MatchmakingMatchRepository matchRepository,
-      MatchmakingEventPublisher eventPublisher) {
+      MatchmakingLobbyRepository lobbyRepository,
+      MatchmakingLeaseRepository leaseRepository,
+      MatchmakingWakeupSignal wakeupSignal,
+      MatchWaitTimeEstimator waitTimeEstimator,
+      TicketStatusSignal statusSignal) {
     this.metrics = metrics;
     this.properties = properties;
+    this.leaseProperties = leaseProperties;
+    this.wakeupProperties = wakeupProperties;
+    this.reaperProperties = reaperProperties;
+    this.lobbyProperties = lobbyProperties;
     this.ticketRepository = ticketRepository;
     this.matchRepository = matchRepository;
-    this.eventPublisher = eventPublisher;
+    this.lobbyRepository = lobbyRepository;
+    this.leaseRepository = leaseRepository;
+    this.waitTimeEstimator = waitTimeEstimator;
+    this.statusSignal = statusSignal;
+    final AtomicInteger threadIndex = new AtomicInteger();
+    this.executor =
+        Executors.newFixedThreadPool(
+            leaseProperties.parallelism(),
+            runnable -> {
+              final Thread thread =
+                  new Thread(runnable, "matchmaker-worker-" + threadIndex.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    if (wakeupProperties.enabled()) {
+      wakeupSignal.register(this::onWakeup);
+    }
   }
 
   @Scheduled(fixedDelayString = "${matchmaking.worker-poll-interval}")
   public void run() {
+    final List<QueueBucket> owned = claimBuckets(collectBuckets());
+    metrics.updateOwnedPartitions(owned.size());
+    idleBackoffs.keySet().retainAll(owned);
+    nextReapAtMillis.keySet().retainAll(owned);
+    final long nowMillis = System.currentTimeMillis();
+    final List<Callable<Void>> tasks = new ArrayList<>(owned.size());
+    for (QueueBucket bucket : owned) {
+      if (isBackedOff(bucket, nowMillis)) {
+        continue;
+      }
+      tasks.add(
+          () -> {
+            runBucketSafely(bucket);
+            return null;
+          });
+    }
+    try {
+      // 全区画の処理完了を待ち、fixedDelay の間隔が前 tick と重ならないようにする
+      executor.invokeAll(tasks);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+    if (!leaseProperties.enabled()) {
+      return;
+    }
+    try {
+      // lease の自然失効を待たずに他 replica が次 tick で引き継げるよう明示的に手放す
+      for (QueueBucket bucket : ownedBuckets) {
+        leaseRepository.release(bucket, workerId);
+      }
+      leaseRepository.unregister(workerId);
+    } catch (RuntimeException ex) {
+      logger.warn("matchmaker worker lease release failed workerId={}", workerId, ex);
+    }
+  }
+
+  private List<QueueBucket> collectBuckets() {
+    final List<QueueBucket> buckets = new ArrayList<>();
     for (MatchMode mode : MatchMode.values()) {
       try {
-        final long depth = ticketRepository.queueDepth(mode);
-        metrics.updateQueueDepth(mode.value(), depth);
-        metrics.updateOldestQueueAge(
-            mode.value(), ticketRepository.oldestQueueAgeSeconds(mode).orElse(0L));
-        if (depth < 2) {
-          continue;
-        }
-        final int attempts = Math.max(1, properties.workerBatchSize() / 2);
-        for (int i = 0; i < attempts; i++) {
-          final MatchPair pair = matchRepository.matchTwo(mode, Instant.now()).orElse(null);
-          if (pair == null) {
-            break;
+        buckets.addAll(ticketRepository.activeBuckets(mode));
+      } catch (RuntimeException ex) {
+        logger.warn("matchmaker worker bucket lookup failed mode={}", mode.value(), ex);
+        metrics.recordDependencyError("worker_loop");
+      }
+    }
+    return buckets;
+  }
+
+  /**
+   * 役割: この replica が今 tick で処理する区画を決める。 動作: 生存 replica 数で割った担当上限まで lease を取得/延長し、上限を超えた保持分は解放する。
+   * 前提: lease 無効時は全区画を返す。
+   */
+  private List<QueueBucket> claimBuckets(List<QueueBucket> buckets) {
+    if (!leaseProperties.enabled()) {
+      return buckets;
+    }
+    final Duration ttl = leaseProperties.ttl();
+    final long liveWorkers;
+    try {
+      liveWorkers = leaseRepository.heartbeat(workerId, ttl);
+    } catch (RuntimeException ex) {
+      logger.warn("matchmaker worker heartbeat failed workerId={}", workerId, ex);
+      metrics.recordDependencyError("worker_lease");
+      ownedBuckets = Set.of();
+      return List.of();
+    }
+    final long share = (buckets.size() + liveWorkers - 1) / liveWorkers;
+    final Set<QueueBucket> previous = ownedBuckets;
+    // 保持中の区画を先に延長し、担当が tick ごとに入れ替わらないようにする
+    final List<QueueBucket> ordered = new ArrayList<>(buckets.size());
+    buckets.stream().filter(previous::contains).forEach(ordered::add);
+    buckets.stream().filter(bucket -> !previous.contains(bucket)).forEach(ordered::add);
+    final Set<QueueBucket> claimed = new LinkedHashSet<>();
+    for (QueueBucket bucket : ordered) {
+      try {
+        if (claimed.size() < share) {
+          if (leaseRepository.tryAcquire(bucket, workerId, ttl)) {
+            claimed.add(bucket);
           }
-          eventPublisher.publishMatched(pair);
-          metrics.recordMatchResult("matched");
-          recordTimeToMatch(pair);
+        } else if (previous.contains(bucket)) {
+          // replica 追加で担当上限が下がった分を手放し、新しい replica が次 tick で取れるようにする
+          leaseRepository.release(bucket, workerId);
         }
       } catch (RuntimeException ex) {
-        logger.warn("matchmaker worker loop failed mode={}", mode.value(), ex);
-        metrics.recordDependencyError("worker_loop");
+        logger.warn(
+            "matchmaker worker lease failed mode={} bucket={}",
+            bucket.mode().value(),
+            bucket.id(),
+            ex);
+        metrics.recordDependencyError("worker_lease");
       }
     }
+    ownedBuckets = Set.copyOf(claimed);
+    return List.copyOf(claimed);
   }
 
-  private void recordTimeToMatch(MatchPair pair) {
-    recordTicketTimeToMatch(pair.ticketId1(), pair.matchedAt());
-    recordTicketTimeToMatch(pair.ticketId2(), pair.matchedAt());
+  /**
+   * 役割: Join 起点の起床通知を受けて区画を即時処理する。 動作: 担当外の区画は無視し、実行待ちの起床が既にあれば合流させる。 前提: Join のスレッドから呼ばれるため、処理は
+   * executor へ渡してすぐ戻る。
+   */
+  private void onWakeup(QueueBucket bucket) {
+    if (leaseProperties.enabled() && !ownedBuckets.contains(bucket)) {
+      // 担当 replica が同じ通知を受けて処理する。未割り当ての区画は次 tick の lease 取得で拾う
+      return;
+    }
+    idleBackoffs.remove(bucket);
+    scheduleWakeup(bucket);
   }
 
-  private void recordTicketTimeToMatch(String ticketId, Instant matchedAt) {
+  private void scheduleWakeup(QueueBucket bucket) {
+    if (!pendingWakeups.add(bucket)) {
+      return;
+    }
+    try {
+      executor.execute(
+          () -> {
+            // 実行開始時に外し、処理中に届いた Join も取りこぼさず次の実行へ回す
+            pendingWakeups.remove(bucket);
+            runBucketSafely(bucket);
+          });
+    } catch (RejectedExecutionException ex) {
+      pendingWakeups.remove(bucket);
+    }
+  }
+
+  private boolean isBackedOff(QueueBucket bucket, long nowMillis) {
+    final IdleBackoff backoff = idleBackoffs.get(bucket);
+    return backoff != null && backoff.nextPollAtMillis() > nowMillis;
+  }
+
+  /**
+   * 役割: 区画の処理結果からイベント駆動モードの次回処理を決める。 動作: マッチ可能な ticket がなければポーリング間隔を倍々に広げ、1 回で取り切れなかった場合は次 tick
+   * を待たずに続けて処理する。 前提: イベント駆動モード時のみ呼ぶ。
+   */
+  private void afterRun(QueueBucket bucket, BucketRun result) {
+    if (result.idle()) {
+      final long pollMillis = properties.workerPollInterval().toMillis();
+      final long maxMillis = Math.max(pollMillis, wakeupProperties.maxIdleBackoff().toMillis());
+      idleBackoffs.compute(
+          bucket,
+          (key, current) -> {
+            final long next =
+                current == null ? pollMillis : Math.min(current.backoffMillis() * 2, maxMillis);
+            return new IdleBackoff(next, System.currentTimeMillis() + next);
+          });
+      return;
+    }
+    idleBackoffs.remove(bucket);
+    if (result.saturated()) {
+      scheduleWakeup(bucket);
+    }
+  }
+
+  /**
+   * 役割: 区画を 1 スレッドずつ処理する。 動作: 他のスレッドが処理中なら再実行の要求だけを残して戻り、処理中のスレッドが終了前に要求を拾ってもう一度回す。
+   * 前提: tick と起床のどちらからも呼ばれる。
+   */
+  private void runBucketSafely(QueueBucket bucket) {
+    rerunRequests.add(bucket);
+    // 内側のループを抜けてから running を外すまでに届いた要求も、外側の再確認で拾う
+    while (rerunRequests.contains(bucket) && runningBuckets.add(bucket)) {
+      try {
+        while (rerunRequests.remove(bucket)) {
+          runBucketOnce(bucket);
+        }
+      } finally {
+        runningBuckets.remove(bucket);
+      }
+    }
+  }
+
+  private void runBucketOnce(QueueBucket bucket) {
+    try {
+      final BucketRun result = runBucket(bucket);
+      if (wakeupProperties.enabled()) {
+        afterRun(bucket, result);
+      }
+    } catch (RuntimeException ex) {
+      logger.warn(
+          "matchmaker worker loop failed mode={} bucket={}",
+          bucket.mode().value(),
+          bucket.id(),
+          ex);
+      metrics.recordDependencyError("worker_loop");
+    }
+  }
+
+  private BucketRun runBucket(QueueBucket bucket) {
+    final String mode = bucket.mode().value();
+    // 遅い tick が Lua・ネットワーク・Redis CPU のどこで詰まっているか切り分けるため、段階ごとに計測する
+    long phaseStartNanos = System.nanoTime();
+    // 失効分を先に外し、queue 深さの計測と matcher の走査に死んだ ticket を含めない
+    reapIfDue(bucket);
+    phaseStartNanos = endPhase("reap", phaseStartNanos);
+    final long depth = ticketRepository.queueDepth(bucket);
+    metrics.updateQueueDepth(mode, bucket.id(), depth);
+    metrics.updateOldestQueueAge(
+        mode, bucket.id(), ticketRepository.oldestQueueAgeSeconds(bucket).orElse(0L));
+    if (depth == 0) {
+      ticketRepository.removeBucketIfEmpty(bucket);
+      endPhase("metrics", phaseStartNanos);
+      return new BucketRun(true, false);
+    }
+    phaseStartNanos = endPhase("metrics", phaseStartNanos);
+    final LobbyShape shape = lobbyProperties.shapeOf(bucket.mode());
+    // 全員が 1 チーム分の party でもチーム数に満たなければ成立しない
+    if (depth < shape.teamCount()) {
+      return new BucketRun(true, false);
+    }
+    final int maxMatches = maxMatches(shape);
+    // 成立イベントは Lua が同じ呼び出しで outbox へ積み、NATS への publish は relay が行う
+    if (shape.isOneVsOne()) {
+      final List<MatchPair> pairs = matchRepository.matchMany(bucket, Instant.now(), maxMatches);
+      phaseStartNanos = endPhase("match", phaseStartNanos);
+      final List<String> matchedTicketIds = new ArrayList<>(pairs.size() * 2);
+      for (MatchPair pair : pairs) {
+        metrics.recordMatchResult("matched");
+        recordTimeToMatch(bucket, pair);
+        matchedTicketIds.add(pair.ticketId1());
+        matchedTicketIds.add(pair.ticketId2());
+      }
+      phaseStartNanos = endPhase("time_to_match", phaseStartNanos);
+      statusSignal.notifyChanged(matchedTicketIds);
+      endPhase("notify", phaseStartNanos);
+      return new BucketRun(false, pairs.size() >= maxMatches);
+    }
+    final List<MatchGroup> groups =
+        lobbyRepository.formLobbies(bucket, Instant.now(), shape, maxMatches);
+    phaseStartNanos = endPhase("match", phaseStartNanos);
+    final List<String> matchedTicketIds = new ArrayList<>();
+    for (MatchGroup group : groups) {
+      metrics.recordMatchResult("matched");
+      for (MatchGroup.Member member : group.members()) {
+        recordTicketTimeToMatch(
+            bucket, member.ticketId(), member.createdAt(), group.matchedAt());
+        matchedTicketIds.add(member.ticketId());
+      }
+    }
+    phaseStartNanos = endPhase("time_to_match", phaseStartNanos);
+    statusSignal.notifyChanged(matchedTicketIds);
+    endPhase("notify", phaseStartNanos);
+    return new BucketRun(false, groups.size() >= maxMatches);
+  }
+
+  /** 段階の所要時間を mm.worker.tick.phase.duration{phase} に記録し、次の段階の開始時刻を返す。 */
+  private long endPhase(String phase, long startNanos) {
+    final long nowNanos = System.nanoTime();
+    metrics.recordTickPhase(phase, Duration.ofNanos(nowNanos - startNanos));
+    return nowNanos;
+  }
+
+  /**
+   * 役割: 区画の期限切れ ticket をまとめて失効させる。 動作: 前回から reaper.interval が経過していれば batchSize 件ずつ、取り切るか maxBatches
+   * 回に達するまで繰り返す。失敗してもマッチ処理は続ける。 前提: 担当区画に対してのみ呼ぶ。
+   */
+  private void reapIfDue(QueueBucket bucket) {
+    final long nowMillis = System.currentTimeMillis();
+    final Long dueAt = nextReapAtMillis.get(bucket);
+    if (dueAt != null && dueAt > nowMillis) {
+      return;
+    }
+    nextReapAtMillis.put(bucket, nowMillis + reaperProperties.interval().toMillis());
+    final Instant now = Instant.ofEpochMilli(nowMillis);
+    final int batchSize = reaperProperties.batchSize();
+    try {
+      for (int i = 0; i < reaperProperties.maxBatches(); i++) {
+        if (ticketRepository.reapExpired(bucket, now, batchSize) < batchSize) {
+          return;
+        }
+      }
+    } catch (RuntimeException ex) {
+      logger.warn(
+          "matchmaker worker reap failed mode={} bucket={}",
+          bucket.mode().value(),
+          bucket.id(),
+          ex);
+      metrics.recordDependencyError("worker_reap");
+    }
+  }
+
+  /** worker-batch-size を 1 回の Lua で扱う ticket 数の目安とし、1 試合の人数で割って成立上限にする。 */
+  private int maxMatches(LobbyShape shape) {
+    return Math.max(1, properties.workerBatchSize() / shape.playersPerLobby());
+  }
+
+  private void recordTimeToMatch(QueueBucket bucket, MatchPair pair) {
+    recordTicketTimeToMatch(bucket, pair.ticketId1(), pair.ticket1CreatedAt(), pair.matchedAt());
+    recordTicketTimeToMatch(bucket, pair.ticketId2(), pair.ticket2CreatedAt(), pair.matchedAt());
+  }
+
+  private void recordTicketTimeToMatch(
+      QueueBucket bucket, String ticketId, Instant createdAt, Instant matchedAt) {
+    if (createdAt != null) {
+      // Lua が返した queue score を使い、ペアごとの追加 HGETALL を省く
+      recordWaited(bucket, Duration.between(createdAt, matchedAt));
+      return;
+    }
     ticketRepository
         .findTicketById(ticketId)
         .ifPresentOrElse(
@@ -86,12 +426,21 @@ public class MatchmakerWorker {
                 logger.warn("ticket created_at missing ticketId={}", ticketId);
                 return;
               }
-              metrics.recordTimeToMatchSeconds(
-                  Duration.between(ticket.createdAt(), matchedAt).toSeconds());
+              recordWaited(bucket, Duration.between(ticket.createdAt(), matchedAt));
             },
             () -> {
               metrics.recordDependencyError("time_to_match_ticket_not_found");
               logger.warn("matched ticket not found for time-to-match ticketId={}", ticketId);
             });
   }
+
+  /** Prometheus の time-to-match と、待ち時間推定 API が読む区画ごとの分布の両方に載せる。 */
+  private void recordWaited(QueueBucket bucket, Duration waited) {
+    metrics.recordTimeToMatch(waited);
+    waitTimeEstimator.record(bucket, waited);
+  }
+
+  private record BucketRun(boolean idle, boolean saturated) {}
+
+  private record IdleBackoff(long backoffMillis, long nextPollAtMillis) {}
 }
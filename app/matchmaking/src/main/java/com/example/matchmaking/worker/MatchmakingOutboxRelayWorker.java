@@ -0,0 +1,54 @@
+/*
+ * どこで: Matchmaking outbox relay ワーカー
+ * 何を: スケジュールで outbox の中継を起動し、溜まっている分をバッチ上限まで続けて流す
+ * なぜ: match 成立イベントの publish をマッチ処理のループから切り離して定期的に配信するため
+ */
+package com.example.matchmaking.worker;
+
+import com.example.matchmaking.config.MatchmakingOutboxProperties;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import com.example.matchmaking.service.MatchmakingOutboxRelay;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(
+    name = "matchmaking.outbox.enabled",
+    havingValue = "true",
+    matchIfMissing = true)
+@ConditionalOnProperty(name = "nats.enabled", havingValue = "true", matchIfMissing = true)
+public class MatchmakingOutboxRelayWorker {
+
+  private static final Logger logger = LoggerFactory.getLogger(MatchmakingOutboxRelayWorker.class);
+
+  private final MatchmakingOutboxRelay relay;
+  private final MatchmakingOutboxProperties properties;
+  private final MatchmakingMetrics metrics;
+
+  public MatchmakingOutboxRelayWorker(
+      MatchmakingOutboxRelay relay,
+      MatchmakingOutboxProperties properties,
+      MatchmakingMetrics metrics) {
+    this.relay = relay;
+    this.properties = properties;
+    this.metrics = metrics;
+  }
+
+  @Scheduled(fixedDelayString = "${matchmaking.outbox.poll-interval}")
+  public void run() {
+    try {
+      // バッチが埋まっている間は次の poll を待たずに続け、1 回の実行は maxBatches で打ち切る
+      for (int i = 0; i < properties.maxBatches(); i++) {
+        if (relay.relayBatch() < properties.batchSize()) {
+          return;
+        }
+      }
+    } catch (RuntimeException ex) {
+      logger.warn("matchmaking outbox relay failed", ex);
+      metrics.recordDependencyError("outbox_relay");
+    }
+  }
+}
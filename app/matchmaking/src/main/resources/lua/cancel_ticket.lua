@@ -0,0 +1,51 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: 所有者の QUEUED ticket だけを CANCELLED へ遷移させ、queue/rating/expiry index から外す
+-- なぜ: 読み取り→更新を分けると、その間に matcher が MATCHED にした ticket を CANCELLED で上書きしてしまうため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:ticket:{ticketId}
+-- KEYS[2..4] = ticket の区画の queue / rating / expiry index（repository が MatchmakingKeyLayout で組み立てて渡す）
+-- ARGV[1] = ticket id
+-- ARGV[2] = user id
+-- ARGV[3] = now epoch millis
+-- ticket hash は compact 形式（u/m/s/b/e）と移行前の旧形式（user_id/mode/status/bucket/expires_at_epoch_millis）の
+-- どちらも扱い、遷移は読んだ形式の field へ書く
+--
+-- 戻り値:
+-- ticket なし: {"not_found"}
+-- それ以外: {outcome, field1, value1, ...}（遷移後の HGETALL の内容）
+--   outcome = "cancelled" | "expired"（期限切れのため EXPIRED へ遷移）| "unchanged"（終端状態 / 所有者不一致）
+local raw = redis.call("HGETALL", KEYS[1])
+if #raw == 0 then
+  return {"not_found"}
+end
+local fields = {}
+for i = 1, #raw, 2 do
+  fields[raw[i]] = raw[i + 1]
+end
+
+local compact = fields["s"] ~= nil
+local status_field = compact and "s" or "status"
+local user_id = compact and fields["u"] or fields["user_id"]
+local outcome = "unchanged"
+if user_id == ARGV[2] and fields[status_field] == "QUEUED" then
+  local expires_at_millis = tonumber(compact and fields["e"] or fields["expires_at_epoch_millis"])
+  local status = "CANCELLED"
+  outcome = "cancelled"
+  if expires_at_millis ~= nil and expires_at_millis <= tonumber(ARGV[3]) then
+    status = "EXPIRED"
+    outcome = "expired"
+  end
+  redis.call("HSET", KEYS[1], status_field, status)
+  redis.call("ZREM", KEYS[2], ARGV[1])
+  redis.call("ZREM", KEYS[3], ARGV[1])
+  redis.call("ZREM", KEYS[4], ARGV[1])
+  fields[status_field] = status
+end
+
+local result = {outcome}
+for name, value in pairs(fields) do
+  table.insert(result, name)
+  table.insert(result, value)
+end
+return result
@@ -0,0 +1,128 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: Join の冪等判定・ticket 作成・queue/rating/区画 index 登録を 1 往復で原子的に行う
+-- なぜ: GET/HGETALL/HSET/EXPIRE/ZADD/SET の逐次呼び出しは往復遅延が積み重なり、途中失敗で queue に載らない ticket も生むため
+--
+-- 想定 I/F:
+-- key 名は MatchmakingKeyLayout の standalone 配置で示す（cluster 配置では KEYS[1]〜[5] が同じ hash tag を持つ）
+-- KEYS[1] = mm:idemp:{userId}:{mode}:{idempotencyKey}（legacy 形式では書き、compact 形式では移行期間の読み取りだけ）
+-- KEYS[2] = mm:ticket:{ticketId}（新規作成時に使う。compact 形式では冪等キーから決まる ID）
+-- KEYS[3] = mm:queue:{mode}[:{bucket}]
+-- KEYS[4] = mm:rating:{mode}[:{bucket}]
+-- KEYS[5] = mm:expiry:{mode}[:{bucket}]
+-- KEYS[6] = mm:buckets:{mode}（ARGV[14] が "1" のときだけ渡す。cluster では別 slot のため呼び出し側が登録する）
+-- KEYS[#KEYS] = mm:ticket:{ARGV[18]}（ARGV[18] が空でないときだけ末尾に渡す。冪等キーと同じ区画にある）
+-- ARGV[1] = ticket id
+-- ARGV[2] = user id
+-- ARGV[3] = mode
+-- ARGV[4] = bucket id
+-- ARGV[5] = created_at (ISO-8601、legacy 形式のみ)
+-- ARGV[6] = expires_at (ISO-8601、legacy 形式のみ)
+-- ARGV[7] = expires_at epoch millis
+-- ARGV[8] = enqueue epoch millis（queue score。compact 形式では created_at としても保存する）
+-- ARGV[9] = attributes json（legacy 形式のみ保存する）
+-- ARGV[10] = attributes hash（SHA-256 hex。legacy 形式の ticket との比較に使う）
+-- ARGV[11] = rating（rating マッチャー無効時は空文字）
+-- ARGV[12] = ticket hash の TTL millis（compact 形式では冪等判定にも使うため idempotency ttl 以上）
+-- ARGV[13] = idempotency ttl millis
+-- ARGV[14] = 区画 index へ登録するなら "1"
+-- ARGV[15] = party size（ロビー編成で 1 単位として扱う人数）
+-- ARGV[16] = 書き込む ticket 形式（"compact" | "legacy"）
+-- ARGV[17] = attributes の短い指紋（compact 形式の ticket との比較に使う）
+-- ARGV[18] = 前回の呼び出しが {"legacy", ticket_id} で返した ID（初回は空文字）
+--
+-- compact 形式の ticket hash:
+--   u=user_id, m=mode, s=status, c=created_at epoch millis, e=expires_at epoch millis, h=attributes 指紋,
+--   b=bucket（default は省略）, p=party_size（1 は省略）, r=rating（あれば）。成立後に x=match_id, t=team が付く
+--   冪等キーの対応は ticket ID そのもの（冪等キーから決まる）で表し、mm:idemp:* は作らない
+--
+-- 戻り値:
+-- 新規作成: {"created", ticket_id}
+-- 冪等再利用: {"existing", ticket_id, field1, value1, ...}（HGETALL の内容。形式は保存時のまま）
+-- 同一キーで attributes が異なる: {"conflict", ticket_id}
+-- 冪等キーが KEYS で宣言していない ticket を指す: {"legacy", ticket_id}（呼び出し側がその ticket key を渡して呼び直す）
+local compact = ARGV[16] == "compact"
+
+-- 既存 ticket を冪等再利用できるか調べる。hash が無ければ nil
+local function reuse(ticket_key, ticket_id)
+  local existing = redis.call("HGETALL", ticket_key)
+  if #existing == 0 then
+    return nil
+  end
+  local result = {"existing", ticket_id}
+  for i = 1, #existing, 2 do
+    -- hash 未保存の旧 ticket は比較できないため再利用を許す
+    if (existing[i] == "attributes_hash" and existing[i + 1] ~= ARGV[10])
+        or (existing[i] == "h" and existing[i + 1] ~= ARGV[17]) then
+      return {"conflict", ticket_id}
+    end
+    table.insert(result, existing[i])
+    table.insert(result, existing[i + 1])
+  end
+  return result
+end
+
+if compact then
+  local reused = reuse(KEYS[2], ARGV[1])
+  if reused then
+    return reused
+  end
+end
+-- compact 形式へ切り替える前に作られた冪等キーは期限まで読む。指す ticket の key は ID を読むまで分からないため、
+-- 宣言されていなければ ID を返して呼び直してもらう（冪等キーに当たった再送だけが 2 往復になる）
+local legacy_id = redis.call("GET", KEYS[1])
+if legacy_id then
+  if legacy_id ~= ARGV[18] then
+    return {"legacy", legacy_id}
+  end
+  local reused = reuse(KEYS[#KEYS], legacy_id)
+  if reused then
+    return reused
+  end
+end
+
+local ticket_key = KEYS[2]
+local ticket_id = ARGV[1]
+if compact then
+  local fields = {"u", ARGV[2], "m", ARGV[3], "s", "QUEUED", "c", ARGV[8], "e", ARGV[7], "h", ARGV[17]}
+  if ARGV[4] ~= "default" then
+    table.insert(fields, "b")
+    table.insert(fields, ARGV[4])
+  end
+  if ARGV[15] ~= "1" then
+    table.insert(fields, "p")
+    table.insert(fields, ARGV[15])
+  end
+  if ARGV[11] ~= "" then
+    table.insert(fields, "r")
+    table.insert(fields, ARGV[11])
+  end
+  redis.call("HSET", ticket_key, unpack(fields))
+else
+  redis.call("HSET", ticket_key,
+    "user_id", ARGV[2],
+    "mode", ARGV[3],
+    "status", "QUEUED",
+    "created_at", ARGV[5],
+    "expires_at", ARGV[6],
+    "expires_at_epoch_millis", ARGV[7],
+    "attributes", ARGV[9],
+    "attributes_hash", ARGV[10],
+    "bucket", ARGV[4],
+    "party_size", ARGV[15])
+  if ARGV[11] ~= "" then
+    redis.call("HSET", ticket_key, "rating", ARGV[11])
+  end
+end
+if ARGV[11] ~= "" then
+  redis.call("ZADD", KEYS[4], ARGV[11], ticket_id)
+end
+redis.call("PEXPIRE", ticket_key, ARGV[12])
+redis.call("ZADD", KEYS[3], ARGV[8], ticket_id)
+redis.call("ZADD", KEYS[5], ARGV[7], ticket_id)
+if ARGV[14] == "1" then
+  redis.call("SADD", KEYS[6], ARGV[4])
+end
+if not compact then
+  redis.call("SET", KEYS[1], ticket_id, "PX", ARGV[13])
+end
+return {"created", ticket_id}
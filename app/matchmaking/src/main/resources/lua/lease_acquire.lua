@@ -0,0 +1,20 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: worker が queue 区画の lease を取得、または自分が保持中なら期限を延長する
+-- なぜ: GET と SET/PEXPIRE の間に他 replica が割り込むと、1 区画を複数 replica が同時に担当してしまうため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:lease:{mode}:{bucket}
+-- ARGV[1] = worker id
+-- ARGV[2] = lease ttl millis
+--
+-- 戻り値: 保持できた場合 1、他 worker が保持中なら 0
+local owner = redis.call("GET", KEYS[1])
+if owner == ARGV[1] then
+  redis.call("PEXPIRE", KEYS[1], ARGV[2])
+  return 1
+end
+if owner then
+  return 0
+end
+redis.call("SET", KEYS[1], ARGV[1], "PX", ARGV[2])
+return 1
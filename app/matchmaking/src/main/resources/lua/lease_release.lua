@@ -0,0 +1,13 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: 自分が保持している queue 区画の lease だけを削除する
+-- なぜ: 期限切れ後に他 worker が取り直した lease を誤って消さないため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:lease:{mode}:{bucket}
+-- ARGV[1] = worker id
+--
+-- 戻り値: 削除した場合 1、保持者が異なる/存在しない場合 0
+if redis.call("GET", KEYS[1]) == ARGV[1] then
+  return redis.call("DEL", KEYS[1])
+end
+return 0
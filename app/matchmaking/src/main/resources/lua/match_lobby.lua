@@ -0,0 +1,130 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: queue 先頭から party を待ち時間順にチームへ詰め、チームがすべて埋まったロビーを MATCHED へ更新する
+-- なぜ: 複数 party の選定・チーム割り当て・状態更新を 1 回の EVALSHA で原子的に行い、party の二重割り当てを防ぐため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:queue:{mode}[:{bucket}]   (score = enqueue epoch millis)
+-- KEYS[2] = mm:rating:{mode}[:{bucket}]
+-- KEYS[3] = mm:outbox:matches  (match 成立イベントの outbox stream。relay が無い構成では渡さない)
+-- ARGV[1] = matched_at epoch millis
+-- ARGV[2] = team size
+-- ARGV[3] = team count
+-- ARGV[4] = max lobbies
+-- ARGV[5] = queue 先頭から走査する ticket 数の上限
+-- ARGV[6] = key 名前空間（standalone は "mm:"、cluster は "mm:{mode:bucket}:"）。ticket / match record の key はこの名前空間に置く
+-- ARGV[7..] = generated match_id (max lobbies 個)
+-- 成立ごとに mm:match:{match_id} = Hash(mode, matched_at, ticket_ids, user_ids, teams) も書き（team は 0 始まり）、
+-- outbox stream を渡したときは match_id/mode/matched_at を XADD する
+--
+-- 戻り値:
+-- {"matched", scanned, match_id, member_count, ticket_id, team, party_size, created_at, ...}
+--   scanned は状態を確かめた ticket 数。以降ロビーごとに match_id と member 数を置き、member ごとに 4 要素を並べる
+--   team は 0 始まり
+-- 成立 0 件時: {"no_match", scanned}
+local queue_key = KEYS[1]
+local rating_key = KEYS[2]
+local now_millis = tonumber(ARGV[1])
+local team_size = tonumber(ARGV[2])
+local team_count = tonumber(ARGV[3])
+local max_lobbies = tonumber(ARGV[4])
+local scan_limit = tonumber(ARGV[5])
+local ns = ARGV[6]
+local lobby_players = team_size * team_count
+
+-- match record / outbox の書き込みと ticket 状態の読み書きは matcher_prelude.lua（loadMatcherScript が前に連結する）
+local write_match_record, read_state, set_state = matcher_functions(ns, KEYS[3], ARGV[1])
+
+local open = {}
+local completed = {}
+
+local function new_lobby()
+  local rooms = {}
+  for t = 1, team_count do
+    rooms[t] = team_size
+  end
+  return {filled = 0, rooms = rooms, members = {}}
+end
+
+-- 空きが最も少なく party が収まるチームを選び（best-fit）、大きい party が入る余地を残す
+local function best_team(lobby, size)
+  local best = nil
+  for t = 1, team_count do
+    local room = lobby.rooms[t]
+    if room >= size and (best == nil or room < lobby.rooms[best]) then
+      best = t
+    end
+  end
+  return best
+end
+
+-- 古い party から順に、先に開いたロビーへ優先して詰める
+local function place(ticket_id, size, score)
+  for index, lobby in ipairs(open) do
+    local team = best_team(lobby, size)
+    if team ~= nil then
+      lobby.rooms[team] = lobby.rooms[team] - size
+      lobby.filled = lobby.filled + size
+      table.insert(lobby.members, {ticket_id, team - 1, size, score})
+      if lobby.filled == lobby_players then
+        table.insert(completed, lobby)
+        table.remove(open, index)
+      end
+      return
+    end
+  end
+  if #open + #completed < max_lobbies then
+    local lobby = new_lobby()
+    table.insert(open, lobby)
+    place(ticket_id, size, score)
+  end
+end
+
+local head = redis.call("ZRANGE", queue_key, 0, scan_limit - 1, "WITHSCORES")
+local scanned = 0
+for i = 1, #head, 2 do
+  if #completed >= max_lobbies then
+    break
+  end
+  scanned = scanned + 1
+  local ticket_id = head[i]
+  local status, expires_at_millis, size = read_state(ticket_id)
+  if status == "QUEUED" and expires_at_millis ~= nil and expires_at_millis > now_millis then
+    -- 設定変更でチームに収まらなくなった party は queue に残し、期限で reaper に失効させる
+    if size <= team_size then
+      place(ticket_id, size, head[i + 1])
+    end
+  else
+    if status == "QUEUED" then
+      set_state(ticket_id, "EXPIRED")
+    end
+    redis.call("ZREM", queue_key, ticket_id)
+    redis.call("ZREM", rating_key, ticket_id)
+  end
+end
+
+if #completed == 0 then
+  return {"no_match", scanned}
+end
+
+-- 埋まらなかったロビーの party は queue に残したまま次の呼び出しへ回す
+local result = {"matched", scanned}
+for k, lobby in ipairs(completed) do
+  local match_id = ARGV[6 + k]
+  table.insert(result, match_id)
+  table.insert(result, #lobby.members)
+  local ticket_ids = {}
+  local teams = {}
+  for _, member in ipairs(lobby.members) do
+    table.insert(ticket_ids, member[1])
+    table.insert(teams, member[2])
+    set_state(member[1], "MATCHED", match_id, member[2])
+    redis.call("ZREM", queue_key, member[1])
+    redis.call("ZREM", rating_key, member[1])
+    table.insert(result, member[1])
+    table.insert(result, member[2])
+    table.insert(result, member[3])
+    table.insert(result, member[4])
+  end
+  write_match_record(match_id, ticket_ids, teams)
+end
+return result
@@ -0,0 +1,89 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: queue から最大 N ペアを選び ticket 状態を MATCHED へ更新する原子処理を行う
+-- なぜ: 1 ペアごとに呼ぶと 1 tick がほぼ往復遅延で埋まるため、1 回の EVALSHA で複数成立させる
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:queue:{mode}
+-- KEYS[2] = mm:outbox:matches  (match 成立イベントの outbox stream。relay が無い構成では渡さない)
+-- ARGV[1] = matched_at epoch millis
+-- ARGV[2] = max pairs
+-- ARGV[3] = key 名前空間（standalone は "mm:"、cluster は "mm:{mode:bucket}:"）。ticket / match record の key はこの名前空間に置く
+-- ARGV[4..] = generated match_id (max pairs 個)
+-- 成立ごとに mm:match:{match_id} = Hash(mode, matched_at, ticket_ids, user_ids, teams) も書き（team は 0 始まり）、
+-- outbox stream を渡したときは match_id/mode/matched_at を XADD する
+--
+-- 戻り値:
+-- {"matched", scanned, ticket_id_1, ticket_id_2, match_id, created_at_1, created_at_2, ...}
+--   scanned は queue から取り出して状態を確かめた ticket 数。以降ペアごとに 5 要素を並べる
+--   created_at は queue score(enqueue 時刻 epoch millis)
+-- 成立 0 件時: {"no_match", scanned}
+local queue_key = KEYS[1]
+local now_millis = tonumber(ARGV[1])
+local max_pairs = tonumber(ARGV[2])
+local ns = ARGV[3]
+
+-- match record / outbox の書き込みと ticket 状態の読み書きは matcher_prelude.lua（loadMatcherScript が前に連結する）
+local write_match_record, read_state, set_state = matcher_functions(ns, KEYS[2], ARGV[1])
+
+-- 1 ペアあたり 18 件までの無効 ticket 読み飛ばしを許容する（1 ペアだけなら 20 件まで読む）
+local MAX_SKIPS_PER_PAIR = 18
+local wanted = max_pairs * 2
+-- 読み飛ばしの許容量はペア数に比例させ、無効 ticket が散らばっていても N ペア分を探し切れるようにする
+local max_scan = wanted + max_pairs * MAX_SKIPS_PER_PAIR
+local scanned = 0
+local valid = {}
+local scores = {}
+
+while #valid < wanted and scanned < max_scan do
+  local count = math.min(wanted - #valid, max_scan - scanned)
+  local popped = redis.call("ZPOPMIN", queue_key, count)
+  if popped == nil or #popped == 0 then
+    break
+  end
+
+  for i = 1, #popped, 2 do
+    scanned = scanned + 1
+    local ticket_id = popped[i]
+    local status, expires_at_millis = read_state(ticket_id)
+
+    if status == "QUEUED" and expires_at_millis ~= nil and expires_at_millis > now_millis then
+      table.insert(valid, ticket_id)
+      table.insert(scores, popped[i + 1])
+    elseif status == "QUEUED" then
+      -- 期限切れや expires_at_epoch_millis のない旧 ticket は queue から外すだけでなく hash も終端状態にする
+      set_state(ticket_id, "EXPIRED")
+    end
+  end
+
+  if #popped < count * 2 then
+    break
+  end
+end
+
+-- ペアにならなかった端数は元の score で queue へ戻し、公平性を保つ
+if #valid % 2 == 1 then
+  redis.call("ZADD", queue_key, scores[#valid], valid[#valid])
+  table.remove(valid)
+  table.remove(scores)
+end
+
+if #valid < 2 then
+  return {"no_match", scanned}
+end
+
+local result = {"matched", scanned}
+for p = 1, #valid / 2 do
+  local first = p * 2 - 1
+  local second = p * 2
+  local match_id = ARGV[3 + p]
+  set_state(valid[first], "MATCHED", match_id)
+  set_state(valid[second], "MATCHED", match_id)
+  write_match_record(match_id, {valid[first], valid[second]}, {0, 1})
+  table.insert(result, valid[first])
+  table.insert(result, valid[second])
+  table.insert(result, match_id)
+  table.insert(result, scores[first])
+  table.insert(result, scores[second])
+end
+
+return result
@@ -0,0 +1,146 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: 待ち時間の長い ticket から順に、許容幅内で rating が最も近い相手と組ませて MATCHED へ更新する
+-- なぜ: FIFO の先頭 2 件ではなく実力の近い相手と組ませつつ、待ち時間に応じて許容幅を広げ取り残しを防ぐため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:queue:{mode}[:{bucket}]   (score = enqueue epoch millis)
+-- KEYS[2] = mm:rating:{mode}[:{bucket}]  (score = rating)
+-- KEYS[3] = mm:outbox:matches  (match 成立イベントの outbox stream。relay が無い構成では渡さない)
+-- ARGV[1] = matched_at epoch millis
+-- ARGV[2] = max pairs
+-- ARGV[3] = base window
+-- ARGV[4] = widen per second
+-- ARGV[5] = max window
+-- ARGV[6] = candidates per side
+-- ARGV[7] = key 名前空間（standalone は "mm:"、cluster は "mm:{mode:bucket}:"）。ticket / match record の key はこの名前空間に置く
+-- ARGV[8] = default rating（rating index に無い起点へ与える rating）
+-- ARGV[9..] = generated match_id (max pairs 個)
+-- 成立ごとに mm:match:{match_id} = Hash(mode, matched_at, ticket_ids, user_ids, teams) も書き（team は 0 始まり）、
+-- outbox stream を渡したときは match_id/mode/matched_at を XADD する
+--
+-- 戻り値:
+-- {"matched", scanned, ticket_id_1, ticket_id_2, match_id, created_at_1, created_at_2, ...}
+--   scanned は状態を確かめた ticket 数（起点と相手候補の合計）。以降は match_many.lua と同じ形
+-- 成立 0 件時: {"no_match", scanned}
+local queue_key = KEYS[1]
+local rating_key = KEYS[2]
+local now_millis = tonumber(ARGV[1])
+local max_pairs = tonumber(ARGV[2])
+local base_window = tonumber(ARGV[3])
+local widen_per_second = tonumber(ARGV[4])
+local max_window = tonumber(ARGV[5])
+local candidates = tonumber(ARGV[6])
+local ns = ARGV[7]
+local default_rating = tonumber(ARGV[8])
+
+-- match record / outbox の書き込みと ticket 状態の読み書きは matcher_prelude.lua（loadMatcherScript が前に連結する）
+local write_match_record, read_state, set_state = matcher_functions(ns, KEYS[3], ARGV[1])
+
+-- 待ち時間の長い順に起点とする ticket 数。1 ペアあたり数件の不成立を許容する
+local max_anchors = max_pairs * 4 + 16
+local taken = {}
+local result = {"matched", 0}
+local formed = 0
+local scanned = 0
+
+local function is_valid(ticket_id)
+  scanned = scanned + 1
+  local status, expires_at_millis = read_state(ticket_id)
+  if status ~= "QUEUED" then
+    return false
+  end
+  if expires_at_millis ~= nil and expires_at_millis > now_millis then
+    return true
+  end
+  -- 期限切れや expires_at_epoch_millis のない旧 ticket は queue から外すだけでなく hash も終端状態にする
+  set_state(ticket_id, "EXPIRED")
+  return false
+end
+
+local function drop(ticket_id)
+  redis.call("ZREM", queue_key, ticket_id)
+  redis.call("ZREM", rating_key, ticket_id)
+  taken[ticket_id] = true
+end
+
+-- lower は rating 降順、upper は昇順で返るため、2 本を距離の近い順にマージしながら最初の有効候補を採る
+local function nearest_partner(anchor, rating, window)
+  local lower = redis.call("ZREVRANGEBYSCORE", rating_key, rating, rating - window,
+    "WITHSCORES", "LIMIT", 0, candidates + 1)
+  local upper = redis.call("ZRANGEBYSCORE", rating_key, rating, rating + window,
+    "WITHSCORES", "LIMIT", 0, candidates + 1)
+  local li = 1
+  local ui = 1
+  while li <= #lower or ui <= #upper do
+    local id
+    local use_lower
+    if ui > #upper then
+      use_lower = true
+    elseif li > #lower then
+      use_lower = false
+    else
+      use_lower = (rating - tonumber(lower[li + 1])) <= (tonumber(upper[ui + 1]) - rating)
+    end
+    if use_lower then
+      id = lower[li]
+      li = li + 2
+    else
+      id = upper[ui]
+      ui = ui + 2
+    end
+    if id ~= anchor and not taken[id] then
+      if is_valid(id) then
+        return id
+      end
+      drop(id)
+    end
+  end
+  return nil
+end
+
+local anchors = redis.call("ZRANGE", queue_key, 0, max_anchors - 1, "WITHSCORES")
+for i = 1, #anchors, 2 do
+  if formed >= max_pairs then
+    break
+  end
+  local anchor = anchors[i]
+  if not taken[anchor] then
+    if not is_valid(anchor) then
+      drop(anchor)
+    else
+      local rating = tonumber(redis.call("ZSCORE", rating_key, anchor))
+      -- rating index に無い ticket（マッチャー切替前の投入分など）は Join 時の欠損と同じ default rating で登録する
+      -- 残したままだと誰とも組めずに queue 先頭へ居座り、毎 tick の起点枠（max_anchors）を使い潰すため
+      if rating == nil then
+        rating = default_rating
+        redis.call("ZADD", rating_key, rating, anchor)
+      end
+      local waited_seconds = math.max(0, now_millis - tonumber(anchors[i + 1])) / 1000
+      local window = math.min(base_window + widen_per_second * waited_seconds, max_window)
+      local partner = nearest_partner(anchor, rating, window)
+      if partner ~= nil then
+        formed = formed + 1
+        local match_id = ARGV[8 + formed]
+        local partner_created_at = redis.call("ZSCORE", queue_key, partner)
+        set_state(anchor, "MATCHED", match_id)
+        set_state(partner, "MATCHED", match_id)
+        write_match_record(match_id, {anchor, partner}, {0, 1})
+        redis.call("ZREM", queue_key, anchor, partner)
+        redis.call("ZREM", rating_key, anchor, partner)
+        taken[anchor] = true
+        taken[partner] = true
+        table.insert(result, anchor)
+        table.insert(result, partner)
+        table.insert(result, match_id)
+        table.insert(result, anchors[i + 1])
+        table.insert(result, partner_created_at or false)
+      end
+    end
+  end
+end
+
+if formed == 0 then
+  return {"no_match", scanned}
+end
+result[2] = scanned
+return result
@@ -0,0 +1,68 @@
+-- どこで: Matchmaking Redis Lua スクリプト（matcher 共通部）
+-- 何を: match record と outbox の書き込み、ticket 状態の読み書きを match_many/match_rating/match_lobby で共有する
+-- なぜ: 同じ処理を matcher ごとに複製すると、ticket 形式や outbox の変更のたびに全スクリプトを揃えて直す必要があるため
+--
+-- RedisLuaMatchmakingMatchRepository.loadMatcherScript が各 matcher の本文の前に連結して 1 つのスクリプトにする。
+-- 本文は matcher_functions(ns, outbox_key, matched_at) で関数を受け取る
+--   ns = key 名前空間（standalone は "mm:"、cluster は "mm:{mode:bucket}:"）。ticket / match record の key はこの名前空間に置く
+--   outbox_key = match 成立イベントの outbox stream（KEYS で宣言したもの）。relay が無い構成では nil で、XADD しない
+--   matched_at = 成立時刻 epoch millis（ARGV の文字列のまま）
+local function matcher_functions(ns, outbox_key, matched_at)
+  -- match record（mm:match:{match_id}）を ticket 更新と同じスクリプト内で書き、状態参照を 1 往復で済ませる
+  -- 参加 ticket の残り TTL の最大値を引き継ぎ、TTL のない旧 ticket だけの場合は既定の保持期間を使う
+  -- 成立イベントも同じ呼び出しで outbox へ積み、NATS への publish は relay に任せて取りこぼさないようにする
+  local MATCH_RECORD_DEFAULT_TTL_MILLIS = 600000
+  -- stream を縮めるのは relay の ack 後の XTRIM だけ。ここで MAXLEN を付けると relay 停止中に未 publish のイベントが消える
+  -- relay を置かない構成（matchmaking.outbox.enabled / nats.enabled が false）では誰も縮めないため、積まない
+  local function write_match_record(match_id, ticket_ids, teams)
+    local user_ids = {}
+    local mode = ""
+    local ttl = 0
+    for i, ticket_id in ipairs(ticket_ids) do
+      local ticket_key = ns .. "ticket:" .. ticket_id
+      local fields = redis.call("HMGET", ticket_key, "u", "m", "user_id", "mode")
+      user_ids[i] = fields[1] or fields[3] or ""
+      mode = fields[2] or fields[4] or mode
+      ttl = math.max(ttl, redis.call("PTTL", ticket_key))
+    end
+    local record_key = ns .. "match:" .. match_id
+    redis.call("HSET", record_key, "mode", mode, "matched_at", matched_at,
+      "ticket_ids", table.concat(ticket_ids, ","), "user_ids", table.concat(user_ids, ","),
+      "teams", table.concat(teams, ","))
+    if ttl <= 0 then
+      ttl = MATCH_RECORD_DEFAULT_TTL_MILLIS
+    end
+    redis.call("PEXPIRE", record_key, ttl)
+    if outbox_key then
+      redis.call("XADD", outbox_key, "*", "match_id", match_id, "mode", mode, "matched_at", matched_at)
+    end
+  end
+
+  -- ticket hash は compact 形式（s/e/p/x/t）と移行前の旧形式（status/expires_at_epoch_millis/party_size/match_id/team）
+  -- が混在しうる。読んだときの形式を覚えておき、書き込みは同じ形式の field へ行う
+  local compact_tickets = {}
+  -- status, expires_at epoch millis, party size を返す（1v1 の matcher は party size を使わない）
+  local function read_state(ticket_id)
+    local f = redis.call("HMGET", ns .. "ticket:" .. ticket_id,
+      "s", "e", "p", "status", "expires_at_epoch_millis", "party_size")
+    compact_tickets[ticket_id] = f[1] ~= false
+    -- compact 形式は party_size 1 を省略して保存する
+    return f[1] or f[4], tonumber(f[2] or f[5]), tonumber(f[3] or f[6]) or 1
+  end
+  -- match_id を渡すと MATCHED の付帯情報も書く。team はロビー編成のときだけ渡す
+  local function set_state(ticket_id, status, match_id, team)
+    local compact = compact_tickets[ticket_id]
+    local ticket_key = ns .. "ticket:" .. ticket_id
+    if match_id == nil then
+      redis.call("HSET", ticket_key, compact and "s" or "status", status)
+    elseif team == nil then
+      redis.call("HSET", ticket_key, compact and "s" or "status", status,
+        compact and "x" or "match_id", match_id)
+    else
+      redis.call("HSET", ticket_key, compact and "s" or "status", status,
+        compact and "x" or "match_id", match_id, compact and "t" or "team", team)
+    end
+  end
+
+  return write_match_record, read_state, set_state
+end
@@ -0,0 +1,46 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: publish 済みの outbox エントリを XACK し、未確認分より前を XTRIM で捨てる
+-- なぜ: ack と trim を別往復にすると、その間に配信された未確認エントリまで消す判断を誤るため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:outbox:matches
+-- ARGV[1] = consumer group
+-- ARGV[2..] = JetStream の ack を受け取ったエントリ ID
+--
+-- 戻り値: {XACK した件数, XTRIM で削除した件数}
+local stream_key = KEYS[1]
+local group = ARGV[1]
+
+local acked = 0
+if #ARGV > 1 then
+  acked = redis.call("XACK", stream_key, group, unpack(ARGV, 2))
+end
+
+-- 未確認（配信済みで未 ack）が残っていれば最古の未確認エントリまで、なければ配信済みの末尾までを残す
+local floor = nil
+local pending = redis.call("XPENDING", stream_key, group)
+if pending[1] > 0 then
+  floor = pending[2]
+else
+  local groups = redis.call("XINFO", "GROUPS", stream_key)
+  for _, info in ipairs(groups) do
+    local name = nil
+    local last_delivered = nil
+    for i = 1, #info, 2 do
+      if info[i] == "name" then
+        name = info[i + 1]
+      elseif info[i] == "last-delivered-id" then
+        last_delivered = info[i + 1]
+      end
+    end
+    if name == group then
+      floor = last_delivered
+    end
+  end
+end
+
+local trimmed = 0
+if floor ~= nil and floor ~= "0-0" then
+  trimmed = redis.call("XTRIM", stream_key, "MINID", floor)
+end
+return {acked, trimmed}
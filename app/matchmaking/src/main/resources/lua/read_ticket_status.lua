@@ -0,0 +1,32 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: ticket hash と、呼び出し側が match key を宣言していれば参照先の match record をまとめて読み出す
+-- なぜ: 状態参照を EVALSHA 1 回に収め、match record を ticket と同じ時点の内容で返すため（書き込みはしない）
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:ticket:{ticketId}
+-- KEYS[2] = mm:match:{matchId}（match_id が分かっているときだけ渡す。ticket と同じ名前空間に置かれる）
+-- ARGV[1] = KEYS[2] の match_id（KEYS[2] を渡さないときは空文字）
+-- ticket hash は compact 形式（match_id は "x"）と旧形式のどちらもそのまま返し、解釈は呼び出し側で行う
+--
+-- 戻り値:
+-- {ticket のフィールド数, field, value, ..., match record の field, value, ...}
+--   ticket が存在しない場合は {0}。match_id がない、ARGV[1] と異なる、または match record が失効済みなら ticket 分だけを返す
+--   呼び出し側は ticket の match_id を見て、ARGV[1] と異なれば KEYS[2] を宣言して呼び直す
+local ticket = redis.call("HGETALL", KEYS[1])
+local result = {#ticket / 2}
+local match_id = nil
+for i = 1, #ticket, 2 do
+  table.insert(result, ticket[i])
+  table.insert(result, ticket[i + 1])
+  if ticket[i] == "x" or ticket[i] == "match_id" then
+    match_id = ticket[i + 1]
+  end
+end
+
+if match_id ~= nil and match_id ~= "" and match_id == ARGV[1] then
+  local record = redis.call("HGETALL", KEYS[2])
+  for i = 1, #record do
+    table.insert(result, record[i])
+  end
+end
+return result
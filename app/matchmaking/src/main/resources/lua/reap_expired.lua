@@ -0,0 +1,39 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: 呼び出し側が expiry index から読んだ期限到来 ticket のうち QUEUED のものを EXPIRED にして queue/rating から外す
+-- なぜ: 参照時の失効書き込みをやめ、queue に失効済み ticket を残さず matcher の読み飛ばしをなくすため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:expiry:{mode}[:{bucket}]（score = expires_at epoch millis）
+-- KEYS[2] = mm:queue:{mode}[:{bucket}]
+-- KEYS[3] = mm:rating:{mode}[:{bucket}]
+-- KEYS[3 + i] = mm:ticket:{ARGV[1 + i]}（i = 1..N。ID から key を組み立てず、呼び出し側が宣言する）
+-- ARGV[1] = now epoch millis
+-- ARGV[1 + i] = 期限到来として読んだ ticket ID
+--
+-- ticket hash は compact 形式（status は "s"）と旧形式（"status"）のどちらも扱う
+--
+-- 戻り値: {index から外した件数, EXPIRED へ遷移させた件数}
+local now = tonumber(ARGV[1])
+local removed = {}
+local expired = 0
+for i = 2, #ARGV do
+  local ticket_id = ARGV[i]
+  local ticket_key = KEYS[i + 2]
+  -- 読んでから呼ぶまでに別の reaper が外したものは数えない
+  local score = redis.call("ZSCORE", KEYS[1], ticket_id)
+  if score and tonumber(score) <= now then
+    -- MATCHED/CANCELLED 済みや hash が TTL で消えたものは index から外すだけにする
+    local fields = redis.call("HMGET", ticket_key, "s", "status")
+    if (fields[1] or fields[2]) == "QUEUED" then
+      redis.call("HSET", ticket_key, fields[1] and "s" or "status", "EXPIRED")
+      expired = expired + 1
+    end
+    redis.call("ZREM", KEYS[2], ticket_id)
+    redis.call("ZREM", KEYS[3], ticket_id)
+    table.insert(removed, ticket_id)
+  end
+end
+if #removed > 0 then
+  redis.call("ZREM", KEYS[1], unpack(removed))
+end
+return {#removed, expired}
@@ -0,0 +1,20 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: queue 区画が空のときだけ区画 index から外し、残った expiry index も消す
+-- なぜ: ZCARD と SREM の間に Join が割り込むと、ticket があるのに走査されない区画が生まれるため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:queue:{mode}:{bucket}
+-- KEYS[2] = mm:expiry:{mode}:{bucket}
+-- KEYS[3] = mm:buckets:{mode}（standalone のみ。cluster では別 slot のため呼び出し側が SREM する）
+-- ARGV[1] = bucket id
+--
+-- 戻り値: 空で区画 index から外した（cluster では外してよい）場合 1、queue が空でない場合 0
+if redis.call("ZCARD", KEYS[1]) > 0 then
+  return 0
+end
+-- Join は queue と expiry を同時に ZADD するため、queue が空なら残りは処理済み ticket の名残だけ
+redis.call("DEL", KEYS[2])
+if KEYS[3] == nil then
+  return 1
+end
+return redis.call("SREM", KEYS[3], ARGV[1])
@@ -0,0 +1,17 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: replica が数えた待ち時間ヒストグラムの件数を時間窓の hash へ加算し、窓の期限を付け直す
+-- なぜ: ビンごとの HINCRBY と PEXPIRE を 1 往復にまとめ、加算途中で期限の無い key を残さないため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:wait:{mode}[:{bucket}]:{window}（cluster は mm:{mode:bucket}:wait:{window}）
+-- ARGV[1] = ttl millis
+-- ARGV[2..] = bin, count の組
+--
+-- 戻り値: {加算したビン数}
+local added = 0
+for i = 2, #ARGV, 2 do
+  redis.call("HINCRBY", KEYS[1], ARGV[i], ARGV[i + 1])
+  added = added + 1
+end
+redis.call("PEXPIRE", KEYS[1], ARGV[1])
+return {added}
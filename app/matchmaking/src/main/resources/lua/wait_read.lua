@@ -0,0 +1,24 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: 区画の直近の時間窓に集めた待ち時間ヒストグラムを合算して返す
+-- なぜ: 窓ごとの HGETALL を 1 往復にまとめ、合算済みの固定長配列だけを返して転送量を抑えるため
+--
+-- 想定 I/F:
+-- KEYS[1..n] = 同じ区画の時間窓の key（cluster では同じ hash tag を持つ）
+-- ARGV[1] = ビン数
+--
+-- 戻り値: ビン 0 から順の件数（長さ ARGV[1]）
+local bins = tonumber(ARGV[1])
+local counts = {}
+for i = 1, bins do
+  counts[i] = 0
+end
+for _, key in ipairs(KEYS) do
+  local fields = redis.call("HGETALL", key)
+  for i = 1, #fields, 2 do
+    local bin = tonumber(fields[i])
+    if bin and bin >= 0 and bin < bins then
+      counts[bin + 1] = counts[bin + 1] + tonumber(fields[i + 1])
+    end
+  end
+end
+return counts
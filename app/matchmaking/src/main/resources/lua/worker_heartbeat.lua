@@ -0,0 +1,16 @@
+-- どこで: Matchmaking Redis Lua スクリプト
+-- 何を: worker の生存時刻を登録し、期限切れの worker を除いた生存数を返す
+-- なぜ: 各 replica が担当区画数の上限（区画数 / 生存数）を揃えて計算し、負荷を均等に分けるため
+--
+-- 想定 I/F:
+-- KEYS[1] = mm:workers
+-- ARGV[1] = worker id
+-- ARGV[2] = lease ttl millis
+--
+-- 戻り値: 生存中の worker 数
+-- pod 間の時計ずれで生存判定が揺れないよう、Redis サーバ時刻を基準にする
+local time = redis.call("TIME")
+local now_millis = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+redis.call("ZADD", KEYS[1], now_millis, ARGV[1])
+redis.call("ZREMRANGEBYSCORE", KEYS[1], "-inf", now_millis - tonumber(ARGV[2]))
+return redis.call("ZCARD", KEYS[1])
@@ -0,0 +1,152 @@
+/*
+ * どこで: Matchmaking テスト基盤
+ * 何を: Testcontainers(Redis) と StringRedisTemplate / RedisScriptExecutor の共通生成、ベンチマークの投入と消化を提供する
+ * なぜ: Lua スクリプトを実 Redis で評価するテスト/ベンチマークの重複設定を削減するため
+ */
+package com.example.matchmaking;
+
+import com.example.matchmaking.config.MatchmakingRedisProperties;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.RedisScriptExecutor;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+public abstract class AbstractRedisContainerTest {
+
+  private static final int REDIS_PORT = 6379;
+  // 1 回の pipeline で送る ticket 数。100 万件を 1 本で送るとクライアント側のバッファが膨らむ
+  private static final int SEED_CHUNK = 10_000;
+  private static final Duration SEED_TICKET_TTL = Duration.ofMinutes(10);
+
+  /** 大量に回すベンチマークの出力が遅いスクリプトの WARN で埋まらないよう、閾値を 1 分に取る。 */
+  protected static final MatchmakingRedisProperties REDIS_PROPERTIES =
+      new MatchmakingRedisProperties(
+          Duration.ofMinutes(1), null, MatchmakingRedisProperties.TicketEncoding.COMPACT);
+
+  // JVM 内のテスト全体で共通の Redis コンテナを使い回し、起動コストを抑える
+  protected static final GenericContainer<?> REDIS =
+      new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(REDIS_PORT);
+
+  static {
+    REDIS.start();
+  }
+
+  /** 役割: コンテナへ接続する StringRedisTemplate を生成する。 動作: 呼び出しごとに新しい接続ファクトリを初期化する。 前提: なし。 */
+  protected static StringRedisTemplate newRedisTemplate() {
+    final LettuceConnectionFactory connectionFactory =
+        new LettuceConnectionFactory(
+            new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(REDIS_PORT)));
+    connectionFactory.afterPropertiesSet();
+    connectionFactory.start();
+    final StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+    template.afterPropertiesSet();
+    return template;
+  }
+
+  /** 役割: 計測を捨てる Lua 実行器を生成する。 動作: 使い捨ての MeterRegistry に記録する。 前提: なし。 */
+  protected static RedisScriptExecutor newScriptExecutor(StringRedisTemplate template) {
+    return newScriptExecutor(template, new MatchmakingMetrics(new SimpleMeterRegistry()));
+  }
+
+  /** 役割: Lua 実行器を生成する。 動作: {@link #REDIS_PROPERTIES} の閾値を使う。 前提: metrics はスクリプト別の計測を読みたい場合に渡す。 */
+  protected static RedisScriptExecutor newScriptExecutor(
+      StringRedisTemplate template, MatchmakingMetrics metrics) {
+    return new RedisScriptExecutor(template, metrics, REDIS_PROPERTIES);
+  }
+
+  /** 役割: テスト間で状態を持ち越さないよう DB を空にする。 動作: FLUSHDB を送る。 前提: コンテナは JVM 内で共有している。 */
+  protected static void flushRedis(StringRedisTemplate template) {
+    template.execute(
+        (RedisCallback<Object>)
+            connection -> {
+              connection.serverCommands().flushDb();
+              return null;
+            });
+  }
+
+  /**
+   * 役割: ベンチマーク用に ticket hash と queue を Join を通さず直接積む。 動作: keys の命名で旧形式の field を書き、rating があれば
+   * rating index にも積む。{@link #SEED_CHUNK} 件ずつ pipeline で送り、払い出した ticket ID を tickets と同じ順に返す。
+   * 前提: 事前に {@link #flushRedis} で空にしておくこと。
+   */
+  protected static List<String> seedQueue(
+      StringRedisTemplate template,
+      MatchmakingKeyLayout keys,
+      QueueBucket bucket,
+      List<SeedTicket> tickets) {
+    final String expiresAtMillis =
+        String.valueOf(Instant.now().plus(SEED_TICKET_TTL).toEpochMilli());
+    final List<String> ticketIds = new ArrayList<>(tickets.size());
+    for (int offset = 0; offset < tickets.size(); offset += SEED_CHUNK) {
+      final List<SeedTicket> chunk =
+          tickets.subList(offset, Math.min(tickets.size(), offset + SEED_CHUNK));
+      template.executePipelined(
+          (RedisCallback<Object>)
+              connection -> {
+                final StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (SeedTicket ticket : chunk) {
+                  final String ticketId = keys.newTicketId(bucket);
+                  final Map<String, String> fields = new HashMap<>();
+                  fields.put("user_id", ticket.userId());
+                  fields.put("mode", bucket.mode().value());
+                  fields.put("status", "QUEUED");
+                  fields.put(
+                      "created_at", Instant.ofEpochMilli(ticket.enqueuedAtMillis()).toString());
+                  fields.put("expires_at_epoch_millis", expiresAtMillis);
+                  if (ticket.partySize() > 1) {
+                    fields.put("party_size", String.valueOf(ticket.partySize()));
+                  }
+                  if (ticket.rating() != null) {
+                    fields.put("rating", String.valueOf(ticket.rating()));
+                    stringConnection.zAdd(keys.ratingKey(bucket), ticket.rating(), ticketId);
+                  }
+                  stringConnection.hMSet(keys.ticketKey(ticketId), fields);
+                  stringConnection.zAdd(keys.queueKey(bucket), ticket.enqueuedAtMillis(), ticketId);
+                  ticketIds.add(ticketId);
+                }
+                return null;
+              });
+    }
+    return ticketIds;
+  }
+
+  /**
+   * 役割: matcher を queue が尽きるまで回し、成立件数と毎秒の件数を測る。 動作: call が空を返すまで繰り返し、成立した要素ごとに each を呼ぶ
+   * （each の時間も計測に含む）。 前提: call は 1 回の呼び出しで成立した分だけを返す。
+   */
+  protected static <T> Drained drain(Supplier<List<T>> call, Consumer<? super T> each) {
+    final long start = System.nanoTime();
+    int count = 0;
+    while (true) {
+      final List<T> batch = call.get();
+      if (batch.isEmpty()) {
+        break;
+      }
+      batch.forEach(each);
+      count += batch.size();
+    }
+    return new Drained(count, count / ((System.nanoTime() - start) / 1e9));
+  }
+
+  /** {@link #seedQueue} に渡す 1 ticket。rating を使わない場合は null、solo の partySize は 1。 */
+  public record SeedTicket(String userId, long enqueuedAtMillis, Double rating, int partySize) {}
+
+  /** {@link #drain} の結果。 */
+  public record Drained(int count, double perSecond) {}
+}
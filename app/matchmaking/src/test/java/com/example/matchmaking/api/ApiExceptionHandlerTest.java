@@ -44,6 +44,15 @@ class ApiExceptionHandlerTest {
     assertThat(response.getBody().code()).isEqualTo("MATCHMAKING_TICKET_FORBIDDEN");
   }
 
+  @Test
+  void handleIdempotencyConflictReturns409() {
+    final var response =
+        handler.handleIdempotencyConflict(new IdempotencyConflictException("conflict"));
+
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+    assertThat(response.getBody().code()).isEqualTo("MATCHMAKING_IDEMPOTENCY_CONFLICT");
+  }
+
   @Test
   void handleRuntimeReturns500() {
     final var response = handler.handleRuntime(new RuntimeException("oops"));
@@ -2,10 +2,12 @@ package com.example.matchmaking.api;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.example.matchmaking.api.request.JoinMatchmakingTicketRequest;
@@ -13,7 +15,10 @@ import com.example.matchmaking.api.response.CancelMatchmakingTicketResponse;
 import com.example.matchmaking.api.response.JoinMatchmakingTicketResponse;
 import com.example.matchmaking.api.response.MatchedTicketPayload;
 import com.example.matchmaking.api.response.TicketStatusResponse;
+import com.example.matchmaking.api.response.WaitTimeEstimateResponse;
 import com.example.matchmaking.service.MatchmakingService;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -23,6 +28,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @WebMvcTest(MatchmakingController.class)
 @AutoConfigureMockMvc(addFilters = false)
@@ -38,7 +44,11 @@ class MatchmakingControllerTest {
   void joinTicketReturns200() throws Exception {
     when(matchmakingService.join(any(), any(), any(JoinMatchmakingTicketRequest.class)))
         .thenReturn(
-            new JoinMatchmakingTicketResponse("ticket-1", "QUEUED", "2026-02-24T12:01:00Z"));
+            new JoinMatchmakingTicketResponse(
+                "ticket-1",
+                "QUEUED",
+                "2026-02-24T12:01:00Z",
+                new WaitTimeEstimateResponse("casual", "default", 12, 8000L, 20000L, 2000)));
 
     mockMvc
         .perform(
@@ -51,7 +61,23 @@ class MatchmakingControllerTest {
                     """))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.ticket_id").value("ticket-1"))
-        .andExpect(jsonPath("$.status").value("QUEUED"));
+        .andExpect(jsonPath("$.status").value("QUEUED"))
+        .andExpect(jsonPath("$.estimate.p50_ms").value(8000))
+        .andExpect(jsonPath("$.estimate.poll_interval_ms").value(2000));
+  }
+
+  @Test
+  void estimateWaitReturnsBucketEstimate() throws Exception {
+    when(matchmakingService.estimateWait("rank", "apac"))
+        .thenReturn(new WaitTimeEstimateResponse("rank", "apac", 0, null, null, 1000));
+
+    mockMvc
+        .perform(get("/v1/matchmaking/queues/rank/estimate").param("bucket", "apac"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.bucket").value("apac"))
+        .andExpect(jsonPath("$.sample_count").value(0))
+        .andExpect(jsonPath("$.p50_ms").doesNotExist())
+        .andExpect(jsonPath("$.poll_interval_ms").value(1000));
   }
 
   @Test
@@ -71,6 +97,34 @@ class MatchmakingControllerTest {
         .andExpect(jsonPath("$.matched.match_id").value("match-1"));
   }
 
+  @Test
+  void watchTicketStatusRespondsAsynchronously() throws Exception {
+    final CompletableFuture<TicketStatusResponse> pending = new CompletableFuture<>();
+    when(matchmakingService.watchTicketStatus("ticket-1", "user-1", Duration.ofSeconds(20)))
+        .thenReturn(pending);
+
+    final MvcResult result =
+        mockMvc
+            .perform(
+                get("/v1/matchmaking/tickets/ticket-1/watch")
+                    .header("X-User-Id", "user-1")
+                    .param("timeout_seconds", "20"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    pending.complete(
+        new TicketStatusResponse(
+            "ticket-1",
+            "MATCHED",
+            "2026-02-24T12:01:00Z",
+            new MatchedTicketPayload("match-1", java.util.List.of(), java.util.Map.of())));
+
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.status").value("MATCHED"))
+        .andExpect(jsonPath("$.matched.match_id").value("match-1"));
+  }
+
   @Test
   void cancelTicketReturns200() throws Exception {
     when(matchmakingService.cancelTicket("ticket-1", "user-1"))
@@ -0,0 +1,40 @@
+/*
+ * どこで: Matchmaking ベンチマーク
+ * 何を: ベンチマーク結果を「シナリオ名 key=value ...」の 1 行で出力する
+ * なぜ: ベンチマークごとに書式がばらつくと、実行結果を並べて比べたり集計したりしにくいため
+ */
+package com.example.matchmaking.benchmark;
+
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * 役割: 1 シナリオ分の結果を組み立てて出力する。 動作: with で追加した順に並べ、小数は 2 桁に丸める。 前提: key は snake_case で
+ * 単位を含める（例: matches_per_sec）。
+ */
+final class BenchmarkReport {
+
+  private final StringJoiner line;
+
+  private BenchmarkReport(String scenario) {
+    this.line = new StringJoiner(" ", scenario + ": ", "");
+  }
+
+  static BenchmarkReport of(String scenario) {
+    return new BenchmarkReport(scenario);
+  }
+
+  BenchmarkReport with(String key, Object value) {
+    line.add(
+        key
+            + "="
+            + (value instanceof Double || value instanceof Float
+                ? String.format(Locale.ROOT, "%.2f", ((Number) value).doubleValue())
+                : value));
+    return this;
+  }
+
+  void print() {
+    System.out.println(line);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * どこで: Matchmaking ベンチマーク
+ * 何を: ロビー編成（match_lobby.lua）の lobbies/sec をロビー形状と party 構成の組み合わせごとに実 Redis で計測する
+ * なぜ: 大きい party が増えたときの詰め込み走査のコストと、ロビーが欠けずに埋まることを数値で確認するため
+ */
+package com.example.matchmaking.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.matchmaking.AbstractRedisContainerTest;
+import com.example.matchmaking.model.LobbyShape;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.RedisLobbyMatchmakingRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Tag("benchmark")
+class LobbyFormationBenchmarkTest extends AbstractRedisContainerTest {
+
+  private static final MatchMode MODE = MatchMode.RANK;
+  private static final QueueBucket BUCKET = QueueBucket.defaultOf(MODE);
+  private static final LobbyShape[] SHAPES = {
+    new LobbyShape(2, 2), new LobbyShape(4, 2), new LobbyShape(5, 2)
+  };
+  // solo 率。残りは 2〜teamSize 人の party を一様に混ぜる
+  private static final Map<String, Double> PARTY_MIXES =
+      Map.of("solo", 1.0, "mixed", 0.6, "premade", 0.2);
+  private static final int QUEUE_PLAYERS = 50_000;
+  private static final int MAX_LOBBIES = 10;
+  private static final long MAX_WAIT_MILLIS = 30_000;
+
+  private final MatchmakingKeyLayout keys = MatchmakingKeyLayout.standalone();
+  private StringRedisTemplate redisTemplate;
+  private RedisLobbyMatchmakingRepository lobbyRepository;
+
+  @BeforeEach
+  void setUp() {
+    redisTemplate = newRedisTemplate();
+    lobbyRepository =
+        new RedisLobbyMatchmakingRepository(
+            newScriptExecutor(redisTemplate), keys, true);
+  }
+
+  @Test
+  void compareLobbyRateByPartyMix() {
+    for (LobbyShape shape : SHAPES) {
+      for (Map.Entry<String, Double> mix : PARTY_MIXES.entrySet()) {
+        final int players = seedQueue(shape, mix.getValue());
+        final Drained lobbies = measure(shape);
+        BenchmarkReport.of("lobby-formation")
+            .with("shape", shape.teamSize() + "x" + shape.teamCount())
+            .with("mix", mix.getKey())
+            .with("players", players)
+            .with("lobbies_per_sec", lobbies.perSecond())
+            .with("lobbies", lobbies.count())
+            .with("left_in_queue", redisTemplate.opsForZSet().zCard(keys.queueKey(BUCKET)))
+            .print();
+        // 端数の party が残る分を除き、ほぼすべての player がロビーに入る
+        assertThat(lobbies.count() * shape.playersPerLobby())
+            .isGreaterThan(players - shape.playersPerLobby() * MAX_LOBBIES);
+      }
+    }
+  }
+
+  /** 1 回の呼び出しで 1 ロビーも埋まらなくなるまで formLobbies を繰り返し、各ロビーが満員であることを確かめる。 */
+  private Drained measure(LobbyShape shape) {
+    return drain(
+        () -> lobbyRepository.formLobbies(BUCKET, Instant.now(), shape, MAX_LOBBIES),
+        group -> assertThat(group.playerCount()).isEqualTo(shape.playersPerLobby()));
+  }
+
+  /** soloShare の確率で 1 人、それ以外は 2〜teamSize 人の party を QUEUE_PLAYERS 人分まで積み、積んだ人数を返す。 */
+  private int seedQueue(LobbyShape shape, double soloShare) {
+    flushRedis(redisTemplate);
+    final Random random = new Random(shape.playersPerLobby());
+    final long now = Instant.now().toEpochMilli();
+    final List<SeedTicket> tickets = new ArrayList<>();
+    int players = 0;
+    while (players < QUEUE_PLAYERS) {
+      final int partySize =
+          shape.teamSize() == 1 || random.nextDouble() < soloShare
+              ? 1
+              : 2 + random.nextInt(shape.teamSize() - 1);
+      tickets.add(
+          new SeedTicket(
+              "user-" + players,
+              now - (long) (random.nextDouble() * MAX_WAIT_MILLIS),
+              null,
+              partySize));
+      players += partySize;
+    }
+    seedQueue(redisTemplate, keys, BUCKET, tickets);
+    return players;
+  }
+}
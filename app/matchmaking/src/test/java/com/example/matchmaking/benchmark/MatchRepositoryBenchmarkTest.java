@@ -0,0 +1,105 @@
+/*
+ * どこで: Matchmaking ベンチマーク
+ * 何を: 1 ペアずつ成立させる旧 Worker のループと matchMany の pairs/sec を実 Redis で比較する
+ * なぜ: 1 tick が往復遅延で埋まる問題に対し、バッチ化の効果を数値で確認するため
+ */
+package com.example.matchmaking.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.matchmaking.AbstractRedisContainerTest;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.RedisLuaMatchmakingMatchRepository;
+import com.example.matchmaking.repository.RedisMatchmakingTicketRepository;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Tag("benchmark")
+class MatchRepositoryBenchmarkTest extends AbstractRedisContainerTest {
+
+  private static final MatchMode MODE = MatchMode.CASUAL;
+  private static final QueueBucket BUCKET = QueueBucket.defaultOf(MODE);
+  private static final int TICKETS = 20_000;
+  private static final int WORKER_BATCH_SIZE = 50;
+  private static final int ROUNDS = 3;
+
+  private final MatchmakingKeyLayout keys = MatchmakingKeyLayout.standalone();
+  private StringRedisTemplate redisTemplate;
+  private RedisLuaMatchmakingMatchRepository matchRepository;
+  private RedisMatchmakingTicketRepository ticketRepository;
+
+  @BeforeEach
+  void setUp() {
+    redisTemplate = newRedisTemplate();
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(new SimpleMeterRegistry());
+    matchRepository =
+        new RedisLuaMatchmakingMatchRepository(
+            newScriptExecutor(redisTemplate, metrics), keys, true);
+    ticketRepository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate,
+            newScriptExecutor(redisTemplate, metrics),
+            keys,
+            REDIS_PROPERTIES,
+            metrics);
+  }
+
+  @Test
+  void comparePairsPerSecond() {
+    double legacyBest = 0;
+    double batchedBest = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      seedQueue();
+      legacyBest = Math.max(legacyBest, runPairLoop());
+      seedQueue();
+      batchedBest = Math.max(batchedBest, runMatchMany());
+    }
+    BenchmarkReport.of("match-repository")
+        .with("pair_loop_pairs_per_sec", legacyBest)
+        .with("match_many_batch", WORKER_BATCH_SIZE / 2)
+        .with("match_many_pairs_per_sec", batchedBest)
+        .with("speedup", batchedBest / legacyBest)
+        .print();
+  }
+
+  /** バッチ化前の MatchmakerWorker と同じく 1 ペアごとに EVALSHA と created_at 取得の HGETALL x2 を行う。 */
+  private double runPairLoop() {
+    final Drained pairs =
+        drain(
+            () -> matchRepository.matchMany(BUCKET, Instant.now(), 1),
+            pair -> {
+              ticketRepository.findTicketById(pair.ticketId1());
+              ticketRepository.findTicketById(pair.ticketId2());
+            });
+    assertThat(pairs.count()).isEqualTo(TICKETS / 2);
+    return pairs.perSecond();
+  }
+
+  private double runMatchMany() {
+    final Drained pairs =
+        drain(
+            () -> matchRepository.matchMany(BUCKET, Instant.now(), WORKER_BATCH_SIZE / 2),
+            pair -> {});
+    assertThat(pairs.count()).isEqualTo(TICKETS / 2);
+    return pairs.perSecond();
+  }
+
+  private void seedQueue() {
+    flushRedis(redisTemplate);
+    final long now = Instant.now().toEpochMilli();
+    final List<SeedTicket> tickets = new ArrayList<>(TICKETS);
+    for (int i = 0; i < TICKETS; i++) {
+      tickets.add(new SeedTicket("user-" + i, now + i, null, 1));
+    }
+    seedQueue(redisTemplate, keys, BUCKET, tickets);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * どこで: Matchmaking ベンチマーク
+ * 何を: join/cancel/status の操作列（trace）を CSV から読み込む、または合成する
+ * なぜ: 本番で記録した操作列と合成負荷を同じ再生ドライバへ流し、変更前後を同じ入力で比べるため
+ */
+package com.example.matchmaking.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 役割: 再生する操作列を表す。 動作: events は offsetMillis の昇順に並ぶ。 前提: cancel/status は同じ userId の直前の join で作った
+ * ticket を対象にする。
+ */
+record MatchmakingTrace(List<Event> events) {
+
+  /** CSV の列順。先頭行がこのヘッダなら読み飛ばし、# で始まる行はコメントとして扱う。 */
+  static final String HEADER = "offset_millis,op,user_id,mode,party_size,rating";
+
+  MatchmakingTrace {
+    events = events.stream().sorted(Comparator.comparingLong(Event::offsetMillis)).toList();
+  }
+
+  long count(Op op) {
+    return events.stream().filter(event -> event.op() == op).count();
+  }
+
+  /**
+   * 役割: 記録済み trace を読み込む。 動作: 1 行 1 操作の CSV を解釈し、rating が空なら null として扱う。 前提: 列は {@link
+   * #HEADER} の順であること。
+   */
+  static MatchmakingTrace load(Path path) throws IOException {
+    final List<Event> events = new ArrayList<>();
+    int lineNumber = 0;
+    for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+      lineNumber++;
+      final String trimmed = line.strip();
+      if (trimmed.isEmpty() || trimmed.startsWith("#") || trimmed.equals(HEADER)) {
+        continue;
+      }
+      final String[] columns = trimmed.split(",", -1);
+      if (columns.length != 6) {
+        throw new IllegalArgumentException(
+            "trace line " + lineNumber + " must have 6 columns: " + trimmed);
+      }
+      events.add(
+          new Event(
+              Long.parseLong(columns[0]),
+              Op.valueOf(columns[1].toUpperCase(Locale.ROOT)),
+              columns[2],
+              columns[3],
+              Integer.parseInt(columns[4]),
+              columns[5].isEmpty() ? null : Double.valueOf(columns[5])));
+    }
+    return new MatchmakingTrace(events);
+  }
+
+  /**
+   * 役割: 記録 trace がないときの合成負荷を作る。 動作: joinsPerSecond の一定到着で users 人が順に join し、cancelShare の割合で待ち中に
+   * cancel、それ以外は statusPollMillis ごとに status を数回引く。 前提: seed が同じなら同じ trace を返す。
+   */
+  static MatchmakingTrace synthesize(
+      int users, double joinsPerSecond, double cancelShare, long statusPollMillis, long seed) {
+    final Random random = new Random(seed);
+    final List<Event> events = new ArrayList<>();
+    for (int i = 0; i < users; i++) {
+      final long joinAt = (long) (i * 1000 / joinsPerSecond);
+      final String userId = "user-" + i;
+      final String mode = random.nextDouble() < 0.7 ? "casual" : "rank";
+      final double rating = Math.round(1500 + random.nextGaussian() * 300);
+      events.add(new Event(joinAt, Op.JOIN, userId, mode, 1, rating));
+      if (random.nextDouble() < cancelShare) {
+        final long cancelAt = joinAt + 200 + random.nextInt(3000);
+        events.add(new Event(cancelAt, Op.CANCEL, userId, mode, 1, null));
+        continue;
+      }
+      for (int poll = 1; poll <= 3; poll++) {
+        events.add(new Event(joinAt + poll * statusPollMillis, Op.STATUS, userId, mode, 1, null));
+      }
+    }
+    return new MatchmakingTrace(events);
+  }
+
+  enum Op {
+    JOIN,
+    CANCEL,
+    STATUS
+  }
+
+  /** trace の 1 操作。rating は join のときだけ attributes へ載せる。 */
+  record Event(
+      long offsetMillis, Op op, String userId, String mode, int partySize, Double rating) {}
+}
@@ -0,0 +1,115 @@
+/*
+ * どこで: Matchmaking ベンチマーク
+ * 何を: rating 近傍マッチャーと FIFO マッチャーの matches/sec と平均 rating 差を実 Redis で比較する
+ * なぜ: 近傍探索の追加コストと、マッチ品質の改善幅を queue 規模ごとに数値で確認するため
+ */
+package com.example.matchmaking.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.matchmaking.AbstractRedisContainerTest;
+import com.example.matchmaking.config.MatchmakingRatingProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.MatchmakingMatchRepository;
+import com.example.matchmaking.repository.RedisLuaMatchmakingMatchRepository;
+import com.example.matchmaking.repository.RedisRatingMatchmakingMatchRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Tag("benchmark")
+class RatingMatcherBenchmarkTest extends AbstractRedisContainerTest {
+
+  private static final MatchMode MODE = MatchMode.RANK;
+  private static final QueueBucket BUCKET = QueueBucket.defaultOf(MODE);
+  private static final int[] QUEUE_SIZES = {10_000, 100_000, 1_000_000};
+  private static final int MAX_PAIRS = 25;
+  private static final long MAX_WAIT_MILLIS = 30_000;
+
+  private final MatchmakingKeyLayout keys = MatchmakingKeyLayout.standalone();
+  private StringRedisTemplate redisTemplate;
+  private RedisLuaMatchmakingMatchRepository fifoRepository;
+  private RedisRatingMatchmakingMatchRepository ratingRepository;
+
+  @BeforeEach
+  void setUp() {
+    redisTemplate = newRedisTemplate();
+    fifoRepository =
+        new RedisLuaMatchmakingMatchRepository(
+            newScriptExecutor(redisTemplate), keys, true);
+    ratingRepository =
+        new RedisRatingMatchmakingMatchRepository(
+            newScriptExecutor(redisTemplate),
+            keys,
+            new MatchmakingRatingProperties(true, "rating", 1500, 50, 10, 400, 8),
+            true);
+  }
+
+  @Test
+  void compareMatchRateAndRatingDelta() {
+    for (int size : QUEUE_SIZES) {
+      final Map<String, Double> ratings = seedQueue(size);
+      final Result fifo = measure(fifoRepository, ratings);
+      ratings.putAll(seedQueue(size));
+      final Result rating = measure(ratingRepository, ratings);
+      BenchmarkReport.of("rating-matcher")
+          .with("queue", size)
+          .with("fifo_matches_per_sec", fifo.matchesPerSecond())
+          .with("fifo_avg_delta", fifo.averageDelta())
+          .with("rating_matches_per_sec", rating.matchesPerSecond())
+          .with("rating_avg_delta", rating.averageDelta())
+          .with("matched", rating.pairs())
+          .print();
+      assertThat(fifo.pairs()).isEqualTo(size / 2);
+      assertThat(rating.averageDelta()).isLessThan(fifo.averageDelta());
+    }
+  }
+
+  /** queue が空になるか、1 回の呼び出しで 1 ペアも成立しなくなるまで matchMany を繰り返す。 */
+  private Result measure(MatchmakingMatchRepository repository, Map<String, Double> ratings) {
+    final double[] deltaSum = {0};
+    final Drained drained =
+        drain(
+            () -> repository.matchMany(BUCKET, Instant.now(), MAX_PAIRS),
+            pair ->
+                deltaSum[0] +=
+                    Math.abs(ratings.get(pair.ticketId1()) - ratings.get(pair.ticketId2())));
+    return new Result(
+        drained.count(),
+        drained.perSecond(),
+        drained.count() == 0 ? 0 : deltaSum[0] / drained.count());
+  }
+
+  /** rating は平均 1500・標準偏差 300、enqueue 時刻は直近 30 秒に散らして許容幅の広がり方をばらつかせる。 */
+  private Map<String, Double> seedQueue(int size) {
+    flushRedis(redisTemplate);
+    final Random random = new Random(size);
+    final long now = Instant.now().toEpochMilli();
+    final List<SeedTicket> tickets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      tickets.add(
+          new SeedTicket(
+              "user-" + i,
+              now - (long) (random.nextDouble() * MAX_WAIT_MILLIS),
+              (double) Math.round(1500 + random.nextGaussian() * 300),
+              1));
+    }
+    final List<String> ticketIds = seedQueue(redisTemplate, keys, BUCKET, tickets);
+    final Map<String, Double> ratings = new HashMap<>();
+    for (int i = 0; i < size; i++) {
+      ratings.put(ticketIds.get(i), tickets.get(i).rating());
+    }
+    return ratings;
+  }
+
+  private record Result(int pairs, double matchesPerSecond, double averageDelta) {}
+}
@@ -0,0 +1,172 @@
+/*
+ * どこで: Matchmaking ベンチマーク
+ * 何を: legacy 形式と compact 形式で同数の ticket を Join し、used_memory の増分と 1 key の MEMORY USAGE を比べる
+ * なぜ: 100 万 ticket 規模で待ち行列のメモリが Redis の上限を決めるため、形式変更の削減量を実測で確かめるため
+ */
+package com.example.matchmaking.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.matchmaking.AbstractRedisContainerTest;
+import com.example.matchmaking.config.MatchmakingRedisProperties;
+import com.example.matchmaking.config.MatchmakingRedisProperties.TicketEncoding;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.TicketRecord;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.RedisMatchmakingTicketRepository;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+@Tag("benchmark")
+class TicketMemoryBenchmarkTest extends AbstractRedisContainerTest {
+
+  private static final QueueBucket BUCKET = new QueueBucket(MatchMode.RANK, "apac");
+  private static final int CLIENTS = 16;
+  private static final Duration TICKET_TTL = Duration.ofMinutes(10);
+  private static final Duration IDEMPOTENCY_TTL = Duration.ofMinutes(10);
+  // クライアントが実際に送る程度の大きさ。legacy 形式ではこのまま hash に入る
+  private static final String ATTRIBUTES =
+      "{\"platform\":\"pc\",\"input\":\"keyboard\",\"locale\":\"ja-JP\","
+          + "\"latency_ms\":{\"tokyo\":18,\"seoul\":42,\"singapore\":71}}";
+
+  private final MatchmakingKeyLayout keys = MatchmakingKeyLayout.standalone();
+  private StringRedisTemplate redisTemplate;
+
+  @BeforeEach
+  void setUp() {
+    redisTemplate = newRedisTemplate();
+  }
+
+  @Test
+  void compareMemoryPerTicket() throws Exception {
+    final int tickets = Integer.parseInt(System.getProperty("bench.tickets", "1000000"));
+    final Footprint legacy = measure(TicketEncoding.LEGACY, tickets);
+    final Footprint compact = measure(TicketEncoding.COMPACT, tickets);
+    for (Footprint footprint : List.of(legacy, compact)) {
+      BenchmarkReport.of("ticket-memory")
+          .with("encoding", footprint.encoding())
+          .with("tickets", tickets)
+          .with("used_memory_delta_mib", footprint.usedMemoryDelta() / (1024.0 * 1024.0))
+          .with("bytes_per_ticket", (double) footprint.usedMemoryDelta() / tickets)
+          .with("ticket_key_bytes", footprint.ticketKeyBytes())
+          .with("ticket_key_encoding", footprint.ticketKeyEncoding())
+          .with("idempotency_key_bytes", footprint.idempotencyKeyBytes())
+          .print();
+    }
+    BenchmarkReport.of("ticket-memory")
+        .with("compact_to_legacy", (double) compact.usedMemoryDelta() / legacy.usedMemoryDelta())
+        .print();
+    assertThat(compact.ticketKeyEncoding()).isEqualTo("listpack");
+    assertThat(compact.usedMemoryDelta()).isLessThan(legacy.usedMemoryDelta());
+  }
+
+  private Footprint measure(TicketEncoding encoding, int tickets) throws Exception {
+    flushRedis(redisTemplate);
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(new SimpleMeterRegistry());
+    final MatchmakingRedisProperties properties =
+        new MatchmakingRedisProperties(REDIS_PROPERTIES.slowScriptThreshold(), null, encoding);
+    final RedisMatchmakingTicketRepository repository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate,
+            newScriptExecutor(redisTemplate, metrics),
+            keys,
+            properties,
+            metrics);
+    final long before = usedMemory();
+
+    final ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    final List<Future<TicketRecord>> firsts = new ArrayList<>();
+    try {
+      for (int client = 0; client < CLIENTS; client++) {
+        final int offset = client;
+        firsts.add(
+            clients.submit(
+                () -> {
+                  TicketRecord first = null;
+                  for (int i = offset; i < tickets; i += CLIENTS) {
+                    final TicketRecord ticket =
+                        repository.createOrReuseTicket(
+                            BUCKET,
+                            "user-" + i,
+                            "join-" + i,
+                            ATTRIBUTES,
+                            1500.0 + (i % 1000),
+                            1,
+                            TICKET_TTL,
+                            IDEMPOTENCY_TTL);
+                    if (first == null) {
+                      first = ticket;
+                    }
+                  }
+                  return first;
+                }));
+      }
+      for (Future<TicketRecord> future : firsts) {
+        future.get();
+      }
+    } finally {
+      clients.shutdown();
+    }
+
+    final long after = usedMemory();
+    final String sampleKey = keys.ticketKey(firsts.get(0).get().ticketId());
+    final String idempotencyKey = keys.idempotencyKey(BUCKET, "user-0", "join-0");
+    return new Footprint(
+        encoding,
+        after - before,
+        memoryUsage(sampleKey),
+        objectEncoding(sampleKey),
+        memoryUsage(idempotencyKey));
+  }
+
+  private long usedMemory() {
+    final Properties info =
+        redisTemplate.execute(
+            (RedisCallback<Properties>) connection -> connection.serverCommands().info("memory"));
+    return Long.parseLong(info.getProperty("used_memory", "0"));
+  }
+
+  /** MEMORY USAGE の結果。key が無ければ 0。 */
+  private long memoryUsage(String key) {
+    final Object bytes =
+        redisTemplate.execute(
+            (RedisCallback<Object>)
+                connection ->
+                    connection.execute(
+                        "MEMORY",
+                        "USAGE".getBytes(StandardCharsets.UTF_8),
+                        key.getBytes(StandardCharsets.UTF_8)));
+    return bytes instanceof Long value ? value : 0L;
+  }
+
+  private String objectEncoding(String key) {
+    return redisTemplate.execute(
+        (RedisCallback<String>)
+            connection ->
+                connection
+                    .keyCommands()
+                    .encodingOf(key.getBytes(StandardCharsets.UTF_8))
+                    .raw());
+  }
+
+  private record Footprint(
+      TicketEncoding encoding,
+      long usedMemoryDelta,
+      long ticketKeyBytes,
+      String ticketKeyEncoding,
+      long idempotencyKeyBytes) {}
+}
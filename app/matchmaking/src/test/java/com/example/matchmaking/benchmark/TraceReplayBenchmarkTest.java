@@ -0,0 +1,373 @@
+/*
+ * どこで: Matchmaking ベンチマーク
+ * 何を: join/cancel/status の trace を MatchmakingService と MatchmakerWorker へ指定倍速で流し、matches/sec・Redis
+ *       コマンド数/match・time-to-match の分位を計測する
+ * なぜ: マッチングエンジンの変更ごとに、本番に近い操作の混ざり方で前回の結果（baseline）と比べられるようにするため
+ */
+package com.example.matchmaking.benchmark;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.matchmaking.AbstractRedisContainerTest;
+import com.example.matchmaking.api.request.JoinMatchmakingTicketRequest;
+import com.example.matchmaking.config.MatchmakingLobbyProperties;
+import com.example.matchmaking.config.MatchmakingProperties;
+import com.example.matchmaking.config.MatchmakingQueueBucketProperties;
+import com.example.matchmaking.config.MatchmakingRatingProperties;
+import com.example.matchmaking.config.MatchmakingStatusWatchProperties;
+import com.example.matchmaking.config.MatchmakingReaperProperties;
+import com.example.matchmaking.config.MatchmakingWaitEstimateProperties;
+import com.example.matchmaking.config.MatchmakingWakeupProperties;
+import com.example.matchmaking.config.MatchmakingWorkerLeaseProperties;
+import com.example.matchmaking.model.TicketStatusSnapshot;
+import com.example.matchmaking.repository.MatchmakingKeyLayout;
+import com.example.matchmaking.repository.RedisLobbyMatchmakingRepository;
+import com.example.matchmaking.repository.RedisLuaMatchmakingMatchRepository;
+import com.example.matchmaking.repository.RedisMatchmakingLeaseRepository;
+import com.example.matchmaking.repository.RedisMatchmakingTicketRepository;
+import com.example.matchmaking.repository.RedisMatchmakingWaitTimeRepository;
+import com.example.matchmaking.repository.RedisScriptExecutor;
+import com.example.matchmaking.service.MatchWaitTimeEstimator;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import com.example.matchmaking.service.MatchmakingService;
+import com.example.matchmaking.service.MatchmakingWakeupSignal;
+import com.example.matchmaking.service.QueueBucketResolver;
+import com.example.matchmaking.service.TicketStatusSignal;
+import com.example.matchmaking.service.TicketStatusWatcher;
+import com.example.matchmaking.worker.MatchmakerWorker;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * 役割: trace 再生ベンチマーク。 動作: -Dbench.trace で CSV trace を、未指定なら合成 trace を再生する。-Dbench.speed で再生倍速、
+ * -Dbench.baseline で前回の結果 JSON を指定すると差分も出力する。 前提: 結果は build/reports/benchmark/trace-replay.json
+ * に書き出し、次回の baseline に使う。
+ */
+@Tag("benchmark")
+class TraceReplayBenchmarkTest extends AbstractRedisContainerTest {
+
+  private static final Path REPORT_PATH = Path.of("build/reports/benchmark/trace-replay.json");
+  private static final Duration WORKER_POLL_INTERVAL = Duration.ofMillis(100);
+  private static final int WORKER_BATCH_SIZE = 50;
+  // 同じ user の操作順を保つため user ごとに固定の client スレッドへ振り分ける
+  private static final int CLIENT_THREADS = 8;
+  private static final Duration DRAIN_QUIET_PERIOD = Duration.ofSeconds(2);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final ConcurrentMap<String, String> ticketIdsByUser = new ConcurrentHashMap<>();
+  private final AtomicLong clientErrors = new AtomicLong();
+  private final AtomicLong maxReplayLagMillis = new AtomicLong();
+  private StringRedisTemplate redisTemplate;
+  private SimpleMeterRegistry meterRegistry;
+  private RedisMatchmakingTicketRepository ticketRepository;
+  private MatchmakingService service;
+  private MatchmakerWorker worker;
+  private ScheduledExecutorService workerScheduler;
+  private List<ExecutorService> clients;
+
+  @BeforeEach
+  void setUp() {
+    redisTemplate = newRedisTemplate();
+    flushRedis(redisTemplate);
+    meterRegistry = new SimpleMeterRegistry();
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(meterRegistry);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofMinutes(10),
+            Duration.ofMinutes(10),
+            WORKER_POLL_INTERVAL,
+            WORKER_BATCH_SIZE,
+            true);
+    final MatchmakingWakeupProperties wakeupProperties =
+        new MatchmakingWakeupProperties(true, "mm:wakeup", Duration.ofSeconds(1));
+    final MatchmakingLobbyProperties lobbyProperties = new MatchmakingLobbyProperties(Map.of());
+    final MatchmakingWakeupSignal wakeupSignal =
+        new MatchmakingWakeupSignal(redisTemplate, wakeupProperties, metrics);
+    final RedisScriptExecutor scriptExecutor = newScriptExecutor(redisTemplate, metrics);
+    final MatchmakingKeyLayout keys = MatchmakingKeyLayout.standalone();
+    ticketRepository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate, scriptExecutor, keys, REDIS_PROPERTIES, metrics);
+    // 推定の集計は計測対象の Redis コマンド数を変えないよう止めておく
+    final MatchWaitTimeEstimator waitTimeEstimator =
+        new MatchWaitTimeEstimator(
+            new MatchmakingWaitEstimateProperties(false, null, 0, null, null, null),
+            new RedisMatchmakingWaitTimeRepository(scriptExecutor, keys),
+            ticketRepository,
+            metrics);
+    // trace はポーリングで状態を読むため、long-poll の待機と状態変化の publish も止めておく
+    final MatchmakingStatusWatchProperties statusWatchProperties =
+        new MatchmakingStatusWatchProperties(false, null, null, 0);
+    final TicketStatusSignal statusSignal =
+        new TicketStatusSignal(redisTemplate, statusWatchProperties, metrics);
+    service =
+        new MatchmakingService(
+            ticketRepository,
+            properties,
+            metrics,
+            new QueueBucketResolver(
+                new MatchmakingQueueBucketProperties(List.of(), Map.of(), Map.of(), Map.of())),
+            new MatchmakingRatingProperties(false, "rating", 1500, 100, 25, 1000, 10),
+            lobbyProperties,
+            wakeupSignal,
+            waitTimeEstimator,
+            statusSignal,
+            new TicketStatusWatcher(statusWatchProperties, statusSignal, metrics),
+            objectMapper);
+    worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            new MatchmakingWorkerLeaseProperties(false, Duration.ofSeconds(10), 4),
+            wakeupProperties,
+            new MatchmakingReaperProperties(null, 0, 0),
+            lobbyProperties,
+            ticketRepository,
+            new RedisLuaMatchmakingMatchRepository(scriptExecutor, keys, true),
+            new RedisLobbyMatchmakingRepository(scriptExecutor, keys, true),
+            new RedisMatchmakingLeaseRepository(redisTemplate),
+            wakeupSignal,
+            waitTimeEstimator,
+            statusSignal);
+    workerScheduler = Executors.newSingleThreadScheduledExecutor();
+    clients = new ArrayList<>(CLIENT_THREADS);
+    for (int i = 0; i < CLIENT_THREADS; i++) {
+      clients.add(Executors.newSingleThreadExecutor());
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    clients.forEach(ExecutorService::shutdownNow);
+    workerScheduler.shutdownNow();
+    worker.shutdown();
+  }
+
+  @Test
+  void replayTrace() throws Exception {
+    final MatchmakingTrace trace = loadTrace();
+    final double speed = Double.parseDouble(System.getProperty("bench.speed", "1.0"));
+    final long commandsBefore = totalCommandsProcessed();
+    final long start = System.nanoTime();
+    workerScheduler.scheduleWithFixedDelay(
+        worker::run, 0, WORKER_POLL_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+
+    replay(trace, speed, start);
+    final long lastMatchNanos = awaitDrained();
+    workerScheduler.shutdown();
+    workerScheduler.awaitTermination(10, TimeUnit.SECONDS);
+    final long commands = totalCommandsProcessed() - commandsBefore;
+
+    final double matches = matchedCount();
+    final double seconds = (lastMatchNanos - start) / 1e9;
+    final List<Long> timeToMatch = collectTimeToMatchMillis();
+    final Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("trace_events", trace.events().size());
+    summary.put("joins", trace.count(MatchmakingTrace.Op.JOIN));
+    summary.put("speed", speed);
+    summary.put("matches", (long) matches);
+    summary.put("matches_per_sec", round(matches / seconds));
+    summary.put("redis_commands_per_match", round(commands / Math.max(matches, 1)));
+    summary.put("redis_calls_per_match", round(clientRedisCalls() / Math.max(matches, 1)));
+    summary.put("ttm_p50_ms", percentile(timeToMatch, 0.50));
+    summary.put("ttm_p95_ms", percentile(timeToMatch, 0.95));
+    summary.put("ttm_p99_ms", percentile(timeToMatch, 0.99));
+    summary.put("ttm_max_ms", percentile(timeToMatch, 1.0));
+    summary.put("replay_lag_max_ms", maxReplayLagMillis.get());
+    summary.put("client_errors", clientErrors.get());
+    report(summary);
+
+    assertThat(clientErrors.get()).isZero();
+    assertThat(matches).isPositive();
+  }
+
+  private MatchmakingTrace loadTrace() throws IOException {
+    final String tracePath = System.getProperty("bench.trace");
+    if (tracePath != null && !tracePath.isBlank()) {
+      return MatchmakingTrace.load(Path.of(tracePath));
+    }
+    return MatchmakingTrace.synthesize(20_000, 1_000, 0.1, 500, 42);
+  }
+
+  /**
+   * 役割: trace の各操作を予定時刻に client スレッドへ流す。 動作: offset を speed で割った時刻まで待って投入し、全 client が処理し終えるまで待つ。
+   * 投入が予定より遅れた最大値を replay_lag として残す。 前提: start は計測開始時刻（System.nanoTime）。
+   */
+  private void replay(MatchmakingTrace trace, double speed, long start)
+      throws InterruptedException {
+    for (MatchmakingTrace.Event event : trace.events()) {
+      final long dueNanos = start + (long) (event.offsetMillis() / speed * 1_000_000);
+      final long waitNanos = dueNanos - System.nanoTime();
+      if (waitNanos > 0) {
+        TimeUnit.NANOSECONDS.sleep(waitNanos);
+      } else {
+        maxReplayLagMillis.accumulateAndGet(-waitNanos / 1_000_000, Math::max);
+      }
+      clients
+          .get(Math.floorMod(event.userId().hashCode(), CLIENT_THREADS))
+          .execute(() -> apply(event));
+    }
+    for (ExecutorService client : clients) {
+      client.shutdown();
+    }
+    for (ExecutorService client : clients) {
+      client.awaitTermination(1, TimeUnit.MINUTES);
+    }
+  }
+
+  private void apply(MatchmakingTrace.Event event) {
+    try {
+      switch (event.op()) {
+        case JOIN -> {
+          final Map<String, Object> attributes =
+              event.rating() == null ? Map.of() : Map.of("rating", event.rating());
+          final String ticketId =
+              service
+                  .join(
+                      event.mode(),
+                      event.userId(),
+                      new JoinMatchmakingTicketRequest(
+                          event.partySize(), attributes, UUID.randomUUID().toString()))
+                  .ticketId();
+          ticketIdsByUser.put(event.userId(), ticketId);
+        }
+        case CANCEL, STATUS -> {
+          final String ticketId = ticketIdsByUser.get(event.userId());
+          if (ticketId == null) {
+            return;
+          }
+          if (event.op() == MatchmakingTrace.Op.CANCEL) {
+            service.cancelTicket(ticketId, event.userId());
+          } else {
+            service.getTicketStatus(ticketId, event.userId());
+          }
+        }
+        default -> throw new IllegalStateException("unknown op " + event.op());
+      }
+    } catch (RuntimeException ex) {
+      clientErrors.incrementAndGet();
+    }
+  }
+
+  /** 成立数が DRAIN_QUIET_PERIOD の間増えなくなるまで worker を回し続け、最後に成立数が増えた時刻を返す。 */
+  private long awaitDrained() throws InterruptedException {
+    double lastCount = matchedCount();
+    long lastChangeNanos = System.nanoTime();
+    while (System.nanoTime() - lastChangeNanos < DRAIN_QUIET_PERIOD.toNanos()) {
+      TimeUnit.MILLISECONDS.sleep(WORKER_POLL_INTERVAL.toMillis());
+      final double count = matchedCount();
+      if (count != lastCount) {
+        lastCount = count;
+        lastChangeNanos = System.nanoTime();
+      }
+    }
+    return lastChangeNanos;
+  }
+
+  /** 成立した ticket の created_at → match record の matched_at をミリ秒で集め、昇順で返す。計測後に読むため結果に含めない。 */
+  private List<Long> collectTimeToMatchMillis() {
+    final List<Long> millis = new ArrayList<>();
+    for (String ticketId : ticketIdsByUser.values()) {
+      final Optional<TicketStatusSnapshot> snapshot = ticketRepository.findTicketStatus(ticketId);
+      if (snapshot.isEmpty() || snapshot.get().match() == null) {
+        continue;
+      }
+      millis.add(
+          Duration.between(
+                  snapshot.get().ticket().createdAt(), snapshot.get().match().matchedAt())
+              .toMillis());
+    }
+    Collections.sort(millis);
+    return millis;
+  }
+
+  private double matchedCount() {
+    final Counter counter = meterRegistry.find("mm.match.total").tag("result", "matched").counter();
+    return counter == null ? 0 : counter.count();
+  }
+
+  /** repository が計上したアプリ側の Redis 往復数（EVALSHA 1 回を 1 とする）の合計。 */
+  private double clientRedisCalls() {
+    return meterRegistry.find("mm.redis.calls.total").counters().stream()
+        .mapToDouble(Counter::count)
+        .sum();
+  }
+
+  /** Redis サーバが処理したコマンド数。Lua 内で呼ばれたコマンドとベンチマーク外の INFO も含む。 */
+  private long totalCommandsProcessed() {
+    final Properties info =
+        redisTemplate.execute(
+            (RedisCallback<Properties>) connection -> connection.serverCommands().info("stats"));
+    return Long.parseLong(info.getProperty("total_commands_processed", "0"));
+  }
+
+  private static long percentile(List<Long> sorted, double quantile) {
+    if (sorted.isEmpty()) {
+      return 0;
+    }
+    final int index = (int) Math.ceil(quantile * sorted.size()) - 1;
+    return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100) / 100.0;
+  }
+
+  /** 結果を JSON に残して 1 行で出力し、baseline があれば数値項目ごとの変化率も並べる。 */
+  private void report(Map<String, Object> summary) throws IOException {
+    Files.createDirectories(REPORT_PATH.getParent());
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(REPORT_PATH.toFile(), summary);
+    final String baselinePath = System.getProperty("bench.baseline");
+    final Map<String, Object> baseline =
+        baselinePath == null || baselinePath.isBlank()
+            ? Map.of()
+            : objectMapper.readValue(Path.of(baselinePath).toFile(), new TypeReference<>() {});
+    final BenchmarkReport report = BenchmarkReport.of("trace-replay");
+    for (Map.Entry<String, Object> entry : summary.entrySet()) {
+      final Object before = baseline.get(entry.getKey());
+      if (before instanceof Number previous
+          && entry.getValue() instanceof Number current
+          && previous.doubleValue() != 0) {
+        report.with(
+            entry.getKey(),
+            String.format(
+                Locale.ROOT,
+                "%s(baseline:%s,%+.1f%%)",
+                current,
+                previous,
+                (current.doubleValue() / previous.doubleValue() - 1) * 100));
+      } else {
+        report.with(entry.getKey(), entry.getValue());
+      }
+    }
+    report.with("written_to", REPORT_PATH.toAbsolutePath()).print();
+  }
+}
@@ -0,0 +1,36 @@
+package com.example.matchmaking.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class WaitTimeHistogramTest {
+
+  @Test
+  void binUpperBoundStaysWithinTwentyPercentOfTheValue() {
+    for (long millis : new long[] {150, 1_000, 12_345, 90_000, 600_000}) {
+      final long upper =
+          WaitTimeHistogram.upperBoundMillis(WaitTimeHistogram.binOf(Duration.ofMillis(millis)));
+      assertThat(upper).isGreaterThan(millis).isLessThanOrEqualTo(Math.round(millis * 1.2) + 1);
+    }
+    assertThat(WaitTimeHistogram.binOf(Duration.ofMillis(-5))).isZero();
+    assertThat(WaitTimeHistogram.binOf(Duration.ofDays(30))).isEqualTo(WaitTimeHistogram.BINS - 1);
+  }
+
+  @Test
+  void quantileReturnsUpperBoundOfTheBinReachingTheRank() {
+    final WaitTimeHistogram histogram = new WaitTimeHistogram();
+    final int fast = WaitTimeHistogram.binOf(Duration.ofSeconds(2));
+    final int slow = WaitTimeHistogram.binOf(Duration.ofSeconds(40));
+    histogram.add(fast, 8);
+    histogram.add(slow, 2);
+
+    assertThat(histogram.total()).isEqualTo(10);
+    assertThat(histogram.quantile(0.5))
+        .isEqualTo(Duration.ofMillis(WaitTimeHistogram.upperBoundMillis(fast)));
+    assertThat(histogram.quantile(0.9))
+        .isEqualTo(Duration.ofMillis(WaitTimeHistogram.upperBoundMillis(slow)));
+    assertThat(new WaitTimeHistogram().quantile(0.5)).isNull();
+  }
+}
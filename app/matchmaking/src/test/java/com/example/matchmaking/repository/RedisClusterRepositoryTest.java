@@ -0,0 +1,195 @@
+/*
+ * どこで: Matchmaking Redis リポジトリ
+ * 何を: cluster 配置の key で Join/マッチ/状態参照/取消/失効/outbox を 3 ノードの Redis Cluster 上で通す
+ * なぜ: スクリプトが別 slot の key に触れると CROSSSLOT で失敗するため、単一ノードでは分からない配置の誤りを実 cluster で確かめるため
+ */
+package com.example.matchmaking.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.matchmaking.config.MatchmakingOutboxProperties;
+import com.example.matchmaking.config.MatchmakingRedisProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchOutboxEntry;
+import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.TicketRecord;
+import com.example.matchmaking.model.TicketStatus;
+import com.example.matchmaking.service.MatchmakingMetrics;
+import io.lettuce.core.internal.HostAndPort;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DnsResolvers;
+import io.lettuce.core.resource.MappingSocketAddressResolver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisClusterConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.utility.DockerImageName;
+
+@Tag("redis-cluster")
+class RedisClusterRepositoryTest {
+
+  private static final int[] NODE_PORTS = {7000, 7001, 7002};
+
+  // 1 コンテナ内で 3 つの primary を起動し、slot を 3 分割した cluster を組む
+  private static final GenericContainer<?> CLUSTER =
+      new GenericContainer<>(DockerImageName.parse("redis:7-alpine"))
+          .withExposedPorts(7000, 7001, 7002)
+          .withCommand(
+              "sh",
+              "-c",
+              "for port in 7000 7001 7002; do"
+                  + " redis-server --port $port --cluster-enabled yes --dir /tmp"
+                  + " --cluster-config-file nodes-$port.conf --daemonize yes; done;"
+                  + " sleep 1;"
+                  + " redis-cli --cluster create 127.0.0.1:7000 127.0.0.1:7001 127.0.0.1:7002"
+                  + " --cluster-replicas 0 --cluster-yes;"
+                  + " tail -f /dev/null")
+          .waitingFor(Wait.forLogMessage(".*All 16384 slots covered.*\\n", 1));
+
+  private static ClientResources clientResources;
+  private static LettuceConnectionFactory connectionFactory;
+  private static StringRedisTemplate redisTemplate;
+
+  private static final MatchmakingRedisProperties REDIS_PROPERTIES =
+      new MatchmakingRedisProperties(
+          Duration.ofMinutes(1),
+          MatchmakingRedisProperties.KeyLayout.CLUSTER,
+          MatchmakingRedisProperties.TicketEncoding.COMPACT);
+
+  private final MatchmakingKeyLayout keys = new MatchmakingKeyLayout(REDIS_PROPERTIES);
+  private final MatchmakingMetrics metrics = new MatchmakingMetrics(new SimpleMeterRegistry());
+  private RedisMatchmakingTicketRepository ticketRepository;
+  private RedisLuaMatchmakingMatchRepository matchRepository;
+  private RedisMatchmakingOutboxRepository outboxRepository;
+
+  @BeforeAll
+  static void startCluster() {
+    CLUSTER.start();
+    // ノードは CLUSTER SLOTS で 127.0.0.1:700x を名乗るため、コンテナの公開ポートへ付け替えて接続する
+    clientResources =
+        ClientResources.builder()
+            .socketAddressResolver(
+                MappingSocketAddressResolver.create(
+                    DnsResolvers.UNRESOLVED, RedisClusterRepositoryTest::toMappedAddress))
+            .build();
+    final LettuceClientConfiguration clientConfiguration =
+        LettuceClientConfiguration.builder().clientResources(clientResources).build();
+    connectionFactory =
+        new LettuceConnectionFactory(
+            new RedisClusterConfiguration(
+                List.of(CLUSTER.getHost() + ":" + CLUSTER.getMappedPort(NODE_PORTS[0]))),
+            clientConfiguration);
+    connectionFactory.afterPropertiesSet();
+    connectionFactory.start();
+    redisTemplate = new StringRedisTemplate(connectionFactory);
+    redisTemplate.afterPropertiesSet();
+  }
+
+  @AfterAll
+  static void stopCluster() {
+    connectionFactory.destroy();
+    clientResources.shutdown();
+    CLUSTER.stop();
+  }
+
+  @BeforeEach
+  void setUp() {
+    final RedisScriptExecutor scriptExecutor =
+        new RedisScriptExecutor(redisTemplate, metrics, REDIS_PROPERTIES);
+    ticketRepository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate, scriptExecutor, keys, REDIS_PROPERTIES, metrics);
+    matchRepository = new RedisLuaMatchmakingMatchRepository(scriptExecutor, keys, true);
+    outboxRepository =
+        new RedisMatchmakingOutboxRepository(
+            redisTemplate,
+            keys,
+            new MatchmakingOutboxProperties(
+                true,
+                "cluster-test",
+                Duration.ofMillis(100),
+                10,
+                100,
+                Duration.ofSeconds(30),
+                Duration.ofSeconds(1)),
+            metrics);
+  }
+
+  @Test
+  void bucketsMatchOnTheirOwnSlotsAndRelayFindsEveryOutboxStream() {
+    final QueueBucket apac = new QueueBucket(MatchMode.CASUAL, "apac");
+    final QueueBucket emea = new QueueBucket(MatchMode.CASUAL, "emea");
+    final TicketRecord apac1 = join(apac, "user-a1", Duration.ofMinutes(1));
+    join(apac, "user-a2", Duration.ofMinutes(1));
+    join(emea, "user-e1", Duration.ofMinutes(1));
+    join(emea, "user-e2", Duration.ofMinutes(1));
+
+    final Instant now = Instant.now();
+    final List<MatchPair> apacPairs = matchRepository.matchMany(apac, now, 5);
+    final List<MatchPair> emeaPairs = matchRepository.matchMany(emea, now, 5);
+
+    assertThat(apacPairs).hasSize(1);
+    assertThat(emeaPairs).hasSize(1);
+    final var status = ticketRepository.findTicketStatus(apac1.ticketId());
+    assertThat(status).isPresent();
+    assertThat(status.get().ticket().status()).isEqualTo(TicketStatus.MATCHED);
+    assertThat(status.get().match()).isNotNull();
+    assertThat(status.get().match().peerUserIdsOf(apac1.ticketId())).containsExactly("user-a2");
+    assertThat(ticketRepository.activeBuckets(MatchMode.CASUAL)).contains(apac, emea);
+
+    final List<String> streams = outboxRepository.streams();
+    assertThat(streams).contains(keys.outboxKey(apac), keys.outboxKey(emea));
+    for (String stream : List.of(keys.outboxKey(apac), keys.outboxKey(emea))) {
+      outboxRepository.ensureGroup(stream);
+      final List<MatchOutboxEntry> entries = outboxRepository.readNew(stream, "relay-1", 10);
+      assertThat(entries).hasSize(1);
+      assertThat(
+              outboxRepository.acknowledge(
+                  stream, entries.stream().map(MatchOutboxEntry::entryId).toList()))
+          .isEqualTo(1);
+    }
+  }
+
+  @Test
+  void cancelReapAndBucketRemovalStayWithinTheBucketSlot() {
+    final QueueBucket bucket = new QueueBucket(MatchMode.RANK, "apac:2");
+    final TicketRecord cancelled = join(bucket, "user-c1", Duration.ofMinutes(1));
+    join(bucket, "user-c2", Duration.ofMillis(1));
+
+    assertThat(ticketRepository.cancelTicket(cancelled.ticketId(), "user-c1"))
+        .get()
+        .extracting(TicketRecord::status)
+        .isEqualTo(TicketStatus.CANCELLED);
+    assertThat(ticketRepository.reapExpired(bucket, Instant.now().plusSeconds(1), 100))
+        .isEqualTo(1);
+    assertThat(ticketRepository.queueDepth(bucket)).isZero();
+    assertThat(ticketRepository.removeBucketIfEmpty(bucket)).isTrue();
+    assertThat(ticketRepository.activeBuckets(MatchMode.RANK)).doesNotContain(bucket);
+  }
+
+  private TicketRecord join(QueueBucket bucket, String userId, Duration ticketTtl) {
+    return ticketRepository.createOrReuseTicket(
+        bucket, userId, "idem-" + userId, "{}", null, 1, ticketTtl, Duration.ofMinutes(1));
+  }
+
+  private static HostAndPort toMappedAddress(HostAndPort address) {
+    for (int port : NODE_PORTS) {
+      if (address.getPort() == port) {
+        return HostAndPort.of(CLUSTER.getHost(), CLUSTER.getMappedPort(port));
+      }
+    }
+    return address;
+  }
+}
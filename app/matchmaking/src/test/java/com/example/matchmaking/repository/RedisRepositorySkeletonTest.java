@@ -1,132 +1,508 @@
 package com.example.matchmaking.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.example.matchmaking.api.IdempotencyConflictException;
+import com.example.matchmaking.config.MatchmakingRedisProperties;
+import com.example.matchmaking.model.LobbyShape;
+import com.example.matchmaking.model.MatchGroup;
 import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
 import com.example.matchmaking.model.TicketStatus;
 import com.example.matchmaking.service.MatchmakingMetrics;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.core.script.RedisScript;
 
 class RedisRepositorySkeletonTest {
 
+  private static final MatchmakingKeyLayout STANDALONE = MatchmakingKeyLayout.standalone();
+  private static final MatchmakingRedisProperties REDIS_PROPERTIES =
+      new MatchmakingRedisProperties(
+          Duration.ofSeconds(1), null, MatchmakingRedisProperties.TicketEncoding.COMPACT);
+
   @SuppressWarnings("unchecked")
   @Test
-  void createOrReuseCreatesNewTicketWhenIdempotencyMissing() {
+  void createOrReuseCreatesNewTicketInSingleScriptCall() {
     final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
-    final ValueOperations<String, String> valueOps = Mockito.mock(ValueOperations.class);
-    final HashOperations<String, Object, Object> hashOps = Mockito.mock(HashOperations.class);
-    final ZSetOperations<String, String> zSetOps = Mockito.mock(ZSetOperations.class);
-
-    when(redisTemplate.opsForValue()).thenReturn(valueOps);
-    when(redisTemplate.opsForHash()).thenReturn(hashOps);
-    when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
-    when(valueOps.get("mm:idemp:user-1:casual:idem-1")).thenReturn(null);
+    // 可変長引数は展開されるため index 2 が ARGV[1]（ticket id）になる
+    Mockito.doAnswer(invocation -> List.of("created", invocation.getArgument(2)))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
     final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
 
-    final RedisMatchmakingTicketRepository repository =
-        new RedisMatchmakingTicketRepository(redisTemplate, metrics);
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
 
     final var ticket =
         repository.createOrReuseTicket(
-            MatchMode.CASUAL,
+            QueueBucket.defaultOf(MatchMode.CASUAL),
             "user-1",
             "idem-1",
             "{}",
+            null,
+            1,
             Duration.ofSeconds(60),
             Duration.ofSeconds(60));
 
     assertThat(ticket.userId()).isEqualTo("user-1");
     assertThat(ticket.mode()).isEqualTo(MatchMode.CASUAL);
     assertThat(ticket.status()).isEqualTo(TicketStatus.QUEUED);
-    final ArgumentCaptor<Map<String, String>> fieldsCaptor = ArgumentCaptor.forClass(Map.class);
-    verify(hashOps).putAll(eq("mm:ticket:" + ticket.ticketId()), fieldsCaptor.capture());
-    assertThat(fieldsCaptor.getValue()).containsKey("expires_at_epoch_millis");
-    verify(zSetOps).add(eq("mm:queue:casual"), eq(ticket.ticketId()), any(Double.class));
+    // compact 形式では冪等キーから ticket ID が決まり、同じ再送は同じ ticket key を指す
+    assertThat(ticket.ticketId())
+        .isEqualTo(
+            STANDALONE.idempotentTicketId(
+                QueueBucket.defaultOf(MatchMode.CASUAL), "user-1", "idem-1"));
+    // standalone でも ID に区画を埋め込み、Cancel が ID だけで区画の key を求められるようにする
+    assertThat(ticket.ticketId()).startsWith("casual:default:");
+    final ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), keysCaptor.capture(), argsCaptor.capture());
+    assertThat(keysCaptor.getValue())
+        .containsExactly(
+            "mm:idemp:user-1:casual:idem-1",
+            "mm:ticket:" + ticket.ticketId(),
+            "mm:queue:casual",
+            "mm:rating:casual",
+            "mm:expiry:casual");
+    final Object[] args = argsCaptor.getValue();
+    assertThat(args[9]).isEqualTo(RedisMatchmakingTicketRepository.attributesHash("{}"));
+    assertThat(args[10]).isEqualTo("");
+    assertThat(args[13]).isEqualTo("0");
+    assertThat(args[14]).isEqualTo("1");
+    assertThat(args[15]).isEqualTo("compact");
+    assertThat(args[16])
+        .isEqualTo(RedisMatchmakingTicketRepository.attributesFingerprint("{}"))
+        .hasSize(22);
+    // 初回は移行前の冪等キーが指す ticket を宣言しない
+    assertThat(args[17]).isEqualTo("");
+    verify(metrics).recordRedisCalls("join", 1);
   }
 
   @SuppressWarnings("unchecked")
   @Test
-  void createOrReuseReturnsExistingTicketWhenIdempotencyHit() {
+  void createOrReuseDeclaresLegacyIdempotentTicketBeforeReusingIt() {
     final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
-    final ValueOperations<String, String> valueOps = Mockito.mock(ValueOperations.class);
-    final HashOperations<String, Object, Object> hashOps = Mockito.mock(HashOperations.class);
+    // 可変長引数は展開されるため index 19 が ARGV[18]（宣言済みの移行前 ticket ID）になる
+    Mockito.doAnswer(
+            invocation ->
+                "".equals(invocation.getArgument(19))
+                    ? List.of("legacy", "0b5e-legacy")
+                    : List.of(
+                        "existing",
+                        "0b5e-legacy",
+                        "user_id",
+                        "user-1",
+                        "mode",
+                        "casual",
+                        "status",
+                        "QUEUED",
+                        "created_at",
+                        "2026-02-24T12:00:00Z",
+                        "expires_at",
+                        Instant.now().plusSeconds(60).toString()))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
 
-    when(redisTemplate.opsForValue()).thenReturn(valueOps);
-    when(redisTemplate.opsForHash()).thenReturn(hashOps);
-    when(valueOps.get("mm:idemp:user-1:casual:idem-1")).thenReturn("ticket-1");
-    when(hashOps.entries("mm:ticket:ticket-1"))
-        .thenReturn(
-            Map.of(
-                "user_id", "user-1",
-                "mode", "casual",
-                "status", "QUEUED",
-                "created_at", "2026-02-24T12:00:00Z",
-                "expires_at", Instant.now().plusSeconds(60).toString(),
-                "attributes", "{}"));
+    final var ticket =
+        repository.createOrReuseTicket(
+            QueueBucket.defaultOf(MatchMode.CASUAL),
+            "user-1",
+            "idem-1",
+            "{}",
+            null,
+            1,
+            Duration.ofSeconds(60),
+            Duration.ofSeconds(60));
 
-    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    assertThat(ticket.ticketId()).isEqualTo("0b5e-legacy");
+    final ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate, Mockito.times(2))
+        .execute(Mockito.<RedisScript<List>>any(), keysCaptor.capture(), argsCaptor.capture());
+    // 呼び直しでは冪等キーが指す ticket の key を末尾で宣言し、スクリプトは ID から key を組み立てない
+    assertThat(keysCaptor.getAllValues().get(1)).endsWith("mm:ticket:0b5e-legacy").hasSize(6);
+    assertThat(argsCaptor.getAllValues().get(1)[17]).isEqualTo("0b5e-legacy");
+    verify(metrics, Mockito.times(2)).recordRedisCalls("join", 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void createOrReuseReturnsExistingTicketWhenIdempotencyHit() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doReturn(
+            List.of(
+                "existing",
+                "ticket-1",
+                "user_id",
+                "user-1",
+                "mode",
+                "casual",
+                "status",
+                "QUEUED",
+                "created_at",
+                "2026-02-24T12:00:00Z",
+                "expires_at",
+                Instant.now().plusSeconds(60).toString(),
+                "attributes",
+                "{}"))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
 
     final RedisMatchmakingTicketRepository repository =
-        new RedisMatchmakingTicketRepository(redisTemplate, metrics);
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
 
     final var ticket =
         repository.createOrReuseTicket(
-            MatchMode.CASUAL,
+            QueueBucket.defaultOf(MatchMode.CASUAL),
             "user-1",
             "idem-1",
             "{}",
+            null,
+            1,
             Duration.ofSeconds(60),
             Duration.ofSeconds(60));
 
     assertThat(ticket.ticketId()).isEqualTo("ticket-1");
+    assertThat(ticket.status()).isEqualTo(TicketStatus.QUEUED);
   }
 
   @SuppressWarnings("unchecked")
   @Test
-  void cancelTicketUpdatesQueuedStatus() {
+  void createOrReuseWritesLegacyTicketsWhenConfigured() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doAnswer(invocation -> List.of("created", invocation.getArgument(2)))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final RedisMatchmakingTicketRepository repository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate,
+            scriptExecutor(redisTemplate, metrics),
+            STANDALONE,
+            new MatchmakingRedisProperties(
+                null, null, MatchmakingRedisProperties.TicketEncoding.LEGACY),
+            metrics);
+
+    final var first =
+        repository.createOrReuseTicket(
+            QueueBucket.defaultOf(MatchMode.CASUAL),
+            "user-1",
+            "idem-1",
+            "{}",
+            null,
+            1,
+            Duration.ofSeconds(60),
+            Duration.ofSeconds(120));
+
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), argsCaptor.capture());
+    assertThat(first.ticketId())
+        .isNotEqualTo(
+            STANDALONE.idempotentTicketId(
+                QueueBucket.defaultOf(MatchMode.CASUAL), "user-1", "idem-1"));
+    final Object[] args = argsCaptor.getValue();
+    // legacy 形式は ticket の TTL をそのまま使い、冪等キーは別 key に持つ
+    assertThat(args[11]).isEqualTo("60000");
+    assertThat(args[12]).isEqualTo("120000");
+    assertThat(args[15]).isEqualTo("legacy");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void compactTicketKeepsHashAliveForIdempotencyWindow() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doAnswer(invocation -> List.of("created", invocation.getArgument(2)))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+
+    final RedisMatchmakingTicketRepository repository =
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
+
+    repository.createOrReuseTicket(
+        QueueBucket.defaultOf(MatchMode.CASUAL),
+        "user-1",
+        "idem-1",
+        "{}",
+        null,
+        1,
+        Duration.ofSeconds(60),
+        Duration.ofSeconds(120));
+
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), argsCaptor.capture());
+    assertThat(argsCaptor.getValue()[11]).isEqualTo("120000");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void compactTicketFieldsAreDecodedFromEpochMillis() {
     final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
     final HashOperations<String, Object, Object> hashOps = Mockito.mock(HashOperations.class);
-    final ZSetOperations<String, String> zSetOps = Mockito.mock(ZSetOperations.class);
     when(redisTemplate.opsForHash()).thenReturn(hashOps);
-    when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+    final Instant expiresAt = Instant.now().plusSeconds(30).truncatedTo(ChronoUnit.MILLIS);
     when(hashOps.entries("mm:ticket:ticket-1"))
         .thenReturn(
             Map.of(
-                "user_id", "user-1",
-                "mode", "casual",
-                "status", "QUEUED",
-                "created_at", "2026-02-24T12:00:00Z",
-                "expires_at", Instant.now().plusSeconds(60).toString(),
-                "attributes", "{}"));
+                "u", "user-1",
+                "m", "rank",
+                "s", "MATCHED",
+                "c", "1771934400000",
+                "e", String.valueOf(expiresAt.toEpochMilli()),
+                "h", "abc",
+                "b", "apac",
+                "x", "match-1"));
 
-    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final RedisMatchmakingTicketRepository repository =
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
+
+    final var ticket = repository.findTicketById("ticket-1").orElseThrow();
+
+    assertThat(ticket.userId()).isEqualTo("user-1");
+    assertThat(ticket.mode()).isEqualTo(MatchMode.RANK);
+    assertThat(ticket.status()).isEqualTo(TicketStatus.MATCHED);
+    assertThat(ticket.createdAt()).isEqualTo(Instant.parse("2026-02-24T12:00:00Z"));
+    assertThat(ticket.expiresAt()).isEqualTo(expiresAt);
+    assertThat(ticket.matchId()).isEqualTo("match-1");
+    assertThat(ticket.bucket()).isEqualTo("apac");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void createOrReuseThrowsWhenIdempotencyKeyReusedWithDifferentAttributes() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doReturn(List.of("conflict", "ticket-1"))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
 
     final RedisMatchmakingTicketRepository repository =
-        new RedisMatchmakingTicketRepository(redisTemplate, metrics);
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
 
-    final var cancelled = repository.cancelTicket("ticket-1");
+    assertThatThrownBy(
+            () ->
+                repository.createOrReuseTicket(
+                    QueueBucket.defaultOf(MatchMode.CASUAL),
+                    "user-1",
+                    "idem-1",
+                    "{\"region\":\"apac\"}",
+                    null,
+                    1,
+                    Duration.ofSeconds(60),
+                    Duration.ofSeconds(60)))
+        .isInstanceOf(IdempotencyConflictException.class);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void cancelTicketRecordsResultOnlyWhenScriptTransitions() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final HashOperations<String, Object, Object> hashOps = Mockito.mock(HashOperations.class);
+    when(redisTemplate.opsForHash()).thenReturn(hashOps);
+    when(hashOps.multiGet("mm:ticket:ticket-1", List.of("m", "b", "mode", "bucket")))
+        .thenReturn(Arrays.asList(null, null, "casual", null));
+    Mockito.doReturn(
+            List.of(
+                "cancelled",
+                "user_id",
+                "user-1",
+                "mode",
+                "casual",
+                "status",
+                "CANCELLED",
+                "created_at",
+                "2026-02-24T12:00:00Z",
+                "expires_at",
+                Instant.now().plusSeconds(60).toString(),
+                "attributes",
+                "{}"))
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(
+                List.of(
+                    "mm:ticket:ticket-1",
+                    "mm:queue:casual",
+                    "mm:rating:casual",
+                    "mm:expiry:casual")),
+            eq("ticket-1"),
+            eq("user-1"),
+            any());
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
+
+    final var cancelled = repository.cancelTicket("ticket-1", "user-1");
 
     assertThat(cancelled).isPresent();
     assertThat(cancelled.get().status()).isEqualTo(TicketStatus.CANCELLED);
-    verify(hashOps).put("mm:ticket:ticket-1", "status", "CANCELLED");
-    verify(zSetOps).remove("mm:queue:casual", "ticket-1");
+    verify(metrics).recordMatchResult("cancelled");
+    // 区画を埋め込む前の ID は HMGET で区画を読むため、往復はスクリプトと合わせて 2 回
+    verify(metrics, Mockito.times(2)).recordRedisCalls("cancel", 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void createOrReusePassesBucketAndRatingToJoinScript() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doAnswer(invocation -> List.of("created", invocation.getArgument(2)))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+
+    final RedisMatchmakingTicketRepository repository =
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
+
+    final var ticket =
+        repository.createOrReuseTicket(
+            new QueueBucket(MatchMode.RANK, "apac:2"),
+            "user-1",
+            "idem-1",
+            "{}",
+            1820.0,
+            1,
+            Duration.ofSeconds(60),
+            Duration.ofSeconds(60));
+
+    assertThat(ticket.bucket()).isEqualTo("apac:2");
+    final ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), keysCaptor.capture(), argsCaptor.capture());
+    assertThat(keysCaptor.getValue())
+        .endsWith(
+            "mm:queue:rank:apac:2",
+            "mm:rating:rank:apac:2",
+            "mm:expiry:rank:apac:2",
+            "mm:buckets:rank");
+    final Object[] args = argsCaptor.getValue();
+    assertThat(args[3]).isEqualTo("apac:2");
+    assertThat(args[10]).isEqualTo("1820.0");
+    assertThat(args[13]).isEqualTo("1");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void cancelTicketLeavesMetricsUntouchedWhenScriptReportsNoTransition() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final String ticketId = "rank:apac:2:ticket-1";
+    Mockito.doReturn(
+            List.of(
+                "unchanged",
+                "user_id",
+                "user-1",
+                "mode",
+                "rank",
+                "status",
+                "MATCHED",
+                "created_at",
+                "2026-02-24T12:00:00Z",
+                "expires_at",
+                Instant.now().plusSeconds(60).toString(),
+                "attributes",
+                "{}",
+                "bucket",
+                "apac:2",
+                "match_id",
+                "match-1"))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
+
+    final var result = repository.cancelTicket(ticketId, "user-1");
+
+    assertThat(result).isPresent();
+    assertThat(result.get().status()).isEqualTo(TicketStatus.MATCHED);
+    assertThat(result.get().bucket()).isEqualTo("apac:2");
+    verify(metrics, never()).recordMatchResult(any());
+    // standalone でも区画を ticket ID から求め、index key を KEYS で宣言したスクリプト 1 往復で済ませる
+    verify(redisTemplate, never()).opsForHash();
+    verify(metrics).recordRedisCalls("cancel", 1);
+    final ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+    verify(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), keysCaptor.capture(), any(Object[].class));
+    assertThat(keysCaptor.getValue())
+        .containsExactly(
+            "mm:ticket:" + ticketId,
+            "mm:queue:rank:apac:2",
+            "mm:rating:rank:apac:2",
+            "mm:expiry:rank:apac:2");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void cancelTicketSkipsScriptWhenStandaloneTicketIsMissing() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final HashOperations<String, Object, Object> hashOps = Mockito.mock(HashOperations.class);
+    when(redisTemplate.opsForHash()).thenReturn(hashOps);
+    when(hashOps.multiGet("mm:ticket:ticket-1", List.of("m", "b", "mode", "bucket")))
+        .thenReturn(Arrays.asList(null, null, null, null));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
+
+    assertThat(repository.cancelTicket("ticket-1", "user-1")).isEmpty();
+    verify(redisTemplate, never())
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    verify(metrics).recordRedisCalls("cancel", 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void activeBucketsAlwaysIncludeDefaultBucket() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final SetOperations<String, String> setOps = Mockito.mock(SetOperations.class);
+    when(redisTemplate.opsForSet()).thenReturn(setOps);
+    when(setOps.members("mm:buckets:casual")).thenReturn(Set.of("apac"));
+
+    final RedisMatchmakingTicketRepository repository =
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
+
+    assertThat(repository.activeBuckets(MatchMode.CASUAL))
+        .containsExactly(
+            QueueBucket.defaultOf(MatchMode.CASUAL), new QueueBucket(MatchMode.CASUAL, "apac"));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void removeBucketIfEmptyRunsAtomicScriptForNonDefaultBucket() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doReturn(1L)
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<Long>>any(),
+            eq(List.of("mm:queue:casual:apac", "mm:expiry:casual:apac", "mm:buckets:casual")),
+            any());
+
+    final RedisMatchmakingTicketRepository repository =
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
+
+    assertThat(repository.removeBucketIfEmpty(new QueueBucket(MatchMode.CASUAL, "apac"))).isTrue();
+    assertThat(repository.removeBucketIfEmpty(QueueBucket.defaultOf(MatchMode.CASUAL))).isFalse();
   }
 
   @SuppressWarnings("unchecked")
@@ -143,23 +519,21 @@ class RedisRepositorySkeletonTest {
                     "ticket-1", (double) Instant.now().minusSeconds(8).toEpochMilli())));
     final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
 
-    final RedisMatchmakingTicketRepository repository =
-        new RedisMatchmakingTicketRepository(redisTemplate, metrics);
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
 
-    assertThat(repository.queueDepth(MatchMode.CASUAL)).isEqualTo(3L);
-    assertThat(repository.oldestQueueAgeSeconds(MatchMode.CASUAL)).isPresent();
-    assertThat(repository.oldestQueueAgeSeconds(MatchMode.CASUAL).get()).isGreaterThanOrEqualTo(7L);
+    final QueueBucket bucket = QueueBucket.defaultOf(MatchMode.CASUAL);
+    assertThat(repository.queueDepth(bucket)).isEqualTo(3L);
+    assertThat(repository.oldestQueueAgeSeconds(bucket)).isPresent();
+    assertThat(repository.oldestQueueAgeSeconds(bucket).get()).isGreaterThanOrEqualTo(7L);
   }
 
   @SuppressWarnings("unchecked")
   @Test
-  void findTicketByIdMarksExpiredAndRecordsMetric() {
+  void findTicketByIdReportsExpiredWithoutWriting() {
     final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
     final HashOperations<String, Object, Object> hashOps = Mockito.mock(HashOperations.class);
-    final ZSetOperations<String, String> zSetOps = Mockito.mock(ZSetOperations.class);
     final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
     when(redisTemplate.opsForHash()).thenReturn(hashOps);
-    when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
     when(hashOps.entries("mm:ticket:ticket-1"))
         .thenReturn(
             Map.of(
@@ -170,51 +544,568 @@ class RedisRepositorySkeletonTest {
                 "expires_at", Instant.now().minusSeconds(30).toString(),
                 "attributes", "{}"));
 
-    final RedisMatchmakingTicketRepository repository =
-        new RedisMatchmakingTicketRepository(redisTemplate, metrics);
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
 
     final var ticket = repository.findTicketById("ticket-1");
 
     assertThat(ticket).isPresent();
     assertThat(ticket.get().status()).isEqualTo(TicketStatus.EXPIRED);
-    verify(hashOps).put("mm:ticket:ticket-1", "status", "EXPIRED");
-    verify(zSetOps).remove("mm:queue:casual", "ticket-1");
-    verify(metrics).recordMatchResult("expired");
+    verify(hashOps, never()).put(any(), any(), any());
+    verify(redisTemplate, never()).opsForZSet();
+    verify(metrics, never()).recordMatchResult(any());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void findTicketStatusDeclaresMatchKeyOnceTicketIsMatched() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final List<Object> scriptResult =
+        List.of(
+            5L,
+            "user_id",
+            "user-1",
+            "mode",
+            "rank",
+            "status",
+            "MATCHED",
+            "match_id",
+            "match-1",
+            "bucket",
+            "apac",
+            "mode",
+            "rank",
+            "matched_at",
+            "1771934430000",
+            "ticket_ids",
+            "ticket-1,ticket-2,ticket-3",
+            "user_ids",
+            "user-1,user-2,user-3",
+            "teams",
+            "0,1,1");
+    Mockito.doReturn(scriptResult.subList(0, 11))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), eq(List.of("mm:ticket:ticket-1")), eq(""));
+    Mockito.doReturn(scriptResult)
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(List.of("mm:ticket:ticket-1", "mm:match:match-1")),
+            eq("match-1"));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
+
+    final var snapshot = repository.findTicketStatus("ticket-1");
+
+    assertThat(snapshot).isPresent();
+    assertThat(snapshot.get().ticket().status()).isEqualTo(TicketStatus.MATCHED);
+    assertThat(snapshot.get().ticket().bucket()).isEqualTo("apac");
+    final var match = snapshot.get().match();
+    assertThat(match.matchId()).isEqualTo("match-1");
+    assertThat(match.mode()).isEqualTo(MatchMode.RANK);
+    assertThat(match.matchedAt()).isEqualTo(Instant.parse("2026-02-24T12:00:30Z"));
+    assertThat(match.peerUserIdsOf("ticket-2")).containsExactly("user-1", "user-3");
+    assertThat(match.teamOf("ticket-3")).isEqualTo(1);
+    verify(redisTemplate, never()).opsForHash();
+    // match key は match_id を読んでから宣言するため、成立後の参照だけ 2 往復になる
+    verify(metrics, Mockito.times(2)).recordRedisCalls("status", 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void findTicketStatusReturnsTicketOnlyWhenMatchRecordIsGone() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final List<Object> scriptResult =
+        List.of(
+            4L, "user_id", "user-1", "mode", "casual", "status", "MATCHED", "match_id", "match-1");
+    Mockito.doReturn(scriptResult)
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), eq(List.of("mm:ticket:ticket-1")), eq(""));
+    Mockito.doReturn(scriptResult)
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(List.of("mm:ticket:ticket-1", "mm:match:match-1")),
+            eq("match-1"));
+    Mockito.doReturn(List.of(0L))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), eq(List.of("mm:ticket:missing")), eq(""));
+
+    final RedisMatchmakingTicketRepository repository =
+        ticketRepository(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
+
+    final var snapshot = repository.findTicketStatus("ticket-1");
+
+    assertThat(snapshot).isPresent();
+    assertThat(snapshot.get().ticket().matchId()).isEqualTo("match-1");
+    assertThat(snapshot.get().match()).isNull();
+    assertThat(repository.findTicketStatus("missing")).isEmpty();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void reapExpiredRunsBatchScriptAndCountsExpiredTickets() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final ZSetOperations<String, String> zSetOps = Mockito.mock(ZSetOperations.class);
+    when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+    final Set<String> due =
+        new LinkedHashSet<>(List.of("rank:apac:t-1", "rank:apac:t-2", "t-3"));
+    when(zSetOps.rangeByScore(
+            "mm:expiry:rank:apac", Double.NEGATIVE_INFINITY, 1771934400000.0, 0, 100))
+        .thenReturn(due);
+    // 期限到来分の ticket key は ID から組み立てず KEYS で宣言する
+    Mockito.doReturn(List.of(3L, 2L))
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(
+                List.of(
+                    "mm:expiry:rank:apac",
+                    "mm:queue:rank:apac",
+                    "mm:rating:rank:apac",
+                    "mm:ticket:rank:apac:t-1",
+                    "mm:ticket:rank:apac:t-2",
+                    "mm:ticket:t-3")),
+            eq("1771934400000"),
+            eq("rank:apac:t-1"),
+            eq("rank:apac:t-2"),
+            eq("t-3"));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+
+    final RedisMatchmakingTicketRepository repository = ticketRepository(redisTemplate, metrics);
+
+    final int removed =
+        repository.reapExpired(
+            new QueueBucket(MatchMode.RANK, "apac"), Instant.parse("2026-02-24T12:00:00Z"), 100);
+
+    assertThat(removed).isEqualTo(3);
+    verify(metrics).recordMatchResult("expired", 2);
+    verify(metrics, Mockito.times(2)).recordRedisCalls("reap", 1);
   }
 
   @SuppressWarnings("unchecked")
   @Test
-  void matchRepositoryMarksMatchedForTwoQueuedTickets() {
+  void reapExpiredSkipsScriptWhenNothingIsDue() {
     final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
-    final List<Object> scriptResult = List.of("matched", "ticket-1", "ticket-2", "match-1");
+    final ZSetOperations<String, String> zSetOps = Mockito.mock(ZSetOperations.class);
+    when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+    when(zSetOps.rangeByScore(
+            eq("mm:expiry:casual"),
+            eq(Double.NEGATIVE_INFINITY),
+            Mockito.anyDouble(),
+            eq(0L),
+            eq(50L)))
+        .thenReturn(Set.of());
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+
+    final int removed =
+        ticketRepository(redisTemplate, metrics)
+            .reapExpired(QueueBucket.defaultOf(MatchMode.CASUAL), Instant.now(), 50);
+
+    assertThat(removed).isZero();
+    verify(redisTemplate, never())
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    verify(metrics).recordRedisCalls("reap", 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void matchManyReturnsEveryPairWithCreatedAtFromSingleScriptCall() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final List<Object> scriptResult =
+        List.of(
+            "matched",
+            7L,
+            "ticket-1",
+            "ticket-2",
+            "match-1",
+            "1771934400000",
+            "1771934405000",
+            "ticket-3",
+            "ticket-4",
+            "match-2",
+            "1771934406000",
+            "1771934407000");
     Mockito.doReturn(scriptResult)
         .when(redisTemplate)
-        .execute(Mockito.<RedisScript<List>>any(), eq(List.of("mm:queue:casual")), any(), any());
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(List.of("mm:queue:casual", "mm:outbox:matches")),
+            any(Object[].class));
+
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
 
     final RedisLuaMatchmakingMatchRepository repository =
-        new RedisLuaMatchmakingMatchRepository(redisTemplate);
+        new RedisLuaMatchmakingMatchRepository(
+            scriptExecutor(redisTemplate, metrics), STANDALONE, true);
 
-    final Optional<com.example.matchmaking.model.MatchPair> result =
-        repository.matchTwo(MatchMode.CASUAL, Instant.now());
+    final Instant now = Instant.parse("2026-02-24T12:00:10Z");
+    final List<com.example.matchmaking.model.MatchPair> pairs =
+        repository.matchMany(QueueBucket.defaultOf(MatchMode.CASUAL), now, 5);
 
-    assertThat(result).isPresent();
-    assertThat(result.get().mode()).isEqualTo(MatchMode.CASUAL);
-    assertThat(result.get().ticketId1()).isEqualTo("ticket-1");
-    assertThat(result.get().ticketId2()).isEqualTo("ticket-2");
-    assertThat(result.get().matchId()).isEqualTo("match-1");
+    assertThat(pairs).hasSize(2);
+    assertThat(pairs.get(0).matchId()).isEqualTo("match-1");
+    assertThat(pairs.get(0).ticketId1()).isEqualTo("ticket-1");
+    assertThat(pairs.get(0).ticketId2()).isEqualTo("ticket-2");
+    assertThat(pairs.get(0).matchedAt()).isEqualTo(now);
+    assertThat(pairs.get(0).ticket1CreatedAt()).isEqualTo(Instant.parse("2026-02-24T12:00:00Z"));
+    assertThat(pairs.get(0).ticket2CreatedAt()).isEqualTo(Instant.parse("2026-02-24T12:00:05Z"));
+    assertThat(pairs.get(1).matchId()).isEqualTo("match-2");
+    assertThat(pairs.get(1).ticketId1()).isEqualTo("ticket-3");
+    assertThat(pairs.get(1).ticketId2()).isEqualTo("ticket-4");
+    // 2 要素目の走査件数はスクリプト別の計測に回り、成立分の解釈には含めない
+    verify(metrics).recordScriptScanned("match_many", 7);
+    verify(metrics).recordScript(eq("match_many"), any(Duration.class));
+    verify(metrics).recordRedisCalls("match_many", 1);
   }
 
   @SuppressWarnings("unchecked")
   @Test
-  void matchRepositoryReturnsEmptyWhenInsufficientQueuedTickets() {
+  void matchManyRecordsScriptMetricsWhenScriptFails() {
     final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
-    Mockito.doReturn(List.of("no_match"))
+    Mockito.doThrow(new IllegalStateException("BUSY"))
         .when(redisTemplate)
-        .execute(Mockito.<RedisScript<List>>any(), eq(List.of("mm:queue:casual")), any(), any());
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final RedisLuaMatchmakingMatchRepository repository =
+        new RedisLuaMatchmakingMatchRepository(
+            scriptExecutor(redisTemplate, metrics), STANDALONE, true);
+
+    assertThatThrownBy(
+            () -> repository.matchMany(QueueBucket.defaultOf(MatchMode.CASUAL), Instant.now(), 5))
+        .isInstanceOf(IllegalStateException.class);
+    // 失敗した呼び出しも時間と往復は残し、走査件数は不明として載せない
+    verify(metrics).recordScript(eq("match_many"), any(Duration.class));
+    verify(metrics).recordRedisCalls("match_many", 1);
+    verify(metrics, never()).recordScriptScanned(eq("match_many"), Mockito.anyInt());
+  }
+
+  @Test
+  void matcherScriptsShareThePrelude() {
+    for (String path :
+        List.of("lua/match_many.lua", "lua/match_rating.lua", "lua/match_lobby.lua")) {
+      final String text =
+          RedisLuaMatchmakingMatchRepository.loadMatcherScript(path).getScriptAsString();
+      // 共通部を先頭に連結し、本文はそこで定義した関数を受け取るだけにする
+      assertThat(text).startsWith("-- どこで: Matchmaking Redis Lua スクリプト（matcher 共通部）");
+      assertThat(text).contains("= matcher_functions(ns, ");
+      assertThat(text.indexOf("local function write_match_record"))
+          .isEqualTo(text.lastIndexOf("local function write_match_record"));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void matchManyReturnsEmptyWhenNoPairFormed() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doReturn(List.of("no_match", 0L))
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(List.of("mm:queue:casual", "mm:outbox:matches")),
+            any(Object[].class));
 
     final RedisLuaMatchmakingMatchRepository repository =
-        new RedisLuaMatchmakingMatchRepository(redisTemplate);
+        new RedisLuaMatchmakingMatchRepository(scriptExecutor(redisTemplate), STANDALONE, true);
+
+    assertThat(repository.matchMany(QueueBucket.defaultOf(MatchMode.CASUAL), Instant.now(), 5))
+        .isEmpty();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void matchersLeaveOutboxKeyOutWhenNoRelayReadsIt() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doReturn(List.of("no_match", 0L))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    final QueueBucket bucket = QueueBucket.defaultOf(MatchMode.CASUAL);
+
+    new RedisLuaMatchmakingMatchRepository(scriptExecutor(redisTemplate), STANDALONE, false)
+        .matchMany(bucket, Instant.now(), 2);
+    new RedisLobbyMatchmakingRepository(scriptExecutor(redisTemplate), STANDALONE, false)
+        .formLobbies(bucket, Instant.now(), new LobbyShape(2, 2), 1);
+
+    // relay が無いと outbox stream を縮める者がいないため、Lua に XADD させない
+    final ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+    verify(redisTemplate, Mockito.times(2))
+        .execute(Mockito.<RedisScript<List>>any(), keysCaptor.capture(), any(Object[].class));
+    assertThat(keysCaptor.getAllValues().get(0)).containsExactly("mm:queue:casual");
+    assertThat(keysCaptor.getAllValues().get(1))
+        .containsExactly("mm:queue:casual", "mm:rating:casual");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void ratingMatchRepositoryPassesWindowSettingsAndRatingIndexKey() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final List<Object> scriptResult =
+        List.of(
+            "matched", 3L, "ticket-1", "ticket-2", "match-1", "1771934400000", "1771934405000");
+    Mockito.doReturn(scriptResult)
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(List.of("mm:queue:rank:apac", "mm:rating:rank:apac", "mm:outbox:matches")),
+            any(Object[].class));
+
+    final RedisRatingMatchmakingMatchRepository repository =
+        new RedisRatingMatchmakingMatchRepository(
+            scriptExecutor(redisTemplate),
+            STANDALONE,
+            new com.example.matchmaking.config.MatchmakingRatingProperties(
+                true, "rating", 1500, 50, 10, 400, 8),
+            true);
+
+    final Instant now = Instant.parse("2026-02-24T12:00:10Z");
+    final List<com.example.matchmaking.model.MatchPair> pairs =
+        repository.matchMany(new QueueBucket(MatchMode.RANK, "apac"), now, 3);
+
+    assertThat(pairs).hasSize(1);
+    assertThat(pairs.get(0).mode()).isEqualTo(MatchMode.RANK);
+    assertThat(pairs.get(0).ticket1CreatedAt()).isEqualTo(Instant.parse("2026-02-24T12:00:00Z"));
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), argsCaptor.capture());
+    assertThat(argsCaptor.getValue())
+        .startsWith(
+            String.valueOf(now.toEpochMilli()), "3", "50.0", "10.0", "400.0", "8", "mm:", "1500.0")
+        .hasSize(8 + 3);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void leaseRepositoryAcquiresPerBucketLeaseWithTtlMillis() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doReturn(1L)
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<Long>>any(),
+            eq(List.of("mm:lease:rank:apac")),
+            eq("worker-1"),
+            eq("5000"));
+
+    final RedisMatchmakingLeaseRepository repository =
+        new RedisMatchmakingLeaseRepository(redisTemplate);
+
+    assertThat(
+            repository.tryAcquire(
+                new QueueBucket(MatchMode.RANK, "apac"), "worker-1", Duration.ofSeconds(5)))
+        .isTrue();
+    assertThat(
+            repository.tryAcquire(
+                new QueueBucket(MatchMode.RANK, "emea"), "worker-1", Duration.ofSeconds(5)))
+        .isFalse();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void lobbyRepositoryParsesGroupsWithTeamsAndPartySizes() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final List<Object> scriptResult =
+        List.of(
+            "matched",
+            5L,
+            "match-1",
+            3L,
+            "ticket-1",
+            0L,
+            2L,
+            "1771934400000",
+            "ticket-2",
+            1L,
+            1L,
+            "1771934401000",
+            "ticket-3",
+            1L,
+            1L,
+            "1771934402000");
+    Mockito.doReturn(scriptResult)
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(List.of("mm:queue:rank:apac", "mm:rating:rank:apac", "mm:outbox:matches")),
+            any(Object[].class));
+
+    final RedisLobbyMatchmakingRepository repository =
+        new RedisLobbyMatchmakingRepository(scriptExecutor(redisTemplate), STANDALONE, true);
+
+    final Instant now = Instant.parse("2026-02-24T12:00:10Z");
+    final List<MatchGroup> groups =
+        repository.formLobbies(
+            new QueueBucket(MatchMode.RANK, "apac"), now, new LobbyShape(2, 2), 2);
+
+    assertThat(groups).hasSize(1);
+    assertThat(groups.get(0).matchId()).isEqualTo("match-1");
+    assertThat(groups.get(0).playerCount()).isEqualTo(4);
+    assertThat(groups.get(0).members())
+        .extracting(MatchGroup.Member::ticketId, MatchGroup.Member::team)
+        .containsExactly(tuple("ticket-1", 0), tuple("ticket-2", 1), tuple("ticket-3", 1));
+    assertThat(groups.get(0).members().get(0).createdAt())
+        .isEqualTo(Instant.parse("2026-02-24T12:00:00Z"));
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), argsCaptor.capture());
+    assertThat(argsCaptor.getValue())
+        .startsWith(String.valueOf(now.toEpochMilli()), "2", "2", "2", "32", "mm:")
+        .hasSize(6 + 2);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void clusterJoinKeepsScriptKeysInBucketSlotAndRegistersBucketOutside() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final SetOperations<String, String> setOps = Mockito.mock(SetOperations.class);
+    when(redisTemplate.opsForSet()).thenReturn(setOps);
+    Mockito.doAnswer(invocation -> List.of("created", invocation.getArgument(2)))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final RedisMatchmakingTicketRepository repository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate,
+            scriptExecutor(redisTemplate, metrics),
+            MatchmakingKeyLayout.cluster(),
+            REDIS_PROPERTIES,
+            metrics);
+    final QueueBucket bucket = new QueueBucket(MatchMode.RANK, "apac:2");
+
+    final var first =
+        repository.createOrReuseTicket(
+            bucket, "user-1", "idem-1", "{}", 1820.0, 1, Duration.ofSeconds(60), Duration.ZERO);
+    repository.createOrReuseTicket(
+        bucket, "user-2", "idem-2", "{}", 1830.0, 1, Duration.ofSeconds(60), Duration.ZERO);
+
+    assertThat(first.ticketId()).startsWith("rank:apac:2:");
+    final ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+    final ArgumentCaptor<Object[]> argsCaptor = ArgumentCaptor.forClass(Object[].class);
+    verify(redisTemplate, Mockito.times(2))
+        .execute(Mockito.<RedisScript<List>>any(), keysCaptor.capture(), argsCaptor.capture());
+    assertThat(keysCaptor.getAllValues().get(0))
+        .containsExactly(
+            "mm:{rank:apac:2}:idemp:user-1:idem-1",
+            "mm:{rank:apac:2}:ticket:" + first.ticketId(),
+            "mm:{rank:apac:2}:queue",
+            "mm:{rank:apac:2}:rating",
+            "mm:{rank:apac:2}:expiry");
+    final Object[] args = argsCaptor.getAllValues().get(0);
+    assertThat(args[13]).isEqualTo("0");
+    assertThat(args[17]).isEqualTo("");
+    verify(setOps, Mockito.times(2)).add("mm:buckets:rank", "apac:2");
+    // outbox stream の登録はプロセス内で 1 回だけ
+    verify(setOps).add("mm:outbox:streams", "mm:{rank:apac:2}:outbox");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void clusterCancelAndStatusDeriveBucketKeysFromTicketId() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final String ticketId = "casual:apac:0b5e";
+    Mockito.doReturn(List.of("not_found"))
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(
+                List.of(
+                    "mm:{casual:apac}:ticket:" + ticketId,
+                    "mm:{casual:apac}:queue",
+                    "mm:{casual:apac}:rating",
+                    "mm:{casual:apac}:expiry")),
+            eq(ticketId),
+            eq("user-1"),
+            any());
+    Mockito.doReturn(List.of(0L))
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<List>>any(),
+            eq(List.of("mm:{casual:apac}:ticket:" + ticketId)),
+            eq(""));
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final RedisMatchmakingTicketRepository repository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate,
+            scriptExecutor(redisTemplate, metrics),
+            MatchmakingKeyLayout.cluster(),
+            REDIS_PROPERTIES,
+            metrics);
+
+    assertThat(repository.cancelTicket(ticketId, "user-1")).isEmpty();
+    assertThat(repository.findTicketStatus(ticketId)).isEmpty();
+    verify(metrics).recordRedisCalls("cancel", 1);
+    verify(metrics).recordRedisCalls("status", 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void clusterRemoveBucketRestoresIndexWhenJoinRacesIn() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final SetOperations<String, String> setOps = Mockito.mock(SetOperations.class);
+    final ZSetOperations<String, String> zSetOps = Mockito.mock(ZSetOperations.class);
+    when(redisTemplate.opsForSet()).thenReturn(setOps);
+    when(redisTemplate.opsForZSet()).thenReturn(zSetOps);
+    Mockito.doReturn(1L)
+        .when(redisTemplate)
+        .execute(
+            Mockito.<RedisScript<Long>>any(),
+            eq(List.of("mm:{casual:apac}:queue", "mm:{casual:apac}:expiry")),
+            any());
+    when(setOps.remove("mm:buckets:casual", "apac")).thenReturn(1L);
+    when(zSetOps.size("mm:{casual:apac}:queue")).thenReturn(0L, 1L);
+    final RedisMatchmakingTicketRepository repository =
+        new RedisMatchmakingTicketRepository(
+            redisTemplate,
+            scriptExecutor(redisTemplate),
+            MatchmakingKeyLayout.cluster(),
+            REDIS_PROPERTIES,
+            Mockito.mock(MatchmakingMetrics.class));
+    final QueueBucket bucket = new QueueBucket(MatchMode.CASUAL, "apac");
+
+    assertThat(repository.removeBucketIfEmpty(bucket)).isTrue();
+    assertThat(repository.removeBucketIfEmpty(bucket)).isFalse();
+
+    verify(setOps).add("mm:buckets:casual", "apac");
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void clusterMatchersUseBucketScopedQueueAndOutbox() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    Mockito.doReturn(List.of("no_match", 0L))
+        .when(redisTemplate)
+        .execute(Mockito.<RedisScript<List>>any(), any(List.class), any(Object[].class));
+    final MatchmakingKeyLayout cluster = MatchmakingKeyLayout.cluster();
+    final QueueBucket bucket = new QueueBucket(MatchMode.RANK, "apac");
+
+    new RedisLuaMatchmakingMatchRepository(scriptExecutor(redisTemplate), cluster, true)
+        .matchMany(bucket, Instant.now(), 2);
+    new RedisLobbyMatchmakingRepository(scriptExecutor(redisTemplate), cluster, true)
+        .formLobbies(bucket, Instant.now(), new LobbyShape(2, 2), 1);
+
+    final ArgumentCaptor<List<String>> keysCaptor = ArgumentCaptor.forClass(List.class);
+    verify(redisTemplate, Mockito.times(2))
+        .execute(Mockito.<RedisScript<List>>any(), keysCaptor.capture(), any(Object[].class));
+    assertThat(keysCaptor.getAllValues().get(0))
+        .containsExactly("mm:{rank:apac}:queue", "mm:{rank:apac}:outbox");
+    assertThat(keysCaptor.getAllValues().get(1))
+        .containsExactly("mm:{rank:apac}:queue", "mm:{rank:apac}:rating", "mm:{rank:apac}:outbox");
+  }
+
+  private static RedisMatchmakingTicketRepository ticketRepository(
+      StringRedisTemplate redisTemplate, MatchmakingMetrics metrics) {
+    return new RedisMatchmakingTicketRepository(
+        redisTemplate,
+        scriptExecutor(redisTemplate, metrics),
+        STANDALONE,
+        REDIS_PROPERTIES,
+        metrics);
+  }
+
+  private static RedisScriptExecutor scriptExecutor(StringRedisTemplate redisTemplate) {
+    return scriptExecutor(redisTemplate, Mockito.mock(MatchmakingMetrics.class));
+  }
 
-    assertThat(repository.matchTwo(MatchMode.CASUAL, Instant.now())).isEmpty();
+  private static RedisScriptExecutor scriptExecutor(
+      StringRedisTemplate redisTemplate, MatchmakingMetrics metrics) {
+    return new RedisScriptExecutor(redisTemplate, metrics, REDIS_PROPERTIES);
   }
 }
@@ -0,0 +1,85 @@
+package com.example.matchmaking.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TicketStatusCacheTest {
+
+  private static final List<Object> QUEUED = List.of(1L, "status", "QUEUED");
+  private static final List<Object> MATCHED =
+      List.of(2L, "status", "MATCHED", "match_id", "m-1", "ticket_ids", "t-1,t-2");
+  private static final List<Object> COMPACT_MATCHED =
+      List.of(2L, "s", "MATCHED", "x", "m-2", "ticket_ids", "t-4,t-5");
+
+  @Test
+  void storesLoadedResultUntilTicketKeyIsInvalidated() {
+    final TicketStatusCache cache = new TicketStatusCache(10, MatchmakingKeyLayout.standalone());
+
+    final Object token = cache.begin("t-1");
+    assertThat(cache.complete("t-1", token, QUEUED)).isTrue();
+    assertThat(cache.get("t-1")).isEqualTo(QUEUED);
+
+    cache.invalidate("mm:ticket:t-1");
+
+    assertThat(cache.get("t-1")).isNull();
+  }
+
+  @Test
+  void dropsResultWhenInvalidationArrivesWhileLoading() {
+    final TicketStatusCache cache = new TicketStatusCache(10, MatchmakingKeyLayout.standalone());
+
+    final Object token = cache.begin("t-1");
+    cache.invalidate("mm:ticket:t-1");
+
+    assertThat(cache.complete("t-1", token, QUEUED)).isFalse();
+    assertThat(cache.get("t-1")).isNull();
+  }
+
+  @Test
+  void matchKeyInvalidationDropsTicketsReferencingTheMatch() {
+    final TicketStatusCache cache = new TicketStatusCache(10, MatchmakingKeyLayout.standalone());
+    cache.complete("t-1", cache.begin("t-1"), MATCHED);
+    cache.complete("t-3", cache.begin("t-3"), QUEUED);
+
+    cache.invalidate("mm:match:m-1");
+
+    assertThat(cache.get("t-1")).isNull();
+    assertThat(cache.get("t-3")).isEqualTo(QUEUED);
+  }
+
+  @Test
+  void matchKeyInvalidationDropsCompactTicketsReferencingTheMatch() {
+    final TicketStatusCache cache = new TicketStatusCache(10, MatchmakingKeyLayout.standalone());
+    cache.complete("t-4", cache.begin("t-4"), COMPACT_MATCHED);
+    cache.complete("t-1", cache.begin("t-1"), MATCHED);
+
+    cache.invalidate("mm:match:m-2");
+
+    assertThat(cache.get("t-4")).isNull();
+    assertThat(cache.get("t-1")).isEqualTo(MATCHED);
+  }
+
+  @Test
+  void evictsLeastRecentlyReadTicketBeyondMaxEntries() {
+    final TicketStatusCache cache = new TicketStatusCache(2, MatchmakingKeyLayout.standalone());
+    cache.complete("t-1", cache.begin("t-1"), QUEUED);
+    cache.complete("t-2", cache.begin("t-2"), QUEUED);
+    cache.get("t-1");
+
+    cache.complete("t-3", cache.begin("t-3"), QUEUED);
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.get("t-1")).isNotNull();
+    assertThat(cache.get("t-2")).isNull();
+  }
+
+  @Test
+  void requiresStandaloneKeyLayout() {
+    // cluster では key の接頭辞が区画ごとに変わり、無効化通知を ticket へ振り分けられない
+    assertThatThrownBy(() -> new TicketStatusCache(10, MatchmakingKeyLayout.cluster()))
+        .isInstanceOf(IllegalStateException.class);
+  }
+}
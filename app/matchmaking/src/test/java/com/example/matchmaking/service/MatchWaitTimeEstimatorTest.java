@@ -0,0 +1,110 @@
+package com.example.matchmaking.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.matchmaking.config.MatchmakingWaitEstimateProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import com.example.matchmaking.model.WaitTimeHistogram;
+import com.example.matchmaking.repository.MatchmakingTicketRepository;
+import com.example.matchmaking.repository.MatchmakingWaitTimeRepository;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+class MatchWaitTimeEstimatorTest {
+
+  private static final QueueBucket APAC = new QueueBucket(MatchMode.RANK, "apac");
+  private static final MatchmakingWaitEstimateProperties ENABLED =
+      new MatchmakingWaitEstimateProperties(
+          true,
+          Duration.ofMinutes(1),
+          10,
+          Duration.ofSeconds(5),
+          Duration.ofSeconds(1),
+          Duration.ofSeconds(10));
+
+  private MatchmakingWaitTimeRepository waitTimeRepository;
+  private MatchmakingTicketRepository ticketRepository;
+  private MatchWaitTimeEstimator estimator;
+
+  @BeforeEach
+  void setUp() {
+    waitTimeRepository = Mockito.mock(MatchmakingWaitTimeRepository.class);
+    ticketRepository = Mockito.mock(MatchmakingTicketRepository.class);
+    when(ticketRepository.activeBuckets(any())).thenReturn(List.of());
+    when(waitTimeRepository.readSamples(any(), anyLong(), anyLong()))
+        .thenReturn(new WaitTimeHistogram());
+    estimator =
+        new MatchWaitTimeEstimator(
+            ENABLED, waitTimeRepository, ticketRepository, Mockito.mock(MatchmakingMetrics.class));
+  }
+
+  @Test
+  void refreshSendsRecordedSamplesAndPublishesSharedQuantiles() {
+    estimator.record(APAC, Duration.ofSeconds(8));
+    estimator.record(APAC, Duration.ofSeconds(8));
+    final long[] shared = new long[WaitTimeHistogram.BINS];
+    shared[WaitTimeHistogram.binOf(Duration.ofSeconds(8))] = 9;
+    shared[WaitTimeHistogram.binOf(Duration.ofSeconds(60))] = 1;
+    when(waitTimeRepository.readSamples(eq(APAC), anyLong(), anyLong()))
+        .thenReturn(WaitTimeHistogram.of(shared));
+
+    estimator.refresh();
+
+    final ArgumentCaptor<long[]> sent = ArgumentCaptor.forClass(long[].class);
+    final ArgumentCaptor<Long> window = ArgumentCaptor.forClass(Long.class);
+    verify(waitTimeRepository)
+        .addSamples(eq(APAC), window.capture(), sent.capture(), eq(Duration.ofMinutes(11)));
+    assertThat(sent.getValue()[WaitTimeHistogram.binOf(Duration.ofSeconds(8))]).isEqualTo(2);
+    verify(waitTimeRepository).readSamples(APAC, window.getValue() - 9, window.getValue());
+    final var estimate = estimator.estimate(APAC);
+    assertThat(estimate.samples()).isEqualTo(10);
+    assertThat(estimate.p50()).isBetween(Duration.ofSeconds(8), Duration.ofMillis(9_600));
+    assertThat(estimate.p90()).isEqualTo(estimate.p50());
+    // p50 の 1/4 は 2 秒台
+    assertThat(estimate.pollInterval()).isBetween(Duration.ofSeconds(2), Duration.ofMillis(2_400));
+  }
+
+  @Test
+  void estimateIsEmptyUntilRefreshedAndPollIntervalIsClamped() {
+    assertThat(estimator.estimate(APAC).p50()).isNull();
+    assertThat(estimator.estimate(APAC).pollInterval()).isEqualTo(Duration.ofSeconds(1));
+
+    final long[] shared = new long[WaitTimeHistogram.BINS];
+    shared[WaitTimeHistogram.binOf(Duration.ofMinutes(5))] = 3;
+    when(ticketRepository.activeBuckets(MatchMode.RANK)).thenReturn(List.of(APAC));
+    when(waitTimeRepository.readSamples(eq(APAC), anyLong(), anyLong()))
+        .thenReturn(WaitTimeHistogram.of(shared));
+    estimator.refresh();
+
+    assertThat(estimator.estimate(APAC).pollInterval()).isEqualTo(Duration.ofSeconds(10));
+  }
+
+  @Test
+  void failedFlushKeepsSamplesForTheNextRefresh() {
+    estimator.record(APAC, Duration.ofSeconds(3));
+    doThrow(new IllegalStateException("redis down"))
+        .doNothing()
+        .when(waitTimeRepository)
+        .addSamples(eq(APAC), anyLong(), any(), any());
+
+    estimator.refresh();
+    estimator.refresh();
+
+    final ArgumentCaptor<long[]> sent = ArgumentCaptor.forClass(long[].class);
+    verify(waitTimeRepository, times(2)).addSamples(eq(APAC), anyLong(), sent.capture(), any());
+    assertThat(sent.getAllValues().get(1)[WaitTimeHistogram.binOf(Duration.ofSeconds(3))])
+        .isEqualTo(1);
+  }
+}
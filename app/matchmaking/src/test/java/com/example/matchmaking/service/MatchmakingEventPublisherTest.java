@@ -1,5 +1,6 @@
 package com.example.matchmaking.service;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
@@ -8,117 +9,107 @@ import static org.mockito.Mockito.when;
 
 import com.example.matchmaking.config.MatchmakingNatsProperties;
 import com.example.matchmaking.model.MatchMode;
-import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.MatchOutboxEntry;
 import com.example.proto.matchmaking.MatchmakingEvent;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.nats.client.JetStream;
-import io.nats.client.JetStreamApiException;
+import io.nats.client.api.PublishAck;
 import io.nats.client.impl.Headers;
-import java.io.IOException;
 import java.time.Clock;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneOffset;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.slf4j.MDC;
 
 class MatchmakingEventPublisherTest {
 
+  private static final MatchmakingNatsProperties PROPERTIES =
+      new MatchmakingNatsProperties(
+          "matchmaking.events", "matchmaking-events", Duration.ofMinutes(2));
+  private static final Clock CLOCK =
+      Clock.fixed(Instant.parse("2026-02-24T12:00:00Z"), ZoneOffset.UTC);
+
   @Test
-  void publishesMatchedEvent() throws IOException, JetStreamApiException {
+  void publishesMatchFoundAsyncWithOutboxFields() throws InvalidProtocolBufferException {
     final JetStream jetStream = Mockito.mock(JetStream.class);
-    final MatchmakingNatsProperties properties =
-        new MatchmakingNatsProperties(
-            "matchmaking.events", "matchmaking-events", java.time.Duration.ofMinutes(2));
-    final Clock clock = Clock.fixed(Instant.parse("2026-02-24T12:00:00Z"), ZoneOffset.UTC);
+    final CompletableFuture<PublishAck> ack = new CompletableFuture<>();
+    when(jetStream.publishAsync(any(String.class), any(Headers.class), any(byte[].class)))
+        .thenReturn(ack);
     final MatchmakingEventPublisher publisher =
-        new MatchmakingEventPublisher(jetStream, properties, clock);
+        new MatchmakingEventPublisher(jetStream, PROPERTIES, CLOCK);
 
-    final MatchPair pair =
-        new MatchPair("match-1", MatchMode.CASUAL, "ticket-1", "ticket-2", Instant.now(clock));
-    publisher.publishMatched(pair);
+    final CompletableFuture<PublishAck> result =
+        publisher.publishMatchFound(
+            new MatchOutboxEntry(
+                "1-0", "match-1", MatchMode.RANK, Instant.parse("2026-02-24T11:59:58Z")));
 
-    verify(jetStream).publish(eq("matchmaking.events"), any(Headers.class), any(byte[].class));
+    assertThat(result).isSameAs(ack);
+    final ArgumentCaptor<Headers> headers = ArgumentCaptor.forClass(Headers.class);
+    final ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+    verify(jetStream)
+        .publishAsync(eq("matchmaking.events"), headers.capture(), payload.capture());
+    final MatchmakingEvent event = MatchmakingEvent.parseFrom(payload.getValue());
+    assertThat(event.getEventType()).isEqualTo(MatchmakingEvent.EventType.MATCH_FOUND);
+    assertThat(event.getMatchId()).isEqualTo("match-1");
+    assertThat(event.getMode()).isEqualTo("rank");
+    assertThat(event.getOccurredAt()).isEqualTo("2026-02-24T11:59:58Z");
+    assertThat(headers.getValue().getFirst("Nats-Msg-Id")).isEqualTo(event.getEventId());
   }
 
   @Test
-  void usesMdcTraceIdWhenAvailable()
-      throws IOException, JetStreamApiException, InvalidProtocolBufferException {
+  void derivesSameEventIdForRetriesOfSameMatch() throws InvalidProtocolBufferException {
     final JetStream jetStream = Mockito.mock(JetStream.class);
-    final MatchmakingNatsProperties properties =
-        new MatchmakingNatsProperties(
-            "matchmaking.events", "matchmaking-events", java.time.Duration.ofMinutes(2));
-    final Clock clock = Clock.fixed(Instant.parse("2026-02-24T12:00:00Z"), ZoneOffset.UTC);
     final MatchmakingEventPublisher publisher =
-        new MatchmakingEventPublisher(jetStream, properties, clock);
+        new MatchmakingEventPublisher(jetStream, PROPERTIES, CLOCK);
+    final MatchOutboxEntry entry = new MatchOutboxEntry("1-0", "match-1", MatchMode.CASUAL, null);
+
+    publisher.publishMatchFound(entry);
+    publisher.publishMatchFound(entry);
+
+    final ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+    verify(jetStream, Mockito.times(2))
+        .publishAsync(eq("matchmaking.events"), any(Headers.class), payload.capture());
+    final MatchmakingEvent first = MatchmakingEvent.parseFrom(payload.getAllValues().get(0));
+    final MatchmakingEvent second = MatchmakingEvent.parseFrom(payload.getAllValues().get(1));
+    assertThat(first.getEventId())
+        .isEqualTo(second.getEventId())
+        .isEqualTo(MatchmakingEventPublisher.eventIdOf("match-1"));
+    assertThat(first.getOccurredAt()).isEqualTo("2026-02-24T12:00:00Z");
+  }
+
+  @Test
+  void usesMdcTraceIdWhenAvailable() throws InvalidProtocolBufferException {
+    final JetStream jetStream = Mockito.mock(JetStream.class);
+    final MatchmakingEventPublisher publisher =
+        new MatchmakingEventPublisher(jetStream, PROPERTIES, CLOCK);
     MDC.put("trace_id", "trace-from-mdc");
-    final byte[][] payload = new byte[1][];
-    when(jetStream.publish(any(String.class), any(Headers.class), any(byte[].class)))
-        .thenAnswer(
-            invocation -> {
-              payload[0] = invocation.getArgument(2);
-              return null;
-            });
 
     try {
-      publisher.publishMatched(
-          new MatchPair("match-1", MatchMode.CASUAL, "ticket-1", "ticket-2", Instant.now(clock)));
+      publisher.publishMatchFound(
+          new MatchOutboxEntry("1-0", "match-1", MatchMode.CASUAL, Instant.now(CLOCK)));
     } finally {
       MDC.clear();
     }
 
-    final MatchmakingEvent event = MatchmakingEvent.parseFrom(payload[0]);
-    org.assertj.core.api.Assertions.assertThat(event.getTraceId()).isEqualTo("trace-from-mdc");
+    final ArgumentCaptor<byte[]> payload = ArgumentCaptor.forClass(byte[].class);
+    verify(jetStream).publishAsync(any(String.class), any(Headers.class), payload.capture());
+    final MatchmakingEvent event = MatchmakingEvent.parseFrom(payload.getValue());
+    assertThat(event.getTraceId()).isEqualTo("trace-from-mdc");
   }
 
   @Test
   void throwsWhenMatchIdMissing() {
-    final JetStream jetStream = Mockito.mock(JetStream.class);
-    final MatchmakingNatsProperties properties =
-        new MatchmakingNatsProperties(
-            "matchmaking.events", "matchmaking-events", java.time.Duration.ofMinutes(2));
-    final Clock clock = Clock.systemUTC();
     final MatchmakingEventPublisher publisher =
-        new MatchmakingEventPublisher(jetStream, properties, clock);
+        new MatchmakingEventPublisher(Mockito.mock(JetStream.class), PROPERTIES, CLOCK);
 
     assertThatThrownBy(
             () ->
-                publisher.publishMatched(
-                    new MatchPair(" ", MatchMode.CASUAL, "ticket-1", "ticket-2", Instant.now())))
+                publisher.publishMatchFound(
+                    new MatchOutboxEntry("1-0", " ", MatchMode.CASUAL, Instant.now(CLOCK))))
         .isInstanceOf(IllegalArgumentException.class);
   }
-
-  @Test
-  void wrapsIOException() throws IOException, JetStreamApiException {
-    final JetStream jetStream = Mockito.mock(JetStream.class);
-    when(jetStream.publish(any(String.class), any(Headers.class), any(byte[].class)))
-        .thenThrow(new IOException("boom"));
-    final MatchmakingNatsProperties properties =
-        new MatchmakingNatsProperties(
-            "matchmaking.events", "matchmaking-events", java.time.Duration.ofMinutes(2));
-    final Clock clock = Clock.systemUTC();
-    final MatchmakingEventPublisher publisher =
-        new MatchmakingEventPublisher(jetStream, properties, clock);
-
-    assertThatThrownBy(
-            () ->
-                publisher.publishMatched(
-                    new MatchPair(
-                        UUID.randomUUID().toString(),
-                        MatchMode.CASUAL,
-                        "ticket-1",
-                        "ticket-2",
-                        Instant.now())))
-        .isInstanceOf(IllegalStateException.class)
-        .hasMessageContaining("failed to publish");
-  }
-
-  @Test
-  void noopPublisherDoesNothing() {
-    final NoopMatchmakingEventPublisher publisher = new NoopMatchmakingEventPublisher();
-
-    publisher.publishMatched(
-        new MatchPair("match-1", MatchMode.CASUAL, "ticket-1", "ticket-2", Instant.now()));
-  }
 }
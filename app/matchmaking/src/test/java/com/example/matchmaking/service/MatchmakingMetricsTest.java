@@ -3,6 +3,8 @@ package com.example.matchmaking.service;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 class MatchmakingMetricsTest {
@@ -12,25 +14,81 @@ class MatchmakingMetricsTest {
     final SimpleMeterRegistry registry = new SimpleMeterRegistry();
     final MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
 
-    metrics.updateQueueDepth("casual", 3);
-    metrics.updateOldestQueueAge("casual", 9);
+    metrics.updateQueueDepth("casual", "apac", 3);
+    metrics.updateOldestQueueAge("casual", "apac", 9);
     metrics.recordMatchResult("matched");
     metrics.recordDependencyError("redis");
-    metrics.recordTimeToMatchSeconds(5);
+    metrics.recordTimeToMatch(Duration.ofMillis(350));
+    metrics.updateOwnedPartitions(2);
 
-    final double depth = registry.get("mm.queue.depth").tag("mode", "casual").gauge().value();
-    final double oldest = registry.get("mm.queue.oldest_age").tag("mode", "casual").gauge().value();
+    final double depth =
+        registry.get("mm.queue.depth").tags("mode", "casual", "bucket", "apac").gauge().value();
+    final double oldest =
+        registry
+            .get("mm.queue.oldest_age")
+            .tags("mode", "casual", "bucket", "apac")
+            .gauge()
+            .value();
     final double matched =
         registry.get("mm.match.total").tag("result", "matched").counter().count();
     final double errors =
         registry.get("mm.dependency.error.total").tag("type", "redis").counter().count();
     final long timerCount = registry.get("mm.time_to_match").timer().count();
+    final double owned = registry.get("mm.worker.owned_partitions").gauge().value();
 
     assertThat(depth).isEqualTo(3.0);
     assertThat(oldest).isEqualTo(9.0);
     assertThat(matched).isEqualTo(1.0);
     assertThat(errors).isEqualTo(1.0);
     assertThat(timerCount).isEqualTo(1L);
+    assertThat(registry.get("mm.time_to_match").timer().totalTime(TimeUnit.MILLISECONDS))
+        .isEqualTo(350.0);
+    assertThat(owned).isEqualTo(2.0);
+  }
+
+  @Test
+  void queueGaugesAreReportedPerBucket() {
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
+
+    metrics.updateQueueDepth("rank", "apac", 4);
+    metrics.updateQueueDepth("rank", "emea", 1);
+
+    final double apac =
+        registry.get("mm.queue.depth").tags("mode", "rank", "bucket", "apac").gauge().value();
+    final double emea =
+        registry.get("mm.queue.depth").tags("mode", "rank", "bucket", "emea").gauge().value();
+
+    assertThat(apac).isEqualTo(4.0);
+    assertThat(emea).isEqualTo(1.0);
+  }
+
+  @Test
+  void countsWakeupsPerSource() {
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
+
+    metrics.recordWakeup("local");
+    metrics.recordWakeup("remote");
+    metrics.recordWakeup("remote");
+
+    assertThat(registry.get("mm.worker.wakeup.total").tag("source", "remote").counter().count())
+        .isEqualTo(2.0);
+  }
+
+  @Test
+  void recordsJoinLatencyAndRedisCallsPerOperation() {
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
+
+    metrics.recordJoin(Duration.ofMillis(3));
+    metrics.recordRedisCalls("join", 1);
+    metrics.recordRedisCalls("cancel", 1);
+    metrics.recordRedisCalls("join", 1);
+
+    assertThat(registry.get("mm.join.duration").timer().count()).isEqualTo(1);
+    assertThat(registry.get("mm.redis.calls.total").tag("operation", "join").counter().count())
+        .isEqualTo(2.0);
   }
 
   @Test
@@ -38,8 +96,30 @@ class MatchmakingMetricsTest {
     final SimpleMeterRegistry registry = new SimpleMeterRegistry();
     final MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
 
-    metrics.recordTimeToMatchSeconds(-1);
+    metrics.recordTimeToMatch(Duration.ofSeconds(-1));
 
     assertThat(registry.get("mm.time_to_match").timer().count()).isZero();
   }
+
+  @Test
+  void ticketCacheMetricsAreReported() {
+    final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    final MatchmakingMetrics metrics = new MatchmakingMetrics(registry);
+
+    metrics.recordTicketCache("hit");
+    metrics.recordTicketCache("hit");
+    metrics.recordTicketCache("miss");
+    metrics.recordTicketCacheInvalidations(3);
+    metrics.bindTicketCacheSize(() -> 7);
+
+    assertThat(
+            registry.get("mm.ticket_cache.requests.total").tag("result", "hit").counter().count())
+        .isEqualTo(2.0);
+    assertThat(
+            registry.get("mm.ticket_cache.requests.total").tag("result", "miss").counter().count())
+        .isEqualTo(1.0);
+    assertThat(registry.get("mm.ticket_cache.invalidations.total").counter().count())
+        .isEqualTo(3.0);
+    assertThat(registry.get("mm.ticket_cache.size").gauge().value()).isEqualTo(7.0);
+  }
 }
@@ -0,0 +1,154 @@
+package com.example.matchmaking.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.matchmaking.config.MatchmakingOutboxProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchOutboxEntry;
+import com.example.matchmaking.repository.MatchmakingOutboxRepository;
+import io.nats.client.api.PublishAck;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+class MatchmakingOutboxRelayTest {
+
+  private static final MatchmakingOutboxProperties PROPERTIES =
+      new MatchmakingOutboxProperties(
+          true,
+          "nats-relay",
+          Duration.ofMillis(100),
+          3,
+          10,
+          Duration.ofSeconds(30),
+          Duration.ofSeconds(1));
+  private static final Clock CLOCK =
+      Clock.fixed(Instant.parse("2026-02-24T12:00:01Z"), ZoneOffset.UTC);
+  private static final String STREAM = "mm:outbox:matches";
+  private static final Instant MATCHED_AT = Instant.parse("2026-02-24T12:00:00Z");
+
+  @Test
+  void publishesAllEntriesBeforeAwaitingAcksAndAcknowledgesOnlyConfirmed() {
+    final MatchmakingOutboxRepository repository = Mockito.mock(MatchmakingOutboxRepository.class);
+    when(repository.streams()).thenReturn(List.of(STREAM));
+    final MatchmakingEventPublisher publisher = Mockito.mock(MatchmakingEventPublisher.class);
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchOutboxEntry stale = new MatchOutboxEntry("1-0", "match-1", MatchMode.CASUAL, null);
+    final MatchOutboxEntry fresh =
+        new MatchOutboxEntry("2-0", "match-2", MatchMode.RANK, MATCHED_AT);
+    final MatchOutboxEntry failing =
+        new MatchOutboxEntry("3-0", "match-3", MatchMode.RANK, MATCHED_AT);
+    when(repository.claimStale(anyString(), anyString(), any(Duration.class), anyInt()))
+        .thenReturn(List.of(stale));
+    when(repository.readNew(anyString(), anyString(), anyInt()))
+        .thenReturn(List.of(fresh, failing));
+    final PublishAck ack = Mockito.mock(PublishAck.class);
+    when(publisher.publishMatchFound(stale)).thenReturn(CompletableFuture.completedFuture(ack));
+    when(publisher.publishMatchFound(fresh)).thenReturn(CompletableFuture.completedFuture(ack));
+    when(publisher.publishMatchFound(failing))
+        .thenReturn(CompletableFuture.failedFuture(new IOException("nats down")));
+
+    final MatchmakingOutboxRelay relay =
+        new MatchmakingOutboxRelay(repository, publisher, PROPERTIES, metrics, CLOCK);
+
+    assertThat(relay.relayBatch()).isEqualTo(3);
+
+    final InOrder inOrder = Mockito.inOrder(repository);
+    inOrder.verify(repository).ensureGroup(STREAM);
+    inOrder
+        .verify(repository)
+        .claimStale(Mockito.eq(STREAM), anyString(), any(Duration.class), Mockito.eq(3));
+    inOrder.verify(repository).readNew(Mockito.eq(STREAM), anyString(), Mockito.eq(2));
+    inOrder.verify(repository).acknowledge(STREAM, List.of("1-0", "2-0"));
+    verify(metrics).recordOutboxPublished(2);
+    verify(metrics).recordOutboxLag(Duration.ofSeconds(1));
+    verify(metrics).recordDependencyError("outbox_publish");
+  }
+
+  @Test
+  void dropsMalformedEntriesWithoutPublishing() {
+    final MatchmakingOutboxRepository repository = Mockito.mock(MatchmakingOutboxRepository.class);
+    when(repository.streams()).thenReturn(List.of(STREAM));
+    final MatchmakingEventPublisher publisher = Mockito.mock(MatchmakingEventPublisher.class);
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    when(repository.readNew(anyString(), anyString(), anyInt()))
+        .thenReturn(List.of(new MatchOutboxEntry("1-0", "match-1", null, MATCHED_AT)));
+
+    final MatchmakingOutboxRelay relay =
+        new MatchmakingOutboxRelay(repository, publisher, PROPERTIES, metrics, CLOCK);
+
+    assertThat(relay.relayBatch()).isEqualTo(1);
+
+    verify(publisher, never()).publishMatchFound(any());
+    verify(repository).acknowledge(STREAM, List.of("1-0"));
+    verify(metrics).recordDependencyError("outbox_malformed");
+    verify(metrics, never()).recordOutboxPublished(anyInt());
+  }
+
+  @Test
+  void relaysEachRegisteredStreamSeparately() {
+    final MatchmakingOutboxRepository repository = Mockito.mock(MatchmakingOutboxRepository.class);
+    final MatchmakingEventPublisher publisher = Mockito.mock(MatchmakingEventPublisher.class);
+    final String casual = "mm:{casual:default}:outbox";
+    final String rank = "mm:{rank:default}:outbox";
+    final MatchOutboxEntry first =
+        new MatchOutboxEntry("1-0", "match-1", MatchMode.CASUAL, MATCHED_AT);
+    final MatchOutboxEntry second = new MatchOutboxEntry("2-0", "match-2", MatchMode.RANK, null);
+    final MatchOutboxEntry third = new MatchOutboxEntry("3-0", "match-3", MatchMode.RANK, null);
+    when(repository.streams()).thenReturn(List.of(casual, rank));
+    when(repository.readNew(Mockito.eq(casual), anyString(), anyInt())).thenReturn(List.of(first));
+    when(repository.readNew(Mockito.eq(rank), anyString(), anyInt()))
+        .thenReturn(List.of(second, third));
+    when(publisher.publishMatchFound(any()))
+        .thenReturn(CompletableFuture.completedFuture(Mockito.mock(PublishAck.class)));
+
+    final MatchmakingOutboxRelay relay =
+        new MatchmakingOutboxRelay(
+            repository, publisher, PROPERTIES, Mockito.mock(MatchmakingMetrics.class), CLOCK);
+
+    assertThat(relay.relayBatch()).isEqualTo(2);
+
+    verify(repository).ensureGroup(casual);
+    verify(repository).ensureGroup(rank);
+    verify(repository).acknowledge(casual, List.of("1-0"));
+    verify(repository).acknowledge(rank, List.of("2-0", "3-0"));
+  }
+
+  @Test
+  void recreatesGroupAfterReadFailure() {
+    final MatchmakingOutboxRepository repository = Mockito.mock(MatchmakingOutboxRepository.class);
+    when(repository.streams()).thenReturn(List.of(STREAM));
+    when(repository.readNew(anyString(), anyString(), anyInt()))
+        .thenThrow(new IllegalStateException("NOGROUP"))
+        .thenReturn(List.of());
+
+    final MatchmakingOutboxRelay relay =
+        new MatchmakingOutboxRelay(
+            repository,
+            Mockito.mock(MatchmakingEventPublisher.class),
+            PROPERTIES,
+            Mockito.mock(MatchmakingMetrics.class),
+            CLOCK);
+
+    assertThatThrownBy(relay::relayBatch).isInstanceOf(IllegalStateException.class);
+    assertThat(relay.relayBatch()).isZero();
+
+    verify(repository, times(2)).ensureGroup(STREAM);
+    verify(repository, never()).acknowledge(anyString(), any());
+  }
+}
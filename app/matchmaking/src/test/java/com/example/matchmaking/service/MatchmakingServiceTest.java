@@ -3,7 +3,9 @@ package com.example.matchmaking.service;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -12,34 +14,101 @@ import com.example.matchmaking.api.InvalidMatchmakingRequestException;
 import com.example.matchmaking.api.TicketAccessDeniedException;
 import com.example.matchmaking.api.TicketNotFoundException;
 import com.example.matchmaking.api.request.JoinMatchmakingTicketRequest;
+import com.example.matchmaking.api.response.TicketStatusResponse;
+import com.example.matchmaking.config.MatchmakingLobbyProperties;
 import com.example.matchmaking.config.MatchmakingProperties;
+import com.example.matchmaking.config.MatchmakingQueueBucketProperties;
+import com.example.matchmaking.config.MatchmakingRatingProperties;
+import com.example.matchmaking.config.MatchmakingStatusWatchProperties;
+import com.example.matchmaking.model.LobbyShape;
 import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.MatchRecord;
+import com.example.matchmaking.model.QueueBucket;
 import com.example.matchmaking.model.TicketRecord;
 import com.example.matchmaking.model.TicketStatus;
+import com.example.matchmaking.model.TicketStatusSnapshot;
+import com.example.matchmaking.model.WaitTimeEstimate;
 import com.example.matchmaking.repository.MatchmakingTicketRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 class MatchmakingServiceTest {
 
   private MatchmakingTicketRepository repository;
   private MatchmakingMetrics metrics;
+  private MatchmakingWakeupSignal wakeupSignal;
+  private MatchWaitTimeEstimator waitTimeEstimator;
+  private TicketStatusSignal statusSignal;
+  private TicketStatusWatcher statusWatcher;
+  private Consumer<String> statusListener;
   private MatchmakingService service;
 
   @BeforeEach
   void setUp() {
     repository = Mockito.mock(MatchmakingTicketRepository.class);
     metrics = Mockito.mock(MatchmakingMetrics.class);
+    wakeupSignal = Mockito.mock(MatchmakingWakeupSignal.class);
+    waitTimeEstimator = Mockito.mock(MatchWaitTimeEstimator.class);
+    when(waitTimeEstimator.estimate(any()))
+        .thenAnswer(
+            invocation -> WaitTimeEstimate.empty(invocation.getArgument(0), Duration.ofSeconds(1)));
+    statusSignal = Mockito.mock(TicketStatusSignal.class);
+    statusWatcher =
+        new TicketStatusWatcher(
+            new MatchmakingStatusWatchProperties(true, null, Duration.ofSeconds(30), 10),
+            statusSignal,
+            metrics);
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+    verify(statusSignal).register(listener.capture());
+    statusListener = listener.getValue();
+    service = newService(false);
+  }
+
+  @AfterEach
+  void tearDown() {
+    statusWatcher.shutdown();
+  }
+
+  private MatchmakingService newService(boolean ratingEnabled) {
+    return newService(ratingEnabled, new MatchmakingLobbyProperties(Map.of()));
+  }
+
+  private MatchmakingService newService(
+      boolean ratingEnabled, MatchmakingLobbyProperties lobbyProperties) {
     final MatchmakingProperties properties =
         new MatchmakingProperties(
             Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 50, true);
-    service = new MatchmakingService(repository, properties, metrics, new ObjectMapper());
+    final QueueBucketResolver queueBucketResolver =
+        new QueueBucketResolver(
+            new MatchmakingQueueBucketProperties(
+                List.of("region"), Map.of(), Map.of("region", List.of("apac")), Map.of()));
+    final MatchmakingRatingProperties ratingProperties =
+        new MatchmakingRatingProperties(ratingEnabled, "rating", 1500, 50, 10, 400, 8);
+    return new MatchmakingService(
+        repository,
+        properties,
+        metrics,
+        queueBucketResolver,
+        ratingProperties,
+        lobbyProperties,
+        wakeupSignal,
+        waitTimeEstimator,
+        statusSignal,
+        statusWatcher,
+        new ObjectMapper());
   }
 
   @Test
@@ -76,10 +145,12 @@ class MatchmakingServiceTest {
     final Instant now = Instant.parse("2026-02-24T12:00:00Z");
     final Instant expiresAt = now.plusSeconds(60);
     when(repository.createOrReuseTicket(
-            eq(MatchMode.CASUAL),
+            eq(new QueueBucket(MatchMode.CASUAL, "apac")),
             eq("user-1"),
             eq("idem-1"),
             any(),
+            isNull(),
+            eq(1),
             eq(Duration.ofSeconds(60)),
             eq(Duration.ofSeconds(60))))
         .thenReturn(
@@ -95,16 +166,114 @@ class MatchmakingServiceTest {
 
     final var response =
         service.join(
-            "casual", "user-1", new JoinMatchmakingTicketRequest(1, Map.of("skill", 10), "idem-1"));
+            "casual",
+            "user-1",
+            new JoinMatchmakingTicketRequest(1, Map.of("region", "APAC", "skill", 10), "idem-1"));
 
     assertThat(response.ticketId()).isEqualTo("ticket-1");
     assertThat(response.status()).isEqualTo("QUEUED");
     assertThat(response.expiresAt()).isEqualTo("2026-02-24T12:01:00Z");
+    assertThat(response.estimate().bucket()).isEqualTo(QueueBucket.DEFAULT_ID);
+    assertThat(response.estimate().p50Ms()).isNull();
+    assertThat(response.estimate().pollIntervalMs()).isEqualTo(1000);
+    verify(wakeupSignal).notifyJoined(QueueBucket.defaultOf(MatchMode.CASUAL));
+    verify(metrics).recordJoin(any(Duration.class));
+  }
+
+  @Test
+  void estimateWaitReturnsBucketEstimate() {
+    final QueueBucket apac = new QueueBucket(MatchMode.RANK, "apac");
+    when(waitTimeEstimator.estimate(apac))
+        .thenReturn(
+            new WaitTimeEstimate(
+                apac,
+                42,
+                Duration.ofSeconds(12),
+                Duration.ofSeconds(30),
+                Duration.ofSeconds(3)));
+
+    final var response = service.estimateWait("rank", "apac");
+
+    assertThat(response.mode()).isEqualTo("rank");
+    assertThat(response.bucket()).isEqualTo("apac");
+    assertThat(response.sampleCount()).isEqualTo(42);
+    assertThat(response.p50Ms()).isEqualTo(12_000L);
+    assertThat(response.p90Ms()).isEqualTo(30_000L);
+    assertThat(response.pollIntervalMs()).isEqualTo(3_000L);
+  }
+
+  @Test
+  void estimateWaitThrowsWhenModeUnsupported() {
+    assertThatThrownBy(() -> service.estimateWait("unknown", null))
+        .isInstanceOf(InvalidMatchmakingRequestException.class);
+  }
+
+  @Test
+  void joinPassesRatingOnlyWhenRatingMatcherEnabled() {
+    service = newService(true);
+    final TicketRecord queued =
+        new TicketRecord(
+            "ticket-1",
+            "user-1",
+            MatchMode.CASUAL,
+            TicketStatus.QUEUED,
+            Instant.now(),
+            Instant.now().plusSeconds(60),
+            "{}",
+            null);
+    when(repository.createOrReuseTicket(any(), any(), any(), any(), any(), anyInt(), any(), any()))
+        .thenReturn(queued);
+
+    service.join(
+        "casual", "user-1", new JoinMatchmakingTicketRequest(1, Map.of("rating", 1820), "idem-1"));
+    service.join("casual", "user-2", new JoinMatchmakingTicketRequest(1, Map.of(), "idem-2"));
+
+    verify(repository)
+        .createOrReuseTicket(
+            any(), eq("user-1"), eq("idem-1"), any(), eq(1820.0), eq(1), any(), any());
+    verify(repository)
+        .createOrReuseTicket(
+            any(), eq("user-2"), eq("idem-2"), any(), eq(1500.0), eq(1), any(), any());
+  }
+
+  @Test
+  void joinAcceptsPartiesUpToTeamSizeInLobbyMode() {
+    service =
+        newService(false, new MatchmakingLobbyProperties(Map.of("rank", new LobbyShape(4, 2))));
+    final TicketRecord queued =
+        new TicketRecord(
+            "ticket-1",
+            "user-1",
+            MatchMode.RANK,
+            TicketStatus.QUEUED,
+            Instant.now(),
+            Instant.now().plusSeconds(60),
+            "{}",
+            null);
+    when(repository.createOrReuseTicket(any(), any(), any(), any(), any(), anyInt(), any(), any()))
+        .thenReturn(queued);
+
+    service.join("rank", "user-1", new JoinMatchmakingTicketRequest(4, Map.of(), "idem-1"));
+
+    verify(repository).createOrReuseTicket(any(), any(), any(), any(), any(), eq(4), any(), any());
+    assertThatThrownBy(
+            () ->
+                service.join(
+                    "rank", "user-1", new JoinMatchmakingTicketRequest(5, Map.of(), "idem-2")))
+        .isInstanceOf(InvalidMatchmakingRequestException.class)
+        .hasMessageContaining("party_size must be between 1 and 4");
+    // lobby 設定の無い mode は従来どおり 1v1 のまま
+    assertThatThrownBy(
+            () ->
+                service.join(
+                    "casual", "user-1", new JoinMatchmakingTicketRequest(2, Map.of(), "idem-3")))
+        .isInstanceOf(InvalidMatchmakingRequestException.class)
+        .hasMessageContaining("party_size must be 1");
   }
 
   @Test
   void getTicketStatusThrowsWhenNotFound() {
-    when(repository.findTicketById("ticket-404")).thenReturn(Optional.empty());
+    when(repository.findTicketStatus("ticket-404")).thenReturn(Optional.empty());
 
     assertThatThrownBy(() -> service.getTicketStatus("ticket-404", "user-1"))
         .isInstanceOf(TicketNotFoundException.class);
@@ -112,17 +281,19 @@ class MatchmakingServiceTest {
 
   @Test
   void getTicketStatusThrowsWhenOwnerMismatch() {
-    when(repository.findTicketById("ticket-1"))
+    when(repository.findTicketStatus("ticket-1"))
         .thenReturn(
             Optional.of(
-                new TicketRecord(
-                    "ticket-1",
-                    "user-2",
-                    MatchMode.CASUAL,
-                    TicketStatus.QUEUED,
-                    Instant.now(),
-                    Instant.now().plusSeconds(60),
-                    "{}",
+                new TicketStatusSnapshot(
+                    new TicketRecord(
+                        "ticket-1",
+                        "user-2",
+                        MatchMode.CASUAL,
+                        TicketStatus.QUEUED,
+                        Instant.now(),
+                        Instant.now().plusSeconds(60),
+                        "{}",
+                        null),
                     null)));
 
     assertThatThrownBy(() -> service.getTicketStatus("ticket-1", "user-1"))
@@ -131,18 +302,8 @@ class MatchmakingServiceTest {
 
   @Test
   void getTicketStatusReturnsMatchedPayloadWhenMatched() {
-    when(repository.findTicketById("ticket-1"))
-        .thenReturn(
-            Optional.of(
-                new TicketRecord(
-                    "ticket-1",
-                    "user-1",
-                    MatchMode.CASUAL,
-                    TicketStatus.MATCHED,
-                    Instant.parse("2026-02-24T12:00:00Z"),
-                    Instant.parse("2026-02-24T12:01:00Z"),
-                    "{}",
-                    "match-1")));
+    when(repository.findTicketStatus("ticket-1"))
+        .thenReturn(Optional.of(new TicketStatusSnapshot(matchedTicket(), null)));
 
     final var response = service.getTicketStatus("ticket-1", "user-1");
 
@@ -152,9 +313,33 @@ class MatchmakingServiceTest {
     assertThat(response.matched().peerUserIds()).isEmpty();
   }
 
+  @Test
+  void getTicketStatusReturnsPeersAndSessionFromMatchRecord() {
+    final MatchRecord match =
+        new MatchRecord(
+            "match-1",
+            MatchMode.CASUAL,
+            Instant.parse("2026-02-24T12:00:30Z"),
+            List.of(
+                new MatchRecord.Participant("ticket-1", "user-1", 0),
+                new MatchRecord.Participant("ticket-2", "user-2", 0),
+                new MatchRecord.Participant("ticket-3", "user-3", 1)));
+    when(repository.findTicketStatus("ticket-1"))
+        .thenReturn(Optional.of(new TicketStatusSnapshot(matchedTicket(), match)));
+
+    final var response = service.getTicketStatus("ticket-1", "user-1");
+
+    assertThat(response.matched().peerUserIds()).containsExactly("user-2", "user-3");
+    assertThat(response.matched().session())
+        .containsEntry("mode", "casual")
+        .containsEntry("matched_at", "2026-02-24T12:00:30Z")
+        .containsEntry("team", 0);
+    verify(repository, never()).findTicketById(any());
+  }
+
   @Test
   void cancelTicketThrowsWhenOwnerMismatch() {
-    when(repository.findTicketById("ticket-1"))
+    when(repository.cancelTicket("ticket-1", "user-1"))
         .thenReturn(
             Optional.of(
                 new TicketRecord(
@@ -169,24 +354,20 @@ class MatchmakingServiceTest {
 
     assertThatThrownBy(() -> service.cancelTicket("ticket-1", "user-1"))
         .isInstanceOf(TicketAccessDeniedException.class);
-    verify(repository, never()).cancelTicket("ticket-1");
+    verify(repository, never()).findTicketById("ticket-1");
   }
 
   @Test
-  void cancelTicketReturnsCancelledResponse() {
-    when(repository.findTicketById("ticket-1"))
-        .thenReturn(
-            Optional.of(
-                new TicketRecord(
-                    "ticket-1",
-                    "user-1",
-                    MatchMode.CASUAL,
-                    TicketStatus.QUEUED,
-                    Instant.parse("2026-02-24T12:00:00Z"),
-                    Instant.parse("2026-02-24T12:01:00Z"),
-                    "{}",
-                    null)));
-    when(repository.cancelTicket("ticket-1"))
+  void cancelTicketThrowsWhenNotFound() {
+    when(repository.cancelTicket("ticket-1", "user-1")).thenReturn(Optional.empty());
+
+    assertThatThrownBy(() -> service.cancelTicket("ticket-1", "user-1"))
+        .isInstanceOf(TicketNotFoundException.class);
+  }
+
+  @Test
+  void cancelTicketReturnsStatusFromSingleRepositoryCall() {
+    when(repository.cancelTicket("ticket-1", "user-1"))
         .thenReturn(
             Optional.of(
                 new TicketRecord(
@@ -203,39 +384,92 @@ class MatchmakingServiceTest {
 
     assertThat(response.ticketId()).isEqualTo("ticket-1");
     assertThat(response.status()).isEqualTo("CANCELLED");
-    verify(metrics).recordMatchResult("cancelled");
+    verify(repository, never()).findTicketById("ticket-1");
+    verify(metrics, never()).recordMatchResult("cancelled");
+    verify(statusSignal).notifyChanged(List.of("ticket-1"));
   }
 
   @Test
-  void cancelTicketDoesNotRecordCancelledWhenAlreadyCancelled() {
-    when(repository.findTicketById("ticket-1"))
-        .thenReturn(
-            Optional.of(
-                new TicketRecord(
-                    "ticket-1",
-                    "user-1",
-                    MatchMode.CASUAL,
-                    TicketStatus.CANCELLED,
-                    Instant.parse("2026-02-24T12:00:00Z"),
-                    Instant.parse("2026-02-24T12:01:00Z"),
-                    "{}",
-                    null)));
-    when(repository.cancelTicket("ticket-1"))
-        .thenReturn(
-            Optional.of(
-                new TicketRecord(
-                    "ticket-1",
-                    "user-1",
-                    MatchMode.CASUAL,
-                    TicketStatus.CANCELLED,
-                    Instant.parse("2026-02-24T12:00:00Z"),
-                    Instant.parse("2026-02-24T12:01:00Z"),
-                    "{}",
-                    null)));
+  void watchTicketStatusReturnsImmediatelyWhenTicketIsNotQueued() {
+    when(repository.findTicketStatus("ticket-1"))
+        .thenReturn(Optional.of(new TicketStatusSnapshot(matchedTicket(), null)));
 
-    final var response = service.cancelTicket("ticket-1", "user-1");
+    final var future = service.watchTicketStatus("ticket-1", "user-1", Duration.ofSeconds(30));
 
-    assertThat(response.status()).isEqualTo("CANCELLED");
-    verify(metrics, never()).recordMatchResult("cancelled");
+    assertThat(future).isCompleted();
+    assertThat(future.join().status()).isEqualTo("MATCHED");
+    assertThat(statusWatcher.waiterCount()).isZero();
+    verify(metrics).recordStatusWatch("immediate");
+  }
+
+  @Test
+  void watchTicketStatusRereadsOnceWhenTicketChanges() throws Exception {
+    when(repository.findTicketStatus("ticket-1"))
+        .thenReturn(Optional.of(new TicketStatusSnapshot(queuedTicket(), null)))
+        .thenReturn(Optional.of(new TicketStatusSnapshot(matchedTicket(), null)));
+
+    final CompletableFuture<TicketStatusResponse> future =
+        service.watchTicketStatus("ticket-1", "user-1", Duration.ofSeconds(30));
+    assertThat(future).isNotDone();
+    assertThat(statusWatcher.waiterCount()).isEqualTo(1);
+
+    statusListener.accept("ticket-2");
+    assertThat(future).isNotDone();
+    statusListener.accept("ticket-1");
+
+    assertThat(future.get(5, TimeUnit.SECONDS).status()).isEqualTo("MATCHED");
+    assertThat(statusWatcher.waiterCount()).isZero();
+    verify(repository).evictTicketStatus("ticket-1");
+    verify(metrics).recordStatusWatch("changed");
+  }
+
+  @Test
+  void watchTicketStatusReturnsCurrentStatusWhenWaitElapses() throws Exception {
+    when(repository.findTicketStatus("ticket-1"))
+        .thenReturn(Optional.of(new TicketStatusSnapshot(queuedTicket(), null)));
+
+    final var response =
+        service
+            .watchTicketStatus("ticket-1", "user-1", Duration.ofMillis(50))
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(response.status()).isEqualTo("QUEUED");
+    verify(repository, never()).evictTicketStatus(any());
+    verify(metrics).recordStatusWatch("timeout");
+  }
+
+  @Test
+  void watchTicketStatusReleasesWaiterWhenOwnerMismatch() {
+    when(repository.findTicketStatus("ticket-1"))
+        .thenReturn(Optional.of(new TicketStatusSnapshot(queuedTicket(), null)));
+
+    assertThatThrownBy(
+            () -> service.watchTicketStatus("ticket-1", "user-2", Duration.ofSeconds(30)))
+        .isInstanceOf(TicketAccessDeniedException.class);
+    assertThat(statusWatcher.waiterCount()).isZero();
+  }
+
+  private static TicketRecord queuedTicket() {
+    return new TicketRecord(
+        "ticket-1",
+        "user-1",
+        MatchMode.CASUAL,
+        TicketStatus.QUEUED,
+        Instant.now(),
+        Instant.now().plusSeconds(60),
+        "{}",
+        null);
+  }
+
+  private static TicketRecord matchedTicket() {
+    return new TicketRecord(
+        "ticket-1",
+        "user-1",
+        MatchMode.CASUAL,
+        TicketStatus.MATCHED,
+        Instant.parse("2026-02-24T12:00:00Z"),
+        Instant.parse("2026-02-24T12:01:00Z"),
+        "{}",
+        "match-1");
   }
 }
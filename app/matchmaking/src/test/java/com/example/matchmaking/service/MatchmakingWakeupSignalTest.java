@@ -0,0 +1,90 @@
+package com.example.matchmaking.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.example.matchmaking.config.MatchmakingWakeupProperties;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+class MatchmakingWakeupSignalTest {
+
+  private static final MatchmakingWakeupProperties ENABLED =
+      new MatchmakingWakeupProperties(true, "mm:wakeup", Duration.ofSeconds(8));
+
+  @Test
+  void notifyJoinedWakesLocalWorkerAndPublishesToOtherPods() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final MatchmakingWakeupSignal signal =
+        new MatchmakingWakeupSignal(redisTemplate, ENABLED, Mockito.mock(MatchmakingMetrics.class));
+    final List<QueueBucket> received = new ArrayList<>();
+    signal.register(received::add);
+
+    final QueueBucket bucket = new QueueBucket(MatchMode.RANK, "apac:2");
+    signal.notifyJoined(bucket);
+
+    assertThat(received).containsExactly(bucket);
+    final ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+    verify(redisTemplate).convertAndSend(eq("mm:wakeup"), payload.capture());
+    assertThat(payload.getValue()).endsWith("|rank|apac:2");
+  }
+
+  @Test
+  void onMessageDeliversOtherPodsSignalsAndIgnoresOwnEcho() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final MatchmakingWakeupSignal signal =
+        new MatchmakingWakeupSignal(redisTemplate, ENABLED, Mockito.mock(MatchmakingMetrics.class));
+    final List<QueueBucket> received = new ArrayList<>();
+    signal.notifyJoined(QueueBucket.defaultOf(MatchMode.CASUAL));
+    final ArgumentCaptor<String> ownPayload = ArgumentCaptor.forClass(String.class);
+    verify(redisTemplate).convertAndSend(anyString(), ownPayload.capture());
+    signal.register(received::add);
+
+    signal.onMessage(ownPayload.getValue());
+    signal.onMessage("other-pod|rank|apac");
+    signal.onMessage("broken");
+
+    assertThat(received).containsExactly(new QueueBucket(MatchMode.RANK, "apac"));
+  }
+
+  @Test
+  void notifyJoinedSwallowsPublishFailure() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    doThrow(new IllegalStateException("redis down"))
+        .when(redisTemplate)
+        .convertAndSend(anyString(), any());
+    final MatchmakingWakeupSignal signal =
+        new MatchmakingWakeupSignal(redisTemplate, ENABLED, metrics);
+
+    signal.notifyJoined(QueueBucket.defaultOf(MatchMode.CASUAL));
+
+    verify(metrics).recordDependencyError("wakeup_publish");
+  }
+
+  @Test
+  void notifyJoinedDoesNothingWhenDisabled() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final MatchmakingWakeupSignal signal =
+        new MatchmakingWakeupSignal(
+            redisTemplate,
+            new MatchmakingWakeupProperties(false, null, null),
+            Mockito.mock(MatchmakingMetrics.class));
+
+    signal.notifyJoined(QueueBucket.defaultOf(MatchMode.CASUAL));
+
+    verify(redisTemplate, never()).convertAndSend(anyString(), any());
+  }
+}
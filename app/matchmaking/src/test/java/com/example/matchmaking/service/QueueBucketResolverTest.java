@@ -0,0 +1,82 @@
+package com.example.matchmaking.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.matchmaking.config.MatchmakingQueueBucketProperties;
+import com.example.matchmaking.config.MatchmakingQueueBucketProperties.BandRange;
+import com.example.matchmaking.model.MatchMode;
+import com.example.matchmaking.model.QueueBucket;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class QueueBucketResolverTest {
+
+  private static final MatchmakingQueueBucketProperties REGION_AND_SKILL =
+      new MatchmakingQueueBucketProperties(
+          List.of("region", "skill"),
+          Map.of("skill", 500),
+          Map.of("region", List.of("AP_East", "eu")),
+          Map.of("skill", new BandRange(0, 5)));
+
+  @Test
+  void returnsDefaultBucketWhenNoAttributesConfigured() {
+    final QueueBucketResolver resolver =
+        new QueueBucketResolver(new MatchmakingQueueBucketProperties(null, null, null, null));
+
+    final QueueBucket bucket = resolver.resolve(MatchMode.CASUAL, Map.of("region", "apac"));
+
+    assertThat(bucket.isDefault()).isTrue();
+  }
+
+  @Test
+  void joinsNormalizedValuesAndSkillBandInConfiguredOrder() {
+    final QueueBucketResolver resolver = new QueueBucketResolver(REGION_AND_SKILL);
+
+    final QueueBucket bucket =
+        resolver.resolve(MatchMode.RANK, Map.of("skill", 1234, "region", " AP:East "));
+
+    assertThat(bucket).isEqualTo(new QueueBucket(MatchMode.RANK, "ap_east:2"));
+  }
+
+  @Test
+  void mapsMissingOrNonNumericValuesToAny() {
+    final QueueBucketResolver resolver = new QueueBucketResolver(REGION_AND_SKILL);
+
+    final QueueBucket bucket = resolver.resolve(MatchMode.RANK, Map.of("skill", "high"));
+
+    assertThat(bucket.id()).isEqualTo("any:any");
+  }
+
+  @Test
+  void mapsUnknownRegionToAny() {
+    final QueueBucketResolver resolver = new QueueBucketResolver(REGION_AND_SKILL);
+
+    final QueueBucket bucket =
+        resolver.resolve(MatchMode.RANK, Map.of("region", "mars-colony-7", "skill", 100));
+
+    assertThat(bucket.id()).isEqualTo("any:0");
+  }
+
+  @Test
+  void mapsSkillBandOutsideConfiguredRangeToAny() {
+    final QueueBucketResolver resolver = new QueueBucketResolver(REGION_AND_SKILL);
+
+    assertThat(resolver.resolve(MatchMode.RANK, Map.of("region", "eu", "skill", 3000)).id())
+        .isEqualTo("eu:any");
+    assertThat(resolver.resolve(MatchMode.RANK, Map.of("region", "eu", "skill", -1)).id())
+        .isEqualTo("eu:any");
+  }
+
+  @Test
+  void mapsValuesOfAttributeWithoutAllowListToAny() {
+    final QueueBucketResolver resolver =
+        new QueueBucketResolver(
+            new MatchmakingQueueBucketProperties(
+                List.of("platform"), Map.of(), Map.of(), Map.of()));
+
+    final QueueBucket bucket = resolver.resolve(MatchMode.CASUAL, Map.of("platform", "pc"));
+
+    assertThat(bucket.id()).isEqualTo("any");
+  }
+}
@@ -0,0 +1,88 @@
+package com.example.matchmaking.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.example.matchmaking.config.MatchmakingStatusWatchProperties;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+class TicketStatusSignalTest {
+
+  private static final MatchmakingStatusWatchProperties ENABLED =
+      new MatchmakingStatusWatchProperties(true, "mm:ticket-status", null, 0);
+
+  @Test
+  void notifyChangedWakesLocalWaitersAndPublishesOnce() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final TicketStatusSignal signal =
+        new TicketStatusSignal(redisTemplate, ENABLED, Mockito.mock(MatchmakingMetrics.class));
+    final List<String> received = new ArrayList<>();
+    signal.register(received::add);
+
+    signal.notifyChanged(List.of("ticket-1", "rank:apac:ticket-2"));
+
+    assertThat(received).containsExactly("ticket-1", "rank:apac:ticket-2");
+    final ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+    verify(redisTemplate).convertAndSend(eq("mm:ticket-status"), payload.capture());
+    assertThat(payload.getValue()).endsWith("\nticket-1\nrank:apac:ticket-2");
+  }
+
+  @Test
+  void onMessageDeliversOtherPodsTicketsAndIgnoresOwnEcho() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final TicketStatusSignal signal =
+        new TicketStatusSignal(redisTemplate, ENABLED, Mockito.mock(MatchmakingMetrics.class));
+    signal.notifyChanged(List.of("ticket-1"));
+    final ArgumentCaptor<String> ownPayload = ArgumentCaptor.forClass(String.class);
+    verify(redisTemplate).convertAndSend(anyString(), ownPayload.capture());
+    final List<String> received = new ArrayList<>();
+    signal.register(received::add);
+
+    signal.onMessage(ownPayload.getValue());
+    signal.onMessage("other-pod\nticket-2\nticket-3");
+    signal.onMessage("broken");
+
+    assertThat(received).containsExactly("ticket-2", "ticket-3");
+  }
+
+  @Test
+  void notifyChangedSwallowsPublishFailure() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    doThrow(new IllegalStateException("redis down"))
+        .when(redisTemplate)
+        .convertAndSend(anyString(), any());
+    final TicketStatusSignal signal = new TicketStatusSignal(redisTemplate, ENABLED, metrics);
+
+    signal.notifyChanged(List.of("ticket-1"));
+
+    verify(metrics).recordDependencyError("status_watch_publish");
+  }
+
+  @Test
+  void notifyChangedDoesNothingWhenDisabledOrEmpty() {
+    final StringRedisTemplate redisTemplate = Mockito.mock(StringRedisTemplate.class);
+    final TicketStatusSignal disabled =
+        new TicketStatusSignal(
+            redisTemplate,
+            new MatchmakingStatusWatchProperties(false, null, null, 0),
+            Mockito.mock(MatchmakingMetrics.class));
+    final TicketStatusSignal enabled =
+        new TicketStatusSignal(redisTemplate, ENABLED, Mockito.mock(MatchmakingMetrics.class));
+
+    disabled.notifyChanged(List.of("ticket-1"));
+    enabled.notifyChanged(List.of());
+
+    verify(redisTemplate, never()).convertAndSend(anyString(), any());
+  }
+}
@@ -0,0 +1,78 @@
+package com.example.matchmaking.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
+
+import com.example.matchmaking.config.MatchmakingStatusWatchProperties;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+class TicketStatusWatcherTest {
+
+  @Test
+  void registerWakesEveryWaiterOfTheTicketAndReleasesThem() {
+    final TicketStatusSignal signal = Mockito.mock(TicketStatusSignal.class);
+    final TicketStatusWatcher watcher = newWatcher(true, Duration.ofSeconds(30), 10, signal);
+    final Consumer<String> listener = capturedListener(signal);
+
+    final CompletableFuture<Boolean> first = watcher.register("ticket-1", Duration.ofSeconds(30));
+    final CompletableFuture<Boolean> second = watcher.register("ticket-1", Duration.ofSeconds(30));
+    final CompletableFuture<Boolean> other = watcher.register("ticket-2", Duration.ofSeconds(30));
+    listener.accept("ticket-1");
+
+    assertThat(first.join()).isTrue();
+    assertThat(second.join()).isTrue();
+    assertThat(other).isNotDone();
+    assertThat(watcher.waiterCount()).isEqualTo(1);
+    other.cancel(false);
+    assertThat(watcher.waiterCount()).isZero();
+    watcher.shutdown();
+  }
+
+  @Test
+  void registerCompletesWithFalseAfterMaxWait() throws Exception {
+    final TicketStatusWatcher watcher =
+        newWatcher(true, Duration.ofMillis(50), 10, Mockito.mock(TicketStatusSignal.class));
+
+    final CompletableFuture<Boolean> waiter = watcher.register("ticket-1", Duration.ofMinutes(5));
+
+    assertThat(waiter.get(5, TimeUnit.SECONDS)).isFalse();
+    assertThat(watcher.waiterCount()).isZero();
+    watcher.shutdown();
+  }
+
+  @Test
+  void registerReturnsNullWhenDisabledOrFull() {
+    final TicketStatusWatcher disabled =
+        newWatcher(false, null, 10, Mockito.mock(TicketStatusSignal.class));
+    final TicketStatusWatcher full =
+        newWatcher(true, Duration.ofSeconds(30), 1, Mockito.mock(TicketStatusSignal.class));
+
+    assertThat(disabled.register("ticket-1", Duration.ofSeconds(30))).isNull();
+    assertThat(full.register("ticket-1", Duration.ofSeconds(30))).isNotNull();
+    assertThat(full.register("ticket-2", Duration.ofSeconds(30))).isNull();
+    assertThat(full.waiterCount()).isEqualTo(1);
+    disabled.shutdown();
+    full.shutdown();
+  }
+
+  private static TicketStatusWatcher newWatcher(
+      boolean enabled, Duration maxWait, int maxWaiters, TicketStatusSignal signal) {
+    return new TicketStatusWatcher(
+        new MatchmakingStatusWatchProperties(enabled, null, maxWait, maxWaiters),
+        signal,
+        Mockito.mock(MatchmakingMetrics.class));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Consumer<String> capturedListener(TicketStatusSignal signal) {
+    final ArgumentCaptor<Consumer<String>> listener = ArgumentCaptor.forClass(Consumer.class);
+    verify(signal).register(listener.capture());
+    return listener.getValue();
+  }
+}
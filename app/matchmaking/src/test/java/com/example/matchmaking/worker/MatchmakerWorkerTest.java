@@ -1,83 +1,122 @@
 package com.example.matchmaking.worker;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.example.matchmaking.config.MatchmakingLobbyProperties;
 import com.example.matchmaking.config.MatchmakingProperties;
+import com.example.matchmaking.config.MatchmakingReaperProperties;
+import com.example.matchmaking.config.MatchmakingWakeupProperties;
+import com.example.matchmaking.config.MatchmakingWorkerLeaseProperties;
+import com.example.matchmaking.model.LobbyShape;
+import com.example.matchmaking.model.MatchGroup;
 import com.example.matchmaking.model.MatchMode;
 import com.example.matchmaking.model.MatchPair;
+import com.example.matchmaking.model.QueueBucket;
 import com.example.matchmaking.model.TicketRecord;
 import com.example.matchmaking.model.TicketStatus;
+import com.example.matchmaking.repository.MatchmakingLeaseRepository;
+import com.example.matchmaking.repository.MatchmakingLobbyRepository;
 import com.example.matchmaking.repository.MatchmakingMatchRepository;
 import com.example.matchmaking.repository.MatchmakingTicketRepository;
-import com.example.matchmaking.service.MatchmakingEventPublisher;
+import com.example.matchmaking.service.MatchWaitTimeEstimator;
+import com.example.matchmaking.service.TicketStatusSignal;
 import com.example.matchmaking.service.MatchmakingMetrics;
+import com.example.matchmaking.service.MatchmakingWakeupSignal;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 
 class MatchmakerWorkerTest {
 
+  private static final MatchmakingWorkerLeaseProperties LEASE_DISABLED =
+      new MatchmakingWorkerLeaseProperties(false, Duration.ofSeconds(5), 1);
+  private static final MatchmakingWorkerLeaseProperties LEASE_ENABLED =
+      new MatchmakingWorkerLeaseProperties(true, Duration.ofSeconds(5), 2);
+  private static final MatchmakingWorkerLeaseProperties LEASE_DISABLED_PARALLEL =
+      new MatchmakingWorkerLeaseProperties(false, Duration.ofSeconds(5), 2);
+  private static final MatchmakingWakeupProperties WAKEUP_DISABLED =
+      new MatchmakingWakeupProperties(false, "mm:wakeup", Duration.ofSeconds(8));
+  private static final MatchmakingWakeupProperties WAKEUP_ENABLED =
+      new MatchmakingWakeupProperties(true, "mm:wakeup", Duration.ofSeconds(8));
+  private static final MatchmakingReaperProperties REAPER =
+      new MatchmakingReaperProperties(Duration.ofSeconds(1), 2, 3);
+  private static final MatchmakingLobbyProperties LOBBY_DEFAULT =
+      new MatchmakingLobbyProperties(Map.of());
+
   @Test
-  void runPublishesWhenMatchFound() {
+  void runRecordsMatchWhenMatchFound() {
     final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
     final MatchmakingTicketRepository ticketRepository =
         Mockito.mock(MatchmakingTicketRepository.class);
     final MatchmakingMatchRepository matchRepository =
         Mockito.mock(MatchmakingMatchRepository.class);
-    final MatchmakingEventPublisher publisher = Mockito.mock(MatchmakingEventPublisher.class);
     final MatchmakingProperties properties =
         new MatchmakingProperties(
             Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
 
-    when(ticketRepository.queueDepth(MatchMode.CASUAL)).thenReturn(2L);
-    when(ticketRepository.queueDepth(MatchMode.RANK)).thenReturn(0L);
+    final QueueBucket casual = QueueBucket.defaultOf(MatchMode.CASUAL);
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL)).thenReturn(List.of(casual));
+    when(ticketRepository.queueDepth(casual)).thenReturn(2L);
     when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(3L));
     final Instant matchedAt = Instant.parse("2026-02-24T12:00:10Z");
-    when(matchRepository.matchTwo(eq(MatchMode.CASUAL), any(Instant.class)))
-        .thenReturn(
-            Optional.of(
-                new MatchPair("match-1", MatchMode.CASUAL, "ticket-1", "ticket-2", matchedAt)))
-        .thenReturn(Optional.empty());
-    when(ticketRepository.findTicketById("ticket-1"))
+    when(matchRepository.matchMany(eq(casual), any(Instant.class), eq(1)))
         .thenReturn(
-            Optional.of(
-                new TicketRecord(
-                    "ticket-1",
-                    "user-1",
+            List.of(
+                new MatchPair(
+                    "match-1",
                     MatchMode.CASUAL,
-                    TicketStatus.MATCHED,
-                    Instant.parse("2026-02-24T12:00:00Z"),
-                    Instant.parse("2026-02-24T12:01:00Z"),
-                    "{}",
-                    "match-1")));
-    when(ticketRepository.findTicketById("ticket-2"))
-        .thenReturn(
-            Optional.of(
-                new TicketRecord(
+                    "ticket-1",
                     "ticket-2",
-                    "user-2",
-                    MatchMode.CASUAL,
-                    TicketStatus.MATCHED,
-                    Instant.parse("2026-02-24T12:00:05Z"),
-                    Instant.parse("2026-02-24T12:01:00Z"),
-                    "{}",
-                    "match-1")));
+                    matchedAt,
+                    Instant.parse("2026-02-24T12:00:00Z"),
+                    Instant.parse("2026-02-24T12:00:05Z"))));
+    final MatchWaitTimeEstimator waitTimeEstimator = Mockito.mock(MatchWaitTimeEstimator.class);
+    final TicketStatusSignal statusSignal = Mockito.mock(TicketStatusSignal.class);
 
     final MatchmakerWorker worker =
-        new MatchmakerWorker(metrics, properties, ticketRepository, matchRepository, publisher);
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            waitTimeEstimator,
+            statusSignal);
 
     worker.run();
 
-    verify(publisher).publishMatched(any(MatchPair.class));
     verify(metrics).recordMatchResult("matched");
-    verify(metrics).recordTimeToMatchSeconds(10L);
-    verify(metrics).recordTimeToMatchSeconds(5L);
+    verify(metrics).recordTimeToMatch(Duration.ofSeconds(10));
+    verify(metrics).recordTimeToMatch(Duration.ofSeconds(5));
+    verify(waitTimeEstimator).record(casual, Duration.ofSeconds(10));
+    verify(waitTimeEstimator).record(casual, Duration.ofSeconds(5));
+    verify(statusSignal).notifyChanged(List.of("ticket-1", "ticket-2"));
+    verify(ticketRepository, never()).findTicketById(any());
   }
 
   @Test
@@ -87,21 +126,35 @@ class MatchmakerWorkerTest {
         Mockito.mock(MatchmakingTicketRepository.class);
     final MatchmakingMatchRepository matchRepository =
         Mockito.mock(MatchmakingMatchRepository.class);
-    final MatchmakingEventPublisher publisher = Mockito.mock(MatchmakingEventPublisher.class);
     final MatchmakingProperties properties =
         new MatchmakingProperties(
             Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
 
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL))
+        .thenReturn(List.of(QueueBucket.defaultOf(MatchMode.CASUAL)));
     when(ticketRepository.queueDepth(any())).thenReturn(1L);
     when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(1L));
 
     final MatchmakerWorker worker =
-        new MatchmakerWorker(metrics, properties, ticketRepository, matchRepository, publisher);
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
 
     worker.run();
 
-    verify(matchRepository, never()).matchTwo(any(), any());
-    verify(publisher, never()).publishMatched(any());
+    verify(matchRepository, never()).matchMany(any(), any(), anyInt());
+    verify(metrics, never()).recordMatchResult("matched");
   }
 
   @Test
@@ -111,24 +164,23 @@ class MatchmakerWorkerTest {
         Mockito.mock(MatchmakingTicketRepository.class);
     final MatchmakingMatchRepository matchRepository =
         Mockito.mock(MatchmakingMatchRepository.class);
-    final MatchmakingEventPublisher publisher = Mockito.mock(MatchmakingEventPublisher.class);
     final MatchmakingProperties properties =
         new MatchmakingProperties(
             Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
 
-    when(ticketRepository.queueDepth(MatchMode.CASUAL)).thenReturn(2L);
-    when(ticketRepository.queueDepth(MatchMode.RANK)).thenReturn(0L);
+    final QueueBucket casual = QueueBucket.defaultOf(MatchMode.CASUAL);
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL)).thenReturn(List.of(casual));
+    when(ticketRepository.queueDepth(casual)).thenReturn(2L);
     when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(1L));
-    when(matchRepository.matchTwo(eq(MatchMode.CASUAL), any(Instant.class)))
+    when(matchRepository.matchMany(eq(casual), any(Instant.class), eq(1)))
         .thenReturn(
-            Optional.of(
+            List.of(
                 new MatchPair(
                     "match-1",
                     MatchMode.CASUAL,
                     "missing-ticket",
                     "ticket-2",
-                    Instant.parse("2026-02-24T12:00:10Z"))))
-        .thenReturn(Optional.empty());
+                    Instant.parse("2026-02-24T12:00:10Z"))));
     when(ticketRepository.findTicketById("missing-ticket")).thenReturn(Optional.empty());
     when(ticketRepository.findTicketById("ticket-2"))
         .thenReturn(
@@ -144,10 +196,503 @@ class MatchmakerWorkerTest {
                     "match-1")));
 
     final MatchmakerWorker worker =
-        new MatchmakerWorker(metrics, properties, ticketRepository, matchRepository, publisher);
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
 
     worker.run();
 
     verify(metrics).recordDependencyError("time_to_match_ticket_not_found");
   }
+
+  @Test
+  void runMatchesEachBucketAndPrunesEmptyBuckets() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket apac = new QueueBucket(MatchMode.RANK, "apac");
+    final QueueBucket emea = new QueueBucket(MatchMode.RANK, "emea");
+    when(ticketRepository.activeBuckets(MatchMode.RANK)).thenReturn(List.of(apac, emea));
+    when(ticketRepository.queueDepth(apac)).thenReturn(4L);
+    when(ticketRepository.queueDepth(emea)).thenReturn(0L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(2L));
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+
+    worker.run();
+
+    verify(metrics).updateQueueDepth("rank", "apac", 4L);
+    verify(metrics).updateQueueDepth("rank", "emea", 0L);
+    verify(matchRepository).matchMany(eq(apac), any(Instant.class), eq(1));
+    verify(matchRepository, never()).matchMany(eq(emea), any(), anyInt());
+    verify(ticketRepository).removeBucketIfEmpty(emea);
+    verify(ticketRepository, never()).removeBucketIfEmpty(apac);
+  }
+
+  @Test
+  void runMatchesOnlyLeasedBucketsUpToFairShare() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingLeaseRepository leaseRepository =
+        Mockito.mock(MatchmakingLeaseRepository.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket apac = new QueueBucket(MatchMode.RANK, "apac");
+    final QueueBucket emea = new QueueBucket(MatchMode.RANK, "emea");
+    final QueueBucket na = new QueueBucket(MatchMode.RANK, "na");
+    final QueueBucket sa = new QueueBucket(MatchMode.RANK, "sa");
+    when(ticketRepository.activeBuckets(MatchMode.RANK)).thenReturn(List.of(apac, emea, na, sa));
+    when(ticketRepository.queueDepth(any())).thenReturn(2L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(1L));
+    when(leaseRepository.heartbeat(any(), any())).thenReturn(2L);
+    when(leaseRepository.tryAcquire(eq(apac), any(), any())).thenReturn(false);
+    when(leaseRepository.tryAcquire(eq(emea), any(), any())).thenReturn(true);
+    when(leaseRepository.tryAcquire(eq(na), any(), any())).thenReturn(true);
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_ENABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            leaseRepository,
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+
+    worker.run();
+
+    verify(metrics).updateOwnedPartitions(2);
+    verify(matchRepository).matchMany(eq(emea), any(Instant.class), eq(1));
+    verify(matchRepository).matchMany(eq(na), any(Instant.class), eq(1));
+    verify(matchRepository, never()).matchMany(eq(apac), any(), anyInt());
+    verify(matchRepository, never()).matchMany(eq(sa), any(), anyInt());
+    verify(leaseRepository, never()).tryAcquire(eq(sa), any(), any());
+  }
+
+  @Test
+  void runReleasesLeasesAboveShareWhenWorkersJoinAndOnShutdown() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingLeaseRepository leaseRepository =
+        Mockito.mock(MatchmakingLeaseRepository.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket apac = new QueueBucket(MatchMode.RANK, "apac");
+    final QueueBucket emea = new QueueBucket(MatchMode.RANK, "emea");
+    when(ticketRepository.activeBuckets(MatchMode.RANK)).thenReturn(List.of(apac, emea));
+    when(ticketRepository.queueDepth(any())).thenReturn(1L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(1L));
+    when(leaseRepository.heartbeat(any(), any())).thenReturn(1L, 2L);
+    when(leaseRepository.tryAcquire(any(), any(), any())).thenReturn(true);
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_ENABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            leaseRepository,
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+
+    worker.run();
+    worker.run();
+
+    verify(metrics).updateOwnedPartitions(2);
+    verify(metrics).updateOwnedPartitions(1);
+    verify(leaseRepository).release(eq(emea), any());
+    verify(leaseRepository, never()).release(eq(apac), any());
+
+    worker.shutdown();
+
+    verify(leaseRepository).release(eq(apac), any());
+    verify(leaseRepository).unregister(any());
+  }
+
+  @Test
+  void runSkipsAllBucketsWhenHeartbeatFails() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingLeaseRepository leaseRepository =
+        Mockito.mock(MatchmakingLeaseRepository.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL))
+        .thenReturn(List.of(QueueBucket.defaultOf(MatchMode.CASUAL)));
+    doThrow(new IllegalStateException("redis down")).when(leaseRepository).heartbeat(any(), any());
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_ENABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            leaseRepository,
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+
+    worker.run();
+
+    verify(metrics).recordDependencyError("worker_lease");
+    verify(ticketRepository, never()).queueDepth(any());
+    verify(matchRepository, never()).matchMany(any(), any(), anyInt());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void runReapsExpiredTicketsInBatchesBeforeMatching() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket casual = QueueBucket.defaultOf(MatchMode.CASUAL);
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL)).thenReturn(List.of(casual));
+    when(ticketRepository.reapExpired(eq(casual), any(Instant.class), eq(2))).thenReturn(2, 2, 1);
+    when(ticketRepository.queueDepth(casual)).thenReturn(2L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.empty());
+    when(matchRepository.matchMany(eq(casual), any(Instant.class), eq(1))).thenReturn(List.of());
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+
+    worker.run();
+    // interval 内の 2 回目の tick では reaper を呼ばない
+    worker.run();
+
+    final InOrder inOrder = Mockito.inOrder(ticketRepository, matchRepository);
+    inOrder.verify(ticketRepository, times(3)).reapExpired(eq(casual), any(Instant.class), eq(2));
+    inOrder.verify(ticketRepository).queueDepth(casual);
+    inOrder.verify(matchRepository).matchMany(eq(casual), any(Instant.class), eq(1));
+    verify(ticketRepository, times(3)).reapExpired(any(), any(), anyInt());
+  }
+
+  @Test
+  void runStillMatchesWhenReapFails() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket casual = QueueBucket.defaultOf(MatchMode.CASUAL);
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL)).thenReturn(List.of(casual));
+    when(ticketRepository.reapExpired(any(), any(), anyInt()))
+        .thenThrow(new IllegalStateException("redis down"));
+    when(ticketRepository.queueDepth(casual)).thenReturn(2L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.empty());
+    when(matchRepository.matchMany(eq(casual), any(Instant.class), eq(1))).thenReturn(List.of());
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+
+    worker.run();
+
+    verify(metrics).recordDependencyError("worker_reap");
+    verify(matchRepository).matchMany(eq(casual), any(Instant.class), eq(1));
+  }
+
+  @Test
+  void runFormsLobbiesForModesWithLobbyShape() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingLobbyRepository lobbyRepository =
+        Mockito.mock(MatchmakingLobbyRepository.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 20, true);
+    final LobbyShape twoVsTwo = new LobbyShape(2, 2);
+
+    final QueueBucket rank = QueueBucket.defaultOf(MatchMode.RANK);
+    when(ticketRepository.activeBuckets(MatchMode.RANK)).thenReturn(List.of(rank));
+    when(ticketRepository.queueDepth(rank)).thenReturn(3L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.empty());
+    final Instant matchedAt = Instant.parse("2026-02-24T12:00:10Z");
+    when(lobbyRepository.formLobbies(eq(rank), any(Instant.class), eq(twoVsTwo), eq(5)))
+        .thenReturn(
+            List.of(
+                new MatchGroup(
+                    "match-1",
+                    MatchMode.RANK,
+                    matchedAt,
+                    List.of(
+                        new MatchGroup.Member(
+                            "ticket-1", 0, 2, Instant.parse("2026-02-24T12:00:00Z")),
+                        new MatchGroup.Member(
+                            "ticket-2", 1, 1, Instant.parse("2026-02-24T12:00:04Z")),
+                        new MatchGroup.Member(
+                            "ticket-3", 1, 1, Instant.parse("2026-02-24T12:00:08Z"))))));
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_DISABLED,
+            REAPER,
+            new MatchmakingLobbyProperties(Map.of("rank", twoVsTwo)),
+            ticketRepository,
+            matchRepository,
+            lobbyRepository,
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            Mockito.mock(MatchmakingWakeupSignal.class),
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+
+    worker.run();
+
+    verify(metrics).recordMatchResult("matched");
+    verify(metrics).recordTimeToMatch(Duration.ofSeconds(10));
+    verify(metrics).recordTimeToMatch(Duration.ofSeconds(6));
+    verify(metrics).recordTimeToMatch(Duration.ofSeconds(2));
+    verify(matchRepository, never()).matchMany(any(), any(), anyInt());
+  }
+
+  @Test
+  void wakeupMatchesBucketWithoutWaitingForNextPoll() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingWakeupSignal wakeupSignal = Mockito.mock(MatchmakingWakeupSignal.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket casual = QueueBucket.defaultOf(MatchMode.CASUAL);
+    when(ticketRepository.queueDepth(casual)).thenReturn(2L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(0L));
+
+    new MatchmakerWorker(
+        metrics,
+        properties,
+        LEASE_DISABLED,
+        WAKEUP_ENABLED,
+        REAPER,
+        LOBBY_DEFAULT,
+        ticketRepository,
+        matchRepository,
+        Mockito.mock(MatchmakingLobbyRepository.class),
+        Mockito.mock(MatchmakingLeaseRepository.class),
+        wakeupSignal,
+        Mockito.mock(MatchWaitTimeEstimator.class),
+        Mockito.mock(TicketStatusSignal.class));
+    final ArgumentCaptor<Consumer<QueueBucket>> listener = ArgumentCaptor.forClass(Consumer.class);
+    verify(wakeupSignal).register(listener.capture());
+
+    listener.getValue().accept(casual);
+
+    verify(matchRepository, timeout(1000)).matchMany(eq(casual), any(Instant.class), eq(1));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void idleBucketBacksOffUntilWokenUp() {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingWakeupSignal wakeupSignal = Mockito.mock(MatchmakingWakeupSignal.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket casual = QueueBucket.defaultOf(MatchMode.CASUAL);
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL)).thenReturn(List.of(casual));
+    when(ticketRepository.queueDepth(casual)).thenReturn(1L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(0L));
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED,
+            WAKEUP_ENABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            wakeupSignal,
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+    final ArgumentCaptor<Consumer<QueueBucket>> listener = ArgumentCaptor.forClass(Consumer.class);
+    verify(wakeupSignal).register(listener.capture());
+
+    worker.run();
+    worker.run();
+
+    verify(ticketRepository, times(1)).queueDepth(casual);
+
+    listener.getValue().accept(casual);
+
+    verify(ticketRepository, timeout(1000).times(2)).queueDepth(casual);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void wakeupDuringTickCoalescesIntoRunningBucket() throws Exception {
+    final MatchmakingMetrics metrics = Mockito.mock(MatchmakingMetrics.class);
+    final MatchmakingTicketRepository ticketRepository =
+        Mockito.mock(MatchmakingTicketRepository.class);
+    final MatchmakingMatchRepository matchRepository =
+        Mockito.mock(MatchmakingMatchRepository.class);
+    final MatchmakingWakeupSignal wakeupSignal = Mockito.mock(MatchmakingWakeupSignal.class);
+    final MatchmakingProperties properties =
+        new MatchmakingProperties(
+            Duration.ofSeconds(60), Duration.ofSeconds(60), Duration.ofSeconds(1), 2, true);
+
+    final QueueBucket casual = QueueBucket.defaultOf(MatchMode.CASUAL);
+    when(ticketRepository.activeBuckets(MatchMode.CASUAL)).thenReturn(List.of(casual));
+    when(ticketRepository.queueDepth(casual)).thenReturn(2L);
+    when(ticketRepository.oldestQueueAgeSeconds(any())).thenReturn(Optional.of(0L));
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    when(matchRepository.matchMany(eq(casual), any(Instant.class), anyInt()))
+        .thenAnswer(
+            invocation -> {
+              maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+              entered.countDown();
+              release.await(5, TimeUnit.SECONDS);
+              inFlight.decrementAndGet();
+              return List.of();
+            });
+
+    final MatchmakerWorker worker =
+        new MatchmakerWorker(
+            metrics,
+            properties,
+            LEASE_DISABLED_PARALLEL,
+            WAKEUP_ENABLED,
+            REAPER,
+            LOBBY_DEFAULT,
+            ticketRepository,
+            matchRepository,
+            Mockito.mock(MatchmakingLobbyRepository.class),
+            Mockito.mock(MatchmakingLeaseRepository.class),
+            wakeupSignal,
+            Mockito.mock(MatchWaitTimeEstimator.class),
+            Mockito.mock(TicketStatusSignal.class));
+    final ArgumentCaptor<Consumer<QueueBucket>> listener = ArgumentCaptor.forClass(Consumer.class);
+    verify(wakeupSignal).register(listener.capture());
+
+    final Thread tick = new Thread(worker::run);
+    tick.start();
+    assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+    // 空いているもう 1 本の executor スレッドで起床が走っても、処理中の区画には入らない
+    listener.getValue().accept(casual);
+    Thread.sleep(200);
+    release.countDown();
+    tick.join(5000);
+
+    // 処理中に届いた起床は、処理中のスレッドがもう一度回して拾う
+    verify(matchRepository, timeout(1000).times(2))
+        .matchMany(eq(casual), any(Instant.class), anyInt());
+    assertThat(maxInFlight.get()).isEqualTo(1);
+  }
 }
@@ -0,0 +1,22 @@
+/*
+ * どこで: Notification アプリの設定バインド
+ * 何を: notifications の日単位パーティション保守の有効/無効、先行作成日数、保守間隔、ロック待ち上限を保持する
+ * なぜ: 区画の作成漏れと、区画の作成/削除による親表へのロック待ちを運用で調整できるようにするため
+ */
+package com.example.notification.config;
+
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// premakeDays は今日から何日先までの区画を用意しておくか。区画が無い日の行は既定区画に入り、
+// 行単位の削除で掃除する。lockTimeout を超えた作成/削除は次の保守で取り直す。
+@ConfigurationProperties(prefix = "notification.table-partitions")
+public record NotificationTablePartitionProperties(
+    boolean enabled, int premakeDays, Duration maintenanceInterval, Duration lockTimeout) {
+
+  public NotificationTablePartitionProperties {
+    premakeDays = premakeDays <= 0 ? 7 : premakeDays;
+    maintenanceInterval = maintenanceInterval == null ? Duration.ofHours(1) : maintenanceInterval;
+    lockTimeout = lockTimeout == null ? Duration.ofSeconds(3) : lockTimeout;
+  }
+}
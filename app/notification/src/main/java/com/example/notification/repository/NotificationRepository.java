@@ -104,6 +104,9 @@ public class NotificationRepository {
         FROM notifications
         WHERE status = 'PENDING'
           AND (next_retry_at IS NULL OR next_retry_at <= :now)
+          AND created_at >= (
+            SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'notifications'
+          )
         ORDER BY created_at
         LIMIT :limit
         """;
@@ -114,19 +117,25 @@ public class NotificationRepository {
 
   public List<NotificationRecord> claimPendingForUpdate(
       int limit, Instant now, Instant leaseUntil, String lockedBy) {
-    // PENDING と lease 切れの PROCESSING をまとめて claim し、競合を避ける
+    // PENDING と lease 切れの PROCESSING をまとめて claim し、競合を避ける。
+    // 未処理の行を持たない古い日の区画は claim_from で実行時に読み飛ばす。
     final String sql =
         """
         WITH cte AS (
-          SELECT notification_id
+          SELECT notification_id, created_at
           FROM notifications
           WHERE (
-            status = 'PENDING'
-            AND (next_retry_at IS NULL OR next_retry_at <= :now)
+            (
+              status = 'PENDING'
+              AND (next_retry_at IS NULL OR next_retry_at <= :now)
+            )
+            OR (
+              status = 'PROCESSING'
+              AND (lease_until IS NULL OR lease_until <= :now)
+            )
           )
-          OR (
-            status = 'PROCESSING'
-            AND (lease_until IS NULL OR lease_until <= :now)
+          AND created_at >= (
+            SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'notifications'
           )
           ORDER BY created_at
           LIMIT :limit
@@ -139,6 +148,7 @@ public class NotificationRepository {
             lease_until = :leaseUntil
         FROM cte
         WHERE n.notification_id = cte.notification_id
+          AND n.created_at = cte.created_at
         RETURNING n.notification_id, n.event_id, n.user_id, n.type, n.occurred_at,
                   n.payload_json::text AS payload_json_text, n.status,
                   n.locked_by, n.locked_at, n.lease_until,
@@ -201,9 +211,10 @@ public class NotificationRepository {
   }
 
   public int deleteSentOrFailedOlderThan(Instant threshold) {
+    // 日の区画は区画ごと落とすため、行単位で消すのは日の区画に入らなかった既定区画の行だけにする
     final String sql =
         """
-        DELETE FROM notifications
+        DELETE FROM notifications_default
         WHERE created_at < :threshold
           AND status IN ('SENT', 'FAILED')
         """;
@@ -232,12 +243,17 @@ public class NotificationRepository {
         SELECT COUNT(*)
         FROM notifications
         WHERE (
-          status = 'PENDING'
-          AND (next_retry_at IS NULL OR next_retry_at <= :now)
+          (
+            status = 'PENDING'
+            AND (next_retry_at IS NULL OR next_retry_at <= :now)
+          )
+          OR (
+            status = 'PROCESSING'
+            AND (lease_until IS NULL OR lease_until <= :now)
+          )
         )
-        OR (
-          status = 'PROCESSING'
-          AND (lease_until IS NULL OR lease_until <= :now)
+        AND created_at >= (
+          SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'notifications'
         )
         """;
     final MapSqlParameterSource params =
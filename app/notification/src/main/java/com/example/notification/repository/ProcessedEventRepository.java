@@ -38,6 +38,8 @@ public class ProcessedEventRepository {
     }
   }
 
+  // 行は event_id と時刻だけで小さいため区画に分けず、event_id の主キーで重複を弾いたまま
+  // processed_at の索引で期限切れを行単位に消す
   public int deleteOlderThan(Instant threshold) {
     final String sql =
         """
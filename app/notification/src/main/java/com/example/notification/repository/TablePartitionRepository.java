@@ -0,0 +1,33 @@
+/*
+ * どこで: Notification データアクセス
+ * 何を: notifications の区画を落としてよいか、claim の下限をどこまで進めてよいかを判定する
+ * なぜ: 区画の作成/削除/下限更新は共通の DailyPartitionRepository に任せ、配信状態の判定だけをここに置くため
+ */
+package com.example.notification.repository;
+
+import com.example.common.partition.DailyPartitionRepository;
+import java.time.Instant;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public class TablePartitionRepository extends DailyPartitionRepository {
+
+  private static final String ACTIVE = "status IN ('PENDING', 'PROCESSING')";
+
+  public TablePartitionRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+    super(jdbcTemplate);
+  }
+
+  // claim の対象になりうる行（PENDING/PROCESSING）が区画に残っているか。保持期限を過ぎた区画でも、
+  // この行があれば配信が終わっていないため残す。
+  public boolean hasActiveNotificationRows(String partition) {
+    return exists(partition, ACTIVE, new MapSqlParameterSource());
+  }
+
+  // 既定区画に残る PENDING/PROCESSING の行の最も古い created_at。無ければ null。
+  public Instant findOldestActiveNotificationInDefault() {
+    return oldestCreatedAtInDefault("notifications", ACTIVE);
+  }
+}
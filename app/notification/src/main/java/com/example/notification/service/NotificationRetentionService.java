@@ -24,6 +24,7 @@ public class NotificationRetentionService {
 
   private final NotificationRepository notificationRepository;
   private final ProcessedEventRepository processedEventRepository;
+  private final NotificationTablePartitionManager partitionManager;
   private final NotificationRetentionProperties properties;
   private final Clock clock;
 
@@ -37,11 +38,15 @@ public class NotificationRetentionService {
           staleActiveCount,
           threshold);
     }
+    // Notification day partitions are dropped whole; row deletes only cover the default partition.
+    final int droppedNotificationPartitions = partitionManager.dropExpiredNotifications(threshold);
     final int deletedNotifications = notificationRepository.deleteSentOrFailedOlderThan(threshold);
     final int deletedProcessedEvents = processedEventRepository.deleteOlderThan(threshold);
     logger.info(
-        "notification retention cleanup deleted notifications={} processedEvents={} threshold={}",
+        "notification retention cleanup deleted notifications={} notificationPartitions={}"
+            + " processedEvents={} threshold={}",
         deletedNotifications,
+        droppedNotificationPartitions,
         deletedProcessedEvents,
         threshold);
   }
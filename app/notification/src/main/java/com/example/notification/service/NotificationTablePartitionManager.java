@@ -0,0 +1,56 @@
+/*
+ * どこで: Notification の区画保守
+ * 何を: notifications の日単位パーティションを先に作り、保持期限を過ぎた区画を外して削除する
+ * なぜ: 期限切れの行を行単位の DELETE ではなく区画ごと落とし、肥大化と vacuum/ロックの負荷を無くすため
+ */
+package com.example.notification.service;
+
+import com.example.common.partition.DailyPartitionMaintainer;
+import com.example.notification.config.NotificationTablePartitionProperties;
+import com.example.notification.repository.TablePartitionRepository;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.stereotype.Component;
+
+// 作成/削除の手順は共通の DailyPartitionMaintainer に任せ、ここでは表の一覧と区画を残す条件だけを決める
+@Component
+public class NotificationTablePartitionManager {
+
+  static final String NOTIFICATIONS_TABLE = "notifications";
+
+  private static final List<String> TABLES = List.of(NOTIFICATIONS_TABLE);
+
+  private final TablePartitionRepository partitionRepository;
+  private final DailyPartitionMaintainer maintainer;
+
+  public NotificationTablePartitionManager(
+      TablePartitionRepository partitionRepository,
+      NotificationTablePartitionProperties properties,
+      Clock clock) {
+    this.partitionRepository = partitionRepository;
+    this.maintainer =
+        new DailyPartitionMaintainer(
+            "notification",
+            partitionRepository,
+            TABLES,
+            properties.premakeDays(),
+            properties.lockTimeout(),
+            clock);
+  }
+
+  public void maintain() {
+    maintainer.maintain(
+        NOTIFICATIONS_TABLE,
+        partition -> partitionRepository.hasActiveNotificationRows(partition.name()),
+        partitionRepository::findOldestActiveNotificationInDefault);
+  }
+
+  // SENT/FAILED だけから成る区画を落とす。PENDING/PROCESSING が残る区画は配信が終わるまで残す。
+  public int dropExpiredNotifications(Instant threshold) {
+    return maintainer.dropExpired(
+        NOTIFICATIONS_TABLE,
+        threshold,
+        partition -> partitionRepository.hasActiveNotificationRows(partition.name()));
+  }
+}
@@ -0,0 +1,27 @@
+/*
+ * Where: Notification partition maintenance worker
+ * What: Triggers daily partition pre-creation and claim bound refresh on a schedule
+ * Why: Keep daily partitions available regardless of traffic or retention settings
+ */
+package com.example.notification.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "notification.table-partitions.enabled", havingValue = "true")
+public class NotificationTablePartitionWorker {
+
+  private final NotificationTablePartitionManager partitionManager;
+
+  @Scheduled(
+      initialDelay = 0,
+      fixedDelayString = "${notification.table-partitions.maintenance-interval}")
+  public void run() {
+    // Run once at startup so writes never begin without today's partition.
+    partitionManager.maintain();
+  }
+}
@@ -0,0 +1,142 @@
+-- どこで: Notification マイグレーション
+-- 何を: notifications を日単位（UTC）の範囲パーティションに作り替え、
+--       区画の作成/削除を行う関数と、claim が読む区画の下限を置く表を作成する
+-- なぜ: 保持期限を過ぎた行を行単位の DELETE ではなく区画ごと落とし、肥大化と vacuum/ロックの負荷を無くすため
+
+-- 日単位の区画 <parent>_pYYYYMMDD を from_day から to_day まで作る。既にある日は飛ばす。
+-- 既定区画に同じ範囲の行が残っている日は作れないため、警告して飛ばす（既定区画の行が消えれば次回作られる）。
+-- 親表へのロック待ちで書き込みを詰まらせないよう、lock_timeout_ms でロック待ちを打ち切る（0 は無制限）。
+CREATE FUNCTION create_daily_partitions(
+  parent TEXT, from_day DATE, to_day DATE, lock_timeout_ms INT) RETURNS INT
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  schema_name TEXT;
+  partition_name TEXT;
+  partition_day DATE := from_day;
+  created INT := 0;
+BEGIN
+  SELECT n.nspname INTO STRICT schema_name
+  FROM pg_class c
+  JOIN pg_namespace n ON n.oid = c.relnamespace
+  WHERE c.oid = parent::regclass;
+  PERFORM set_config('lock_timeout', lock_timeout_ms || 'ms', true);
+  WHILE partition_day <= to_day LOOP
+    partition_name := parent || '_p' || to_char(partition_day, 'YYYYMMDD');
+    IF to_regclass(format('%I.%I', schema_name, partition_name)) IS NULL THEN
+      BEGIN
+        EXECUTE format(
+          'CREATE TABLE %I.%I PARTITION OF %I.%I FOR VALUES FROM (%L) TO (%L)',
+          schema_name,
+          partition_name,
+          schema_name,
+          parent,
+          partition_day::timestamp AT TIME ZONE 'UTC',
+          (partition_day + 1)::timestamp AT TIME ZONE 'UTC');
+        created := created + 1;
+      EXCEPTION
+        -- 他の replica が先に作った
+        WHEN duplicate_table THEN NULL;
+        WHEN check_violation THEN
+          RAISE WARNING 'default partition of % has rows for %; skipped', parent, partition_day;
+      END;
+    END IF;
+    partition_day := partition_day + 1;
+  END LOOP;
+  RETURN created;
+END;
+$$;
+
+-- 区画を親から外して削除する。削除してよいか（保持期限内の行や未処理の行が無いか）は呼び出し側で確かめる。
+CREATE FUNCTION drop_daily_partition(
+  parent TEXT, partition_name TEXT, lock_timeout_ms INT) RETURNS BOOLEAN
+LANGUAGE plpgsql
+AS $$
+DECLARE
+  schema_name TEXT;
+BEGIN
+  SELECT n.nspname INTO STRICT schema_name
+  FROM pg_class c
+  JOIN pg_namespace n ON n.oid = c.relnamespace
+  WHERE c.oid = parent::regclass;
+  IF to_regclass(format('%I.%I', schema_name, partition_name)) IS NULL THEN
+    -- 他の replica が先に削除した
+    RETURN FALSE;
+  END IF;
+  PERFORM set_config('lock_timeout', lock_timeout_ms || 'ms', true);
+  -- 既定区画があると DETACH CONCURRENTLY は使えない。親へのロックはメタデータの更新の間だけに留まる。
+  EXECUTE format(
+    'ALTER TABLE %I.%I DETACH PARTITION %I.%I', schema_name, parent, schema_name, partition_name);
+  EXECUTE format('DROP TABLE %I.%I', schema_name, partition_name);
+  RETURN TRUE;
+END;
+$$;
+
+-- claim はこの時刻より前の日の区画を読まない（既定区画は常に読む）。未処理の行は古い区画に戻らないため、
+-- 区画の保守が未処理の行を持つ最も古い区画の開始時刻まで進める。
+CREATE TABLE partition_claim_bounds (
+  table_name TEXT PRIMARY KEY,
+  claim_from TIMESTAMPTZ NOT NULL
+);
+
+INSERT INTO partition_claim_bounds (table_name, claim_from)
+VALUES ('notifications', '-infinity');
+
+-- notifications
+-- 主キーには区画キーを含める必要があるため (notification_id, created_at) にする。notification_id はアプリが採番する UUID。
+ALTER TABLE notifications RENAME TO notifications_unpartitioned;
+
+ALTER TABLE notifications_unpartitioned
+  RENAME CONSTRAINT notifications_pkey TO notifications_unpartitioned_pkey;
+
+DROP INDEX notifications_pending_idx;
+DROP INDEX notifications_processing_idx;
+DROP INDEX notifications_user_idx;
+DROP INDEX notifications_retention_sent_failed_idx;
+DROP INDEX notifications_retention_active_idx;
+
+CREATE TABLE notifications (
+  notification_id UUID NOT NULL,
+  event_id UUID NOT NULL,
+  user_id TEXT NOT NULL,
+  type TEXT NOT NULL,
+  occurred_at TIMESTAMPTZ NOT NULL,
+  payload_json JSONB NOT NULL,
+  status TEXT NOT NULL CHECK (status IN ('PENDING','PROCESSING','SENT','FAILED')),
+  locked_by TEXT,
+  locked_at TIMESTAMPTZ,
+  lease_until TIMESTAMPTZ,
+  attempt_count INT NOT NULL DEFAULT 0,
+  next_retry_at TIMESTAMPTZ,
+  created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+  sent_at TIMESTAMPTZ,
+  PRIMARY KEY (notification_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- 日の区画が無い時刻（移行前の行、区画の作成が遅れた日）の受け皿。行単位の DELETE で掃除する。
+CREATE TABLE notifications_default PARTITION OF notifications DEFAULT;
+
+SELECT create_daily_partitions(
+  'notifications', (now() AT TIME ZONE 'UTC')::date, (now() AT TIME ZONE 'UTC')::date + 7, 0);
+
+INSERT INTO notifications (
+  notification_id, event_id, user_id, type, occurred_at, payload_json, status, locked_by,
+  locked_at, lease_until, attempt_count, next_retry_at, created_at, sent_at
+)
+SELECT
+  notification_id, event_id, user_id, type, occurred_at, payload_json, status, locked_by,
+  locked_at, lease_until, attempt_count, next_retry_at, created_at, sent_at
+FROM notifications_unpartitioned;
+
+DROP TABLE notifications_unpartitioned;
+
+CREATE INDEX notifications_pending_idx ON notifications (status, next_retry_at, created_at);
+CREATE INDEX notifications_processing_idx ON notifications (status, lease_until, created_at);
+CREATE INDEX notifications_user_idx ON notifications (user_id, created_at);
+CREATE INDEX notifications_retention_active_idx
+  ON notifications (created_at)
+  WHERE status IN ('PENDING','PROCESSING');
+-- 行単位の削除が残るのは既定区画だけなので、削除用の索引は既定区画にだけ置く
+CREATE INDEX notifications_default_retention_sent_failed_idx
+  ON notifications_default (created_at)
+  WHERE status IN ('SENT','FAILED');
@@ -34,7 +34,9 @@ class NotificationSchedulePropertiesBindingTest {
               "notification.delivery.lease=30s",
               "notification.retention.enabled=true",
               "notification.retention.retention-days=30",
-              "notification.retention.cleanup-interval=1h");
+              "notification.retention.cleanup-interval=1h",
+              "notification.table-partitions.enabled=true",
+              "notification.table-partitions.maintenance-interval=30m");
 
   @Test
   void contextStartsAndBindsDurationFields() {
@@ -45,6 +47,8 @@ class NotificationSchedulePropertiesBindingTest {
               context.getBean(NotificationDeliveryProperties.class);
           final NotificationRetentionProperties retentionProperties =
               context.getBean(NotificationRetentionProperties.class);
+          final NotificationTablePartitionProperties partitionProperties =
+              context.getBean(NotificationTablePartitionProperties.class);
 
           assertThat(deliveryProperties.pollInterval()).isEqualTo(Duration.ofSeconds(1));
           assertThat(deliveryProperties.backoffBase()).isEqualTo(Duration.ofSeconds(1));
@@ -53,13 +57,19 @@ class NotificationSchedulePropertiesBindingTest {
           assertThat(deliveryProperties.lease()).isEqualTo(Duration.ofSeconds(30));
           assertThat(retentionProperties.cleanupInterval()).isEqualTo(Duration.ofHours(1));
           assertThat(retentionProperties.retentionDays()).isEqualTo(30);
+          assertThat(partitionProperties.enabled()).isTrue();
+          assertThat(partitionProperties.maintenanceInterval()).isEqualTo(Duration.ofMinutes(30));
+          // 未指定の値は既定値で埋まる
+          assertThat(partitionProperties.premakeDays()).isEqualTo(7);
+          assertThat(partitionProperties.lockTimeout()).isEqualTo(Duration.ofSeconds(3));
         });
   }
 
   @Configuration
   @EnableConfigurationProperties({
     NotificationDeliveryProperties.class,
-    NotificationRetentionProperties.class
+    NotificationRetentionProperties.class,
+    NotificationTablePartitionProperties.class
   })
   static class TestConfiguration {
     // ApplicationContextRunner 用の最小構成
@@ -0,0 +1,177 @@
+/*
+ * どこで: Notification 日単位パーティション保守の統合テスト
+ * 何を: 区画の先行作成、claim の下限の更新、期限切れ区画の削除（未配信を含む区画は残す）を検証する
+ * なぜ: 区画の作成漏れは書き込みを既定区画へ溢れさせ、削除の判定を誤ると未配信の通知を失うため
+ */
+package com.example.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.common.partition.DailyPartition;
+import com.example.notification.AbstractPostgresContainerTest;
+import com.example.notification.config.NotificationTablePartitionProperties;
+import com.example.notification.model.NotificationRecord;
+import com.example.notification.model.NotificationStatus;
+import com.example.notification.repository.NotificationRepository;
+import com.example.notification.repository.TablePartitionRepository;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class NotificationTablePartitionManagerTest extends AbstractPostgresContainerTest {
+
+  // 他のテストが使う日付や今日の区画と重ならない過去の日で検証する
+  private static final LocalDate FIRST_DAY = LocalDate.parse("2025-06-10");
+
+  @Autowired private TablePartitionRepository partitionRepository;
+
+  @Autowired private NotificationRepository notificationRepository;
+
+  @Autowired private NamedParameterJdbcTemplate jdbcTemplate;
+
+  @BeforeEach
+  void setUp() {
+    jdbcTemplate.update("DELETE FROM notifications", new MapSqlParameterSource());
+    partitionRepository.createDailyPartitions(
+        "notifications", FIRST_DAY, FIRST_DAY.plusDays(2), Duration.ofSeconds(3));
+  }
+
+  @AfterEach
+  void tearDown() {
+    jdbcTemplate.update("DELETE FROM notifications", new MapSqlParameterSource());
+    for (DailyPartition partition : partitionRepository.findDailyPartitions("notifications")) {
+      if (partition.day().getYear() == FIRST_DAY.getYear()) {
+        partitionRepository.dropPartition("notifications", partition.name(), Duration.ofSeconds(3));
+      }
+    }
+    partitionRepository.updateClaimFrom("notifications", Instant.parse("1970-01-01T00:00:00Z"));
+  }
+
+  @Test
+  void maintainCreatesPartitionsAheadOfToday() {
+    final LocalDate today = FIRST_DAY.plusDays(5);
+
+    newManager(today).maintain();
+
+    assertThat(partitionDays("notifications"))
+        .contains(today, today.plusDays(1), today.plusDays(2))
+        .doesNotContain(today.plusDays(3));
+    // 作り直しても重複しない
+    newManager(today).maintain();
+    assertThat(partitionDays("notifications")).doesNotHaveDuplicates();
+  }
+
+  @Test
+  void maintainAdvancesClaimFromToOldestPartitionWithActiveRows() {
+    insertNotification(NotificationStatus.SENT, FIRST_DAY);
+    insertNotification(NotificationStatus.PENDING, FIRST_DAY.plusDays(1));
+
+    newManager(FIRST_DAY.plusDays(5)).maintain();
+
+    assertThat(fetchClaimFrom())
+        .isEqualTo(FIRST_DAY.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+    // 下限より新しい区画の未配信は backlog に数えられる
+    final Instant now = FIRST_DAY.plusDays(5).atStartOfDay(ZoneOffset.UTC).toInstant();
+    assertThat(notificationRepository.countBacklog(now)).isEqualTo(1);
+  }
+
+  @Test
+  void maintainKeepsClaimFromAtOldestActiveRowInDefaultPartition() {
+    // 日の区画が無い日の未配信は既定区画に入る。claim の下限がそれを飛び越えてはいけない。
+    final LocalDate defaultDay = FIRST_DAY.minusDays(30);
+    insertNotification(NotificationStatus.PENDING, defaultDay);
+
+    newManager(FIRST_DAY.plusDays(5)).maintain();
+
+    assertThat(fetchClaimFrom())
+        .isEqualTo(defaultDay.atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(60));
+    final Instant now = FIRST_DAY.plusDays(5).atStartOfDay(ZoneOffset.UTC).toInstant();
+    assertThat(notificationRepository.countBacklog(now)).isEqualTo(1);
+  }
+
+  @Test
+  void dropExpiredNotificationsKeepsPartitionsWithActiveRows() {
+    final Instant threshold = FIRST_DAY.plusDays(3).atStartOfDay(ZoneOffset.UTC).toInstant();
+    // 1 日目: SENT/FAILED のみ。2 日目: PENDING あり。3 日目: PROCESSING あり。
+    insertNotification(NotificationStatus.SENT, FIRST_DAY);
+    insertNotification(NotificationStatus.FAILED, FIRST_DAY);
+    insertNotification(NotificationStatus.PENDING, FIRST_DAY.plusDays(1));
+    insertNotification(NotificationStatus.PROCESSING, FIRST_DAY.plusDays(2));
+
+    final int dropped = newManager(FIRST_DAY.plusDays(5)).dropExpiredNotifications(threshold);
+
+    assertThat(dropped).isEqualTo(1);
+    assertThat(partitionDays("notifications"))
+        .doesNotContain(FIRST_DAY)
+        .contains(FIRST_DAY.plusDays(1), FIRST_DAY.plusDays(2));
+    assertThat(countRows("notifications")).isEqualTo(2);
+  }
+
+  private NotificationTablePartitionManager newManager(LocalDate today) {
+    final Instant now = today.atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(3600);
+    final Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+    return new NotificationTablePartitionManager(
+        partitionRepository,
+        new NotificationTablePartitionProperties(
+            true, 2, Duration.ofHours(1), Duration.ofSeconds(3)),
+        clock);
+  }
+
+  private void insertNotification(NotificationStatus status, LocalDate day) {
+    final Instant createdAt = day.atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(60);
+    final boolean processing = status == NotificationStatus.PROCESSING;
+    notificationRepository.insert(
+        new NotificationRecord(
+            UUID.randomUUID(),
+            UUID.randomUUID(),
+            "u_1",
+            "EntitlementGranted",
+            createdAt,
+            "{}",
+            status,
+            processing ? "test-worker" : null,
+            processing ? createdAt : null,
+            processing ? createdAt : null,
+            0,
+            status == NotificationStatus.PENDING ? createdAt : null,
+            createdAt,
+            status == NotificationStatus.SENT ? createdAt : null));
+  }
+
+  private List<LocalDate> partitionDays(String table) {
+    return partitionRepository.findDailyPartitions(table).stream()
+        .map(DailyPartition::day)
+        .toList();
+  }
+
+  private int countRows(String table) {
+    final Integer count =
+        jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM " + table, new MapSqlParameterSource(), Integer.class);
+    return count == null ? 0 : count;
+  }
+
+  private Instant fetchClaimFrom() {
+    final Timestamp claimFrom =
+        jdbcTemplate.queryForObject(
+            "SELECT claim_from FROM partition_claim_bounds WHERE table_name = 'notifications'",
+            new MapSqlParameterSource(),
+            Timestamp.class);
+    return claimFrom == null ? null : claimFrom.toInstant();
+  }
+}
@@ -14,6 +14,7 @@ plugins {
     id("com.google.protobuf") version "0.9.4" apply false
     id("com.diffplug.spotless") version "8.2.1" apply false
     id("com.github.spotbugs") version "6.4.8" apply false
+    id("me.champeau.jmh") version "0.7.3" apply false
     java
     jacoco
 }
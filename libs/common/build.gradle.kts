@@ -17,4 +17,6 @@ dependencyManagement {
 dependencies {
     api("com.fasterxml.jackson.core:jackson-databind")
     api("org.springframework:spring-context")
+    api("org.springframework:spring-jdbc")
+    implementation("org.slf4j:slf4j-api")
 }
@@ -0,0 +1,28 @@
+/*
+ * どこで: 共通ユーティリティ
+ * 何を: 値の並びを JDBC の配列として名前付きパラメータへ束縛する
+ * なぜ: Collection をそのまま渡すと IN 句向けに展開され、= ANY(:xs) や unnest(:xs) に渡せないため
+ */
+package com.example.common;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.support.AbstractSqlTypeValue;
+
+public final class JdbcArrayUtils {
+  private JdbcArrayUtils() {}
+
+  // 前提: elementType は PostgreSQL の型名（int4/int8/text など）。Types.ARRAY と合わせて渡す
+  // 理由: uuid/timestamptz は text 配列で渡し、SQL 側の ::uuid[] / ::timestamptz[] で変換すれば、
+  //       ドライバが対応しない要素型でも同じ形で束縛できるため
+  public static SqlTypeValue sqlArray(String elementType, Object[] values) {
+    return new AbstractSqlTypeValue() {
+      @Override
+      protected Object createTypeValue(Connection connection, int sqlType, String typeName)
+          throws SQLException {
+        return connection.createArrayOf(elementType, values);
+      }
+    };
+  }
+}
@@ -0,0 +1,22 @@
+/*
+ * どこで: 共通の区画保守
+ * 何を: 日単位（UTC）の範囲パーティション 1 つを表す
+ * なぜ: 区画の作成/削除の判断を、区画名から日付を読み直さずに行えるようにするため
+ */
+package com.example.common.partition;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+// day の 0 時（UTC）から翌日 0 時までの行を持つ
+public record DailyPartition(String name, LocalDate day) {
+
+  public Instant start() {
+    return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+  }
+
+  public Instant end() {
+    return day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * どこで: 共通の区画保守
+ * 何を: 日単位パーティションを先に作り、保持期限を過ぎた区画を外して削除し、claim が読む区画の下限を進める
+ * なぜ: 期限切れの行を行単位の DELETE ではなく区画ごと落とす手順を、表の一覧と残す条件以外は全サービスで揃えるため
+ */
+package com.example.common.partition;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// owner はログに付けるサービス名。tables は区画を先に作る表で、保守は全表に同じ premakeDays/lockTimeout を使う。
+public final class DailyPartitionMaintainer {
+
+  private static final Logger logger = LoggerFactory.getLogger(DailyPartitionMaintainer.class);
+
+  private final String owner;
+  private final DailyPartitionRepository repository;
+  private final List<String> tables;
+  private final int premakeDays;
+  private final Duration lockTimeout;
+  private final Clock clock;
+
+  public DailyPartitionMaintainer(
+      String owner,
+      DailyPartitionRepository repository,
+      List<String> tables,
+      int premakeDays,
+      Duration lockTimeout,
+      Clock clock) {
+    this.owner = owner;
+    this.repository = repository;
+    this.tables = List.copyOf(tables);
+    this.premakeDays = premakeDays;
+    this.lockTimeout = lockTimeout;
+    this.clock = clock;
+  }
+
+  /**
+   * 今日から premakeDays 先までの区画を全表に作り、claimTable の claim の下限を進める。active は区画に claim の対象に
+   * なりうる行が残っているか、oldestActiveInDefault は既定区画に残るその行の最も古い created_at（無ければ null）を返す。
+   */
+  public void maintain(
+      String claimTable,
+      Predicate<DailyPartition> active,
+      Supplier<Instant> oldestActiveInDefault) {
+    final LocalDate today = LocalDate.ofInstant(Instant.now(clock), ZoneOffset.UTC);
+    for (String table : tables) {
+      try {
+        final int created =
+            repository.createDailyPartitions(
+                table, today, today.plusDays(premakeDays), lockTimeout);
+        if (created > 0) {
+          logger.info("{} partitions created table={} count={}", owner, table, created);
+        }
+      } catch (RuntimeException ex) {
+        // 先行作成の日数の間に次の保守で取り直せばよい
+        logger.warn("{} partition creation failed table={}", owner, table, ex);
+      }
+    }
+    try {
+      refreshClaimFrom(claimTable, today, active, oldestActiveInDefault);
+    } catch (RuntimeException ex) {
+      logger.warn("{} claim bound refresh failed table={}", owner, claimTable, ex);
+    }
+  }
+
+  /** 区画の終わりが threshold 以前で、keep が false を返す区画を落として落とした数を返す。 */
+  public int dropExpired(String table, Instant threshold, Predicate<DailyPartition> keep) {
+    int dropped = 0;
+    for (DailyPartition partition : repository.findDailyPartitions(table)) {
+      // 区画の終わりが期限より後なら、期限内の行が入りうる。以降の区画はさらに新しい。
+      if (partition.end().isAfter(threshold)) {
+        break;
+      }
+      try {
+        if (keep.test(partition)) {
+          logger.warn(
+              "{} partition kept table={} partition={} threshold={}",
+              owner,
+              table,
+              partition.name(),
+              threshold);
+          continue;
+        }
+        if (repository.dropPartition(table, partition.name(), lockTimeout)) {
+          dropped++;
+        }
+      } catch (RuntimeException ex) {
+        // ロック待ちの打ち切り等。次の保守で取り直す。
+        logger.warn(
+            "{} partition drop failed table={} partition={}", owner, table, partition.name(), ex);
+      }
+    }
+    return dropped;
+  }
+
+  // 未処理の行は古い日の区画に戻らないため、未処理を持つ最も古い区画まで claim の下限を進めて
+  // それより前の区画を claim の実行時に読み飛ばせるようにする。時計のずれで前日の created_at が
+  // 遅れて書き込まれても拾えるよう、前日より先には進めない。既定区画の未処理（移行前の行など）は
+  // 日付を問わないため、その最も古い created_at より先にも進めない。
+  private void refreshClaimFrom(
+      String table,
+      LocalDate today,
+      Predicate<DailyPartition> active,
+      Supplier<Instant> oldestActiveInDefault) {
+    LocalDate claimFrom = today.minusDays(1);
+    for (DailyPartition partition : repository.findDailyPartitions(table)) {
+      if (!partition.day().isBefore(claimFrom)) {
+        break;
+      }
+      if (active.test(partition)) {
+        claimFrom = partition.day();
+        break;
+      }
+    }
+    final Instant partitionBound = claimFrom.atStartOfDay(ZoneOffset.UTC).toInstant();
+    final Instant defaultBound = oldestActiveInDefault.get();
+    repository.updateClaimFrom(
+        table,
+        defaultBound != null && defaultBound.isBefore(partitionBound)
+            ? defaultBound
+            : partitionBound);
+  }
+}
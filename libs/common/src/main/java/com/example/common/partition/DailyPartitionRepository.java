@@ -0,0 +1,136 @@
+/*
+ * どこで: 共通の区画保守のデータアクセス
+ * 何を: 日単位パーティションの作成・一覧・削除と、claim が読む区画の下限の更新を担う
+ * なぜ: 各サービスの migration にある create_daily_partitions/drop_daily_partition を同じ手順で呼ぶため
+ */
+package com.example.common.partition;
+
+import static com.example.common.JdbcTimestampUtils.toTimestamp;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Pattern;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+// 表ごとの「残すべき行」「未処理の行」の判定は、サービス側のサブクラスが exists/oldestCreatedAtInDefault で書く
+public class DailyPartitionRepository {
+
+  // 表名と区画名は SQL に埋め込むため、create_daily_partitions が付ける形の名前だけを受け付ける
+  private static final Pattern TABLE_NAME = Pattern.compile("[a-z_]+");
+  private static final Pattern PARTITION_NAME = Pattern.compile("[a-z_]+_p[0-9]{8}");
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+
+  public DailyPartitionRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+    // SpotBugs の EI_EXPOSE_REP2 対応: 外部参照を直接保持せず、ラッパを作り直す
+    this.jdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate.getJdbcTemplate());
+  }
+
+  // fromDay から toDay までの区画のうち、無いものを作って作った数を返す
+  public int createDailyPartitions(
+      String table, LocalDate fromDay, LocalDate toDay, Duration lockTimeout) {
+    final String sql =
+        """
+        SELECT create_daily_partitions(:table, :fromDay::date, :toDay::date, :lockTimeoutMs)
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("table", table)
+            .addValue("fromDay", fromDay.toString())
+            .addValue("toDay", toDay.toString())
+            .addValue("lockTimeoutMs", Math.toIntExact(lockTimeout.toMillis()));
+    final Integer created = jdbcTemplate.queryForObject(sql, params, Integer.class);
+    return created == null ? 0 : created;
+  }
+
+  // 日の区画を古い順に返す。既定区画は含まない。
+  public List<DailyPartition> findDailyPartitions(String table) {
+    final String sql =
+        """
+        SELECT c.relname AS partition_name,
+               to_date(right(c.relname, 8), 'YYYYMMDD')::text AS partition_day
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = to_regclass(:table)
+          AND c.relname ~ ('^' || :table || '_p[0-9]{8}$')
+        ORDER BY partition_day
+        """;
+    return jdbcTemplate.query(
+        sql, new MapSqlParameterSource().addValue("table", table), this::mapPartition);
+  }
+
+  public boolean dropPartition(String table, String partition, Duration lockTimeout) {
+    final String sql =
+        """
+        SELECT drop_daily_partition(:table, :partition, :lockTimeoutMs)
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("table", table)
+            .addValue("partition", requirePartitionName(partition))
+            .addValue("lockTimeoutMs", Math.toIntExact(lockTimeout.toMillis()));
+    return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, params, Boolean.class));
+  }
+
+  public void updateClaimFrom(String table, Instant claimFrom) {
+    final String sql =
+        """
+        UPDATE partition_claim_bounds
+        SET claim_from = :claimFrom
+        WHERE table_name = :table
+        """;
+    final MapSqlParameterSource params =
+        new MapSqlParameterSource()
+            .addValue("table", table)
+            .addValue("claimFrom", toTimestamp(claimFrom));
+    jdbcTemplate.update(sql, params);
+  }
+
+  // condition はサブクラスの定数だけを渡すこと（値は params でバインドする）
+  protected boolean exists(String partition, String condition, MapSqlParameterSource params) {
+    final String sql =
+        "SELECT EXISTS (SELECT 1 FROM \""
+            + requirePartitionName(partition)
+            + "\" WHERE "
+            + condition
+            + ")";
+    return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, params, Boolean.class));
+  }
+
+  // 既定区画（<table>_default）で condition に合う行の最も古い created_at。無ければ null。
+  protected Instant oldestCreatedAtInDefault(String table, String condition) {
+    final String sql =
+        "SELECT min(created_at) FROM \""
+            + requireTableName(table)
+            + "_default\" WHERE "
+            + condition;
+    final Timestamp oldest =
+        jdbcTemplate.queryForObject(sql, new MapSqlParameterSource(), Timestamp.class);
+    return oldest == null ? null : oldest.toInstant();
+  }
+
+  private static String requireTableName(String table) {
+    if (!TABLE_NAME.matcher(table).matches()) {
+      throw new IllegalArgumentException("invalid table name: " + table);
+    }
+    return table;
+  }
+
+  private static String requirePartitionName(String partition) {
+    if (!PARTITION_NAME.matcher(partition).matches()) {
+      throw new IllegalArgumentException("invalid partition name: " + partition);
+    }
+    return partition;
+  }
+
+  private DailyPartition mapPartition(ResultSet rs, int rowNum) throws SQLException {
+    return new DailyPartition(
+        rs.getString("partition_name"), LocalDate.parse(rs.getString("partition_day")));
+  }
+}